@@ -0,0 +1,8 @@
+package com.ms.silverking.cloud.dht;
+
+/**
+ * Specifies how a client assigns messages to its connections when more than one connection is open to a server.
+ * KeyHash keeps messages for the same key on the same connection. LeastQueued picks the connection with the
+ * fewest queued outgoing messages.
+ */
+public enum ConnectionAssignmentPolicy {RoundRobin, KeyHash, LeastQueued}
@@ -27,6 +27,7 @@ public class NamespaceOptions {
   private final String storageFormat;
   private final ValueRetentionPolicy valueRetentionPolicy;
   private final NamespaceServerSideCode namespaceServerSideCode;
+  private final NamespaceStorageOptions storageOptions;
 
   /*
    * To Add:
@@ -63,11 +64,15 @@ public class NamespaceOptions {
   static final ValueRetentionPolicy defaultRetentionPolicy = new InvalidatedRetentionPolicy(
       defaultInvalidatedRetentionIntervalSeconds);
   static final NamespaceServerSideCode defaultNamespaceServerSideCode = new NamespaceServerSideCode("", "", "");
+  // null by default so that namespaces which do not specify storage options keep their existing definition
+  static final NamespaceStorageOptions defaultStorageOptions = null;
 
   // for parsing only
   public static final NamespaceOptions templateOptions = new NamespaceOptions();
 
   static {
+    // nested parsers must be registered before parsing; the default storageOptions is null so ensure it is loaded
+    NamespaceStorageOptions.init();
     ObjectDefParser2.addParser(templateOptions);
   }
 
@@ -96,12 +101,14 @@ public static void init() {
    * @param storageFormat                Persistent storage format
    * @param valueRetentionPolicy
    * @param namespaceServerSideCode
+   * @param storageOptions               server-side storage tuning for this namespace; may be null
    */
   public NamespaceOptions(StorageType storageType, ConsistencyProtocol consistencyProtocol,
       NamespaceVersionMode versionMode, RevisionMode revisionMode, PutOptions defaultPutOptions,
       InvalidationOptions defaultInvalidationOptions, GetOptions defaultGetOptions, WaitOptions defaultWaitOptions,
       int secondarySyncIntervalSeconds, int segmentSize, int maxValueSize, boolean allowLinks, String storageFormat,
-      ValueRetentionPolicy valueRetentionPolicy, NamespaceServerSideCode namespaceServerSideCode) {
+      ValueRetentionPolicy valueRetentionPolicy, NamespaceServerSideCode namespaceServerSideCode,
+      NamespaceStorageOptions storageOptions) {
     Preconditions.checkNotNull(storageType);
     Preconditions.checkNotNull(consistencyProtocol);
     Preconditions.checkNotNull(versionMode);
@@ -131,6 +138,36 @@ public NamespaceOptions(StorageType storageType, ConsistencyProtocol consistency
     this.storageFormat = storageFormat;
     this.valueRetentionPolicy = valueRetentionPolicy;
     this.namespaceServerSideCode = namespaceServerSideCode;
+    this.storageOptions = storageOptions;
+  }
+
+  /**
+   * NamespaceOptions constructor without storage options.
+   *
+   * @param storageType                  same as above
+   * @param consistencyProtocol          same as above
+   * @param versionMode                  same as above
+   * @param revisionMode                 same as above
+   * @param defaultPutOptions            same as above
+   * @param defaultInvalidationOptions   same as above
+   * @param defaultGetOptions            same as above
+   * @param defaultWaitOptions           same as above
+   * @param secondarySyncIntervalSeconds same as above
+   * @param segmentSize                  same as above
+   * @param maxValueSize                 same as above
+   * @param allowLinks                   same as above
+   * @param storageFormat                same as above
+   * @param valueRetentionPolicy         same as above
+   * @param namespaceServerSideCode      same as above
+   */
+  public NamespaceOptions(StorageType storageType, ConsistencyProtocol consistencyProtocol,
+      NamespaceVersionMode versionMode, RevisionMode revisionMode, PutOptions defaultPutOptions,
+      InvalidationOptions defaultInvalidationOptions, GetOptions defaultGetOptions, WaitOptions defaultWaitOptions,
+      int secondarySyncIntervalSeconds, int segmentSize, int maxValueSize, boolean allowLinks, String storageFormat,
+      ValueRetentionPolicy valueRetentionPolicy, NamespaceServerSideCode namespaceServerSideCode) {
+    this(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions, defaultInvalidationOptions,
+        defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize, maxValueSize, allowLinks,
+        storageFormat, valueRetentionPolicy, namespaceServerSideCode, defaultStorageOptions);
   }
 
   /**
@@ -163,7 +200,7 @@ protected NamespaceOptions() {
         DHTConstants.standardGetOptions, DHTConstants.standardWaitOptions,
         DHTConstants.defaultSecondarySyncIntervalSeconds, DHTConstants.defaultSegmentSize,
         DHTConstants.defaultMaxValueSize, defaultAllowLinks, DHTConstants.defaultStorageFormat, defaultRetentionPolicy,
-        defaultNamespaceServerSideCode);
+        defaultNamespaceServerSideCode, defaultStorageOptions);
   }
 
   /**
@@ -296,6 +333,15 @@ public NamespaceServerSideCode getNamespaceServerSideCode() {
     return namespaceServerSideCode;
   }
 
+  /**
+   * Return storageOptions
+   *
+   * @return storageOptions; may be null
+   */
+  public NamespaceStorageOptions getStorageOptions() {
+    return storageOptions;
+  }
+
   /**
    * Returns true iff these options specify "write once" semantics: a NamespaceVersionMode of SINGLE_VERSION
    * and a RevisionMode of NO_REVISIONS.
@@ -316,7 +362,7 @@ public NamespaceOptions asWriteOnce() {
     return new NamespaceOptions(storageType, consistencyProtocol, NamespaceVersionMode.SINGLE_VERSION,
         RevisionMode.NO_REVISIONS, defaultPutOptions, defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions,
         secondarySyncIntervalSeconds, segmentSize, maxValueSize, allowLinks, storageFormat, valueRetentionPolicy,
-        namespaceServerSideCode);
+        namespaceServerSideCode, storageOptions);
   }
 
   /**
@@ -328,7 +374,8 @@ public NamespaceOptions asWriteOnce() {
   public NamespaceOptions storageType(StorageType storageType) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -340,7 +387,8 @@ public NamespaceOptions storageType(StorageType storageType) {
   public NamespaceOptions consistencyProtocol(ConsistencyProtocol consistencyProtocol) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -352,7 +400,8 @@ public NamespaceOptions consistencyProtocol(ConsistencyProtocol consistencyProto
   public NamespaceOptions versionMode(NamespaceVersionMode versionMode) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -364,7 +413,8 @@ public NamespaceOptions versionMode(NamespaceVersionMode versionMode) {
   public NamespaceOptions revisionMode(RevisionMode revisionMode) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   private void checkTimeoutControllerForValidity(OperationOptions operationOptions) {
@@ -387,7 +437,8 @@ public NamespaceOptions defaultPutOptions(PutOptions defaultPutOptions) {
     }
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -399,7 +450,8 @@ public NamespaceOptions defaultPutOptions(PutOptions defaultPutOptions) {
   public NamespaceOptions defaultInvalidationOptions(InvalidationOptions defaultInvalidationOptions) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -411,7 +463,8 @@ public NamespaceOptions defaultInvalidationOptions(InvalidationOptions defaultIn
   public NamespaceOptions defaultGetOptions(GetOptions defaultGetOptions) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -423,7 +476,8 @@ public NamespaceOptions defaultGetOptions(GetOptions defaultGetOptions) {
   public NamespaceOptions defaultWaitOptions(WaitOptions defaultWaitOptions) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -435,7 +489,8 @@ public NamespaceOptions defaultWaitOptions(WaitOptions defaultWaitOptions) {
   public NamespaceOptions secondarySyncIntervalSeconds(int secondarySyncIntervalSeconds) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -447,7 +502,8 @@ public NamespaceOptions secondarySyncIntervalSeconds(int secondarySyncIntervalSe
   public NamespaceOptions segmentSize(int segmentSize) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -459,7 +515,8 @@ public NamespaceOptions segmentSize(int segmentSize) {
   public NamespaceOptions maxValueSize(int maxValueSize) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -471,7 +528,8 @@ public NamespaceOptions maxValueSize(int maxValueSize) {
   public NamespaceOptions allowLinks(boolean allowLinks) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -483,7 +541,8 @@ public NamespaceOptions allowLinks(boolean allowLinks) {
   public NamespaceOptions storageFormat(String storageFormat) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -495,7 +554,8 @@ public NamespaceOptions storageFormat(String storageFormat) {
   public NamespaceOptions valueRetentionPolicy(ValueRetentionPolicy valueRetentionPolicy) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   /**
@@ -507,7 +567,21 @@ public NamespaceOptions valueRetentionPolicy(ValueRetentionPolicy valueRetention
   public NamespaceOptions namespaceServerSideCode(NamespaceServerSideCode namespaceServerSideCode) {
     return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
         defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
-        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode);
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
+  }
+
+  /**
+   * Return a copy of this instance with new storageOptions
+   *
+   * @param storageOptions storageOptions for new instance
+   * @return copy of this instance with new storageOptions
+   */
+  public NamespaceOptions storageOptions(NamespaceStorageOptions storageOptions) {
+    return new NamespaceOptions(storageType, consistencyProtocol, versionMode, revisionMode, defaultPutOptions,
+        defaultInvalidationOptions, defaultGetOptions, defaultWaitOptions, secondarySyncIntervalSeconds, segmentSize,
+        maxValueSize, allowLinks, storageFormat, valueRetentionPolicy, namespaceServerSideCode,
+        storageOptions);
   }
 
   @Override
@@ -516,7 +590,7 @@ public int hashCode() {
         secondarySyncIntervalSeconds) ^ Integer.hashCode(segmentSize) ^ Integer.hashCode(
         maxValueSize) ^ Boolean.hashCode(
         allowLinks) ^ storageFormat.hashCode() ^ valueRetentionPolicy.hashCode() ^ ObjectUtil.hashCode(
-        namespaceServerSideCode);
+        namespaceServerSideCode) ^ ObjectUtil.hashCode(storageOptions);
   }
 
   @Override
@@ -538,7 +612,8 @@ public boolean equals(Object o) {
         other.defaultGetOptions) && defaultWaitOptions.equals(
         other.defaultWaitOptions) && secondarySyncIntervalSeconds == other.secondarySyncIntervalSeconds && segmentSize == other.segmentSize && maxValueSize == other.maxValueSize && allowLinks == other.allowLinks && ObjectUtil.equal(
         storageFormat, other.storageFormat) && valueRetentionPolicy.equals(
-        other.valueRetentionPolicy) && ObjectUtil.equal(namespaceServerSideCode, other.namespaceServerSideCode);
+        other.valueRetentionPolicy) && ObjectUtil.equal(namespaceServerSideCode, other.namespaceServerSideCode) && ObjectUtil.equal(
+        storageOptions, other.storageOptions);
   }
 
   @OmitGeneration
@@ -575,6 +650,8 @@ public void debugEquality(Object o) {
         ObjectUtil.equal(valueRetentionPolicy, oNamespaceOptions.valueRetentionPolicy));
     System.out.printf("namespaceServerSideCode.equals(oNamespaceOptions.namespaceServerSideCode); %s\n",
         ObjectUtil.equal(namespaceServerSideCode, oNamespaceOptions.namespaceServerSideCode));
+    System.out.printf("storageOptions.equals(oNamespaceOptions.storageOptions); %s\n",
+        ObjectUtil.equal(storageOptions, oNamespaceOptions.storageOptions));
   }
 
   @Override
@@ -0,0 +1,195 @@
+package com.ms.silverking.cloud.dht;
+
+import com.ms.silverking.cloud.dht.client.gen.OmitGeneration;
+import com.ms.silverking.code.Constraint;
+import com.ms.silverking.text.ObjectDefParser2;
+
+/**
+ * <p>Server-side storage tuning for a namespace. These options do not change the semantics of
+ * the namespace; they control how the storage engine persists and reads segments.</p>
+ *
+ * <p>groupCommitIntervalMillis and groupCommitMaxBytes apply to StorageType.FILE_SYNC namespaces only.
+ * When groupCommitIntervalMillis is zero, every write to a FILE_SYNC segment is synchronous. When it is
+ * positive, writes are buffered and a background flusher forces them to disk at least this often,
+ * or sooner once groupCommitMaxBytes have been written since the last flush. Put acknowledgments are
+ * sent by the flusher once a flush covering the put has completed, so durability guarantees are unchanged.
+ * Updates to segments other than the head segment remain synchronous.</p>
+ *
+ * <p>coldSegmentAge applies to file-based namespaces. When positive, segments at least this many segments
+ * older than the head segment are considered cold. Retrievals from cold segments that are not already mapped
+ * use positional reads through a small block cache rather than mapping the segment, which avoids
+ * filling the page cache with, and taking major faults on, rarely read segments. Zero maps all segments.</p>
+ *
+ * <p>offHeapKeyIndex places the namespace key index (the map from each key to the segment holding its
+ * most recent value) in direct memory rather than on the Java heap. This is useful for namespaces with
+ * very many keys, whose index would otherwise occupy a large part of the old generation.</p>
+ */
+public class NamespaceStorageOptions {
+  private final int groupCommitIntervalMillis;
+  private final int groupCommitMaxBytes;
+  private final int coldSegmentAge;
+  private final boolean offHeapKeyIndex;
+
+  static final int defaultGroupCommitIntervalMillis = 0;
+  static final int defaultGroupCommitMaxBytes = 4 * 1024 * 1024;
+  static final int defaultColdSegmentAge = 0;
+  static final boolean defaultOffHeapKeyIndex = false;
+
+  // for parsing only
+  static final NamespaceStorageOptions template = new NamespaceStorageOptions();
+
+  static {
+    ObjectDefParser2.addParser(template);
+  }
+
+  /**
+   * internal use only
+   */
+  @OmitGeneration
+  public static void init() {
+  }
+
+  /**
+   * Construct a fully-specified NamespaceStorageOptions
+   *
+   * @param groupCommitIntervalMillis maximum time a FILE_SYNC write waits for its flush; zero disables group commit
+   * @param groupCommitMaxBytes       bytes written since the last flush that trigger an early flush
+   * @param coldSegmentAge            age in segments beyond which segments are read without mapping; zero disables
+   * @param offHeapKeyIndex           store the namespace key index in direct memory
+   */
+  public NamespaceStorageOptions(int groupCommitIntervalMillis, int groupCommitMaxBytes, int coldSegmentAge,
+      boolean offHeapKeyIndex) {
+    Constraint.checkBounds(0, Integer.MAX_VALUE, groupCommitIntervalMillis, "Invalid groupCommitIntervalMillis");
+    Constraint.checkBounds(1, Integer.MAX_VALUE, groupCommitMaxBytes, "Invalid groupCommitMaxBytes");
+    Constraint.checkBounds(0, Integer.MAX_VALUE, coldSegmentAge, "Invalid coldSegmentAge");
+    this.groupCommitIntervalMillis = groupCommitIntervalMillis;
+    this.groupCommitMaxBytes = groupCommitMaxBytes;
+    this.coldSegmentAge = coldSegmentAge;
+    this.offHeapKeyIndex = offHeapKeyIndex;
+  }
+
+  private NamespaceStorageOptions() {
+    this(defaultGroupCommitIntervalMillis, defaultGroupCommitMaxBytes, defaultColdSegmentAge, defaultOffHeapKeyIndex);
+  }
+
+  /**
+   * Return groupCommitIntervalMillis
+   *
+   * @return groupCommitIntervalMillis
+   */
+  public int getGroupCommitIntervalMillis() {
+    return groupCommitIntervalMillis;
+  }
+
+  /**
+   * Return groupCommitMaxBytes
+   *
+   * @return groupCommitMaxBytes
+   */
+  public int getGroupCommitMaxBytes() {
+    return groupCommitMaxBytes;
+  }
+
+  /**
+   * Return true iff group commit is enabled by these options
+   *
+   * @return true iff group commit is enabled by these options
+   */
+  public boolean groupCommitEnabled() {
+    return groupCommitIntervalMillis > 0;
+  }
+
+  /**
+   * Return coldSegmentAge
+   *
+   * @return coldSegmentAge
+   */
+  public int getColdSegmentAge() {
+    return coldSegmentAge;
+  }
+
+  /**
+   * Return offHeapKeyIndex
+   *
+   * @return offHeapKeyIndex
+   */
+  public boolean getOffHeapKeyIndex() {
+    return offHeapKeyIndex;
+  }
+
+  /**
+   * Return a copy of this instance with a new groupCommitIntervalMillis
+   *
+   * @param groupCommitIntervalMillis groupCommitIntervalMillis for new instance
+   * @return copy of this instance with a new groupCommitIntervalMillis
+   */
+  public NamespaceStorageOptions groupCommitIntervalMillis(int groupCommitIntervalMillis) {
+    return new NamespaceStorageOptions(groupCommitIntervalMillis, groupCommitMaxBytes, coldSegmentAge,
+        offHeapKeyIndex);
+  }
+
+  /**
+   * Return a copy of this instance with a new groupCommitMaxBytes
+   *
+   * @param groupCommitMaxBytes groupCommitMaxBytes for new instance
+   * @return copy of this instance with a new groupCommitMaxBytes
+   */
+  public NamespaceStorageOptions groupCommitMaxBytes(int groupCommitMaxBytes) {
+    return new NamespaceStorageOptions(groupCommitIntervalMillis, groupCommitMaxBytes, coldSegmentAge,
+        offHeapKeyIndex);
+  }
+
+  /**
+   * Return a copy of this instance with a new coldSegmentAge
+   *
+   * @param coldSegmentAge coldSegmentAge for new instance
+   * @return copy of this instance with a new coldSegmentAge
+   */
+  public NamespaceStorageOptions coldSegmentAge(int coldSegmentAge) {
+    return new NamespaceStorageOptions(groupCommitIntervalMillis, groupCommitMaxBytes, coldSegmentAge,
+        offHeapKeyIndex);
+  }
+
+  /**
+   * Return a copy of this instance with a new offHeapKeyIndex
+   *
+   * @param offHeapKeyIndex offHeapKeyIndex for new instance
+   * @return copy of this instance with a new offHeapKeyIndex
+   */
+  public NamespaceStorageOptions offHeapKeyIndex(boolean offHeapKeyIndex) {
+    return new NamespaceStorageOptions(groupCommitIntervalMillis, groupCommitMaxBytes, coldSegmentAge,
+        offHeapKeyIndex);
+  }
+
+  @Override
+  public String toString() {
+    return ObjectDefParser2.objectToString(this);
+  }
+
+  public static NamespaceStorageOptions parse(String def) {
+    return ObjectDefParser2.parse(NamespaceStorageOptions.class, def);
+  }
+
+  @Override
+  public int hashCode() {
+    return Integer.hashCode(groupCommitIntervalMillis) ^ Integer.hashCode(groupCommitMaxBytes) ^ Integer.hashCode(
+        coldSegmentAge) ^ Boolean.hashCode(offHeapKeyIndex);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+
+    if (this.getClass() != o.getClass()) {
+      return false;
+    }
+
+    NamespaceStorageOptions other;
+
+    other = (NamespaceStorageOptions) o;
+    return groupCommitIntervalMillis == other.groupCommitIntervalMillis && groupCommitMaxBytes == other.groupCommitMaxBytes
+        && coldSegmentAge == other.coldSegmentAge && offHeapKeyIndex == other.offHeapKeyIndex;
+  }
+}
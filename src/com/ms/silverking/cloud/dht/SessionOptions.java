@@ -24,6 +24,30 @@ public final class SessionOptions {
   private final String preferredServer;
   private final SessionEstablishmentTimeoutController timeoutController;
   private final SessionPolicyOnDisconnect sessionPolicyOnDisconnect;
+  private final int connectionsPerServer;
+  private final int numSelectorControllers;
+  private final ConnectionAssignmentPolicy connectionAssignmentPolicy;
+  private final int putCoalescingWindowMicros;
+  private final int putCoalescingMaxBytes;
+
+  public static final int defaultConnectionsPerServer = 1;
+  public static final int defaultNumSelectorControllers = 1;
+  public static final ConnectionAssignmentPolicy defaultConnectionAssignmentPolicy =
+      ConnectionAssignmentPolicy.RoundRobin;
+
+  // The put coalescing defaults may be overridden with system properties
+  private static final String clientImplPropertyPrefix = "com.ms.silverking.cloud.dht.client.impl";
+  public static final String putCoalescingWindowMicrosProperty = clientImplPropertyPrefix
+      + ".PutCoalescingWindowMicros";
+  public static final String putCoalescingMaxBytesProperty = clientImplPropertyPrefix + ".PutCoalescingMaxBytes";
+  public static final int defaultPutCoalescingWindowMicros;
+  public static final int defaultPutCoalescingMaxBytes;
+
+  static {
+    defaultPutCoalescingWindowMicros = PropertiesHelper.systemHelper.getInt(putCoalescingWindowMicrosProperty,
+        0); // disabled
+    defaultPutCoalescingMaxBytes = PropertiesHelper.systemHelper.getInt(putCoalescingMaxBytesProperty, 256 * 1024);
+  }
 
   private static final String defaultTimeoutControllerProperty =
       SessionEstablishmentTimeoutController.class.getName() + ".DefaultSETimeoutController";
@@ -44,7 +68,9 @@ public final class SessionOptions {
   }
 
   private static final SessionOptions template = new SessionOptions(new SKGridConfiguration("dummygc", dummyGCMap),
-      "localhost", defaultDefaultTimeoutController, SessionPolicyOnDisconnect.DoNothing);
+      "localhost", defaultDefaultTimeoutController, SessionPolicyOnDisconnect.DoNothing, defaultConnectionsPerServer,
+      defaultNumSelectorControllers, defaultConnectionAssignmentPolicy, defaultPutCoalescingWindowMicros,
+      defaultPutCoalescingMaxBytes);
 
   static {
     ObjectDefParser2.addParser(template, FieldsRequirement.ALLOW_INCOMPLETE);
@@ -86,11 +112,55 @@ public SessionOptions(ClientDHTConfigurationProvider dhtConfigProvider, String p
     this(dhtConfigProvider, preferredServer, timeoutController, SessionPolicyOnDisconnect.DoNothing);
   }
 
+  public SessionOptions(ClientDHTConfigurationProvider dhtConfigProvider, String preferredServer,
+      SessionEstablishmentTimeoutController timeoutController, SessionPolicyOnDisconnect onDisconnect) {
+    this(dhtConfigProvider, preferredServer, timeoutController, onDisconnect, defaultConnectionsPerServer,
+        defaultNumSelectorControllers, defaultConnectionAssignmentPolicy);
+  }
+
+  /**
+   * Create a SessionOptions instance with the default put coalescing settings
+   *
+   * @param connectionsPerServer       the number of connections the session opens to each server
+   * @param numSelectorControllers     the number of selector controllers that the session's connections are
+   *                                   spread over
+   * @param connectionAssignmentPolicy how operations are assigned to connections when connectionsPerServer
+   *                                   is greater than one
+   */
+  public SessionOptions(ClientDHTConfigurationProvider dhtConfigProvider, String preferredServer,
+      SessionEstablishmentTimeoutController timeoutController, SessionPolicyOnDisconnect onDisconnect,
+      int connectionsPerServer, int numSelectorControllers, ConnectionAssignmentPolicy connectionAssignmentPolicy) {
+    this(dhtConfigProvider, preferredServer, timeoutController, onDisconnect, connectionsPerServer,
+        numSelectorControllers, connectionAssignmentPolicy, defaultPutCoalescingWindowMicros,
+        defaultPutCoalescingMaxBytes);
+  }
+
   /**
    * Create a fully-specified SessionOptions instance
+   *
+   * @param connectionsPerServer       the number of connections the session opens to each server
+   * @param numSelectorControllers     the number of selector controllers that the session's connections are
+   *                                   spread over
+   * @param connectionAssignmentPolicy how operations are assigned to connections when connectionsPerServer
+   *                                   is greater than one
+   * @param putCoalescingWindowMicros  the period for which independent puts are coalesced into shared messages,
+   *                                   or 0 to disable coalescing
+   * @param putCoalescingMaxBytes      the estimated size of coalesced puts at which they are sent before the
+   *                                   window period ends
    */
   public SessionOptions(ClientDHTConfigurationProvider dhtConfigProvider, String preferredServer,
-      SessionEstablishmentTimeoutController timeoutController, SessionPolicyOnDisconnect onDisconnect) {
+      SessionEstablishmentTimeoutController timeoutController, SessionPolicyOnDisconnect onDisconnect,
+      int connectionsPerServer, int numSelectorControllers, ConnectionAssignmentPolicy connectionAssignmentPolicy,
+      int putCoalescingWindowMicros, int putCoalescingMaxBytes) {
+    if (connectionsPerServer < 1) {
+      throw new IllegalArgumentException("connectionsPerServer < 1");
+    }
+    if (numSelectorControllers < 1) {
+      throw new IllegalArgumentException("numSelectorControllers < 1");
+    }
+    if (putCoalescingWindowMicros < 0) {
+      throw new IllegalArgumentException("putCoalescingWindowMicros < 0");
+    }
     if (dhtConfigProvider == null) {
       this.preferredServer = preferredServer;
       this.dhtConfig = null;
@@ -104,6 +174,11 @@ public SessionOptions(ClientDHTConfigurationProvider dhtConfigProvider, String p
     }
     this.timeoutController = timeoutController;
     this.sessionPolicyOnDisconnect = onDisconnect;
+    this.connectionsPerServer = connectionsPerServer;
+    this.numSelectorControllers = numSelectorControllers;
+    this.connectionAssignmentPolicy = connectionAssignmentPolicy;
+    this.putCoalescingWindowMicros = putCoalescingWindowMicros;
+    this.putCoalescingMaxBytes = putCoalescingMaxBytes;
   }
 
   /**
@@ -132,7 +207,9 @@ public SessionOptions(ClientDHTConfigurationProvider dhtConfigProvider) {
    * @return a modified SessionOptions object
    */
   public SessionOptions dhtConfig(ClientDHTConfiguration dhtConfig) {
-    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect);
+    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect,
+        connectionsPerServer, numSelectorControllers, connectionAssignmentPolicy, putCoalescingWindowMicros,
+        putCoalescingMaxBytes);
   }
 
   /**
@@ -142,7 +219,9 @@ public SessionOptions dhtConfig(ClientDHTConfiguration dhtConfig) {
    * @return a modified SessionOptions object
    */
   public SessionOptions preferredServer(String preferredServer) {
-    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect);
+    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect,
+        connectionsPerServer, numSelectorControllers, connectionAssignmentPolicy, putCoalescingWindowMicros,
+        putCoalescingMaxBytes);
   }
 
   /**
@@ -152,7 +231,9 @@ public SessionOptions preferredServer(String preferredServer) {
    * @return a modified SessionOptions object
    */
   public SessionOptions timeoutController(SessionEstablishmentTimeoutController timeoutController) {
-    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect);
+    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect,
+        connectionsPerServer, numSelectorControllers, connectionAssignmentPolicy, putCoalescingWindowMicros,
+        putCoalescingMaxBytes);
   }
 
   /**
@@ -162,7 +243,69 @@ public SessionOptions timeoutController(SessionEstablishmentTimeoutController ti
    * @return a modified SessionOptions object
    */
   public SessionOptions sessionPolicyOnDisconnect(SessionPolicyOnDisconnect sessionPolicyOnDisconnect) {
-    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect);
+    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect,
+        connectionsPerServer, numSelectorControllers, connectionAssignmentPolicy, putCoalescingWindowMicros,
+        putCoalescingMaxBytes);
+  }
+
+  /**
+   * Return a new SessionOptions object with the specified connectionsPerServer
+   *
+   * @param connectionsPerServer the new connectionsPerServer
+   * @return a modified SessionOptions object
+   */
+  public SessionOptions connectionsPerServer(int connectionsPerServer) {
+    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect,
+        connectionsPerServer, numSelectorControllers, connectionAssignmentPolicy, putCoalescingWindowMicros,
+        putCoalescingMaxBytes);
+  }
+
+  /**
+   * Return a new SessionOptions object with the specified numSelectorControllers
+   *
+   * @param numSelectorControllers the new numSelectorControllers
+   * @return a modified SessionOptions object
+   */
+  public SessionOptions numSelectorControllers(int numSelectorControllers) {
+    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect,
+        connectionsPerServer, numSelectorControllers, connectionAssignmentPolicy, putCoalescingWindowMicros,
+        putCoalescingMaxBytes);
+  }
+
+  /**
+   * Return a new SessionOptions object with the specified connectionAssignmentPolicy
+   *
+   * @param connectionAssignmentPolicy the new connectionAssignmentPolicy
+   * @return a modified SessionOptions object
+   */
+  public SessionOptions connectionAssignmentPolicy(ConnectionAssignmentPolicy connectionAssignmentPolicy) {
+    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect,
+        connectionsPerServer, numSelectorControllers, connectionAssignmentPolicy, putCoalescingWindowMicros,
+        putCoalescingMaxBytes);
+  }
+
+  /**
+   * Return a new SessionOptions object with the specified putCoalescingWindowMicros
+   *
+   * @param putCoalescingWindowMicros the new putCoalescingWindowMicros
+   * @return a modified SessionOptions object
+   */
+  public SessionOptions putCoalescingWindowMicros(int putCoalescingWindowMicros) {
+    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect,
+        connectionsPerServer, numSelectorControllers, connectionAssignmentPolicy, putCoalescingWindowMicros,
+        putCoalescingMaxBytes);
+  }
+
+  /**
+   * Return a new SessionOptions object with the specified putCoalescingMaxBytes
+   *
+   * @param putCoalescingMaxBytes the new putCoalescingMaxBytes
+   * @return a modified SessionOptions object
+   */
+  public SessionOptions putCoalescingMaxBytes(int putCoalescingMaxBytes) {
+    return new SessionOptions(dhtConfig, preferredServer, timeoutController, sessionPolicyOnDisconnect,
+        connectionsPerServer, numSelectorControllers, connectionAssignmentPolicy, putCoalescingWindowMicros,
+        putCoalescingMaxBytes);
   }
 
   /**
@@ -201,9 +344,57 @@ public SessionPolicyOnDisconnect getSessionPolicyOnDisconnect() {
     return sessionPolicyOnDisconnect;
   }
 
+  /**
+   * Return the connectionsPerServer
+   *
+   * @return the connectionsPerServer
+   */
+  public int getConnectionsPerServer() {
+    return connectionsPerServer;
+  }
+
+  /**
+   * Return the numSelectorControllers
+   *
+   * @return the numSelectorControllers
+   */
+  public int getNumSelectorControllers() {
+    return numSelectorControllers;
+  }
+
+  /**
+   * Return the connectionAssignmentPolicy
+   *
+   * @return the connectionAssignmentPolicy
+   */
+  public ConnectionAssignmentPolicy getConnectionAssignmentPolicy() {
+    return connectionAssignmentPolicy;
+  }
+
+  /**
+   * Return the putCoalescingWindowMicros
+   *
+   * @return the putCoalescingWindowMicros
+   */
+  public int getPutCoalescingWindowMicros() {
+    return putCoalescingWindowMicros;
+  }
+
+  /**
+   * Return the putCoalescingMaxBytes
+   *
+   * @return the putCoalescingMaxBytes
+   */
+  public int getPutCoalescingMaxBytes() {
+    return putCoalescingMaxBytes;
+  }
+
   @Override
   public int hashCode() {
-    return dhtConfig.hashCode() ^ preferredServer.hashCode() ^ timeoutController.hashCode();
+    return dhtConfig.hashCode() ^ preferredServer.hashCode() ^ timeoutController.hashCode()
+        ^ Integer.hashCode(connectionsPerServer) ^ Integer.hashCode(numSelectorControllers)
+        ^ connectionAssignmentPolicy.hashCode() ^ Integer.hashCode(putCoalescingWindowMicros)
+        ^ Integer.hashCode(putCoalescingMaxBytes);
   }
 
   @Override
@@ -212,7 +403,12 @@ public boolean equals(Object obj) {
 
     o = (SessionOptions) obj;
     return this.dhtConfig.equals(o.dhtConfig) && this.preferredServer.equals(
-        o.preferredServer) && this.timeoutController.equals(o.timeoutController);
+        o.preferredServer) && this.timeoutController.equals(o.timeoutController)
+        && this.connectionsPerServer == o.connectionsPerServer
+        && this.numSelectorControllers == o.numSelectorControllers
+        && this.connectionAssignmentPolicy == o.connectionAssignmentPolicy
+        && this.putCoalescingWindowMicros == o.putCoalescingWindowMicros
+        && this.putCoalescingMaxBytes == o.putCoalescingMaxBytes;
   }
 
   @Override
@@ -0,0 +1,250 @@
+package com.ms.silverking.cloud.dht.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.ms.silverking.cloud.dht.client.gen.OmitGeneration;
+import com.ms.silverking.text.ObjectDefParser2;
+
+/**
+ * An OpTimeoutController that derives attempt timeouts from the latencies that the session has recently
+ * observed for the operation's type and namespace. Once minSamples latencies have been observed, the first
+ * attempt times out after percentileMultiple times the given latency percentile (but no sooner than
+ * minAttemptTimeoutMillis); until then, after initialAttemptTimeoutMillis. Each retry doubles the previous
+ * attempt's timeout, and every attempt timeout is randomly varied by +/- jitter so that retries of operations
+ * that were sent together are spread out.
+ * <p>
+ * Retries are limited by a budget: within the session's recent window, at most
+ * retryBudgetRatio * operations + minRetries retries are sent per namespace and operation type. An attempt
+ * whose retry is refused is allowed to continue until its next attempt timeout or the operation timeout.
+ * This prevents retries from amplifying load when the cluster is slow.
+ */
+@OmitGeneration
+public class AdaptiveTimeoutController implements OpTimeoutController {
+  private final int maxAttempts;
+  private final double percentile;
+  private final double percentileMultiple;
+  private final int minSamples;
+  private final int initialAttemptTimeoutMillis;
+  private final int minAttemptTimeoutMillis;
+  private final int maxRelativeTimeoutMillis;
+  private final double jitter;
+  private final double retryBudgetRatio;
+  private final int minRetries;
+  private final int exclusionChangeRetryIntervalMillis;
+
+  static final int defaultMaxAttempts = 4;
+  static final double defaultPercentile = 99.0;
+  static final double defaultPercentileMultiple = 3.0;
+  static final int defaultMinSamples = 100;
+  static final int defaultInitialAttemptTimeoutMillis = 20 * 1000;
+  static final int defaultMinAttemptTimeoutMillis = 50;
+  static final int defaultMaxRelativeTimeoutMillis = 2 * 60 * 1000;
+  static final double defaultJitter = 0.2;
+  static final double defaultRetryBudgetRatio = 0.1;
+  static final int defaultMinRetries = 10;
+  static final int defaultExclusionChangeRetryIntervalMillis = 5 * 1000;
+
+  private static final int maxBackoffShift = 16;
+
+  static final AdaptiveTimeoutController template = new AdaptiveTimeoutController();
+
+  static {
+    ObjectDefParser2.addParser(template);
+  }
+
+  /**
+   * Construct a fully-specified AdaptiveTimeoutController
+   *
+   * @param maxAttempts                        maximum number of attempts
+   * @param percentile                         the observed latency percentile on which timeouts are based
+   * @param percentileMultiple                 the multiple of the percentile used as the first attempt timeout
+   * @param minSamples                         the number of observations required before they are used
+   * @param initialAttemptTimeoutMillis        the first attempt timeout used before minSamples are observed
+   * @param minAttemptTimeoutMillis            the minimum first attempt timeout
+   * @param maxRelativeTimeoutMillis           the operation timeout
+   * @param jitter                             the maximum relative random variation of attempt timeouts
+   * @param retryBudgetRatio                   the fraction of recent operations that may be retried
+   * @param minRetries                         the number of recent retries that are always allowed
+   * @param exclusionChangeRetryIntervalMillis retry interval when the exclusion set has changed
+   */
+  public AdaptiveTimeoutController(int maxAttempts, double percentile, double percentileMultiple, int minSamples,
+      int initialAttemptTimeoutMillis, int minAttemptTimeoutMillis, int maxRelativeTimeoutMillis, double jitter,
+      double retryBudgetRatio, int minRetries, int exclusionChangeRetryIntervalMillis) {
+    Util.checkAttempts(maxAttempts);
+    if (percentile <= 0.0 || percentile > 100.0) {
+      throw new IllegalArgumentException("Invalid percentile: " + percentile);
+    }
+    if (jitter < 0.0 || jitter >= 1.0) {
+      throw new IllegalArgumentException("Invalid jitter: " + jitter);
+    }
+    this.maxAttempts = maxAttempts;
+    this.percentile = percentile;
+    this.percentileMultiple = percentileMultiple;
+    this.minSamples = minSamples;
+    this.initialAttemptTimeoutMillis = initialAttemptTimeoutMillis;
+    this.minAttemptTimeoutMillis = minAttemptTimeoutMillis;
+    this.maxRelativeTimeoutMillis = maxRelativeTimeoutMillis;
+    this.jitter = jitter;
+    this.retryBudgetRatio = retryBudgetRatio;
+    this.minRetries = minRetries;
+    this.exclusionChangeRetryIntervalMillis = exclusionChangeRetryIntervalMillis;
+  }
+
+  /**
+   * Construct an AdaptiveTimeoutController using default parameters
+   */
+  public AdaptiveTimeoutController() {
+    this(defaultMaxAttempts, defaultPercentile, defaultPercentileMultiple, defaultMinSamples,
+        defaultInitialAttemptTimeoutMillis, defaultMinAttemptTimeoutMillis, defaultMaxRelativeTimeoutMillis,
+        defaultJitter, defaultRetryBudgetRatio, defaultMinRetries, defaultExclusionChangeRetryIntervalMillis);
+  }
+
+  @Override
+  public int getMaxAttempts(AsyncOperation op) {
+    return maxAttempts;
+  }
+
+  /**
+   * Used for operations without latency statistics; equivalent to having no observations
+   */
+  @Override
+  public int getRelativeTimeoutMillisForAttempt(AsyncOperation op, int attemptIndex) {
+    return computeAttemptTimeout(initialAttemptTimeoutMillis, attemptIndex);
+  }
+
+  @Override
+  public int getRelativeTimeoutMillisForAttempt(AsyncOperation op, int attemptIndex, OpLatencyStats latencyStats) {
+    return computeAttemptTimeout(getFirstAttemptTimeoutMillis(latencyStats), attemptIndex);
+  }
+
+  @Override
+  public boolean retryAllowed(AsyncOperation op, int attemptIndex, OpLatencyStats latencyStats) {
+    return latencyStats.tryAcquireRetry(retryBudgetRatio, minRetries);
+  }
+
+  @Override
+  public long getRelativeExclusionChangeRetryMillisForAttempt(AsyncOperation op, int curAttemptIndex) {
+    return exclusionChangeRetryIntervalMillis;
+  }
+
+  @Override
+  public int getMaxRelativeTimeoutMillis(AsyncOperation op) {
+    return maxRelativeTimeoutMillis;
+  }
+
+  int getFirstAttemptTimeoutMillis(OpLatencyStats latencyStats) {
+    if (latencyStats.getNumSamples() < minSamples) {
+      return initialAttemptTimeoutMillis;
+    } else {
+      double timeout;
+
+      timeout = Math.ceil(latencyStats.getLatencyPercentileMillis(percentile) * percentileMultiple);
+      return (int) Math.min(Math.max(timeout, minAttemptTimeoutMillis), maxRelativeTimeoutMillis);
+    }
+  }
+
+  private int computeAttemptTimeout(int firstAttemptTimeoutMillis, int attemptIndex) {
+    double timeout;
+
+    timeout = (double) firstAttemptTimeoutMillis * (1L << Math.min(attemptIndex, maxBackoffShift));
+    timeout *= 1.0 + jitter * (2.0 * ThreadLocalRandom.current().nextDouble() - 1.0);
+    return (int) Math.max(Math.min(timeout, maxRelativeTimeoutMillis), minInitialTimeout_ms);
+  }
+
+  /**
+   * Create a new AdaptiveTimeoutController exactly like this instance, but with the specified maxAttempts.
+   *
+   * @param maxAttempts maxAttempts for the new instance
+   * @return the specified AdaptiveTimeoutController
+   */
+  public AdaptiveTimeoutController maxAttempts(int maxAttempts) {
+    return new AdaptiveTimeoutController(maxAttempts, percentile, percentileMultiple, minSamples,
+        initialAttemptTimeoutMillis, minAttemptTimeoutMillis, maxRelativeTimeoutMillis, jitter, retryBudgetRatio,
+        minRetries, exclusionChangeRetryIntervalMillis);
+  }
+
+  /**
+   * Create a new AdaptiveTimeoutController exactly like this instance, but with the specified percentile and
+   * percentileMultiple.
+   *
+   * @param percentile         the observed latency percentile on which timeouts are based
+   * @param percentileMultiple the multiple of the percentile used as the first attempt timeout
+   * @return the specified AdaptiveTimeoutController
+   */
+  public AdaptiveTimeoutController percentile(double percentile, double percentileMultiple) {
+    return new AdaptiveTimeoutController(maxAttempts, percentile, percentileMultiple, minSamples,
+        initialAttemptTimeoutMillis, minAttemptTimeoutMillis, maxRelativeTimeoutMillis, jitter, retryBudgetRatio,
+        minRetries, exclusionChangeRetryIntervalMillis);
+  }
+
+  /**
+   * Create a new AdaptiveTimeoutController exactly like this instance, but with the specified maxRelativeTimeoutMillis.
+   *
+   * @param maxRelativeTimeoutMillis maxRelativeTimeoutMillis for the new instance
+   * @return the specified AdaptiveTimeoutController
+   */
+  public AdaptiveTimeoutController maxRelativeTimeoutMillis(int maxRelativeTimeoutMillis) {
+    return new AdaptiveTimeoutController(maxAttempts, percentile, percentileMultiple, minSamples,
+        initialAttemptTimeoutMillis, minAttemptTimeoutMillis, maxRelativeTimeoutMillis, jitter, retryBudgetRatio,
+        minRetries, exclusionChangeRetryIntervalMillis);
+  }
+
+  /**
+   * Create a new AdaptiveTimeoutController exactly like this instance, but with the specified retry budget.
+   *
+   * @param retryBudgetRatio the fraction of recent operations that may be retried
+   * @param minRetries       the number of recent retries that are always allowed
+   * @return the specified AdaptiveTimeoutController
+   */
+  public AdaptiveTimeoutController retryBudget(double retryBudgetRatio, int minRetries) {
+    return new AdaptiveTimeoutController(maxAttempts, percentile, percentileMultiple, minSamples,
+        initialAttemptTimeoutMillis, minAttemptTimeoutMillis, maxRelativeTimeoutMillis, jitter, retryBudgetRatio,
+        minRetries, exclusionChangeRetryIntervalMillis);
+  }
+
+  @Override
+  public int hashCode() {
+    return Integer.hashCode(maxAttempts) ^ Double.hashCode(percentile) ^ Double.hashCode(percentileMultiple)
+        ^ Integer.hashCode(minSamples) ^ Integer.hashCode(initialAttemptTimeoutMillis)
+        ^ Integer.hashCode(minAttemptTimeoutMillis) ^ Integer.hashCode(maxRelativeTimeoutMillis)
+        ^ Double.hashCode(jitter) ^ Double.hashCode(retryBudgetRatio) ^ Integer.hashCode(minRetries)
+        ^ Integer.hashCode(exclusionChangeRetryIntervalMillis);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    AdaptiveTimeoutController other;
+
+    if (this == o) {
+      return true;
+    }
+
+    if (this.getClass() != o.getClass()) {
+      return false;
+    }
+
+    other = (AdaptiveTimeoutController) o;
+    return maxAttempts == other.maxAttempts && percentile == other.percentile
+        && percentileMultiple == other.percentileMultiple && minSamples == other.minSamples
+        && initialAttemptTimeoutMillis == other.initialAttemptTimeoutMillis
+        && minAttemptTimeoutMillis == other.minAttemptTimeoutMillis
+        && maxRelativeTimeoutMillis == other.maxRelativeTimeoutMillis && jitter == other.jitter
+        && retryBudgetRatio == other.retryBudgetRatio && minRetries == other.minRetries
+        && exclusionChangeRetryIntervalMillis == other.exclusionChangeRetryIntervalMillis;
+  }
+
+  @Override
+  public String toString() {
+    return ObjectDefParser2.objectToString(this);
+  }
+
+  /**
+   * Parse a definition
+   *
+   * @param def object definition
+   * @return a parsed AdaptiveTimeoutController instance
+   */
+  public static AdaptiveTimeoutController parse(String def) {
+    return ObjectDefParser2.parse(AdaptiveTimeoutController.class, def);
+  }
+}
@@ -0,0 +1,107 @@
+package com.ms.silverking.cloud.dht.client;
+
+/**
+ * A read-modify-write operation that a server applies to the newest stored value of a key, so that no other
+ * write can intervene between reading the value and storing the result. The update is applied once, by the
+ * key's first primary replica, and the resulting value is stored at the other replicas as an ordinary put.
+ * The resulting value is stored uncompressed and unencrypted.
+ * <p>
+ * A comparison that fails causes the update to fail with FailureCause.INVALID_VERSION. An update that
+ * cannot be applied to the stored value (e.g. an add to a value that is not 8 bytes long, or an append
+ * that would exceed its bound) fails with FailureCause.ERROR.
+ *
+ * @param <V> value type
+ */
+public final class AtomicUpdate<V> {
+  private final Type type;
+  private final V expectedValue;
+  private final byte[] expectedChecksum;
+  private final V value;
+  private final long delta;
+  private final int maxLength;
+
+  public enum Type {CompareAndSet, CompareAndSetChecksum, Add, Append}
+
+  private AtomicUpdate(Type type, V expectedValue, byte[] expectedChecksum, V value, long delta, int maxLength) {
+    this.type = type;
+    this.expectedValue = expectedValue;
+    this.expectedChecksum = expectedChecksum;
+    this.value = value;
+    this.delta = delta;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Store newValue if the stored value equals expectedValue when both are serialized
+   *
+   * @param expectedValue the expected value, or null if the key must have no value
+   * @param newValue      the value to store
+   */
+  public static <V> AtomicUpdate<V> compareAndSet(V expectedValue, V newValue) {
+    return new AtomicUpdate<>(Type.CompareAndSet, expectedValue, null, newValue, 0, 0);
+  }
+
+  /**
+   * Store newValue if the checksum of the stored value equals expectedChecksum. Checksums may be obtained
+   * from a previous retrieval's MetaData.
+   */
+  public static <V> AtomicUpdate<V> compareAndSetChecksum(byte[] expectedChecksum, V newValue) {
+    if (expectedChecksum == null) {
+      throw new IllegalArgumentException("Null expectedChecksum");
+    }
+    return new AtomicUpdate<>(Type.CompareAndSetChecksum, null, expectedChecksum, newValue, 0, 0);
+  }
+
+  /**
+   * Add delta to a value stored as an 8-byte big-endian long (as by the default Long serializer). A key with
+   * no value is treated as holding zero.
+   */
+  public static <V> AtomicUpdate<V> add(long delta) {
+    return new AtomicUpdate<>(Type.Add, null, null, null, delta, 0);
+  }
+
+  /**
+   * Append the serialized suffix to the stored value. A key with no value is treated as holding an empty value.
+   *
+   * @param suffix    the value to append
+   * @param maxLength the maximum length in bytes of the resulting value
+   */
+  public static <V> AtomicUpdate<V> append(V suffix, int maxLength) {
+    if (maxLength < 0) {
+      throw new IllegalArgumentException("maxLength < 0");
+    }
+    return new AtomicUpdate<>(Type.Append, null, null, suffix, 0, maxLength);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public V getExpectedValue() {
+    return expectedValue;
+  }
+
+  public byte[] getExpectedChecksum() {
+    return expectedChecksum;
+  }
+
+  /**
+   * @return the new value for a compare-and-set, or the suffix for an append
+   */
+  public V getValue() {
+    return value;
+  }
+
+  public long getDelta() {
+    return delta;
+  }
+
+  public int getMaxLength() {
+    return maxLength;
+  }
+
+  @Override
+  public String toString() {
+    return type + ":" + expectedValue + ":" + value + ":" + delta + ":" + maxLength;
+  }
+}
@@ -0,0 +1,32 @@
+package com.ms.silverking.cloud.dht.client;
+
+import com.ms.silverking.cloud.dht.client.gen.NonVirtual;
+
+/**
+ * Thrown when a bulk load fails.
+ */
+@NonVirtual
+public class BulkLoadException extends OperationException {
+  private static final long serialVersionUID = -6205946315828570342L;
+
+  public BulkLoadException() {
+    super();
+  }
+
+  public BulkLoadException(String message) {
+    super(message);
+  }
+
+  public BulkLoadException(Throwable cause) {
+    super(cause);
+  }
+
+  public BulkLoadException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  @Override
+  public String getDetailedFailureMessage() {
+    return super.getMessage();
+  }
+}
@@ -0,0 +1,39 @@
+package com.ms.silverking.cloud.dht.client;
+
+import java.io.File;
+import java.util.List;
+
+import com.ms.silverking.net.IPAndPort;
+
+/**
+ * One partition written by a BulkLoader: a directory of segments for a single ring region, together
+ * with the primary replicas of that region to which the directory must be shipped.
+ */
+public final class BulkLoadPartition {
+  private final File directory;
+  private final List<IPAndPort> replicas;
+  private final long numValues;
+
+  public BulkLoadPartition(File directory, List<IPAndPort> replicas, long numValues) {
+    this.directory = directory;
+    this.replicas = replicas;
+    this.numValues = numValues;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  public List<IPAndPort> getReplicas() {
+    return replicas;
+  }
+
+  public long getNumValues() {
+    return numValues;
+  }
+
+  @Override
+  public String toString() {
+    return directory + " " + replicas + " " + numValues;
+  }
+}
@@ -0,0 +1,39 @@
+package com.ms.silverking.cloud.dht.client;
+
+import java.util.List;
+
+/**
+ * Builds the storage segments of a namespace offline, bypassing the put protocol. Values are partitioned
+ * by ring region and written as ready-formatted segment files, one directory per region.
+ * <p>
+ * To load the segments, copy each partition directory to
+ * &lt;dataBasePath&gt;/&lt;dhtName&gt;/bulk_ingest/&lt;namespace directory&gt;/ on every replica returned by
+ * BulkLoadPartition.getReplicas(), and then create an empty file named "ready" in the copied directory.
+ * Each daemon validates the segments and adopts them into the namespace.
+ * <p>
+ * All values written by one loader share a single version and creation time. Values are stored
+ * uncompressed, must fit within a single segment, and are not encrypted. The ring must not change between
+ * opening the loader and the segments being adopted. In single-version namespaces, segments that hold a
+ * key that is already stored are rejected.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public interface BulkLoader<K, V> {
+  /**
+   * Write a value
+   *
+   * @param key   the key
+   * @param value the value
+   * @throws BulkLoadException if the value cannot be written
+   */
+  void put(K key, V value) throws BulkLoadException;
+
+  /**
+   * Persist all partitions. No further values may be written.
+   *
+   * @return the partitions that hold at least one value
+   * @throws BulkLoadException if a partition cannot be persisted
+   */
+  List<BulkLoadPartition> close() throws BulkLoadException;
+}
@@ -0,0 +1,207 @@
+package com.ms.silverking.cloud.dht.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking adapters that expose asynchronous operations as CompletionStages.
+ * <p>
+ * Futures are completed from operation listener callbacks. Unless an executor is specified, they are
+ * completed - and non-async continuations run - in the client's notification threads (or in the calling
+ * thread if the operation has already completed). Continuations that block or perform significant work
+ * must be run in an application executor; either pass one here, or use the *Async variants of the
+ * CompletionStage methods.
+ * <p>
+ * Failed operations complete their futures exceptionally with the operation's OperationException
+ * (PutException, RetrievalException, etc.).
+ */
+public final class CompletableOperations {
+  private static final Executor callingThread = Runnable::run;
+
+  private CompletableOperations() {
+  }
+
+  /**
+   * @return a stage that completes with the given operation when it succeeds
+   */
+  public static <O extends AsyncOperation> CompletionStage<O> completion(O op) {
+    return completion(op, callingThread);
+  }
+
+  /**
+   * @return a stage that completes, in the given executor, with the given operation when it succeeds
+   */
+  public static <O extends AsyncOperation> CompletionStage<O> completion(O op, Executor executor) {
+    CompletableFuture<O> future;
+
+    future = new CompletableFuture<>();
+    op.addListener(completedOp -> executor.execute(() -> {
+      OperationException failure;
+
+      failure = getFailure(op);
+      if (failure == null) {
+        future.complete(op);
+      } else {
+        future.completeExceptionally(failure);
+      }
+    }));
+    return future;
+  }
+
+  public static <K> CompletionStage<Long> storedVersion(AsyncPut<K> put) {
+    return storedVersion(put, callingThread);
+  }
+
+  /**
+   * @return a stage that completes with the version stored by the given put
+   */
+  public static <K> CompletionStage<Long> storedVersion(AsyncPut<K> put, Executor executor) {
+    return completion(put, executor).thenApply(AsyncPut::getStoredVersion);
+  }
+
+  public static <K, V> CompletionStage<Map<K, ? extends StoredValue<V>>> storedValues(
+      AsyncRetrieval<K, V> retrieval) {
+    return storedValues(retrieval, callingThread);
+  }
+
+  /**
+   * @return a stage that completes with the StoredValues of all successful retrievals
+   */
+  public static <K, V> CompletionStage<Map<K, ? extends StoredValue<V>>> storedValues(
+      AsyncRetrieval<K, V> retrieval, Executor executor) {
+    return completion(retrieval, executor).thenApply(op -> {
+      try {
+        return op.getStoredValues();
+      } catch (RetrievalException re) {
+        throw new CompletionException(re);
+      }
+    });
+  }
+
+  public static <K, V> CompletionStage<Map<K, V>> values(AsyncValueRetrieval<K, V> retrieval) {
+    return values(retrieval, callingThread);
+  }
+
+  /**
+   * @return a stage that completes with the values of all successful retrievals
+   */
+  public static <K, V> CompletionStage<Map<K, V>> values(AsyncValueRetrieval<K, V> retrieval, Executor executor) {
+    return completion(retrieval, executor).thenApply(op -> {
+      try {
+        return op.getValues();
+      } catch (RetrievalException re) {
+        throw new CompletionException(re);
+      }
+    });
+  }
+
+  public static <K> Map<K, CompletionStage<Void>> keyCompletions(AsyncKeyedOperation<K> op) {
+    return keyCompletions(op, callingThread);
+  }
+
+  /**
+   * Per-key completion for keyed operations such as puts. Each key's stage completes when the operation
+   * completes: normally if the key succeeded, exceptionally with the operation's failure otherwise.
+   *
+   * @return a map from each key of the operation to the key's stage
+   */
+  public static <K> Map<K, CompletionStage<Void>> keyCompletions(AsyncKeyedOperation<K> op, Executor executor) {
+    Map<K, CompletableFuture<Void>> futures;
+
+    futures = new HashMap<>();
+    for (K key : op.getKeys()) {
+      futures.put(key, new CompletableFuture<>());
+    }
+    op.addListener(completedOp -> executor.execute(() -> {
+      OperationException failure;
+
+      failure = getFailure(op);
+      for (Map.Entry<K, CompletableFuture<Void>> entry : futures.entrySet()) {
+        if (failure != null && op.getOperationState(entry.getKey()) != OperationState.SUCCEEDED) {
+          entry.getValue().completeExceptionally(failure);
+        } else {
+          entry.getValue().complete(null);
+        }
+      }
+    }));
+    return new HashMap<>(futures);
+  }
+
+  public static <K, V> Map<K, CompletionStage<V>> valueFutures(AsyncValueRetrieval<K, V> retrieval) {
+    return valueFutures(retrieval, callingThread);
+  }
+
+  /**
+   * Per-key values for retrievals. Each key's stage completes as soon as its value has been received;
+   * keys with no value complete with null when the retrieval completes, and keys that failed complete
+   * exceptionally with the retrieval's failure.
+   * <p>
+   * This consumes the retrieval's latest values; getLatestValues() and getLatestStoredValues() must not
+   * otherwise be used with the retrieval, nor may a RetrievalPublisher.
+   *
+   * @return a map from each key of the retrieval to the key's stage
+   */
+  public static <K, V> Map<K, CompletionStage<V>> valueFutures(AsyncValueRetrieval<K, V> retrieval,
+      Executor executor) {
+    Map<K, CompletableFuture<V>> futures;
+
+    futures = new HashMap<>();
+    for (K key : retrieval.getKeys()) {
+      futures.put(key, new CompletableFuture<>());
+    }
+    retrieval.addListener(op -> executor.execute(() -> {
+      try {
+        for (Map.Entry<K, V> entry : retrieval.getLatestValues().entrySet()) {
+          futures.get(entry.getKey()).complete(entry.getValue());
+        }
+      } catch (RetrievalException re) {
+        // failure is reported when the retrieval completes
+      }
+      if (retrieval.getState() != OperationState.INCOMPLETE) {
+        completeRemaining(retrieval, futures);
+      }
+    }), OperationState.INCOMPLETE, OperationState.SUCCEEDED, OperationState.FAILED);
+    return new HashMap<>(futures);
+  }
+
+  private static <K, V> void completeRemaining(AsyncValueRetrieval<K, V> retrieval,
+      Map<K, CompletableFuture<V>> futures) {
+    OperationException failure;
+
+    failure = getFailure(retrieval);
+    for (Map.Entry<K, CompletableFuture<V>> entry : futures.entrySet()) {
+      if (!entry.getValue().isDone()) {
+        if (retrieval.getOperationState(entry.getKey()) == OperationState.FAILED && failure != null) {
+          entry.getValue().completeExceptionally(failure);
+        } else {
+          try {
+            entry.getValue().complete(retrieval.getValue(entry.getKey()));
+          } catch (RetrievalException re) {
+            entry.getValue().completeExceptionally(re);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the failure of a complete operation, or null if it succeeded
+   */
+  static OperationException getFailure(AsyncOperation op) {
+    if (op.getState() != OperationState.FAILED) {
+      return null;
+    } else {
+      try {
+        // returns immediately as the operation is complete
+        op.waitForCompletion();
+        return null;
+      } catch (OperationException oe) {
+        return oe;
+      }
+    }
+  }
+}
@@ -262,7 +262,9 @@ public DHTSession openSession(SessionOptions sessionOptions) throws ClientExcept
       Log.infof("Opening session to resolvedServer: %s", resolvedServer);
       session = new DHTSessionImpl(dhtConfig, resolvedServer, absMillisTimeSource, serializationRegistry,
           sessionOptions.getTimeoutController(), nsOptionsMode, enableMsgGroupTrace, aliasMap,
-          sessionOptions.getSessionPolicyOnDisconnect());
+          sessionOptions.getSessionPolicyOnDisconnect(), sessionOptions.getConnectionsPerServer(),
+          sessionOptions.getNumSelectorControllers(), sessionOptions.getConnectionAssignmentPolicy(),
+          sessionOptions.getPutCoalescingWindowMicros(), sessionOptions.getPutCoalescingMaxBytes());
     } catch (IOException | AuthFailedException e) {
       throw new ClientException(e);
     }
@@ -167,6 +167,13 @@ public <K, V> SynchronousNamespacePerspective<K, V> openSyncNamespacePerspective
    */
   public void recoverNamespace(String namespace) throws NamespaceRecoverException;
 
+  /**
+   * Create a batch that sends retrievals from several namespaces in a single message
+   *
+   * @return a new, empty RetrievalBatch
+   */
+  public RetrievalBatch newRetrievalBatch();
+
   /**
    * Close the session
    */
@@ -0,0 +1,163 @@
+package com.ms.silverking.cloud.dht.client;
+
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.net.IPAndPort;
+
+/**
+ * Position within one partition of a key scan. A partition is a ring region; a cursor names the region and,
+ * once a page has been read, the replica that served it and the position in that replica's key storage at
+ * which the partition continues. A position is a segment together with either an index into the segment's key
+ * table or, for a segment that was being written when the scan reached it, the key after which the segment's
+ * keys continue in key order. Positions are specific to a replica. If that replica cannot serve the next
+ * page, the partition is restarted from its beginning on another replica, so keys may be returned again.
+ * <p>
+ * Cursors may be saved as strings and parsed in order to resume a scan later, possibly from another process.
+ * A cursor can only be resumed while its region exists in the ring.
+ */
+public final class KeyScanCursor {
+  private final long regionStart;
+  private final long regionEnd;
+  private final IPAndPort replica;
+  private final int segmentNumber;
+  private final int tableIndex;
+  private final DHTKey resumeKey;
+
+  private static final String delimiter = ",";
+
+  /**
+   * Create a cursor for the start of a partition
+   *
+   * @param regionStart the start of the partition's region
+   * @param regionEnd   the end of the partition's region
+   */
+  public KeyScanCursor(long regionStart, long regionEnd) {
+    this(regionStart, regionEnd, null, 0, 0, null);
+  }
+
+  /**
+   * @param regionStart   the start of the partition's region
+   * @param regionEnd     the end of the partition's region
+   * @param replica       the replica whose storage the position refers to, or null at the start of the partition
+   * @param segmentNumber the replica's storage segment at which the partition continues
+   * @param tableIndex    the index within that segment's key table at which the partition continues
+   */
+  public KeyScanCursor(long regionStart, long regionEnd, IPAndPort replica, int segmentNumber, int tableIndex) {
+    this(regionStart, regionEnd, replica, segmentNumber, tableIndex, null);
+  }
+
+  /**
+   * @param regionStart   the start of the partition's region
+   * @param regionEnd     the end of the partition's region
+   * @param replica       the replica whose storage the position refers to, or null at the start of the partition
+   * @param segmentNumber the replica's storage segment at which the partition continues
+   * @param tableIndex    the index within that segment's key table at which the partition continues
+   * @param resumeKey     if non-null, the partition continues after this key in the segment's key order, and
+   *                      tableIndex is ignored
+   */
+  public KeyScanCursor(long regionStart, long regionEnd, IPAndPort replica, int segmentNumber, int tableIndex,
+      DHTKey resumeKey) {
+    this.regionStart = regionStart;
+    this.regionEnd = regionEnd;
+    this.replica = replica;
+    this.segmentNumber = replica != null ? segmentNumber : 0;
+    this.resumeKey = replica != null && resumeKey != null ? new SimpleKey(resumeKey) : null;
+    this.tableIndex = replica != null && resumeKey == null ? tableIndex : 0;
+  }
+
+  public long getRegionStart() {
+    return regionStart;
+  }
+
+  public long getRegionEnd() {
+    return regionEnd;
+  }
+
+  /**
+   * @return the replica that served the last page of this partition, or null if the cursor is at the start of
+   * the partition
+   */
+  public IPAndPort getReplica() {
+    return replica;
+  }
+
+  public int getSegmentNumber() {
+    return segmentNumber;
+  }
+
+  public int getTableIndex() {
+    return tableIndex;
+  }
+
+  /**
+   * @return the key after which the partition continues in key order, or null if it continues at a table index
+   */
+  public DHTKey getResumeKey() {
+    return resumeKey;
+  }
+
+  /**
+   * @return a cursor for the start of this cursor's partition
+   */
+  public KeyScanCursor getPartition() {
+    return replica == null ? this : new KeyScanCursor(regionStart, regionEnd);
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(regionStart) ^ Long.hashCode(regionEnd) ^ (replica != null ? replica.hashCode() : 0)
+        ^ segmentNumber ^ Integer.rotateLeft(tableIndex, 16) ^ (resumeKey != null ? resumeKey.hashCode() : 0);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    KeyScanCursor o;
+
+    if (!(other instanceof KeyScanCursor)) {
+      return false;
+    }
+    o = (KeyScanCursor) other;
+    if (regionStart != o.regionStart || regionEnd != o.regionEnd) {
+      return false;
+    } else if (replica == null || o.replica == null) {
+      return replica == o.replica;
+    } else {
+      return replica.equals(o.replica) && segmentNumber == o.segmentNumber && tableIndex == o.tableIndex
+          && (resumeKey == null ? o.resumeKey == null : resumeKey.equals(o.resumeKey));
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (replica == null) {
+      return regionStart + delimiter + regionEnd;
+    } else if (resumeKey == null) {
+      return regionStart + delimiter + regionEnd + delimiter + replica + delimiter + segmentNumber + delimiter
+          + tableIndex;
+    } else {
+      return regionStart + delimiter + regionEnd + delimiter + replica + delimiter + segmentNumber + delimiter
+          + tableIndex + delimiter + resumeKey.getMSL() + delimiter + resumeKey.getLSL();
+    }
+  }
+
+  /**
+   * Parse a cursor from the form produced by toString()
+   */
+  public static KeyScanCursor parse(String def) {
+    String[] defs;
+
+    defs = def.trim().split(delimiter);
+    if (defs.length == 2) {
+      return new KeyScanCursor(Long.parseLong(defs[0]), Long.parseLong(defs[1]));
+    } else if (defs.length == 5) {
+      return new KeyScanCursor(Long.parseLong(defs[0]), Long.parseLong(defs[1]), new IPAndPort(defs[2]),
+          Integer.parseInt(defs[3]), Integer.parseInt(defs[4]));
+    } else if (defs.length == 7) {
+      return new KeyScanCursor(Long.parseLong(defs[0]), Long.parseLong(defs[1]), new IPAndPort(defs[2]),
+          Integer.parseInt(defs[3]), Integer.parseInt(defs[4]),
+          new SimpleKey(Long.parseLong(defs[5]), Long.parseLong(defs[6])));
+    } else {
+      throw new IllegalArgumentException("Invalid KeyScanCursor: " + def);
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package com.ms.silverking.cloud.dht.client;
+
+import com.ms.silverking.cloud.dht.common.DHTKey;
+
+/**
+ * A key returned by a key scan, together with its stored value if values were requested.
+ *
+ * @param <V> value type
+ */
+public final class KeyScanEntry<V> {
+  private final DHTKey key;
+  private final StoredValue<V> storedValue;
+
+  public KeyScanEntry(DHTKey key, StoredValue<V> storedValue) {
+    this.key = key;
+    this.storedValue = storedValue;
+  }
+
+  /**
+   * @return the key. Namespaces store only the digest of each key, so the digest is returned.
+   */
+  public DHTKey getKey() {
+    return key;
+  }
+
+  /**
+   * @return the latest stored value and its meta data, or null if values were not requested or if the
+   * value is stored in fragments
+   */
+  public StoredValue<V> getStoredValue() {
+    return storedValue;
+  }
+
+  /**
+   * @return the latest value, or null if no stored value is available
+   */
+  public V getValue() {
+    return storedValue != null ? storedValue.getValue() : null;
+  }
+
+  @Override
+  public String toString() {
+    return key + ":" + storedValue;
+  }
+}
@@ -0,0 +1,32 @@
+package com.ms.silverking.cloud.dht.client;
+
+import com.ms.silverking.cloud.dht.client.gen.NonVirtual;
+
+/**
+ * Thrown when a key scan fails.
+ */
+@NonVirtual
+public class KeyScanException extends OperationException {
+  private static final long serialVersionUID = 3861095178206487321L;
+
+  public KeyScanException() {
+    super();
+  }
+
+  public KeyScanException(String message) {
+    super(message);
+  }
+
+  public KeyScanException(Throwable cause) {
+    super(cause);
+  }
+
+  public KeyScanException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  @Override
+  public String getDetailedFailureMessage() {
+    return super.getMessage();
+  }
+}
@@ -0,0 +1,62 @@
+package com.ms.silverking.cloud.dht.client;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Options for a KeyScanner.
+ */
+public final class KeyScanOptions {
+  private final boolean includeValues;
+  private final int pageSize;
+  private final long timeoutMillis;
+
+  public static final boolean defaultIncludeValues = false;
+  public static final int defaultPageSize = 1024;
+  public static final long defaultTimeoutMillis = 2 * 60 * 1000;
+
+  public static final KeyScanOptions defaultOptions = new KeyScanOptions(defaultIncludeValues, defaultPageSize,
+      defaultTimeoutMillis);
+
+  /**
+   * @param includeValues if true, each key is returned with its latest stored value and meta data
+   * @param pageSize      the maximum number of keys returned per page. Pages that include values may be smaller.
+   * @param timeoutMillis the time allowed for each page, including any time spent waiting for the server's
+   *                      scan throttle
+   */
+  public KeyScanOptions(boolean includeValues, int pageSize, long timeoutMillis) {
+    Preconditions.checkArgument(pageSize > 0, "pageSize must be > 0");
+    Preconditions.checkArgument(timeoutMillis > 0, "timeoutMillis must be > 0");
+    this.includeValues = includeValues;
+    this.pageSize = pageSize;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  public boolean getIncludeValues() {
+    return includeValues;
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  public KeyScanOptions includeValues(boolean includeValues) {
+    return new KeyScanOptions(includeValues, pageSize, timeoutMillis);
+  }
+
+  public KeyScanOptions pageSize(int pageSize) {
+    return new KeyScanOptions(includeValues, pageSize, timeoutMillis);
+  }
+
+  public KeyScanOptions timeoutMillis(long timeoutMillis) {
+    return new KeyScanOptions(includeValues, pageSize, timeoutMillis);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("includeValues=%s,pageSize=%d,timeoutMillis=%d", includeValues, pageSize, timeoutMillis);
+  }
+}
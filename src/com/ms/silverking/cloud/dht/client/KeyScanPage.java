@@ -0,0 +1,33 @@
+package com.ms.silverking.cloud.dht.client;
+
+import java.util.List;
+
+/**
+ * One page of a key scan.
+ *
+ * @param <V> value type
+ */
+public final class KeyScanPage<V> {
+  private final List<KeyScanEntry<V>> entries;
+  private final KeyScanCursor nextCursor;
+
+  public KeyScanPage(List<KeyScanEntry<V>> entries, KeyScanCursor nextCursor) {
+    this.entries = entries;
+    this.nextCursor = nextCursor;
+  }
+
+  public List<KeyScanEntry<V>> getEntries() {
+    return entries;
+  }
+
+  /**
+   * @return the cursor from which the scan of this partition continues, or null if the partition is complete
+   */
+  public KeyScanCursor getNextCursor() {
+    return nextCursor;
+  }
+
+  public boolean isComplete() {
+    return nextCursor == null;
+  }
+}
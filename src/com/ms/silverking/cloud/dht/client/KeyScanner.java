@@ -0,0 +1,54 @@
+package com.ms.silverking.cloud.dht.client;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Enumerates the keys of a namespace, optionally with their latest values and meta data.
+ * <p>
+ * A scan is partitioned by ring region. Each partition is read from one of the region's replicas a page at a
+ * time, so partitions may be scanned in parallel by separate threads or processes. Each page returns the
+ * cursor from which the partition continues; cursors may be saved and used to resume a scan.
+ * <p>
+ * Servers throttle scans to protect foreground traffic, so a page may wait for the server's throttle. A scan
+ * is not a snapshot: keys stored or removed while a scan is in progress may or may not be returned, and a
+ * partition whose replica fails during the scan is restarted on another replica, so keys may be repeated.
+ *
+ * @param <V> value type
+ */
+public interface KeyScanner<V> {
+  /**
+   * Get a cursor for the start of each partition of the scan
+   *
+   * @return one cursor per partition
+   * @throws KeyScanException if the partitions cannot be obtained
+   */
+  List<KeyScanCursor> getPartitions() throws KeyScanException;
+
+  /**
+   * Read the page that follows the given cursor
+   *
+   * @param cursor a partition returned by getPartitions() or a cursor returned by a previous page
+   * @return the page
+   * @throws KeyScanException if the page cannot be read
+   */
+  KeyScanPage<V> scan(KeyScanCursor cursor) throws KeyScanException;
+
+  /**
+   * Iterate over the remainder of one partition. Pages are read as the iterator advances. Failures are
+   * thrown as RuntimeExceptions whose cause is a KeyScanException.
+   *
+   * @param cursor a partition returned by getPartitions() or a cursor returned by a previous page
+   * @return an iterator over the entries that follow the cursor
+   */
+  Iterator<KeyScanEntry<V>> iterator(KeyScanCursor cursor);
+
+  /**
+   * Iterate over every partition in turn. Failures are thrown as RuntimeExceptions whose cause is a
+   * KeyScanException.
+   *
+   * @return an iterator over all entries in the namespace
+   * @throws KeyScanException if the partitions cannot be obtained
+   */
+  Iterator<KeyScanEntry<V>> iterator() throws KeyScanException;
+}
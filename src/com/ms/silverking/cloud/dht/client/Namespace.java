@@ -1,5 +1,7 @@
 package com.ms.silverking.cloud.dht.client;
 
+import java.io.File;
+
 import com.ms.silverking.cloud.dht.NamespaceOptions;
 import com.ms.silverking.cloud.dht.NamespacePerspectiveOptions;
 import com.ms.silverking.cloud.dht.common.NamespaceUtil;
@@ -127,6 +129,37 @@ public <K, V> AsynchronousNamespacePerspective<K, V> openAsyncPerspective(
 
   public Namespace modifyNamespace(NamespaceOptions nsOptions) throws NamespaceModificationException;
 
+  /**
+   * Open a scanner that enumerates this namespace's keys
+   *
+   * @param valueClass class of values returned when the options include values
+   * @param options    options for the scan
+   * @param <V>        value type
+   * @return the scanner
+   */
+  public <V> KeyScanner<V> openKeyScanner(Class<V> valueClass, KeyScanOptions options);
+
+  /**
+   * Open a scanner that enumerates this namespace's keys and byte[] values, using default options
+   *
+   * @return the scanner
+   */
+  public KeyScanner<byte[]> openKeyScanner();
+
+  /**
+   * Open a loader that writes this namespace's storage segments offline, for shipping to its replicas
+   *
+   * @param keyClass   class of keys
+   * @param valueClass class of values
+   * @param outputDir  directory in which the partitions are written
+   * @param <K>        key type
+   * @param <V>        value type
+   * @return the loader
+   * @throws BulkLoadException if the ring regions of this namespace cannot be obtained
+   */
+  public <K, V> BulkLoader<K, V> openBulkLoader(Class<K> keyClass, Class<V> valueClass, File outputDir)
+      throws BulkLoadException;
+
   /**
    * Name of the Replicas namespace. The Replicas namespace provides the locations of replicas given a key
    */
@@ -0,0 +1,278 @@
+package com.ms.silverking.cloud.dht.client;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ms.silverking.cloud.dht.GetOptions;
+import com.ms.silverking.cloud.dht.RetrievalType;
+import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
+import com.ms.silverking.time.AbsMillisTimeSource;
+
+/**
+ * Opt-in client-side cache of values retrieved through a SynchronousNamespacePerspective.
+ * <p>
+ * Values validated less than the staleness bound ago are returned without contacting the server. Beyond
+ * that bound, values are revalidated by retrieving only their meta data; a value whose version and creation
+ * time are unchanged is returned from the cache, while a changed value is re-fetched. Reads that must be
+ * current may pass a staleness bound of zero, which always revalidates. Values in write-once namespaces
+ * never change and are cached until evicted.
+ * <p>
+ * The cache is bounded by the size of the cached values and evicts via Caffeine's size-based policy.
+ * Puts made through this cache invalidate the cached value; puts made by other clients are observed once
+ * the staleness bound elapses. A fetched value is only cached if no invalidation of its key (or of a key
+ * sharing its invalidation stripe) occurred while the fetch was in flight, so a get racing a put cannot
+ * re-insert the value the put replaced.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class NearCache<K, V> {
+  private final SynchronousNamespacePerspective<K, V> nsp;
+  private final NearCacheOptions options;
+  private final AbsMillisTimeSource timeSource;
+  private final boolean writeOnce;
+  private final Cache<K, Entry<V>> cache;
+  private final GetOptions valueGetOptions;
+  private final GetOptions metaDataGetOptions;
+  private final LongAdder hits;
+  private final LongAdder misses;
+  private final LongAdder revalidations;
+  private final LongAdder revalidationsUnchanged;
+  private final AtomicLongArray invalidationGenerations;
+
+  // approximate per-entry overhead in addition to the value
+  private static final int entryOverheadBytes = 64;
+  private static final int invalidationStripes = 1024;
+
+  public NearCache(SynchronousNamespacePerspective<K, V> nsp, NearCacheOptions options) {
+    this(nsp, options, SystemTimeUtil.skSystemTimeSource);
+  }
+
+  public NearCache(SynchronousNamespacePerspective<K, V> nsp) {
+    this(nsp, NearCacheOptions.defaultOptions);
+  }
+
+  NearCache(SynchronousNamespacePerspective<K, V> nsp, NearCacheOptions options, AbsMillisTimeSource timeSource) {
+    GetOptions getOptions;
+
+    this.nsp = nsp;
+    this.options = options;
+    this.timeSource = timeSource;
+    writeOnce = nsp.getNamespace().getOptions().isWriteOnce();
+    cache = Caffeine.newBuilder().maximumWeight(options.getMaxBytes()).weigher(
+        (K key, Entry<V> entry) -> entry.weight).recordStats().build();
+    getOptions = nsp.getOptions().getDefaultGetOptions();
+    valueGetOptions = getOptions.retrievalType(RetrievalType.VALUE_AND_META_DATA);
+    metaDataGetOptions = getOptions.retrievalType(RetrievalType.META_DATA);
+    hits = new LongAdder();
+    misses = new LongAdder();
+    revalidations = new LongAdder();
+    revalidationsUnchanged = new LongAdder();
+    invalidationGenerations = new AtomicLongArray(invalidationStripes);
+  }
+
+  private static class Entry<V> {
+    final V value;
+    final long version;
+    final long creationTimeNanos;
+    final int weight;
+    volatile long validatedMillis;
+
+    Entry(StoredValue<V> storedValue, long validatedMillis) {
+      value = storedValue.getValue();
+      version = storedValue.getVersion();
+      creationTimeNanos = storedValue.getCreationTime().inNanos();
+      weight = storedValue.getUncompressedLength() + entryOverheadBytes;
+      this.validatedMillis = validatedMillis;
+    }
+
+    boolean matches(MetaData metaData) {
+      return metaData.getVersion() == version && metaData.getCreationTime().inNanos() == creationTimeNanos;
+    }
+  }
+
+  public NearCacheOptions getOptions() {
+    return options;
+  }
+
+  private int invalidationStripe(K key) {
+    return (key.hashCode() & Integer.MAX_VALUE) % invalidationStripes;
+  }
+
+  /**
+   * Remove any cached value for the key and advance its invalidation generation. Both happen within the
+   * key's compute so that a concurrent fetch either inserts before this invalidation or observes it.
+   */
+  private void invalidateKey(K key) {
+    cache.asMap().compute(key, (k, entry) -> {
+      invalidationGenerations.incrementAndGet(invalidationStripe(k));
+      return null;
+    });
+  }
+
+  private boolean isFresh(Entry<V> entry, long curTimeMillis, long maxStalenessMillis) {
+    return writeOnce || curTimeMillis - entry.validatedMillis < maxStalenessMillis;
+  }
+
+  /**
+   * Get a value, using the cache's staleness bound
+   */
+  public V get(K key) throws RetrievalException {
+    return get(key, options.getMaxStalenessMillis());
+  }
+
+  /**
+   * Get a value, using the given staleness bound
+   *
+   * @return the value, or null if no value exists
+   */
+  public V get(K key, long maxStalenessMillis) throws RetrievalException {
+    Entry<V> entry;
+
+    entry = cache.getIfPresent(key);
+    if (entry != null && isFresh(entry, timeSource.absTimeMillis(), maxStalenessMillis)) {
+      hits.increment();
+      return entry.value;
+    } else {
+      return get(Collections.singleton(key), maxStalenessMillis).get(key);
+    }
+  }
+
+  /**
+   * Get values, using the cache's staleness bound
+   */
+  public Map<K, V> get(Set<? extends K> keys) throws RetrievalException {
+    return get(keys, options.getMaxStalenessMillis());
+  }
+
+  /**
+   * Get values, using the given staleness bound. Values that must be revalidated are revalidated with a
+   * single meta data retrieval, and values that must be fetched are fetched with a single retrieval.
+   *
+   * @return a map from keys to values. Keys with no value are absent.
+   */
+  public Map<K, V> get(Set<? extends K> keys, long maxStalenessMillis) throws RetrievalException {
+    Map<K, V> results;
+    Map<K, Entry<V>> stale;
+    Set<K> toFetch;
+    long curTimeMillis;
+
+    results = new HashMap<>();
+    stale = new HashMap<>();
+    toFetch = new HashSet<>();
+    curTimeMillis = timeSource.absTimeMillis();
+    for (K key : keys) {
+      Entry<V> entry;
+
+      entry = cache.getIfPresent(key);
+      if (entry == null) {
+        misses.increment();
+        toFetch.add(key);
+      } else if (isFresh(entry, curTimeMillis, maxStalenessMillis)) {
+        hits.increment();
+        results.put(key, entry.value);
+      } else if (options.getRevalidate()) {
+        stale.put(key, entry);
+      } else {
+        misses.increment();
+        toFetch.add(key);
+      }
+    }
+    if (!stale.isEmpty()) {
+      Map<K, ? extends StoredValue<V>> metaData;
+
+      revalidations.add(stale.size());
+      metaData = nsp.retrieve(stale.keySet(), metaDataGetOptions);
+      for (Map.Entry<K, Entry<V>> staleEntry : stale.entrySet()) {
+        StoredValue<V> storedMetaData;
+
+        storedMetaData = metaData.get(staleEntry.getKey());
+        if (storedMetaData == null) {
+          cache.invalidate(staleEntry.getKey());
+        } else if (staleEntry.getValue().matches(storedMetaData)) {
+          revalidationsUnchanged.increment();
+          staleEntry.getValue().validatedMillis = curTimeMillis;
+          results.put(staleEntry.getKey(), staleEntry.getValue().value);
+        } else {
+          toFetch.add(staleEntry.getKey());
+        }
+      }
+    }
+    if (!toFetch.isEmpty()) {
+      Map<K, ? extends StoredValue<V>> values;
+      Map<K, Long> generations;
+
+      generations = new HashMap<>();
+      for (K key : toFetch) {
+        generations.put(key, invalidationGenerations.get(invalidationStripe(key)));
+      }
+      values = nsp.retrieve(toFetch, valueGetOptions);
+      for (K key : toFetch) {
+        StoredValue<V> storedValue;
+        long generation;
+
+        storedValue = values.get(key);
+        generation = generations.get(key);
+        if (storedValue != null) {
+          Entry<V> entry;
+
+          entry = new Entry<>(storedValue, curTimeMillis);
+          // skip caching if an invalidation raced this fetch; the value may predate it
+          cache.asMap().compute(key, (k, cached) -> invalidationGenerations.get(
+              invalidationStripe(k)) == generation ? entry : cached);
+          results.put(key, entry.value);
+        } else {
+          cache.invalidate(key);
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Put a value through the underlying perspective and invalidate any cached value for the key
+   */
+  public void put(K key, V value) throws PutException {
+    try {
+      nsp.put(key, value);
+    } finally {
+      invalidateKey(key);
+    }
+  }
+
+  /**
+   * Put values through the underlying perspective and invalidate any cached values for the keys
+   */
+  public void put(Map<K, V> values) throws PutException {
+    try {
+      nsp.put(values);
+    } finally {
+      for (K key : values.keySet()) {
+        invalidateKey(key);
+      }
+    }
+  }
+
+  public void invalidate(K key) {
+    invalidateKey(key);
+  }
+
+  public void invalidateAll() {
+    for (int i = 0; i < invalidationStripes; i++) {
+      invalidationGenerations.incrementAndGet(i);
+    }
+    cache.invalidateAll();
+  }
+
+  public NearCacheStats getStats() {
+    return new NearCacheStats(hits.sum(), misses.sum(), revalidations.sum(), revalidationsUnchanged.sum(),
+        cache.stats().evictionCount(), cache.policy().eviction().get().weightedSize().getAsLong());
+  }
+}
@@ -0,0 +1,65 @@
+package com.ms.silverking.cloud.dht.client;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Options for a NearCache.
+ */
+public final class NearCacheOptions {
+  private final long maxBytes;
+  private final long maxStalenessMillis;
+  private final boolean revalidate;
+
+  public static final long defaultMaxBytes = 64 * 1024 * 1024;
+  public static final long defaultMaxStalenessMillis = 1000;
+  public static final boolean defaultRevalidate = true;
+
+  public static final NearCacheOptions defaultOptions = new NearCacheOptions(defaultMaxBytes,
+      defaultMaxStalenessMillis, defaultRevalidate);
+
+  /**
+   * @param maxBytes           bound on the size of cached values
+   * @param maxStalenessMillis cached values validated less than this long ago are returned without
+   *                           contacting the server
+   * @param revalidate         if true, values beyond the staleness bound are revalidated by retrieving their
+   *                           meta data, and are only re-fetched if they have changed; if false, they are
+   *                           re-fetched
+   */
+  public NearCacheOptions(long maxBytes, long maxStalenessMillis, boolean revalidate) {
+    Preconditions.checkArgument(maxBytes > 0, "maxBytes must be > 0");
+    Preconditions.checkArgument(maxStalenessMillis >= 0, "maxStalenessMillis must be >= 0");
+    this.maxBytes = maxBytes;
+    this.maxStalenessMillis = maxStalenessMillis;
+    this.revalidate = revalidate;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public long getMaxStalenessMillis() {
+    return maxStalenessMillis;
+  }
+
+  public boolean getRevalidate() {
+    return revalidate;
+  }
+
+  public NearCacheOptions maxBytes(long maxBytes) {
+    return new NearCacheOptions(maxBytes, maxStalenessMillis, revalidate);
+  }
+
+  public NearCacheOptions maxStalenessMillis(long maxStalenessMillis) {
+    return new NearCacheOptions(maxBytes, maxStalenessMillis, revalidate);
+  }
+
+  public NearCacheOptions revalidate(boolean revalidate) {
+    return new NearCacheOptions(maxBytes, maxStalenessMillis, revalidate);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("maxBytes=%d,maxStalenessMillis=%d,revalidate=%s", maxBytes, maxStalenessMillis,
+        revalidate);
+  }
+}
@@ -0,0 +1,68 @@
+package com.ms.silverking.cloud.dht.client;
+
+/**
+ * Snapshot of NearCache metrics.
+ */
+public final class NearCacheStats {
+  private final long hits;
+  private final long misses;
+  private final long revalidations;
+  private final long revalidationsUnchanged;
+  private final long evictions;
+  private final long cachedBytes;
+
+  NearCacheStats(long hits, long misses, long revalidations, long revalidationsUnchanged, long evictions,
+      long cachedBytes) {
+    this.hits = hits;
+    this.misses = misses;
+    this.revalidations = revalidations;
+    this.revalidationsUnchanged = revalidationsUnchanged;
+    this.evictions = evictions;
+    this.cachedBytes = cachedBytes;
+  }
+
+  /**
+   * @return the number of values returned from the cache without contacting the server
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return the number of values that were not cached, or that were stale and not revalidated
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return the number of stale values revalidated with a meta data retrieval
+   */
+  public long getRevalidations() {
+    return revalidations;
+  }
+
+  /**
+   * @return the number of revalidated values found to be unchanged, and returned from the cache
+   */
+  public long getRevalidationsUnchanged() {
+    return revalidationsUnchanged;
+  }
+
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return the approximate size of the cached values
+   */
+  public long getCachedBytes() {
+    return cachedBytes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("hits=%d,misses=%d,revalidations=%d,revalidationsUnchanged=%d,evictions=%d,"
+        + "cachedBytes=%d", hits, misses, revalidations, revalidationsUnchanged, evictions, cachedBytes);
+  }
+}
@@ -0,0 +1,32 @@
+package com.ms.silverking.cloud.dht.client;
+
+import com.ms.silverking.cloud.dht.client.gen.OmitGeneration;
+
+/**
+ * Recent latencies and retries that a session has observed for one type of operation (puts or retrievals)
+ * in one namespace. Provided to OpTimeoutControllers that adapt to observed latency.
+ * Older observations decay periodically so that these statistics follow current conditions.
+ */
+@OmitGeneration
+public interface OpLatencyStats {
+  /**
+   * @return the number of recent latency samples
+   */
+  public long getNumSamples();
+
+  /**
+   * @param percentile a percentile in [0, 100]
+   * @return the given percentile of recent attempt latencies in milliseconds, or -1 if there are no samples
+   */
+  public long getLatencyPercentileMillis(double percentile);
+
+  /**
+   * Reserve a retry if recent retries, including this one, do not exceed
+   * retryRatio * recentOperations + minRetries.
+   *
+   * @param retryRatio the fraction of recent operations that may be retried
+   * @param minRetries the number of recent retries that are always allowed
+   * @return true if the retry may be sent
+   */
+  public boolean tryAcquireRetry(double retryRatio, int minRetries);
+}
@@ -45,6 +45,34 @@ public interface OpTimeoutController {
    */
   public long getRelativeExclusionChangeRetryMillisForAttempt(AsyncOperation op, int curAttemptIndex);
 
+  /**
+   * Return the relative timeout in milliseconds for the given attempt given the latencies that the session has
+   * observed for this type of operation in the operation's namespace. Called once at the start of each attempt
+   * of a namespace operation. By default, the observed latencies are ignored.
+   *
+   * @param op           the relevant operation
+   * @param attemptIndex a zero-based attempt index. Ranges from 0 to the maximum number of attempts - 1.
+   * @param latencyStats recent statistics for this type of operation in the operation's namespace
+   * @return the relative timeout in milliseconds for the given attempt
+   */
+  default public int getRelativeTimeoutMillisForAttempt(AsyncOperation op, int attemptIndex,
+      OpLatencyStats latencyStats) {
+    return getRelativeTimeoutMillisForAttempt(op, attemptIndex);
+  }
+
+  /**
+   * Return true if a retry of the given namespace operation may be sent. Called only for retries that
+   * getMaxAttempts() allows. By default, all such retries are sent.
+   *
+   * @param op           the relevant operation
+   * @param attemptIndex the zero-based index of the retry
+   * @param latencyStats recent statistics for this type of operation in the operation's namespace
+   * @return true if the retry may be sent
+   */
+  default public boolean retryAllowed(AsyncOperation op, int attemptIndex, OpLatencyStats latencyStats) {
+    return true;
+  }
+
   public static final int min_maxAttempts = 1;
   public static final int minInitialTimeout_ms = 5;
 }
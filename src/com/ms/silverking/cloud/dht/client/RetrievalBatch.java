@@ -0,0 +1,44 @@
+package com.ms.silverking.cloud.dht.client;
+
+import java.util.Set;
+
+import com.ms.silverking.cloud.dht.RetrievalOptions;
+
+/**
+ * Groups retrievals from any number of namespaces so that they are sent to the server in a single
+ * message. The server handles each namespace's retrieval as it would a retrieval sent on its own;
+ * results are delivered to the individual AsyncRetrievals returned by add().
+ * <p>
+ * Retrievals are not started until send() is called. Once sent, a batch may not be reused.
+ */
+public interface RetrievalBatch {
+  /**
+   * Add a retrieval to this batch
+   *
+   * @param nsp              a perspective opened from this batch's session
+   * @param keys             the keys to retrieve
+   * @param retrievalOptions options for the retrieval
+   * @return the retrieval, which is started when the batch is sent
+   */
+  public <K, V> AsyncRetrieval<K, V> add(BaseNamespacePerspective<K, V> nsp, Set<? extends K> keys,
+      RetrievalOptions retrievalOptions);
+
+  /**
+   * Add a retrieval using the perspective's default get options
+   */
+  public <K, V> AsyncRetrieval<K, V> add(BaseNamespacePerspective<K, V> nsp, Set<? extends K> keys);
+
+  /**
+   * Start all retrievals in this batch
+   *
+   * @throws SessionClosedException if the session has been closed
+   */
+  public void send() throws SessionClosedException;
+
+  /**
+   * Wait for all retrievals in this batch to complete
+   *
+   * @throws RetrievalException the failure of the first retrieval (in the order added) that failed
+   */
+  public void waitForCompletion() throws RetrievalException;
+}
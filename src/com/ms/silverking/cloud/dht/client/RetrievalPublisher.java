@@ -0,0 +1,187 @@
+package com.ms.silverking.cloud.dht.client;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the results of a retrieval as its keys complete, so that large retrievals may be streamed
+ * rather than collected. Each successfully retrieved key is published once, as a Map.Entry from the key
+ * to its StoredValue. Keys with no value are not published. When the retrieval completes, the subscriber
+ * receives onComplete(), or onError() with the retrieval's RetrievalException if it failed.
+ * <p>
+ * The Publisher, Subscriber, and Subscription interfaces follow java.util.concurrent.Flow, and signals obey
+ * its rules: they are serialized, and no more than the requested number of values are published. Signals
+ * are delivered in the given executor.
+ * <p>
+ * A retrieval's results may be published to a single subscriber. The publisher consumes the retrieval's
+ * latest values; getLatestValues() and getLatestStoredValues() must not otherwise be used with it.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class RetrievalPublisher<K, V> {
+  private final AsyncRetrieval<K, V> retrieval;
+  private final Executor executor;
+  private final AtomicBoolean subscribed;
+
+  /**
+   * Receives published values. Equivalent to java.util.concurrent.Flow.Subscriber.
+   */
+  public interface Subscriber<T> {
+    void onSubscribe(Subscription subscription);
+
+    void onNext(T item);
+
+    void onError(Throwable throwable);
+
+    void onComplete();
+  }
+
+  /**
+   * Links a publisher and subscriber. Equivalent to java.util.concurrent.Flow.Subscription.
+   */
+  public interface Subscription {
+    void request(long n);
+
+    void cancel();
+  }
+
+  public RetrievalPublisher(AsyncRetrieval<K, V> retrieval, Executor executor) {
+    this.retrieval = retrieval;
+    this.executor = executor;
+    subscribed = new AtomicBoolean();
+  }
+
+  /**
+   * Create a publisher that signals its subscriber in the client's notification threads. Subscribers
+   * must not block.
+   */
+  public RetrievalPublisher(AsyncRetrieval<K, V> retrieval) {
+    this(retrieval, Runnable::run);
+  }
+
+  public void subscribe(Subscriber<? super Map.Entry<K, ? extends StoredValue<V>>> subscriber) {
+    if (subscribed.compareAndSet(false, true)) {
+      RetrievalSubscription subscription;
+
+      subscription = new RetrievalSubscription(subscriber);
+      executor.execute(() -> {
+        subscriber.onSubscribe(subscription);
+        retrieval.addListener(op -> subscription.retrievalUpdated(), OperationState.INCOMPLETE,
+            OperationState.SUCCEEDED, OperationState.FAILED);
+      });
+    } else {
+      executor.execute(() -> {
+        subscriber.onSubscribe(new Subscription() {
+          @Override
+          public void request(long n) {
+          }
+
+          @Override
+          public void cancel() {
+          }
+        });
+        subscriber.onError(new IllegalStateException("RetrievalPublisher supports a single subscriber"));
+      });
+    }
+  }
+
+  private class RetrievalSubscription implements Subscription {
+    private final Subscriber<? super Map.Entry<K, ? extends StoredValue<V>>> subscriber;
+    private final Queue<Map.Entry<K, ? extends StoredValue<V>>> pending;
+    private final AtomicLong demand;
+    private final AtomicInteger drainRequests;
+    private volatile boolean retrievalComplete;
+    private volatile boolean terminated;
+    private volatile Throwable invalidRequest;
+
+    RetrievalSubscription(Subscriber<? super Map.Entry<K, ? extends StoredValue<V>>> subscriber) {
+      this.subscriber = subscriber;
+      pending = new ConcurrentLinkedQueue<>();
+      demand = new AtomicLong();
+      drainRequests = new AtomicInteger();
+    }
+
+    void retrievalUpdated() {
+      boolean complete;
+
+      // read state first so that no values received before completion are missed
+      complete = retrieval.getState() != OperationState.INCOMPLETE;
+      try {
+        pending.addAll(retrieval.getLatestStoredValues().entrySet());
+      } catch (RetrievalException re) {
+        // failure is reported on completion
+      }
+      if (complete) {
+        retrievalComplete = true;
+      }
+      scheduleDrain();
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = new IllegalArgumentException("non-positive request: " + n);
+      } else {
+        demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+      }
+      scheduleDrain();
+    }
+
+    @Override
+    public void cancel() {
+      terminated = true;
+      pending.clear();
+    }
+
+    private void scheduleDrain() {
+      if (drainRequests.getAndIncrement() == 0) {
+        executor.execute(this::drain);
+      }
+    }
+
+    // only one thread drains at a time; the drain loops until no further requests have arrived
+    private void drain() {
+      int requests;
+
+      requests = 1;
+      do {
+        if (!terminated) {
+          if (invalidRequest != null) {
+            terminate(invalidRequest);
+          } else {
+            while (demand.get() > 0 && !terminated) {
+              Map.Entry<K, ? extends StoredValue<V>> entry;
+
+              entry = pending.poll();
+              if (entry == null) {
+                break;
+              }
+              demand.decrementAndGet();
+              subscriber.onNext(entry);
+            }
+            if (retrievalComplete && pending.isEmpty() && !terminated) {
+              terminate(CompletableOperations.getFailure(retrieval));
+            }
+          }
+        }
+        requests = drainRequests.addAndGet(-requests);
+      } while (requests != 0);
+    }
+
+    private void terminate(Throwable failure) {
+      terminated = true;
+      pending.clear();
+      if (failure == null) {
+        subscriber.onComplete();
+      } else {
+        subscriber.onError(failure);
+      }
+    }
+  }
+}
@@ -53,6 +53,29 @@ default public void put(K key, V value) throws PutException {
     put(key, value, getOptions().getDefaultPutOptions());
   }
 
+  /**
+   * Single-key atomic update. The update is applied by the server to the newest stored value of the key in a
+   * single round trip. The version, lock, and required previous version of putOptions apply to the resulting
+   * value as for a put. Updates are not retried as a retry could apply an update twice.
+   *
+   * @param key        key whose value is updated
+   * @param update     the update to apply
+   * @param putOptions options for the update
+   * @throws PutException if the update failed or timed out
+   */
+  public void update(K key, AtomicUpdate<V> update, PutOptions putOptions) throws PutException;
+
+  /**
+   * Single-key atomic update using default PutOptions.
+   *
+   * @param key    key whose value is updated
+   * @param update the update to apply
+   * @throws PutException if the update failed or timed out
+   */
+  default public void update(K key, AtomicUpdate<V> update) throws PutException {
+    update(key, update, getOptions().getDefaultPutOptions());
+  }
+
   /**
    * Multi-value Invalidation operation
    *
@@ -0,0 +1,134 @@
+package com.ms.silverking.cloud.dht.client.apps.test;
+
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ms.silverking.cloud.dht.client.DHTClient;
+import com.ms.silverking.cloud.dht.client.DHTSession;
+import com.ms.silverking.cloud.dht.client.Namespace;
+import com.ms.silverking.cloud.dht.client.OperationException;
+import com.ms.silverking.cloud.dht.client.SynchronousNamespacePerspective;
+import com.ms.silverking.cloud.dht.gridconfig.SKGridConfiguration;
+import com.ms.silverking.thread.ThreadUtil;
+import com.ms.silverking.time.SimpleStopwatch;
+import com.ms.silverking.time.Stopwatch;
+
+/**
+ * Compares the throughput of blocking (synchronous perspective) requests issued from many platform threads
+ * with the same requests issued from virtual threads. Each thread puts and then gets its own keys.
+ * <p>
+ * Virtual threads require a JVM that supports them. Run with -Dcom.ms.silverking.cloud.dht.client.impl.
+ * SpinWhileWaiting=false to also stop platform threads from spinning while they wait.
+ */
+public class BlockingThroughput {
+  private final PrintStream out;
+  private final Namespace ns;
+  private final int numThreads;
+  private final int opsPerThread;
+  private final int valueSize;
+
+  private static final String nsBase = "BlockingThroughput.";
+
+  public enum Mode {platform, virtual}
+
+  public BlockingThroughput(DHTSession session, PrintStream out, int numThreads, int opsPerThread, int valueSize)
+      throws OperationException {
+    this.out = out;
+    this.numThreads = numThreads;
+    this.opsPerThread = opsPerThread;
+    this.valueSize = valueSize;
+    ns = session.createNamespace(nsBase + System.currentTimeMillis());
+  }
+
+  public void runTest(Mode mode) throws InterruptedException {
+    ExecutorService executor;
+    CountDownLatch complete;
+    AtomicLong failures;
+    Stopwatch sw;
+    long numOps;
+
+    if (mode == Mode.virtual) {
+      executor = ThreadUtil.newVirtualThreadPerTaskExecutor();
+    } else {
+      executor = Executors.newFixedThreadPool(numThreads);
+    }
+    complete = new CountDownLatch(numThreads);
+    failures = new AtomicLong();
+    sw = new SimpleStopwatch();
+    for (int i = 0; i < numThreads; i++) {
+      int threadIndex;
+
+      threadIndex = i;
+      executor.execute(() -> {
+        try {
+          runThread(mode, threadIndex, failures);
+        } finally {
+          complete.countDown();
+        }
+      });
+    }
+    complete.await();
+    sw.stop();
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+    numOps = 2L * numThreads * opsPerThread;
+    out.printf("%s\tthreads %d\tops %d\tfailures %d\telapsed %f\tops/s %f\n", mode, numThreads, numOps,
+        failures.get(), sw.getElapsedSeconds(), (double) numOps / sw.getElapsedSeconds());
+  }
+
+  private void runThread(Mode mode, int threadIndex, AtomicLong failures) {
+    SynchronousNamespacePerspective<String, byte[]> nsp;
+    byte[] value;
+
+    nsp = ns.openSyncPerspective(String.class, byte[].class);
+    value = new byte[valueSize];
+    for (int i = 0; i < opsPerThread; i++) {
+      String key;
+
+      key = mode + "." + threadIndex + "." + i;
+      try {
+        nsp.put(key, value);
+        if (nsp.get(key) == null) {
+          failures.incrementAndGet();
+        }
+      } catch (OperationException oe) {
+        failures.incrementAndGet();
+      }
+    }
+  }
+
+  public static void main(String[] args) {
+    try {
+      if (args.length != 4 && args.length != 5) {
+        System.err.println("Usage: <gridConfig> <platform|virtual|both> <numThreads> <opsPerThread> [valueSize]");
+      } else {
+        BlockingThroughput test;
+        String gridConfig;
+        String mode;
+        int numThreads;
+        int opsPerThread;
+        int valueSize;
+
+        gridConfig = args[0];
+        mode = args[1];
+        numThreads = Integer.parseInt(args[2]);
+        opsPerThread = Integer.parseInt(args[3]);
+        valueSize = args.length == 5 ? Integer.parseInt(args[4]) : 64;
+        test = new BlockingThroughput(new DHTClient().openSession(SKGridConfiguration.parseFile(gridConfig)),
+            System.out, numThreads, opsPerThread, valueSize);
+        if (mode.equals("both")) {
+          test.runTest(Mode.platform);
+          test.runTest(Mode.virtual);
+        } else {
+          test.runTest(Mode.valueOf(mode));
+        }
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+}
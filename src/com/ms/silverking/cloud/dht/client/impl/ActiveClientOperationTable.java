@@ -6,6 +6,7 @@
 import java.util.Set;
 
 import com.ms.silverking.cloud.dht.client.OperationState;
+import com.ms.silverking.cloud.dht.common.DHTUtil;
 import com.ms.silverking.cloud.dht.common.JVMUtil;
 import com.ms.silverking.cloud.dht.common.OpResult;
 import com.ms.silverking.cloud.dht.daemon.storage.convergence.ChecksumNode;
@@ -17,6 +18,7 @@
 import com.ms.silverking.thread.lwt.LWTPoolProvider;
 import com.ms.silverking.time.SimpleStopwatch;
 import com.ms.silverking.time.Stopwatch;
+import com.ms.silverking.util.TimerWheel;
 
 public class ActiveClientOperationTable {
   private final ActivePutListeners activePutListeners;
@@ -24,6 +26,7 @@ public class ActiveClientOperationTable {
   private final ActiveVersionedBasicOperations activeVersionedBasicOperations;
   private final LWTPool lwtPool;
   private final Stopwatch finalizationSW;
+  private final TimerWheel timerWheel;
 
   private static final boolean debugTimeouts = false;
 
@@ -36,6 +39,7 @@ public ActiveClientOperationTable() {
     activeVersionedBasicOperations = new ActiveVersionedBasicOperations();
     lwtPool = LWTPoolProvider.defaultConcurrentWorkPool;
     finalizationSW = new SimpleStopwatch();
+    timerWheel = DHTUtil.timerWheel();
   }
 
   public ActivePutListeners getActivePutListeners() {
@@ -78,6 +82,24 @@ public <K extends UUIDBase, V> void debugMap(Map<K, V> map, UUIDBase base) {
   }
 
   // timeout code
+
+  /**
+   * Register the operation's next timeout with the timer wheel. Attempt and operation timeouts are
+   * handled when the timeout expires; completion of the operation cancels the timeout.
+   */
+  void scheduleTimeout(AsyncOperationImpl op, OpSender opSender) {
+    // timeout checks are strictly greater than
+    op.setTimeout(timerWheel.schedule(op.getNextTimeoutAbsMillis() + 1,
+        curTimeMillis -> timeoutExpired(op, opSender, curTimeMillis)));
+  }
+
+  private void timeoutExpired(AsyncOperationImpl op, OpSender opSender, long curTimeMillis) {
+    checkOpForTimeouts(curTimeMillis, op, opSender, false);
+    if (op.getState() == OperationState.INCOMPLETE) {
+      scheduleTimeout(op, opSender);
+    }
+  }
+
   private static boolean allowFinalization = false;
 
   public static void disableFinalization() {
@@ -114,17 +136,15 @@ public void checkForTimeouts(long curTimeMillis, OpSender opSender, OpSender put
       finalizationSW.reset();
     }
 
-    Set<AsyncRetrievalOperationImpl> crs;
-
-    crs = activeRetrievalListeners.currentRetrievalSet();
-    //System.out.printf("Time %d\tcurrentRetrievalSet %d\n", curTimeMillis, crs.size());
-    checkOpsForTimeouts(curTimeMillis, crs, retrievalSender, 
-        false); // for retrievals, proxy side exclusion detection and replica failover are used instead of client-side
+    // Attempt and operation timeouts are handled by the timer wheel; see scheduleTimeout().
+    // Only exclusion set changes require a scan. For retrievals, proxy side exclusion detection
+    // and replica failover are used instead of client-side.
+    if (exclusionSetHasChanged) {
+      Set<AsyncPutOperationImpl> cps;
 
-    Set<AsyncPutOperationImpl> cps;
-
-    cps = activePutListeners.currentPutSet();
-    checkOpsForTimeouts(curTimeMillis, cps, putSender, exclusionSetHasChanged);
+      cps = activePutListeners.currentPutSet();
+      checkOpsForTimeouts(curTimeMillis, cps, putSender, exclusionSetHasChanged);
+    }
   }
 
   private void checkOpsForTimeouts(long curTimeMillis, Set<? extends AsyncOperationImpl> ops, OpSender opSender,
@@ -139,6 +159,14 @@ private void checkOpsForTimeouts(long curTimeMillis, Set<? extends AsyncOperatio
 
   private void checkOpForTimeouts(long curTimeMillis, AsyncOperationImpl op, OpSender opSender,
       boolean exclusionSetHasChanged) {
+    // the timer wheel and the exclusion change scan may check the same operation concurrently
+    synchronized (op.timeoutState) {
+      _checkOpForTimeouts(curTimeMillis, op, opSender, exclusionSetHasChanged);
+    }
+  }
+
+  private void _checkOpForTimeouts(long curTimeMillis, AsyncOperationImpl op, OpSender opSender,
+      boolean exclusionSetHasChanged) {
     boolean attemptHasTimedOut;
 
     attemptHasTimedOut = op.attemptHasTimedOut(curTimeMillis);
@@ -40,7 +40,7 @@
 
   public AsyncKeyedOperationImpl(KeyedNamespaceOperation<K> operation, KeyCreator<K> keyCreator,
       ClientNamespace namespace, long curTime, byte[] originator) {
-    super(operation, namespace.getContext(), curTime, originator);
+    super(operation, namespace.getContext(), curTime, originator, namespace.getLatencyTracker(operation.getOpType()));
 
     this.keyedNamespaceOperation = (KeyedNamespaceOperation<K>) operation;
     size = keyedNamespaceOperation.size();
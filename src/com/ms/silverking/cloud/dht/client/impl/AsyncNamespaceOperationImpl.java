@@ -6,7 +6,12 @@ abstract class AsyncNamespaceOperationImpl extends AsyncOperationImpl {
   protected final Context context;
 
   AsyncNamespaceOperationImpl(NamespaceOperation operation, Context context, long curTime, byte[] originator) {
-    super(operation, curTime, originator);
+    this(operation, context, curTime, originator, null);
+  }
+
+  AsyncNamespaceOperationImpl(NamespaceOperation operation, Context context, long curTime, byte[] originator,
+      OpLatencyTracker latencyTracker) {
+    super(operation, curTime, originator, latencyTracker);
     this.context = context;
   }
 
@@ -27,11 +27,13 @@
 import com.ms.silverking.collection.CollectionUtil;
 import com.ms.silverking.collection.Pair;
 import com.ms.silverking.log.Log;
+import com.ms.silverking.thread.ThreadUtil;
 import com.ms.silverking.thread.lwt.BaseWorker;
 import com.ms.silverking.thread.lwt.LWTPool;
 import com.ms.silverking.thread.lwt.LWTPoolParameters;
 import com.ms.silverking.thread.lwt.LWTPoolProvider;
 import com.ms.silverking.util.PropertiesHelper;
+import com.ms.silverking.util.TimerWheel;
 
 /**
  * AsyncOperationImpl provides a concrete implementation of AsyncOperation
@@ -46,17 +48,29 @@ abstract class AsyncOperationImpl implements AsyncOperation {
   protected final EnumSet<OpResult> allResults;
   private volatile Set<Pair<AsyncOperationListener, EnumSet<OperationState>>> listeners;
 
-  private static final boolean spin = true;
+  private static final String spinWhileWaitingProperty = AsyncOperationImpl.class.getPackage().getName() +
+      ".SpinWhileWaiting";
+  private static final boolean defaultSpinWhileWaiting = true;
+  private static final boolean spin;
   private static final int spinDurationNanos = 5 * 1000;
 
   // Attempt state
   private volatile boolean sent;    // a hint as to whether or not this operation has been sent before
   // used to optimize the first message creation
   protected OpTimeoutState timeoutState;
+  private volatile TimerWheel.Timeout timeout;
 
   private static Map<OperationUUID, AsyncOperationImpl> opsWithListeners = new ConcurrentHashMap<>();
 
   public AsyncOperationImpl(Operation operation, long curTimeMillis, byte[] originator) {
+    this(operation, curTimeMillis, originator, null);
+  }
+
+  /**
+   * @param latencyTracker the tracker to which this operation reports its latency, or null
+   */
+  public AsyncOperationImpl(Operation operation, long curTimeMillis, byte[] originator,
+      OpLatencyTracker latencyTracker) {
     OpTimeoutController timeoutController;
 
     assert operation != null;
@@ -72,7 +86,7 @@ public AsyncOperationImpl(Operation operation, long curTimeMillis, byte[] origin
     //System.out.printf("%s %d\n", timeoutParameters.hasRelTimeout(), timeoutParameters.getRelTimeout());
 
     timeoutController = operation.getTimeoutController();
-    timeoutState = new OpTimeoutState(this, timeoutController, curTimeMillis);
+    timeoutState = new OpTimeoutState(this, timeoutController, latencyTracker, curTimeMillis);
   }
 
   protected abstract NonExistenceResponse getNonExistenceResponse();
@@ -101,6 +115,27 @@ void newAttempt(long curTimeMillis) {
     timeoutState.newAttempt(curTimeMillis);
   }
 
+  long getNextTimeoutAbsMillis() {
+    return timeoutState.getNextTimeoutAbsMillis();
+  }
+
+  void setTimeout(TimerWheel.Timeout timeout) {
+    this.timeout = timeout;
+    // the operation may have completed before the timeout was set
+    if (!isActive()) {
+      timeout.cancel();
+    }
+  }
+
+  private void cancelTimeout() {
+    TimerWheel.Timeout _timeout;
+
+    _timeout = timeout;
+    if (_timeout != null) {
+      _timeout.cancel();
+    }
+  }
+
   public ClientOpType getType() {
     return operation.getOpType();
   }
@@ -199,6 +234,10 @@ protected void setResult(OpResult result) {
           opsWithListeners.remove(getUUID());
         }
       }
+      if (isCompletion) {
+        cancelTimeout();
+        timeoutState.operationCompleted(result);
+      }
       cleanup();
     }
   }
@@ -244,6 +283,10 @@ private void notifyListeners(Iterable<AsyncOperationListener> listeners) {
   private static final LWTPool notificationWorkerPool;
   private static final NotificationWorker notificationWorker;
 
+  static {
+    spin = PropertiesHelper.systemHelper.getBoolean(spinWhileWaitingProperty, defaultSpinWhileWaiting);
+  }
+
   static {
     int notificationWorkerPoolSize;
 
@@ -306,7 +349,7 @@ public boolean waitForCompletion(long timeout, TimeUnit unit) throws OperationEx
           millisToDeadline = absoluteDeadlineMillis - SystemTimeUtil.skSystemTimeSource.absTimeMillis();
           if (millisToDeadline > 0) {
             Log.fine("activeOp awaiting ", this);
-            if (!spin) {
+            if (!spinWhileWaiting()) {
               cv.await(millisToDeadline, TimeUnit.MILLISECONDS);
             } else {
               cv.awaitNanos(spinDurationNanos);
@@ -330,6 +373,12 @@ public boolean waitForCompletion(long timeout, TimeUnit unit) throws OperationEx
   protected void debugTimeout() {
   }
 
+  // Spinning occupies the waiting thread's carrier, so virtual threads always park. Waits use a Condition
+  // rather than a monitor so that parked virtual threads do not pin their carriers.
+  private static boolean spinWhileWaiting() {
+    return spin && !ThreadUtil.isCurrentThreadVirtual();
+  }
+
   protected abstract void throwFailedException() throws OperationException;
 
   /**
@@ -422,7 +471,7 @@ void _waitForCompletion() throws OperationException {
       while (!result.isComplete() && !Thread.currentThread().isInterrupted()) {
         try {
           Log.fine("activeOp awaiting ", this);
-          if (!spin) {
+          if (!spinWhileWaiting()) {
             cv.await();
           } else {
             cv.awaitNanos(spinDurationNanos);
@@ -458,7 +507,7 @@ public boolean poll(long duration, TimeUnit timeUnit) {
     try {
       while (!result.isComplete()) {
         try {
-          if (!spin) {
+          if (!spinWhileWaiting()) {
             cv.await(duration, timeUnit);
           } else {
             cv.awaitNanos(spinDurationNanos);
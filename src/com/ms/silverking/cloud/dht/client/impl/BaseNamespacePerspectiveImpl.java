@@ -2,6 +2,7 @@
 
 import static com.ms.silverking.cloud.dht.common.OpResult.SESSION_CLOSED;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Set;
 
@@ -16,14 +17,25 @@
 import com.ms.silverking.cloud.dht.client.AsyncRetrieval;
 import com.ms.silverking.cloud.dht.client.AsyncSnapshot;
 import com.ms.silverking.cloud.dht.client.AsyncSyncRequest;
+import com.ms.silverking.cloud.dht.client.AtomicUpdate;
 import com.ms.silverking.cloud.dht.client.BaseNamespacePerspective;
+import com.ms.silverking.cloud.dht.client.Compression;
 import com.ms.silverking.cloud.dht.client.ConstantVersionProvider;
+import com.ms.silverking.cloud.dht.client.DHTClient;
+import com.ms.silverking.cloud.dht.client.FailureCause;
 import com.ms.silverking.cloud.dht.client.Namespace;
+import com.ms.silverking.cloud.dht.client.OperationState;
 import com.ms.silverking.cloud.dht.client.PutException;
 import com.ms.silverking.cloud.dht.client.SessionClosedException;
 import com.ms.silverking.cloud.dht.client.VersionProvider;
 import com.ms.silverking.cloud.dht.client.impl.ClientNamespace.OpLWTMode;
 import com.ms.silverking.cloud.dht.client.serialization.BufferDestSerializer;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.cloud.dht.net.ProtoPutMessageGroup;
+import com.ms.silverking.cloud.dht.net.protocol.AtomicUpdateMessageFormat;
+import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.io.util.BufferUtil;
 import com.ms.silverking.time.AbsMillisTimeSource;
 
 class BaseNamespacePerspectiveImpl<K, V> implements BaseNamespacePerspective<K, V> {
@@ -97,10 +109,7 @@ public AsyncRetrieval<K, V> baseRetrieve(Set<? extends K> keys, RetrievalOptions
       OpLWTMode opLWTMode) {
     AsyncRetrievalOperationImpl<K, V> opImpl;
 
-    clientNamespace.validateOpOptions(retrievalOptions);
-    opImpl = new AsyncRetrievalOperationImpl(new RetrievalOperation<>(clientNamespace, keys, retrievalOptions),
-        clientNamespace, nspoImpl, clientNamespace.getAbsMillisTimeSource().absTimeMillis(),
-        clientNamespace.getOriginator());
+    opImpl = newRetrievalOperation(keys, retrievalOptions);
     try {
       clientNamespace.startOperation(opImpl, opLWTMode);
     } catch (SessionClosedException ex) {
@@ -109,6 +118,20 @@ public AsyncRetrieval<K, V> baseRetrieve(Set<? extends K> keys, RetrievalOptions
     return opImpl;
   }
 
+  /**
+   * Create, but do not start, a retrieval
+   */
+  AsyncRetrievalOperationImpl<K, V> newRetrievalOperation(Set<? extends K> keys, RetrievalOptions retrievalOptions) {
+    clientNamespace.validateOpOptions(retrievalOptions);
+    return new AsyncRetrievalOperationImpl(new RetrievalOperation<>(clientNamespace, keys, retrievalOptions),
+        clientNamespace, nspoImpl, clientNamespace.getAbsMillisTimeSource().absTimeMillis(),
+        clientNamespace.getOriginator());
+  }
+
+  ClientNamespace getClientNamespace() {
+    return clientNamespace;
+  }
+
   // writes
 
   public AsyncPut<K> basePut(Map<? extends K, ? extends V> values, PutOptions putOptions,
@@ -161,6 +184,68 @@ public AsyncInvalidation<K> baseInvalidation(Set<? extends K> keys, Invalidation
     return (AsyncInvalidation<K>) basePut(values.build(), invalidationOptions, null, oplwtmode);
   }
 
+  // atomic updates
+
+  public void baseUpdate(K key, AtomicUpdate<V> update, PutOptions putOptions) throws PutException {
+    DHTKey dhtKey;
+    ByteBuffer record;
+    ProtoPutMessageGroup<V> protoMG;
+    long version;
+    int timeoutMillis;
+    OpResult result;
+
+    if (nspoImpl.getNSPOptions().getEncrypterDecrypter() != null) {
+      // the server cannot read encrypted values
+      throw new IllegalArgumentException("Atomic updates are not supported with encryption");
+    }
+    clientNamespace.validateOpOptions(putOptions);
+    clientNamespace.validatePutOptions(putOptions);
+    dhtKey = nspoImpl.getKeyCreator().createKey(key);
+    record = createUpdateRecord(update);
+    version = putOptions.getVersion();
+    if (version == PutOptions.defaultVersion) {
+      version = nspoImpl.getNSPOptions().getDefaultVersionProvider().getVersion();
+    }
+    putOptions = putOptions.version(version).compression(Compression.NONE);
+    // an update is a single request, so it is given the maximum timeout of the operation
+    timeoutMillis = putOptions.getOpTimeoutController().getMaxRelativeTimeoutMillis(null);
+    protoMG = new ProtoPutMessageGroup<>(UUIDBase.random(), clientNamespace.getContext().contextAsLong(), 1,
+        record.remaining(), version, putOptions, putOptions.getChecksumType(), clientNamespace.getOriginator(),
+        DHTClient.getValueCreator().getBytes(), timeoutMillis);
+    protoMG.addValueDedicated(dhtKey, record);
+    try {
+      result = clientNamespace.sendAtomicUpdate(protoMG, dhtKey, timeoutMillis);
+    } catch (SessionClosedException sce) {
+      result = SESSION_CLOSED;
+    }
+    if (result != OpResult.SUCCEEDED) {
+      throw new PutExceptionImpl(ImmutableMap.<Object, OperationState>of(key, result.toOperationState()),
+          ImmutableMap.<Object, FailureCause>of(key, result.toFailureCause()));
+    }
+  }
+
+  private ByteBuffer createUpdateRecord(AtomicUpdate<V> update) {
+    BufferDestSerializer<V> serializer;
+
+    serializer = nspoImpl.getValueSerializer();
+    switch (update.getType()) {
+    case CompareAndSet:
+      return AtomicUpdateMessageFormat.createCompareAndSetValue(
+          update.getExpectedValue() != null ? BufferUtil.arrayCopy(serializer.serializeToBuffer(
+              update.getExpectedValue())) : null, serializer.serializeToBuffer(update.getValue()));
+    case CompareAndSetChecksum:
+      return AtomicUpdateMessageFormat.createCompareAndSetChecksum(update.getExpectedChecksum(),
+          serializer.serializeToBuffer(update.getValue()));
+    case Add:
+      return AtomicUpdateMessageFormat.createAdd(update.getDelta());
+    case Append:
+      return AtomicUpdateMessageFormat.createAppend(serializer.serializeToBuffer(update.getValue()),
+          update.getMaxLength());
+    default:
+      throw new RuntimeException("Panic");
+    }
+  }
+
   // snapshots
 
   protected AsyncSnapshot baseSnapshot(long version,
@@ -0,0 +1,149 @@
+package com.ms.silverking.cloud.dht.client.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.ms.silverking.cloud.dht.NamespaceOptions;
+import com.ms.silverking.cloud.dht.client.BulkLoadException;
+import com.ms.silverking.cloud.dht.client.BulkLoadPartition;
+import com.ms.silverking.cloud.dht.client.BulkLoader;
+import com.ms.silverking.cloud.dht.client.KeyScanException;
+import com.ms.silverking.cloud.dht.client.KeyScanOptions;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.KeyUtil;
+import com.ms.silverking.cloud.dht.common.NamespaceUtil;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.cloud.dht.common.SimpleValueCreator;
+import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
+import com.ms.silverking.cloud.dht.daemon.storage.BulkSegmentWriter;
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.io.FileUtil;
+import com.ms.silverking.net.IPAndPort;
+
+/**
+ * BulkLoader implementation. Regions and their replicas are read once, when the loader is opened, using
+ * the same request that partitions a key scan. Each region is written by its own BulkSegmentWriter into
+ * &lt;outputDir&gt;/&lt;namespace directory&gt;/&lt;region start&gt;_&lt;region end&gt;/, which also
+ * receives a file listing the region's primary replicas.
+ */
+class BulkLoaderImpl<K, V> implements BulkLoader<K, V> {
+  private final NamespacePerspectiveOptionsImpl<K, V> nspoImpl;
+  private final NamespaceOptions nsOptions;
+  private final File nsOutputDir;
+  private final Map<RingRegion, List<IPAndPort>> regions;
+  private final TreeMap<Long, RingRegion> regionsByStart;
+  private final Map<RingRegion, BulkSegmentWriter> writers;
+  private final byte[] valueCreator;
+  private final long version;
+  private final long creationTime;
+  private boolean closed;
+
+  static final String replicasFileName = "replicas";
+
+  BulkLoaderImpl(ClientNamespace namespace, NamespacePerspectiveOptionsImpl<K, V> nspoImpl, File outputDir)
+      throws BulkLoadException {
+    if (nspoImpl.getNSPOptions().getEncrypterDecrypter() != null) {
+      throw new BulkLoadException("Bulk loads do not support encryption");
+    }
+    this.nspoImpl = nspoImpl;
+    nsOptions = namespace.getOptions();
+    if (!nsOptions.getStorageType().isFileBased()) {
+      throw new BulkLoadException("Bulk loads require a file-based namespace: " + nsOptions.getStorageType());
+    }
+    nsOutputDir = new File(outputDir, NamespaceUtil.nameToDirName(namespace.getName()));
+    try {
+      regions = new KeyScannerImpl<>(namespace, nspoImpl, KeyScanOptions.defaultOptions).getRegions(true);
+    } catch (KeyScanException kse) {
+      throw new BulkLoadException("Unable to read regions", kse);
+    }
+    regionsByStart = new TreeMap<>();
+    for (RingRegion region : regions.keySet()) {
+      regionsByStart.put(region.getStart(), region);
+    }
+    writers = new HashMap<>();
+    valueCreator = SimpleValueCreator.forLocalProcess().getBytes();
+    version = nspoImpl.getNSPOptions().getDefaultVersionProvider().getVersion();
+    creationTime = SystemTimeUtil.skSystemTimeSource.absTimeNanos();
+  }
+
+  @Override
+  public synchronized void put(K key, V value) throws BulkLoadException {
+    DHTKey dhtKey;
+    ByteBuffer serializedValue;
+    OpResult result;
+
+    if (closed) {
+      throw new BulkLoadException("Loader is closed");
+    }
+    dhtKey = nspoImpl.getKeyCreator().createKey(key);
+    serializedValue = nspoImpl.getValueSerializer().serializeToBuffer(value);
+    try {
+      result = getWriter(regionFor(dhtKey)).put(dhtKey, serializedValue, version, creationTime);
+    } catch (IOException | IllegalArgumentException e) {
+      throw new BulkLoadException("Unable to write " + key, e);
+    }
+    if (result != OpResult.SUCCEEDED) {
+      throw new BulkLoadException("Unable to write " + key + ": " + result);
+    }
+  }
+
+  private RingRegion regionFor(DHTKey dhtKey) throws BulkLoadException {
+    long coordinate;
+    Map.Entry<Long, RingRegion> entry;
+
+    coordinate = KeyUtil.keyToCoordinate(dhtKey);
+    entry = regionsByStart.floorEntry(coordinate);
+    if (entry == null || !entry.getValue().contains(coordinate)) {
+      // only a region that wraps around the end of the ring can hold the coordinate
+      entry = regionsByStart.lastEntry();
+    }
+    if (entry == null || !entry.getValue().contains(coordinate)) {
+      throw new BulkLoadException("No region for " + KeyUtil.keyToString(dhtKey));
+    }
+    return entry.getValue();
+  }
+
+  private BulkSegmentWriter getWriter(RingRegion region) throws IOException {
+    BulkSegmentWriter writer;
+
+    writer = writers.get(region);
+    if (writer == null) {
+      writer = new BulkSegmentWriter(partitionDir(region), nsOptions, valueCreator);
+      writers.put(region, writer);
+    }
+    return writer;
+  }
+
+  private File partitionDir(RingRegion region) {
+    return new File(nsOutputDir, region.getStart() + "_" + region.getEnd());
+  }
+
+  @Override
+  public synchronized List<BulkLoadPartition> close() throws BulkLoadException {
+    List<BulkLoadPartition> partitions;
+
+    closed = true;
+    partitions = new ArrayList<>(writers.size());
+    for (Map.Entry<RingRegion, BulkSegmentWriter> entry : writers.entrySet()) {
+      File partitionDir;
+      List<IPAndPort> replicas;
+
+      partitionDir = partitionDir(entry.getKey());
+      replicas = regions.get(entry.getKey());
+      try {
+        entry.getValue().close();
+        FileUtil.writeToFile(new File(partitionDir, replicasFileName), replicas);
+      } catch (IOException ioe) {
+        throw new BulkLoadException("Unable to persist " + partitionDir, ioe);
+      }
+      partitions.add(new BulkLoadPartition(partitionDir, replicas, entry.getValue().getNumValues()));
+    }
+    return partitions;
+  }
+}
@@ -1,6 +1,13 @@
 package com.ms.silverking.cloud.dht.client.impl;
 
+import java.io.File;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
 import com.ms.silverking.cloud.dht.NamespaceOptions;
@@ -11,8 +18,13 @@
 import com.ms.silverking.cloud.dht.client.AbsMillisVersionProvider;
 import com.ms.silverking.cloud.dht.client.AbsNanosVersionProvider;
 import com.ms.silverking.cloud.dht.client.AsynchronousNamespacePerspective;
+import com.ms.silverking.cloud.dht.client.BulkLoadException;
+import com.ms.silverking.cloud.dht.client.BulkLoader;
 import com.ms.silverking.cloud.dht.client.ConstantVersionProvider;
 import com.ms.silverking.cloud.dht.client.KeyDigestType;
+import com.ms.silverking.cloud.dht.client.KeyScanException;
+import com.ms.silverking.cloud.dht.client.KeyScanOptions;
+import com.ms.silverking.cloud.dht.client.KeyScanner;
 import com.ms.silverking.cloud.dht.client.Namespace;
 import com.ms.silverking.cloud.dht.client.NamespaceCreationException;
 import com.ms.silverking.cloud.dht.client.NamespaceLinkException;
@@ -23,13 +35,23 @@
 import com.ms.silverking.cloud.dht.client.serialization.SerializationRegistry;
 import com.ms.silverking.cloud.dht.common.Context;
 import com.ms.silverking.cloud.dht.common.DHTConstants;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.EnumValues;
+import com.ms.silverking.cloud.dht.common.KeyUtil;
+import com.ms.silverking.cloud.dht.common.MessageType;
 import com.ms.silverking.cloud.dht.common.NamespaceProperties;
+import com.ms.silverking.cloud.dht.common.OpResult;
 import com.ms.silverking.cloud.dht.common.OptionsValidator;
 import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
 import com.ms.silverking.cloud.dht.daemon.storage.NamespaceNotCreatedException;
 import com.ms.silverking.cloud.dht.net.MessageGroup;
 import com.ms.silverking.cloud.dht.net.MessageGroupBase;
 import com.ms.silverking.cloud.dht.net.MessageGroupConnection;
+import com.ms.silverking.cloud.dht.net.MessageGroupKeyOrdinalEntry;
+import com.ms.silverking.cloud.dht.net.ProtoKeyScanMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoPutMessageGroup;
+import com.ms.silverking.id.UUIDBase;
 import com.ms.silverking.log.Log;
 import com.ms.silverking.net.AddrAndPort;
 import com.ms.silverking.net.async.QueueingConnectionLimitListener;
@@ -42,6 +64,7 @@ public class ClientNamespace implements QueueingConnectionLimitListener, Namespa
   private final Context context;
   private final ActiveClientOperationTable activeOpTable;
   private final AbsMillisTimeSource absMillisTimeSource;
+  private final OpLatencyTracker[] latencyTrackers; // indexed by ClientOpType ordinal
   private final OpSender opSender;
   private final OpSender putSender;
   private final OpSender retrievalSender;
@@ -49,6 +72,9 @@ public class ClientNamespace implements QueueingConnectionLimitListener, Namespa
   private final SerializationRegistry serializationRegistry;
   private final Namespace parent;
   private final NamespaceLinkMeta nsLinkMeta;
+  private final AddrAndPort server;
+  // requests that are answered by a single response message: key scans and atomic updates
+  private final ConcurrentMap<UUIDBase, CompletableFuture<MessageGroup>> activeRequests;
 
   protected enum OpLWTMode {
     AllowUserThreadUsage, DisallowUserThreadUsage;
@@ -91,14 +117,21 @@ public int getDirectCallDepth() {
     this.nsOptions = nsOptions;
     this.serializationRegistry = serializationRegistry;
     this.absMillisTimeSource = absMillisTimeSource;
+    latencyTrackers = new OpLatencyTracker[ClientOpType.values().length];
+    for (int i = 0; i < latencyTrackers.length; i++) {
+      latencyTrackers[i] = new OpLatencyTracker(absMillisTimeSource);
+    }
     context = new SimpleNamespaceCreator().createNamespace(name);
     activeOpTable = new ActiveClientOperationTable();
     opSender = new OpSender(server, mgBase);
-    putSender = new OpSender(server, mgBase);
+    putSender = new OpSender(server, mgBase, session.getPutCoalescingWindowMicros(),
+        session.getPutCoalescingMaxBytes());
     retrievalSender = new OpSender(server, mgBase);
     originator = mgBase.getMyID();
     this.parent = parent;
     this.nsLinkMeta = nsLinkMeta;
+    this.server = server;
+    activeRequests = new ConcurrentHashMap<>();
     if (nsOptions.getVersionMode() != NamespaceVersionMode.SINGLE_VERSION || !nsOptions.getAllowLinks()) {
       assert nsLinkMeta == null;
     }
@@ -153,6 +186,10 @@ public <K, V> NamespacePerspectiveOptions<K, V> getDefaultNSPOptions(Class<K> ke
         nsOptions.getDefaultWaitOptions(), versionProvider, null);
   }
 
+  AddrAndPort getServer() {
+    return server;
+  }
+
   DHTSessionImpl getSession() {
     return session;
   }
@@ -161,6 +198,13 @@ public AbsMillisTimeSource getAbsMillisTimeSource() {
     return absMillisTimeSource;
   }
 
+  /**
+   * @return the tracker of this session's recent latencies for the given type of operation in this namespace
+   */
+  OpLatencyTracker getLatencyTracker(ClientOpType opType) {
+    return latencyTrackers[opType.ordinal()];
+  }
+
   public byte[] getOriginator() {
     return originator;
   }
@@ -201,9 +245,11 @@ public <K, V> void startOperation(AsyncOperationImpl opImpl, OpLWTMode opLWTMode
     switch (opImpl.getType()) {
     case RETRIEVE:
       retrievalSender.addWorkForGrouping(opImpl, opLWTMode.getDirectCallDepth());
+      activeOpTable.scheduleTimeout(opImpl, retrievalSender);
       break;
     case PUT:
       putSender.addWorkForGrouping(opImpl, opLWTMode.getDirectCallDepth());
+      activeOpTable.scheduleTimeout(opImpl, putSender);
       break;
     default:
       opSender.addWorkForGrouping(opImpl, 0);
@@ -211,6 +257,15 @@ public <K, V> void startOperation(AsyncOperationImpl opImpl, OpLWTMode opLWTMode
     }
   }
 
+  /**
+   * Start a retrieval whose initial messages are sent by the caller (see RetrievalBatchImpl). Timeouts, and
+   * hence retries, are handled as for any other retrieval.
+   */
+  void startBatchedRetrieval(AsyncRetrievalOperationImpl<?, ?> opImpl) throws SessionClosedException {
+    session.assertOpen();
+    activeOpTable.scheduleTimeout(opImpl, retrievalSender);
+  }
+
   // receive
 
   public void receive(MessageGroup message, MessageGroupConnection connection) {
@@ -221,6 +276,10 @@ public void receive(MessageGroup message, MessageGroupConnection connection) {
     }
     switch (message.getMessageType()) {
     case PUT_RESPONSE:
+      if (!receivedRequestResponse(message)) {
+        activeOpTable.getActivePutListeners().receivedPutResponse(message);
+      }
+      break;
     case PUT_RESPONSE_TRACE:
       activeOpTable.getActivePutListeners().receivedPutResponse(message);
       break;
@@ -238,6 +297,13 @@ public void receive(MessageGroup message, MessageGroupConnection connection) {
         activeOpTable.getActiveRetrievalListeners().receivedRetrievalResponse(message);
       } else if (activeOpTable.getActivePutListeners().isResponsibleFor(message.getUUID())) {
         activeOpTable.getActivePutListeners().receivedPutResponse(message);
+      } else if (!receivedRequestResponse(message)) {
+        Log.info("Ignoring error response: ", message.getUUID());
+      }
+      break;
+    case KEY_SCAN_RESPONSE:
+      if (!receivedRequestResponse(message)) {
+        Log.info("Ignoring key scan response: ", message.getUUID());
       }
       break;
     case CHECKSUM_TREE: // FUTURE - for testing, consider removing
@@ -248,6 +314,87 @@ public void receive(MessageGroup message, MessageGroupConnection connection) {
     }
   }
 
+  /**
+   * @return true if the message answered an active request
+   */
+  private boolean receivedRequestResponse(MessageGroup message) {
+    CompletableFuture<MessageGroup> response;
+
+    response = activeRequests.get(message.getUUID());
+    if (response != null) {
+      response.complete(message.ensureArrayBacked());
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Send a request that is answered by a single response message and wait for the response
+   *
+   * @return the response, or null if no response arrived before the timeout
+   */
+  private MessageGroup sendRequest(ProtoMessageGroup protoMG, AddrAndPort dest, long timeoutMillis)
+      throws SessionClosedException, InterruptedException, ExecutionException {
+    CompletableFuture<MessageGroup> response;
+
+    response = new CompletableFuture<>();
+    activeRequests.put(protoMG.getUUID(), response);
+    try {
+      session.assertOpen();
+      session.getMessageGroupBase().send(protoMG.toMessageGroup(), dest);
+      return response.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException te) {
+      return null;
+    } finally {
+      activeRequests.remove(protoMG.getUUID());
+    }
+  }
+
+  /**
+   * Send a key scan request and wait for its response
+   *
+   * @return the response, or null if no response arrived before the timeout
+   */
+  MessageGroup sendKeyScanRequest(ProtoKeyScanMessageGroup protoMG, AddrAndPort dest, long timeoutMillis)
+      throws KeyScanException {
+    try {
+      return sendRequest(protoMG, dest, timeoutMillis);
+    } catch (SessionClosedException | InterruptedException | ExecutionException e) {
+      throw new KeyScanException(e);
+    }
+  }
+
+  /**
+   * Send a PUT_ATOMIC message to the server and wait for the result of its single key. Updates are not
+   * retried as a retry could apply an update twice.
+   *
+   * @return the result, or TIMEOUT if no result arrived before the timeout
+   */
+  OpResult sendAtomicUpdate(ProtoPutMessageGroup<?> protoMG, DHTKey key, long timeoutMillis)
+      throws SessionClosedException {
+    MessageGroup response;
+
+    try {
+      response = sendRequest(protoMG, server, timeoutMillis);
+    } catch (InterruptedException | ExecutionException e) {
+      Log.logErrorWarning(e);
+      return OpResult.ERROR;
+    }
+    if (response == null) {
+      return OpResult.TIMEOUT;
+    } else if (response.getMessageType() != MessageType.PUT_RESPONSE) {
+      return OpResult.ERROR;
+    } else {
+      for (MessageGroupKeyOrdinalEntry entry : response.getKeyOrdinalIterator()) {
+        if (KeyUtil.equal(entry.getKey(), key)) {
+          return EnumValues.opResult[entry.getOrdinal()];
+        }
+      }
+      return OpResult.ERROR;
+    }
+  }
+
   void checkForTimeouts(long curTimeMillis, boolean exclusionSetHasChanged) {
     Log.info("checkForTimeouts: ", name);
     activeOpTable.checkForTimeouts(curTimeMillis, opSender, putSender, retrievalSender, exclusionSetHasChanged);
@@ -293,6 +440,24 @@ public SynchronousNamespacePerspective<String, byte[]> openSyncPerspective() {
     return openSyncPerspective(DHTConstants.defaultKeyClass, DHTConstants.defaultValueClass);
   }
 
+  @Override
+  public <V> KeyScanner<V> openKeyScanner(Class<V> valueClass, KeyScanOptions options) {
+    return new KeyScannerImpl<>(this, new NamespacePerspectiveOptionsImpl<>(
+        getDefaultNSPOptions(DHTConstants.defaultKeyClass, valueClass), serializationRegistry), options);
+  }
+
+  @Override
+  public KeyScanner<byte[]> openKeyScanner() {
+    return openKeyScanner(DHTConstants.defaultValueClass, KeyScanOptions.defaultOptions);
+  }
+
+  @Override
+  public <K, V> BulkLoader<K, V> openBulkLoader(Class<K> keyClass, Class<V> valueClass, File outputDir)
+      throws BulkLoadException {
+    return new BulkLoaderImpl<>(this, new NamespacePerspectiveOptionsImpl<>(
+        getDefaultNSPOptions(keyClass, valueClass), serializationRegistry), outputDir);
+  }
+
   // misc.
 
   @Override
@@ -13,12 +13,14 @@
 import java.util.logging.Level;
 
 import com.google.common.base.Preconditions;
+import com.ms.silverking.cloud.dht.ConnectionAssignmentPolicy;
 import com.ms.silverking.cloud.dht.GetOptions;
 import com.ms.silverking.cloud.dht.NamespaceCreationOptions;
 import com.ms.silverking.cloud.dht.NamespaceOptions;
 import com.ms.silverking.cloud.dht.NamespacePerspectiveOptions;
 import com.ms.silverking.cloud.dht.NamespaceVersionMode;
 import com.ms.silverking.cloud.dht.PutOptions;
+import com.ms.silverking.cloud.dht.SessionOptions;
 import com.ms.silverking.cloud.dht.SessionPolicyOnDisconnect;
 import com.ms.silverking.cloud.dht.WaitOptions;
 import com.ms.silverking.cloud.dht.client.AsyncSingleValueRetrieval;
@@ -31,6 +33,7 @@
 import com.ms.silverking.cloud.dht.client.NamespaceDeletionException;
 import com.ms.silverking.cloud.dht.client.NamespaceModificationException;
 import com.ms.silverking.cloud.dht.client.NamespaceRecoverException;
+import com.ms.silverking.cloud.dht.client.RetrievalBatch;
 import com.ms.silverking.cloud.dht.client.RetrievalException;
 import com.ms.silverking.cloud.dht.client.SessionClosedException;
 import com.ms.silverking.cloud.dht.client.SessionEstablishmentTimeoutController;
@@ -83,6 +86,11 @@ public class DHTSessionImpl implements DHTSession, MessageGroupReceiver, Queuein
   private final NamespaceOptionsMode nsOptionsMode;
   private final NamespaceOptionsClientCS nsOptionsClient;
   private final boolean enableMsgGroupTrace;
+  private final int connectionsPerServer;
+  private final int numSelectorControllers;
+  private final ConnectionAssignmentPolicy connectionAssignmentPolicy;
+  private final int putCoalescingWindowMicros;
+  private final int putCoalescingMaxBytes;
 
   private NamespaceLinkMeta nsLinkMeta;
   private SafeTimerTask timeoutCheckTask;
@@ -123,19 +131,45 @@ public class DHTSessionImpl implements DHTSession, MessageGroupReceiver, Queuein
 
   private static final int connectionQueueLimit = 0;
 
-  private static final int numSelectorControllers = 1;
   private static final String selectorControllerClass = "DHTSessionImpl";
 
   public DHTSessionImpl(ClientDHTConfiguration dhtConfig, AddrAndPort server, AbsMillisTimeSource absMillisTimeSource,
       SerializationRegistry serializationRegistry, SessionEstablishmentTimeoutController timeoutController,
       NamespaceOptionsMode nsOptionsMode, boolean enableMsgGroupTrace, IPAliasMap aliasMap,
       SessionPolicyOnDisconnect onDisconnect) throws IOException, AuthFailedException {
+    this(dhtConfig, server, absMillisTimeSource, serializationRegistry, timeoutController, nsOptionsMode,
+        enableMsgGroupTrace, aliasMap, onDisconnect, SessionOptions.defaultConnectionsPerServer,
+        SessionOptions.defaultNumSelectorControllers, SessionOptions.defaultConnectionAssignmentPolicy);
+  }
+
+  public DHTSessionImpl(ClientDHTConfiguration dhtConfig, AddrAndPort server, AbsMillisTimeSource absMillisTimeSource,
+      SerializationRegistry serializationRegistry, SessionEstablishmentTimeoutController timeoutController,
+      NamespaceOptionsMode nsOptionsMode, boolean enableMsgGroupTrace, IPAliasMap aliasMap,
+      SessionPolicyOnDisconnect onDisconnect, int connectionsPerServer, int numSelectorControllers,
+      ConnectionAssignmentPolicy connectionAssignmentPolicy) throws IOException, AuthFailedException {
+    this(dhtConfig, server, absMillisTimeSource, serializationRegistry, timeoutController, nsOptionsMode,
+        enableMsgGroupTrace, aliasMap, onDisconnect, connectionsPerServer, numSelectorControllers,
+        connectionAssignmentPolicy, SessionOptions.defaultPutCoalescingWindowMicros,
+        SessionOptions.defaultPutCoalescingMaxBytes);
+  }
+
+  public DHTSessionImpl(ClientDHTConfiguration dhtConfig, AddrAndPort server, AbsMillisTimeSource absMillisTimeSource,
+      SerializationRegistry serializationRegistry, SessionEstablishmentTimeoutController timeoutController,
+      NamespaceOptionsMode nsOptionsMode, boolean enableMsgGroupTrace, IPAliasMap aliasMap,
+      SessionPolicyOnDisconnect onDisconnect, int connectionsPerServer, int numSelectorControllers,
+      ConnectionAssignmentPolicy connectionAssignmentPolicy, int putCoalescingWindowMicros,
+      int putCoalescingMaxBytes) throws IOException, AuthFailedException {
 
     this.dhtConfig = dhtConfig;
     this.absMillisTimeSource = absMillisTimeSource;
     this.serializationRegistry = serializationRegistry;
     this.nsOptionsMode = nsOptionsMode;
     this.enableMsgGroupTrace = enableMsgGroupTrace;
+    this.connectionsPerServer = connectionsPerServer;
+    this.numSelectorControllers = numSelectorControllers;
+    this.connectionAssignmentPolicy = connectionAssignmentPolicy;
+    this.putCoalescingWindowMicros = putCoalescingWindowMicros;
+    this.putCoalescingMaxBytes = putCoalescingMaxBytes;
 
     clientNamespaces = new ConcurrentHashMap<>();
     clientNamespaceList = new CopyOnWriteArrayList<>();
@@ -196,7 +230,16 @@ protected MessageGroupBase buildMessageGroupBase(SessionEstablishmentTimeoutCont
       IPAliasMap aliasMap, SessionPolicyOnDisconnect onDisconnect) throws IOException {
     return MessageGroupBase.newClientMessageGroupBase(0, this, absMillisTimeSource,
         new NewConnectionTimeoutControllerWrapper(timeoutController), this, connectionQueueLimit,
-        numSelectorControllers, selectorControllerClass, aliasMap, onDisconnect);
+        numSelectorControllers, selectorControllerClass, aliasMap, onDisconnect, connectionsPerServer,
+        connectionAssignmentPolicy);
+  }
+
+  int getPutCoalescingWindowMicros() {
+    return putCoalescingWindowMicros;
+  }
+
+  int getPutCoalescingMaxBytes() {
+    return putCoalescingMaxBytes;
   }
 
   MessageGroupBase getMessageGroupBase() {
@@ -518,6 +561,11 @@ public SynchronousNamespacePerspective<String, byte[]> openSyncNamespacePerspect
     return openSyncNamespacePerspective(namespace, DHTConstants.defaultKeyClass, DHTConstants.defaultValueClass);
   }
 
+  @Override
+  public RetrievalBatch newRetrievalBatch() {
+    return new RetrievalBatchImpl(this);
+  }
+
   @Override
   public void close() {
     mgBase.shutdown();
@@ -0,0 +1,263 @@
+package com.ms.silverking.cloud.dht.client.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.ms.silverking.cloud.dht.RetrievalType;
+import com.ms.silverking.cloud.dht.client.KeyScanCursor;
+import com.ms.silverking.cloud.dht.client.KeyScanEntry;
+import com.ms.silverking.cloud.dht.client.KeyScanException;
+import com.ms.silverking.cloud.dht.client.KeyScanOptions;
+import com.ms.silverking.cloud.dht.client.KeyScanPage;
+import com.ms.silverking.cloud.dht.client.KeyScanner;
+import com.ms.silverking.cloud.dht.client.StoredValue;
+import com.ms.silverking.cloud.dht.common.CorruptValueException;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.MessageType;
+import com.ms.silverking.cloud.dht.common.MetaDataUtil;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.cloud.dht.common.RawRetrievalResult;
+import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
+import com.ms.silverking.cloud.dht.net.MessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoKeyScanMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoKeyScanResponseMessageGroup;
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.net.IPAndPort;
+import com.ms.silverking.thread.ThreadUtil;
+
+/**
+ * KeyScanner implementation. Partitions are obtained from the session's server. Each page is requested from
+ * the first replica of its region that responds, starting with the replica that served the previous page;
+ * a replica that times out is skipped for the rest of the page. Positions are local to a replica, so a
+ * page served by any other replica restarts the partition. A server that is at its scan limit returns an
+ * empty, incomplete page, which is retried after a short delay until the page's timeout expires.
+ */
+class KeyScannerImpl<V> implements KeyScanner<V> {
+  private final ClientNamespace namespace;
+  private final NamespacePerspectiveOptionsImpl<?, V> nspoImpl;
+  private final KeyScanOptions options;
+  private volatile Map<RingRegion, List<IPAndPort>> regions;
+
+  private static final int busyRetryDelayMillis = 100;
+
+  KeyScannerImpl(ClientNamespace namespace, NamespacePerspectiveOptionsImpl<?, V> nspoImpl,
+      KeyScanOptions options) {
+    this.namespace = namespace;
+    this.nspoImpl = nspoImpl;
+    this.options = options;
+  }
+
+  @Override
+  public List<KeyScanCursor> getPartitions() throws KeyScanException {
+    List<KeyScanCursor> partitions;
+
+    partitions = new ArrayList<>();
+    for (RingRegion region : getRegions(true).keySet()) {
+      partitions.add(new KeyScanCursor(region.getStart(), region.getEnd()));
+    }
+    return partitions;
+  }
+
+  Map<RingRegion, List<IPAndPort>> getRegions(boolean refresh) throws KeyScanException {
+    if (regions == null || refresh) {
+      ProtoKeyScanMessageGroup protoMG;
+      MessageGroup response;
+
+      protoMG = new ProtoKeyScanMessageGroup(UUIDBase.random(), namespace.getContext().contextAsLong(),
+          namespace.getOriginator(), (int) options.getTimeoutMillis());
+      response = namespace.sendKeyScanRequest(protoMG, namespace.getServer(), options.getTimeoutMillis());
+      if (response == null) {
+        throw new KeyScanException("Timed out reading key scan partitions from " + namespace.getServer());
+      }
+      checkResponse(response);
+      regions = ProtoKeyScanResponseMessageGroup.getRegions(response);
+    }
+    return regions;
+  }
+
+  private void checkResponse(MessageGroup response) throws KeyScanException {
+    if (response.getMessageType() != MessageType.KEY_SCAN_RESPONSE) {
+      throw new KeyScanException("Key scan failed: " + response.getMessageType());
+    }
+  }
+
+  @Override
+  public KeyScanPage<V> scan(KeyScanCursor cursor) throws KeyScanException {
+    RingRegion region;
+    List<IPAndPort> replicas;
+    long deadline;
+    int replicaIndex;
+
+    region = new RingRegion(cursor.getRegionStart(), cursor.getRegionEnd());
+    replicas = getRegions(false).get(region);
+    if (replicas == null) {
+      // the ring may have changed since the partitions were read
+      replicas = getRegions(true).get(region);
+      if (replicas == null) {
+        throw new KeyScanException("Region is not in the current ring: " + region);
+      }
+    }
+    if (replicas.isEmpty()) {
+      throw new KeyScanException("No replicas for region: " + region);
+    }
+    if (cursor.getReplica() != null && replicas.contains(cursor.getReplica())) {
+      replicas = new ArrayList<>(replicas);
+      replicas.remove(cursor.getReplica());
+      replicas.add(0, cursor.getReplica());
+    }
+    deadline = SystemTimeUtil.skSystemTimeSource.absTimeMillis() + options.getTimeoutMillis();
+    replicaIndex = 0;
+    while (true) {
+      ProtoKeyScanMessageGroup protoMG;
+      MessageGroup response;
+      long timeRemaining;
+      IPAndPort replica;
+      KeyScanCursor replicaCursor;
+
+      timeRemaining = deadline - SystemTimeUtil.skSystemTimeSource.absTimeMillis();
+      if (timeRemaining <= 0 || replicaIndex >= replicas.size()) {
+        throw new KeyScanException("Timed out scanning " + cursor);
+      }
+      replica = replicas.get(replicaIndex);
+      replicaCursor = replica.equals(cursor.getReplica()) ? cursor : cursor.getPartition();
+      protoMG = new ProtoKeyScanMessageGroup(UUIDBase.random(), namespace.getContext().contextAsLong(),
+          namespace.getOriginator(), (int) timeRemaining, region, replicaCursor.getSegmentNumber(),
+          replicaCursor.getTableIndex(), replicaCursor.getResumeKey(), options.getPageSize(),
+          options.getIncludeValues());
+      response = namespace.sendKeyScanRequest(protoMG, replica, timeRemaining);
+      if (response == null) {
+        ++replicaIndex;
+      } else {
+        checkResponse(response);
+        if (ProtoKeyScanResponseMessageGroup.getNumEntries(response) > 0
+            || ProtoKeyScanResponseMessageGroup.isComplete(response)) {
+          return toPage(cursor, replica, response);
+        } else {
+          // the server is at its scan limit
+          ThreadUtil.sleep(busyRetryDelayMillis);
+        }
+      }
+    }
+  }
+
+  private KeyScanPage<V> toPage(KeyScanCursor cursor, IPAndPort replica, MessageGroup response)
+      throws KeyScanException {
+    List<KeyScanEntry<V>> entries;
+    int numEntries;
+
+    numEntries = ProtoKeyScanResponseMessageGroup.getNumEntries(response);
+    entries = new ArrayList<>(numEntries);
+    for (int i = 0; i < numEntries; i++) {
+      DHTKey key;
+      ByteBuffer value;
+
+      key = ProtoKeyScanResponseMessageGroup.getKey(response, i);
+      value = ProtoKeyScanResponseMessageGroup.getValue(response, i);
+      if (value == null) {
+        if (!options.getIncludeValues()) {
+          entries.add(new KeyScanEntry<>(key, null));
+        }
+        // else the value was removed after the key was scanned
+      } else if (MetaDataUtil.isSegmented(value)) {
+        // fragmented values are not reassembled by a scan
+        entries.add(new KeyScanEntry<>(key, null));
+      } else {
+        StoredValue<V> storedValue;
+
+        storedValue = toStoredValue(key, value);
+        if (storedValue != null) {
+          entries.add(new KeyScanEntry<>(key, storedValue));
+        }
+      }
+    }
+    if (ProtoKeyScanResponseMessageGroup.isComplete(response)) {
+      return new KeyScanPage<>(entries, null);
+    } else {
+      return new KeyScanPage<>(entries, new KeyScanCursor(cursor.getRegionStart(), cursor.getRegionEnd(), replica,
+          ProtoKeyScanResponseMessageGroup.getNextSegmentNumber(response),
+          ProtoKeyScanResponseMessageGroup.getNextTableIndex(response),
+          ProtoKeyScanResponseMessageGroup.getNextResumeKey(response)));
+    }
+  }
+
+  /**
+   * @return the stored value, or null if the latest value is an invalidation
+   */
+  private StoredValue<V> toStoredValue(DHTKey key, ByteBuffer value) throws KeyScanException {
+    RawRetrievalResult rawResult;
+
+    rawResult = new RawRetrievalResult(RetrievalType.VALUE_AND_META_DATA);
+    try {
+      rawResult.setStoredValue(value, nspoImpl.getNSPOptions().getDefaultGetOptions().getVerifyChecksums(), true,
+          nspoImpl.getNSPOptions().getEncrypterDecrypter());
+    } catch (CorruptValueException cve) {
+      throw new KeyScanException("Corrupt value: " + key, cve);
+    }
+    if (rawResult.getOpResult() != OpResult.SUCCEEDED) {
+      return null;
+    } else {
+      return new RetrievalResult<>(rawResult, nspoImpl.getValueDeserializer());
+    }
+  }
+
+  @Override
+  public Iterator<KeyScanEntry<V>> iterator(KeyScanCursor cursor) {
+    return new ScanIterator(Collections.singletonList(cursor));
+  }
+
+  @Override
+  public Iterator<KeyScanEntry<V>> iterator() throws KeyScanException {
+    return new ScanIterator(getPartitions());
+  }
+
+  /**
+   * Iterates over a list of partitions in turn, reading pages as required
+   */
+  private class ScanIterator implements Iterator<KeyScanEntry<V>> {
+    private final Iterator<KeyScanCursor> partitions;
+    private KeyScanCursor cursor;
+    private Iterator<KeyScanEntry<V>> page;
+
+    ScanIterator(List<KeyScanCursor> partitions) {
+      this.partitions = partitions.iterator();
+      page = Collections.emptyIterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!page.hasNext()) {
+        KeyScanPage<V> nextPage;
+
+        if (cursor == null) {
+          if (partitions.hasNext()) {
+            cursor = partitions.next();
+          } else {
+            return false;
+          }
+        }
+        try {
+          nextPage = scan(cursor);
+        } catch (KeyScanException kse) {
+          throw new RuntimeException(kse);
+        }
+        page = nextPage.getEntries().iterator();
+        cursor = nextPage.getNextCursor();
+      }
+      return true;
+    }
+
+    @Override
+    public KeyScanEntry<V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return page.next();
+    }
+  }
+}
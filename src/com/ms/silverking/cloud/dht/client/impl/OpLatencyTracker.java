@@ -0,0 +1,102 @@
+package com.ms.silverking.cloud.dht.client.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ms.silverking.cloud.dht.client.OpLatencyStats;
+import com.ms.silverking.numeric.LatencyHistogram;
+import com.ms.silverking.time.AbsMillisTimeSource;
+import com.ms.silverking.util.PropertiesHelper;
+
+/**
+ * Tracks the attempt latencies, operations, and retries of one type of operation in one namespace.
+ * All observations are halved every decayIntervalMillis.
+ */
+class OpLatencyTracker implements OpLatencyStats {
+  private final AbsMillisTimeSource absMillisTimeSource;
+  private final LatencyHistogram latencies;
+  private final AtomicLong operations;
+  private final AtomicLong retries;
+  private final AtomicLong lastDecayMillis;
+
+  private static final String decayIntervalMillisProperty = OpLatencyTracker.class.getName() + ".DecayIntervalMillis";
+  private static final int defaultDecayIntervalMillis = 10 * 1000;
+  private static final int decayIntervalMillis;
+
+  static {
+    decayIntervalMillis = PropertiesHelper.systemHelper.getInt(decayIntervalMillisProperty,
+        defaultDecayIntervalMillis);
+  }
+
+  OpLatencyTracker(AbsMillisTimeSource absMillisTimeSource) {
+    this.absMillisTimeSource = absMillisTimeSource;
+    latencies = new LatencyHistogram();
+    operations = new AtomicLong();
+    retries = new AtomicLong();
+    lastDecayMillis = new AtomicLong(absMillisTimeSource.absTimeMillis());
+  }
+
+  long absTimeMillis() {
+    return absMillisTimeSource.absTimeMillis();
+  }
+
+  void recordOperation() {
+    checkForDecay();
+    operations.incrementAndGet();
+  }
+
+  void recordLatency(long latencyMillis) {
+    checkForDecay();
+    latencies.record(latencyMillis);
+  }
+
+  private void checkForDecay() {
+    long curTimeMillis;
+    long _lastDecayMillis;
+
+    curTimeMillis = absMillisTimeSource.absTimeMillis();
+    _lastDecayMillis = lastDecayMillis.get();
+    if (curTimeMillis - _lastDecayMillis >= decayIntervalMillis
+        && lastDecayMillis.compareAndSet(_lastDecayMillis, curTimeMillis)) {
+      latencies.decay();
+      halve(operations);
+      halve(retries);
+    }
+  }
+
+  private static void halve(AtomicLong value) {
+    long v;
+
+    do {
+      v = value.get();
+    } while (!value.compareAndSet(v, v >> 1));
+  }
+
+  @Override
+  public long getNumSamples() {
+    return latencies.getCount();
+  }
+
+  @Override
+  public long getLatencyPercentileMillis(double percentile) {
+    return latencies.getPercentile(percentile);
+  }
+
+  @Override
+  public boolean tryAcquireRetry(double retryRatio, int minRetries) {
+    long _retries;
+
+    checkForDecay();
+    do {
+      _retries = retries.get();
+      if (_retries + 1 > retryRatio * operations.get() + minRetries) {
+        return false;
+      }
+    } while (!retries.compareAndSet(_retries, _retries + 1));
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("operations=%d retries=%d %s", operations.get(), retries.get(), latencies);
+  }
+}
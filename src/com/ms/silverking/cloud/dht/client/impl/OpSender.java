@@ -4,24 +4,47 @@
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import com.ms.silverking.cloud.dht.net.MessageGroup;
 import com.ms.silverking.cloud.dht.net.MessageGroupBase;
 import com.ms.silverking.cloud.dht.net.ProtoMessageGroup;
 import com.ms.silverking.log.Log;
 import com.ms.silverking.net.AddrAndPort;
 import com.ms.silverking.net.async.QueueingConnectionLimitListener;
+import com.ms.silverking.thread.lwt.BaseWorker;
 import com.ms.silverking.thread.lwt.GroupingPausingBaseWorker;
 import com.ms.silverking.thread.lwt.LWTPool;
 import com.ms.silverking.thread.lwt.LWTPoolProvider;
 import com.ms.silverking.util.PropertiesHelper;
 
+/**
+ * Creates and sends the messages for operations destined to a single server.
+ * <p>
+ * Operations are grouped into shared messages when this sender is paused. Optionally, a sender may also
+ * coalesce operations that arrive within a short window; compatible operations in the window are then
+ * sent in shared messages. A window is sent when it has been open for the window period, or when the
+ * estimated size of its operations reaches the size limit. The window is configured with
+ * SessionOptions.putCoalescingWindowMicros() and putCoalescingMaxBytes().
+ */
 class OpSender extends GroupingPausingBaseWorker<AsyncOperationImpl> implements QueueingConnectionLimitListener {
   private final MessageGroupBase mgBase;
   private final AddrAndPort dest;
   private final AtomicLong doWorkCalls;
   private final AtomicLong doGroupedWorkCalls;
+  private final long coalescingWindowNanos;
+  private final int coalescingMaxBytes;
+  private final ScheduledExecutorService windowScheduler;
+  private final WindowFlushWorker windowFlushWorker;
+  private final Object windowLock;
+  private List<AsyncOperationImpl> window;
+  private int windowBytes;
+  private boolean windowFlushScheduled;
 
   private static final boolean trackCallStats = false;
   private static final boolean debug = false;
@@ -34,6 +57,8 @@ class OpSender extends GroupingPausingBaseWorker<AsyncOperationImpl> implements
     opGroupingEnabled = PropertiesHelper.systemHelper.getBoolean(opGroupingEnabledProperty, defaultOpGroupingEnabled);
   }
 
+  private static volatile ScheduledExecutorService sharedWindowScheduler;
+
   private static final int idleThreadsThreshold = Integer.MAX_VALUE; // Don't queue work when possible
   //private static final int idleThreadsThreshold = LWTConstants.defaultIdleThreadThreshold; // Queue most work
 
@@ -51,6 +76,24 @@ class OpSender extends GroupingPausingBaseWorker<AsyncOperationImpl> implements
   }
 
   OpSender(AddrAndPort dest, MessageGroupBase mgBase) {
+    this(dest, mgBase, 0, 0);
+  }
+
+  /**
+   * @param coalescingWindowMicros the period for which operations are coalesced, or 0 to disable coalescing
+   * @param coalescingMaxBytes     the estimated operation size at which a window is sent before its period ends
+   */
+  OpSender(AddrAndPort dest, MessageGroupBase mgBase, int coalescingWindowMicros, int coalescingMaxBytes) {
+    this(dest, mgBase, coalescingWindowMicros, coalescingMaxBytes,
+        coalescingWindowMicros > 0 ? getSharedWindowScheduler() : null);
+  }
+
+  /**
+   * @param windowScheduler times coalescing windows; it only signals that a window has expired. Expired windows
+   *                        are sent by the sender pool.
+   */
+  OpSender(AddrAndPort dest, MessageGroupBase mgBase, int coalescingWindowMicros, int coalescingMaxBytes,
+      ScheduledExecutorService windowScheduler) {
     super(senderPool, true, Integer.MAX_VALUE, idleThreadsThreshold);
     //super(senderPool, true, 0, LWTConstants.defaultIdleThreadThreshold);
     //super(senderPool, true, LWTConstants.defaultMaxDirectCallDepth, LWTConstants.defaultIdleThreadThreshold);
@@ -58,6 +101,24 @@ class OpSender extends GroupingPausingBaseWorker<AsyncOperationImpl> implements
     this.mgBase = mgBase;
     doWorkCalls = new AtomicLong();
     doGroupedWorkCalls = new AtomicLong();
+    coalescingWindowNanos = TimeUnit.MICROSECONDS.toNanos(coalescingWindowMicros);
+    this.coalescingMaxBytes = coalescingMaxBytes;
+    this.windowScheduler = windowScheduler;
+    windowFlushWorker = coalescingWindowNanos > 0 ? new WindowFlushWorker(this) : null;
+    windowLock = new Object();
+    window = new ArrayList<>();
+  }
+
+  private static ScheduledExecutorService getSharedWindowScheduler() {
+    if (sharedWindowScheduler == null) {
+      synchronized (OpSender.class) {
+        if (sharedWindowScheduler == null) {
+          sharedWindowScheduler = Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder().setDaemon(true).setNameFormat("OpSenderWindow-%d").build());
+        }
+      }
+    }
+    return sharedWindowScheduler;
   }
 
   @Override
@@ -75,6 +136,94 @@ public void queueBelowLimit() {
     super.unpause();
   }
 
+  @Override
+  public void addWorkForGrouping(AsyncOperationImpl asyncOpImpl, int callerMaxDirectCallDepth) {
+    if (coalescingWindowNanos > 0 && opGroupingEnabled) {
+      addToWindow(asyncOpImpl);
+    } else {
+      super.addWorkForGrouping(asyncOpImpl, callerMaxDirectCallDepth);
+    }
+  }
+
+  private void addToWindow(AsyncOperationImpl asyncOpImpl) {
+    List<AsyncOperationImpl> fullWindow;
+    boolean scheduleFlush;
+    int opBytes;
+
+    opBytes = estimateBytes(asyncOpImpl);
+    fullWindow = null;
+    scheduleFlush = false;
+    synchronized (windowLock) {
+      window.add(asyncOpImpl);
+      windowBytes += opBytes;
+      if (windowBytes >= coalescingMaxBytes) {
+        fullWindow = takeWindow();
+      } else if (!windowFlushScheduled) {
+        windowFlushScheduled = true;
+        scheduleFlush = true;
+      }
+    }
+    if (fullWindow != null) {
+      sendWindow(fullWindow);
+    } else if (scheduleFlush) {
+      // the scheduler thread is shared by all senders, so it must not do the send itself
+      windowScheduler.schedule(() -> windowFlushWorker.addWork(null, 0), coalescingWindowNanos,
+          TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Must be called while holding windowLock
+   */
+  private List<AsyncOperationImpl> takeWindow() {
+    List<AsyncOperationImpl> _window;
+
+    _window = window;
+    window = new ArrayList<>();
+    windowBytes = 0;
+    windowFlushScheduled = false;
+    return _window;
+  }
+
+  /**
+   * Send any operations in the current window
+   */
+  void flushWindow() {
+    List<AsyncOperationImpl> _window;
+
+    synchronized (windowLock) {
+      _window = takeWindow();
+    }
+    if (!_window.isEmpty()) {
+      sendWindow(_window);
+    }
+  }
+
+  private void sendWindow(List<AsyncOperationImpl> _window) {
+    if (isPaused()) {
+      // Respect the connection queue limit by deferring to the pause queue
+      for (AsyncOperationImpl asyncOpImpl : _window) {
+        super.addWorkForGrouping(asyncOpImpl, 0);
+      }
+    } else if (_window.size() == 1) {
+      doWork(_window.get(0));
+    } else {
+      doWork(_window.toArray(newWorkArray(_window.size())));
+    }
+  }
+
+  int estimateBytes(AsyncOperationImpl asyncOpImpl) {
+    MessageEstimate estimate;
+
+    estimate = asyncOpImpl.createMessageEstimate();
+    asyncOpImpl.addToEstimate(estimate);
+    if (estimate instanceof PutMessageEstimate) {
+      return ((PutMessageEstimate) estimate).getNumBytes();
+    } else {
+      return 0;
+    }
+  }
+
   @Override
   public void doWork(AsyncOperationImpl asyncOpImpl) {
     AsyncOperationImpl[] asyncOpImpls;
@@ -249,4 +398,26 @@ private void createMessages(AsyncOperationImpl[] asyncOpImpls, int startIndex, i
   void send(MessageGroup messageGroup) {
     mgBase.send(messageGroup, dest);
   }
+
+  /**
+   * Sends expired windows on the sender pool
+   */
+  private static class WindowFlushWorker extends BaseWorker<Object> {
+    private final OpSender opSender;
+
+    WindowFlushWorker(OpSender opSender) {
+      super(senderPool, true);
+      this.opSender = opSender;
+    }
+
+    @Override
+    public void doWork(Object item) {
+      opSender.flushWindow();
+    }
+
+    @Override
+    public Object[] newWorkArray(int size) {
+      return new Object[size];
+    }
+  }
 }
@@ -2,27 +2,60 @@
 
 import com.ms.silverking.cloud.dht.client.AsyncOperation;
 import com.ms.silverking.cloud.dht.client.OpTimeoutController;
+import com.ms.silverking.cloud.dht.common.OpResult;
 
 /**
- * Encapsulates state related to attempts, retries, and timeouts.
+ * Encapsulates state related to attempts, retries, and timeouts. For namespace operations, attempt
+ * latencies, operations, and retries are reported to the namespace's OpLatencyTracker, which the
+ * timeout controller may consult.
  */
 class OpTimeoutState {
   private final AsyncOperation op;
   private final OpTimeoutController timeoutController;
+  private final OpLatencyTracker latencyTracker;
   private final long startTimeMillis;
   private long attemptStartTimeMillis;
   private int curAttemptIndex;
+  private int curAttemptTimeoutMillis;
+
+  private static final int timeoutNotComputed = -1;
 
   OpTimeoutState(AsyncOperation op, OpTimeoutController timeoutController, long startTimeMillis) {
+    this(op, timeoutController, null, startTimeMillis);
+  }
+
+  OpTimeoutState(AsyncOperation op, OpTimeoutController timeoutController, OpLatencyTracker latencyTracker,
+      long startTimeMillis) {
     this.op = op;
     this.timeoutController = timeoutController;
+    this.latencyTracker = latencyTracker;
     this.startTimeMillis = startTimeMillis;
     // initialize attempt 0
     attemptStartTimeMillis = startTimeMillis;
+    curAttemptTimeoutMillis = timeoutNotComputed;
+    if (latencyTracker != null) {
+      latencyTracker.recordOperation();
+    }
   }
 
   public int getCurRelTimeoutMillis() {
-    return timeoutController.getRelativeTimeoutMillisForAttempt(op, curAttemptIndex);
+    return getAttemptTimeoutMillis();
+  }
+
+  /**
+   * The attempt timeout is computed lazily - as op may not be fully constructed when this instance is -
+   * and only once per attempt, as controllers may jitter it.
+   */
+  private synchronized int getAttemptTimeoutMillis() {
+    if (curAttemptTimeoutMillis == timeoutNotComputed) {
+      if (latencyTracker != null) {
+        curAttemptTimeoutMillis = timeoutController.getRelativeTimeoutMillisForAttempt(op, curAttemptIndex,
+            latencyTracker);
+      } else {
+        curAttemptTimeoutMillis = timeoutController.getRelativeTimeoutMillisForAttempt(op, curAttemptIndex);
+      }
+    }
+    return curAttemptTimeoutMillis;
   }
 
   boolean opHasTimedOut(long curTimeMillis) {
@@ -41,12 +74,12 @@ boolean opHasTimedOut(long curTimeMillis) {
   }
 
   boolean attemptHasTimedOut(long curTimeMillis) {
-    return curTimeMillis > attemptStartTimeMillis + timeoutController.getRelativeTimeoutMillisForAttempt(op,
-        curAttemptIndex);
+    return curTimeMillis > attemptStartTimeMillis + getAttemptTimeoutMillis();
   }
 
   boolean newAttemptAllowed(AsyncOperation op) {
-    return curAttemptIndex < timeoutController.getMaxAttempts(op);
+    return curAttemptIndex < timeoutController.getMaxAttempts(op)
+        && (latencyTracker == null || timeoutController.retryAllowed(op, curAttemptIndex, latencyTracker));
   }
 
   boolean retryOnExclusionChange(long curTimeMillis) {
@@ -54,9 +87,48 @@ boolean retryOnExclusionChange(long curTimeMillis) {
         op, curAttemptIndex);
   }
 
-  void newAttempt(long curTimeMillis) {
+  /**
+   * @return the time after which either the current attempt or the operation will have timed out
+   */
+  long getNextTimeoutAbsMillis() {
+    return Math.min(attemptStartTimeMillis + getAttemptTimeoutMillis(),
+        startTimeMillis + timeoutController.getMaxRelativeTimeoutMillis(op));
+  }
+
+  /**
+   * Begin a new attempt. This is only called once the current attempt has timed out, so the current
+   * attempt is recorded as timed out.
+   */
+  synchronized void newAttempt(long curTimeMillis) {
+    if (latencyTracker != null) {
+      recordTimedOutAttempt(curTimeMillis);
+    }
     ++curAttemptIndex;
     attemptStartTimeMillis = curTimeMillis;
+    curAttemptTimeoutMillis = timeoutNotComputed;
+  }
+
+  /**
+   * Record the latency of the current attempt of a completed operation. Abandoned operations carry no
+   * latency information.
+   */
+  void operationCompleted(OpResult result) {
+    if (latencyTracker != null) {
+      if (result == OpResult.TIMEOUT) {
+        recordTimedOutAttempt(latencyTracker.absTimeMillis());
+      } else if (result != OpResult.SESSION_CLOSED) {
+        latencyTracker.recordLatency(latencyTracker.absTimeMillis() - attemptStartTimeMillis);
+      }
+    }
+  }
+
+  /**
+   * The latency of a timed out attempt is only known to exceed the time that it ran. It is recorded as a
+   * censored sample at that time, capped at the attempt timeout, so that latency percentiles reflect
+   * attempts that do not complete rather than only those that do.
+   */
+  private synchronized void recordTimedOutAttempt(long curTimeMillis) {
+    latencyTracker.recordLatency(Math.min(curTimeMillis - attemptStartTimeMillis, getAttemptTimeoutMillis()));
   }
 
   @Override
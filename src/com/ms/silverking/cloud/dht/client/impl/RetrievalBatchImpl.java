@@ -0,0 +1,117 @@
+package com.ms.silverking.cloud.dht.client.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.ms.silverking.cloud.dht.RetrievalOptions;
+import com.ms.silverking.cloud.dht.client.AsyncRetrieval;
+import com.ms.silverking.cloud.dht.client.BaseNamespacePerspective;
+import com.ms.silverking.cloud.dht.client.RetrievalBatch;
+import com.ms.silverking.cloud.dht.client.RetrievalException;
+import com.ms.silverking.cloud.dht.client.SessionClosedException;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.cloud.dht.net.MessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoBatchMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoMessageGroup;
+import com.ms.silverking.collection.Pair;
+import com.ms.silverking.id.UUIDBase;
+
+/**
+ * RetrievalBatch implementation. Each retrieval creates its message groups as OpSender would, but the
+ * groups are sent together in a single BATCH message. Responses arrive per namespace and are routed to
+ * the retrievals as usual; any retries are sent by the namespace's own OpSender.
+ */
+class RetrievalBatchImpl implements RetrievalBatch {
+  private final DHTSessionImpl session;
+  private final List<Pair<ClientNamespace, AsyncRetrievalOperationImpl<?, ?>>> retrievals;
+  private volatile boolean sent;
+
+  RetrievalBatchImpl(DHTSessionImpl session) {
+    this.session = session;
+    retrievals = new ArrayList<>();
+  }
+
+  @Override
+  public synchronized <K, V> AsyncRetrieval<K, V> add(BaseNamespacePerspective<K, V> nsp, Set<? extends K> keys,
+      RetrievalOptions retrievalOptions) {
+    BaseNamespacePerspectiveImpl<K, V> nspImpl;
+    AsyncRetrievalOperationImpl<K, V> opImpl;
+
+    if (sent) {
+      throw new IllegalStateException("Batch already sent");
+    }
+    nspImpl = (BaseNamespacePerspectiveImpl<K, V>) nsp;
+    if (nspImpl.getClientNamespace().getSession() != session) {
+      throw new IllegalArgumentException("Perspective was not opened from this batch's session");
+    }
+    opImpl = nspImpl.newRetrievalOperation(keys, retrievalOptions);
+    retrievals.add(Pair.of(nspImpl.getClientNamespace(), opImpl));
+    return opImpl;
+  }
+
+  @Override
+  public <K, V> AsyncRetrieval<K, V> add(BaseNamespacePerspective<K, V> nsp, Set<? extends K> keys) {
+    return add(nsp, keys, nsp.getOptions().getDefaultGetOptions());
+  }
+
+  @Override
+  public synchronized void send() throws SessionClosedException {
+    List<MessageGroup> messageGroups;
+
+    if (sent) {
+      throw new IllegalStateException("Batch already sent");
+    }
+    sent = true;
+    messageGroups = new ArrayList<>();
+    try {
+      for (Pair<ClientNamespace, AsyncRetrievalOperationImpl<?, ?>> retrieval : retrievals) {
+        AsyncRetrievalOperationImpl<?, ?> opImpl;
+        MessageEstimate estimate;
+        ProtoMessageGroup protoMG;
+
+        opImpl = retrieval.getV2();
+        retrieval.getV1().startBatchedRetrieval(opImpl);
+        estimate = opImpl.createMessageEstimate();
+        opImpl.addToEstimate(estimate);
+        protoMG = opImpl.createProtoMG(estimate);
+        protoMG = opImpl.createMessagesForIncomplete(protoMG, messageGroups, estimate);
+        protoMG.addToMessageGroupList(messageGroups);
+      }
+    } catch (SessionClosedException sce) {
+      for (Pair<ClientNamespace, AsyncRetrievalOperationImpl<?, ?>> retrieval : retrievals) {
+        retrieval.getV2().setResult(OpResult.SESSION_CLOSED);
+      }
+      throw sce;
+    }
+    if (!messageGroups.isEmpty()) {
+      ProtoBatchMessageGroup protoBatch;
+
+      protoBatch = new ProtoBatchMessageGroup(UUIDBase.random(), retrievals.get(0).getV1().getOriginator(),
+          messageGroups);
+      session.getMessageGroupBase().send(protoBatch.toMessageGroup(), session.getServer());
+    }
+  }
+
+  @Override
+  public void waitForCompletion() throws RetrievalException {
+    RetrievalException firstFailure;
+
+    if (!sent) {
+      throw new IllegalStateException("Batch not sent");
+    }
+    firstFailure = null;
+    for (Pair<ClientNamespace, AsyncRetrievalOperationImpl<?, ?>> retrieval : retrievals) {
+      try {
+        retrieval.getV2().waitForCompletion();
+      } catch (RetrievalException re) {
+        if (firstFailure == null) {
+          firstFailure = re;
+        }
+      }
+    }
+    if (firstFailure != null) {
+      throw firstFailure;
+    }
+  }
+}
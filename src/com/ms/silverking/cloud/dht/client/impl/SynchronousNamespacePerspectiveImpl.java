@@ -12,6 +12,7 @@
 import com.ms.silverking.cloud.dht.WaitOptions;
 import com.ms.silverking.cloud.dht.client.AsyncRetrieval;
 import com.ms.silverking.cloud.dht.client.AsyncValueRetrieval;
+import com.ms.silverking.cloud.dht.client.AtomicUpdate;
 import com.ms.silverking.cloud.dht.client.InvalidationException;
 import com.ms.silverking.cloud.dht.client.PutException;
 import com.ms.silverking.cloud.dht.client.RetrievalException;
@@ -155,6 +156,16 @@ public void put(K key, V value) throws PutException {
     put(key, value, nspoImpl.getDefaultPutOptions());
   }
 
+  @Override
+  public void update(K key, AtomicUpdate<V> update, PutOptions putOptions) throws PutException {
+    baseUpdate(key, update, putOptions);
+  }
+
+  @Override
+  public void update(K key, AtomicUpdate<V> update) throws PutException {
+    update(key, update, nspoImpl.getDefaultPutOptions());
+  }
+
   public void invalidate(Set<? extends K> keys, InvalidationOptions invalidationOptions) throws InvalidationException {
     try {
       baseInvalidation(keys, invalidationOptions, nspoImpl.getValueSerializer(), opLWTMode).waitForCompletion();
@@ -0,0 +1,97 @@
+package com.ms.silverking.cloud.dht.client.serialization;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializer/deserializer for String using an explicit charset. Unlike StringSerDes, which uses the
+ * platform default charset, values written by one client are decoded identically by all others.
+ * Single-buffer values are decoded in place, without an intermediate copy, whether or not the
+ * buffer is array-backed.
+ */
+public final class CharsetStringSerDes implements BufferSerDes<String> {
+  private final Charset charset;
+
+  public static final CharsetStringSerDes utf8 = new CharsetStringSerDes(StandardCharsets.UTF_8);
+  public static final CharsetStringSerDes latin1 = new CharsetStringSerDes(StandardCharsets.ISO_8859_1);
+
+  public CharsetStringSerDes(Charset charset) {
+    this.charset = charset;
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  @Override
+  public ByteBuffer serializeToBuffer(String s) {
+    return ByteBuffer.wrap(s.getBytes(charset));
+  }
+
+  @Override
+  public void serializeToBuffer(String s, ByteBuffer buffer) {
+    buffer.put(s.getBytes(charset));
+  }
+
+  @Override
+  public int estimateSerializedSize(String s) {
+    // must be exact; computed without encoding for the built-in charsets
+    if (charset.equals(StandardCharsets.ISO_8859_1)) {
+      // unmappable code points, including supplementary ones, are encoded as a single '?'
+      return s.codePointCount(0, s.length());
+    } else if (charset.equals(StandardCharsets.UTF_8)) {
+      return utf8Length(s);
+    } else {
+      return s.getBytes(charset).length;
+    }
+  }
+
+  static int utf8Length(String s) {
+    int length;
+
+    length = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c;
+
+      c = s.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        // unpaired surrogates are encoded as '?'
+        length++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  @Override
+  public String deserialize(ByteBuffer[] buffers) {
+    if (buffers.length == 1) {
+      return deserialize(buffers[0]);
+    } else {
+      return new ValueView(buffers).toString(charset);
+    }
+  }
+
+  @Override
+  public String deserialize(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), charset);
+    } else {
+      return charset.decode(buffer.duplicate()).toString();
+    }
+  }
+
+  @Override
+  public String emptyObject() {
+    return "";
+  }
+}
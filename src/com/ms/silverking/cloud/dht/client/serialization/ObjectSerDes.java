@@ -3,6 +3,7 @@
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import com.ms.silverking.io.util.BufferUtil;
 import com.ms.silverking.object.ObjectUtil;
 
 /**
@@ -24,13 +25,13 @@ public Object deserialize(ByteBuffer[] buffers) {
 
   @Override
   public Object deserialize(ByteBuffer bytes) {
-    byte[] _bytes;
-
-    // FUTURE - remove this copy
-    _bytes = new byte[bytes.limit() - bytes.position()];
-    bytes.get(_bytes);
     try {
-      return ObjectUtil.bytesToObj(_bytes);
+      if (bytes.hasArray()) {
+        // decode in place
+        return ObjectUtil.bytesToObj(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+      } else {
+        return ObjectUtil.bytesToObj(BufferUtil.arrayCopy(bytes.duplicate()));
+      }
     } catch (Exception e) {
       throw new RuntimeException("Unable to deserialize", e);
     }
@@ -1,5 +1,6 @@
 package com.ms.silverking.cloud.dht.client.serialization;
 
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -24,12 +25,14 @@ public static SerializationRegistry createDefaultRegistry() {
 
     defaultRegistry = new SerializationRegistry();
     defaultRegistry.addSerDes(byte[].class, new RawByteArraySerDes());
-    defaultRegistry.addSerDes(String.class, new StringSerDes());
+    // encodes as StringSerDes does, so that stored values are unchanged, but decodes in place
+    defaultRegistry.addSerDes(String.class, new CharsetStringSerDes(Charset.defaultCharset()));
     defaultRegistry.addSerDes(Object.class, new ObjectSerDes());
     defaultRegistry.addSerDes(Long.class, new LongSerDes());
     defaultRegistry.addSerDes(Integer.class, new IntegerSerDes());
     defaultRegistry.addSerDes(Short.class, new ShortSerDes());
     defaultRegistry.addSerDes(UUID.class, new UUIDSerDes());
+    defaultRegistry.addSerDes(ValueView.class, new ValueViewSerDes());
     return defaultRegistry;
   }
 
@@ -0,0 +1,181 @@
+package com.ms.silverking.cloud.dht.client.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+import com.ms.silverking.io.util.BufferUtil;
+
+/**
+ * Read-only view of a retrieved value. Deserializing to ValueView does not copy the value; the view refers
+ * directly to the buffers of the StoredValue from which it was obtained.
+ * <p>
+ * Retrieved buffers are not reused by the client, so a view remains valid for as long as it is referenced,
+ * and keeps the buffers that it refers to reachable. A view of a value embedded in a larger buffer (e.g. a
+ * received message) therefore retains the whole buffer; callers that keep values for long should copy them
+ * with toByteArray(). A view of buffers supplied with wrap() reflects later changes to their contents.
+ * Views are intended for readers that forward values (e.g. to a stream, channel, or another namespace)
+ * without decoding them.
+ */
+public final class ValueView {
+  private final ByteBuffer[] buffers;
+  private final int size;
+
+  public static final ValueView empty = new ValueView(new ByteBuffer[0]);
+
+  ValueView(ByteBuffer buffer) {
+    this(new ByteBuffer[] { buffer });
+  }
+
+  ValueView(ByteBuffer[] buffers) {
+    // duplicate so that the view's positions are independent of the source; no data is copied
+    this.buffers = new ByteBuffer[buffers.length];
+    for (int i = 0; i < buffers.length; i++) {
+      this.buffers[i] = buffers[i].duplicate();
+    }
+    size = BufferUtil.totalRemaining(this.buffers);
+  }
+
+  /**
+   * Create a view of the given buffers. The view covers the remaining bytes of each buffer.
+   */
+  public static ValueView wrap(ByteBuffer... buffers) {
+    return new ValueView(buffers);
+  }
+
+  /**
+   * @return the number of bytes in the value
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of buffers that hold the value; greater than one for segmented values
+   */
+  public int numBuffers() {
+    return buffers.length;
+  }
+
+  /**
+   * @return read-only views of the buffers holding the value
+   */
+  public ByteBuffer[] asReadOnlyBuffers() {
+    ByteBuffer[] readOnlyBuffers;
+
+    readOnlyBuffers = new ByteBuffer[buffers.length];
+    for (int i = 0; i < buffers.length; i++) {
+      readOnlyBuffers[i] = buffers[i].asReadOnlyBuffer();
+    }
+    return readOnlyBuffers;
+  }
+
+  /**
+   * @return a read-only buffer holding the value. Zero-copy unless the value is segmented, in which case
+   * the segments are gathered into a single buffer.
+   */
+  public ByteBuffer asReadOnlyBuffer() {
+    if (buffers.length == 1) {
+      return buffers[0].asReadOnlyBuffer();
+    } else {
+      return ByteBuffer.wrap(toByteArray()).asReadOnlyBuffer();
+    }
+  }
+
+  // Buffer for serialization. The put path requires array-backed buffers whose data begins at the start of
+  // the array; the value is shared when it is so held and gathered into a new array otherwise.
+  ByteBuffer asBuffer() {
+    if (buffers.length == 1 && buffers[0].hasArray() && buffers[0].arrayOffset() == 0
+        && buffers[0].position() == 0) {
+      return buffers[0].duplicate();
+    } else {
+      return ByteBuffer.wrap(toByteArray());
+    }
+  }
+
+  public byte get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(Integer.toString(index));
+    }
+    for (ByteBuffer buffer : buffers) {
+      if (index < buffer.remaining()) {
+        return buffer.get(buffer.position() + index);
+      }
+      index -= buffer.remaining();
+    }
+    throw new RuntimeException("panic");
+  }
+
+  public void copyTo(byte[] dst, int dstOffset) {
+    for (ByteBuffer buffer : buffers) {
+      int length;
+
+      length = buffer.remaining();
+      buffer.duplicate().get(dst, dstOffset, length);
+      dstOffset += length;
+    }
+  }
+
+  public void copyTo(ByteBuffer dst) {
+    for (ByteBuffer buffer : buffers) {
+      dst.put(buffer.duplicate());
+    }
+  }
+
+  /**
+   * @return a copy of the value that retains none of the view's buffers
+   */
+  public byte[] toByteArray() {
+    byte[] array;
+
+    array = new byte[size()];
+    copyTo(array, 0);
+    return array;
+  }
+
+  /**
+   * Decode the value. Single-buffer values are decoded in place.
+   */
+  public String toString(Charset charset) {
+    if (buffers.length == 1) {
+      ByteBuffer buffer;
+
+      buffer = buffers[0];
+      if (buffer.hasArray()) {
+        return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), charset);
+      } else {
+        return charset.decode(buffer.duplicate()).toString();
+      }
+    } else {
+      return new String(toByteArray(), charset);
+    }
+  }
+
+  public void writeTo(OutputStream out) throws IOException {
+    for (ByteBuffer buffer : buffers) {
+      if (buffer.hasArray()) {
+        out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      } else {
+        out.write(BufferUtil.arrayCopy(buffer, buffer.position(), buffer.remaining()));
+      }
+    }
+  }
+
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    for (ByteBuffer buffer : buffers) {
+      ByteBuffer src;
+
+      src = buffer.duplicate();
+      while (src.hasRemaining()) {
+        channel.write(src);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ValueView[" + size + "]";
+  }
+}
@@ -0,0 +1,39 @@
+package com.ms.silverking.cloud.dht.client.serialization;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializer/deserializer for ValueView. Deserialization makes no copy of the retrieved data. Values forwarded
+ * to put() are copied at most once.
+ */
+public final class ValueViewSerDes implements BufferSerDes<ValueView> {
+  @Override
+  public ByteBuffer serializeToBuffer(ValueView view) {
+    return view.asBuffer();
+  }
+
+  @Override
+  public void serializeToBuffer(ValueView view, ByteBuffer buffer) {
+    view.copyTo(buffer);
+  }
+
+  @Override
+  public int estimateSerializedSize(ValueView view) {
+    return view.size();
+  }
+
+  @Override
+  public ValueView deserialize(ByteBuffer[] buffers) {
+    return new ValueView(buffers);
+  }
+
+  @Override
+  public ValueView deserialize(ByteBuffer buffer) {
+    return new ValueView(buffer);
+  }
+
+  @Override
+  public ValueView emptyObject() {
+    return ValueView.empty;
+  }
+}
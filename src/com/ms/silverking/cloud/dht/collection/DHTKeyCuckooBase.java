@@ -93,16 +93,22 @@ void clear() {
     }
   }
 
-  public abstract int get(DHTKey key);
+  public int get(DHTKey key) {
+    return get(key.getMSL(), key.getLSL());
+  }
+
+  /**
+   * Look up a key given as its two longs; avoids the need for a DHTKey instance.
+   */
+  public abstract int get(long msl, long lsl);
 
   public abstract void put(DHTKey key, int offset);
 
   public boolean remove(DHTKey key) {
-    long msl;
-    long lsl;
+    return remove(key.getMSL(), key.getLSL());
+  }
 
-    msl = key.getMSL();
-    lsl = key.getLSL();
+  public boolean remove(long msl, long lsl) {
     for (SubTableBase subTable : subTables) {
       boolean removed;
 
@@ -185,6 +191,107 @@ protected int getHTEntryIndex(int bucketIndex, int bucketEntryIndex) {
     }
 
     abstract boolean remove(long msl, long lsl);
+
+    abstract long getMSL(int bucketIndex, int entryIndex);
+
+    abstract long getLSL(int bucketIndex, int entryIndex);
+
+    abstract int getValue(int bucketIndex, int entryIndex);
+  }
+
+  /**
+   * Return a cursor over the entries of this table. Unlike iterator(), the cursor does not allocate
+   * an entry per key; a single cursor may be reused via reset().
+   */
+  public DHTKeyIntCursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * Return a cursor over the entries of this table whose table index is at least startIndex. Table
+   * indices are the positions of entries within the table; a walk of the table may be resumed from the
+   * index that follows the last entry visited. Indices are only stable while the table is not modified.
+   */
+  public IndexedCursor cursor(int startIndex) {
+    Cursor cursor;
+
+    cursor = new Cursor();
+    if (startIndex > 0) {
+      cursor.seek(startIndex);
+    }
+    return cursor;
+  }
+
+  /**
+   * A cursor that also reports the table index of its current entry
+   */
+  public interface IndexedCursor extends DHTKeyIntCursor {
+    int getIndex();
+  }
+
+  private class Cursor extends CuckooIteratorBase implements IndexedCursor {
+    private boolean started;
+
+    void seek(int index) {
+      int entriesPerSubTable;
+
+      entriesPerSubTable = config.getNumSubTableBuckets() * config.getEntriesPerBucket();
+      if (index >= config.getNumSubTables() * entriesPerSubTable) {
+        done = true;
+      } else {
+        subTable = index / entriesPerSubTable;
+        bucket = (index % entriesPerSubTable) / config.getEntriesPerBucket();
+        // moveToNonEmpty() examines the entry after the current one
+        entry = index % config.getEntriesPerBucket() - 1;
+        done = false;
+        moveToNonEmpty();
+      }
+    }
+
+    @Override
+    public int getIndex() {
+      return (subTable * config.getNumSubTableBuckets() + bucket) * config.getEntriesPerBucket() + entry;
+    }
+
+    @Override
+    boolean curIsEmpty() {
+      return subTables[subTable].isEmpty(bucket, entry);
+    }
+
+    @Override
+    public boolean advance() {
+      if (started) {
+        moveToNonEmpty();
+      } else {
+        started = true;
+      }
+      return !done;
+    }
+
+    @Override
+    public long getMSL() {
+      return subTables[subTable].getMSL(bucket, entry);
+    }
+
+    @Override
+    public long getLSL() {
+      return subTables[subTable].getLSL(bucket, entry);
+    }
+
+    @Override
+    public int getValue() {
+      return subTables[subTable].getValue(bucket, entry);
+    }
+
+    @Override
+    public void reset() {
+      subTable = 0;
+      bucket = 0;
+      entry = -1;
+      done = false;
+      started = false;
+      moveToNonEmpty();
+    }
   }
 
   /**
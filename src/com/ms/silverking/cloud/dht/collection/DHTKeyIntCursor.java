@@ -0,0 +1,34 @@
+package com.ms.silverking.cloud.dht.collection;
+
+/**
+ * Allocation-free iteration over a DHTKey to int table. Each call to advance() moves the cursor to
+ * the next entry, whose key and value are then available as primitives. A cursor is reusable
+ * after reset().
+ * <p>
+ * Typical usage:
+ * <pre>
+ * cursor = table.cursor();
+ * while (cursor.advance()) {
+ *   use(cursor.getMSL(), cursor.getLSL(), cursor.getValue());
+ * }
+ * </pre>
+ */
+public interface DHTKeyIntCursor {
+  /**
+   * Move to the next entry
+   *
+   * @return true if the cursor is positioned at an entry, false if no entries remain
+   */
+  boolean advance();
+
+  long getMSL();
+
+  long getLSL();
+
+  int getValue();
+
+  /**
+   * Reposition the cursor before the first entry
+   */
+  void reset();
+}
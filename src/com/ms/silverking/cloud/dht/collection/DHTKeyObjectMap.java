@@ -0,0 +1,196 @@
+package com.ms.silverking.cloud.dht.collection;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.ms.silverking.cloud.dht.common.DHTKey;
+
+/**
+ * Open-addressing map from DHTKey to an object. Keys are hashed and compared by their two longs
+ * rather than by hashCode()/equals(), and entries are stored in two parallel arrays; unlike HashMap,
+ * no per-entry objects are allocated.
+ * <p>
+ * Entries may not be removed. Not thread-safe.
+ */
+public class DHTKeyObjectMap<V> {
+  private DHTKey[] keys;
+  private Object[] values;
+  private int mask;
+  private int size;
+
+  private static final int maxLoadNumerator = 2;
+  private static final int maxLoadDenominator = 3;
+  private static final int minCapacity = 4;
+
+  /**
+   * @param expectedSize number of entries that may be added before the map needs to grow
+   */
+  public DHTKeyObjectMap(int expectedSize) {
+    allocate(capacityFor(expectedSize));
+  }
+
+  private static int capacityFor(int size) {
+    long minCapacityForSize;
+
+    minCapacityForSize = (long) size * maxLoadDenominator / maxLoadNumerator + 1;
+    if (minCapacityForSize > 1 << 30) {
+      throw new IllegalArgumentException("size too large: " + size);
+    }
+    return Math.max(Integer.highestOneBit((int) minCapacityForSize - 1) << 1, minCapacity);
+  }
+
+  private void allocate(int capacity) {
+    keys = new DHTKey[capacity];
+    values = new Object[capacity];
+    mask = capacity - 1;
+  }
+
+  private int slot(long msl, long lsl) {
+    long h;
+
+    h = (msl ^ lsl) * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  private int findSlot(long msl, long lsl) {
+    int i;
+
+    i = slot(msl, lsl);
+    while (keys[i] != null) {
+      if (keys[i].getLSL() == lsl && keys[i].getMSL() == msl) {
+        return i;
+      }
+      i = (i + 1) & mask;
+    }
+    return -(i + 1);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public V get(DHTKey key) {
+    return get(key.getMSL(), key.getLSL());
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(long msl, long lsl) {
+    int i;
+
+    i = findSlot(msl, lsl);
+    return i >= 0 ? (V) values[i] : null;
+  }
+
+  public boolean containsKey(DHTKey key) {
+    return findSlot(key.getMSL(), key.getLSL()) >= 0;
+  }
+
+  /**
+   * Associate value with key, replacing any previous value
+   *
+   * @return the previous value, or null if there was none
+   */
+  @SuppressWarnings("unchecked")
+  public V put(DHTKey key, V value) {
+    long msl;
+    long lsl;
+    int i;
+
+    msl = key.getMSL();
+    lsl = key.getLSL();
+    i = findSlot(msl, lsl);
+    if (i >= 0) {
+      V prev;
+
+      prev = (V) values[i];
+      values[i] = value;
+      return prev;
+    } else {
+      if ((long) (size + 1) * maxLoadDenominator > (long) keys.length * maxLoadNumerator) {
+        grow();
+        i = findSlot(msl, lsl);
+      }
+      i = -(i + 1);
+      values[i] = value;
+      keys[i] = key;
+      size++;
+      return null;
+    }
+  }
+
+  private void grow() {
+    DHTKey[] oldKeys;
+    Object[] oldValues;
+
+    oldKeys = keys;
+    oldValues = values;
+    allocate(keys.length << 1);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        int j;
+
+        j = -(findSlot(oldKeys[i].getMSL(), oldKeys[i].getLSL()) + 1);
+        values[j] = oldValues[i];
+        keys[j] = oldKeys[i];
+      }
+    }
+  }
+
+  /**
+   * Return a read-only view of the keys in this map
+   */
+  public Collection<DHTKey> keys() {
+    return new KeyCollection();
+  }
+
+  private class KeyCollection extends AbstractCollection<DHTKey> {
+    @Override
+    public Iterator<DHTKey> iterator() {
+      return new KeyIterator();
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  private class KeyIterator implements Iterator<DHTKey> {
+    private final DHTKey[] _keys;
+    private int index;
+
+    KeyIterator() {
+      _keys = keys;
+      moveToNonEmpty();
+    }
+
+    private void moveToNonEmpty() {
+      while (index < _keys.length && _keys[index] == null) {
+        index++;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return index < _keys.length;
+    }
+
+    @Override
+    public DHTKey next() {
+      DHTKey key;
+
+      if (index >= _keys.length) {
+        throw new NoSuchElementException();
+      }
+      key = _keys[index++];
+      moveToNonEmpty();
+      return key;
+    }
+  }
+}
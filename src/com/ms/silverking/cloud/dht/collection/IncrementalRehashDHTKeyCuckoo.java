@@ -0,0 +1,230 @@
+package com.ms.silverking.cloud.dht.collection;
+
+import java.util.Iterator;
+
+import com.google.common.collect.Iterators;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.collection.cuckoo.IntCuckooConstants;
+import com.ms.silverking.collection.cuckoo.TableFullException;
+import com.ms.silverking.collection.cuckoo.WritableCuckooConfig;
+
+/**
+ * A WritableDHTKeyCuckooBase (by default, an IntArrayDHTKeyCuckoo) that grows without a
+ * stop-the-world rehash.
+ *
+ * When the current table fills, a table with twice as many entries becomes the current table, and the
+ * full table becomes the migrating table. Each subsequent put() or remove() moves a few buckets from
+ * the migrating table into the current table. Until migration completes, lookups consult the current
+ * table and then the migrating table. A key is present in at most one of the two tables. Once a table
+ * has been emptied by migration, it is released (which frees the memory of off-heap tables).
+ *
+ * Like IntArrayDHTKeyCuckoo, this class is not thread-safe; callers must ensure that mutations are
+ * exclusive of all other access.
+ */
+public class IncrementalRehashDHTKeyCuckoo implements Iterable<DHTKeyIntEntry> {
+  private final int bucketsPerStep;
+  private WritableDHTKeyCuckooBase table;
+  private WritableDHTKeyCuckooBase migratingTable;
+  private int migrationSubTable;
+  private int migrationBucket;
+
+  private static final int defaultBucketsPerStep = 16;
+
+  /**
+   * @param initialTable   empty table to begin with; tables created by growth use the same implementation
+   * @param bucketsPerStep number of buckets migrated by each put() or remove() during migration
+   */
+  public IncrementalRehashDHTKeyCuckoo(WritableDHTKeyCuckooBase initialTable, int bucketsPerStep) {
+    if (bucketsPerStep < 1) {
+      throw new IllegalArgumentException("bucketsPerStep must be >= 1");
+    }
+    this.bucketsPerStep = bucketsPerStep;
+    table = initialTable;
+  }
+
+  public IncrementalRehashDHTKeyCuckoo(WritableDHTKeyCuckooBase initialTable) {
+    this(initialTable, defaultBucketsPerStep);
+  }
+
+  public IncrementalRehashDHTKeyCuckoo(WritableCuckooConfig cuckooConfig, int bucketsPerStep) {
+    this(new IntArrayDHTKeyCuckoo(cuckooConfig), bucketsPerStep);
+  }
+
+  public IncrementalRehashDHTKeyCuckoo(WritableCuckooConfig cuckooConfig) {
+    this(cuckooConfig, defaultBucketsPerStep);
+  }
+
+  public int getTotalEntries() {
+    return table.getTotalEntries();
+  }
+
+  public boolean isMigrating() {
+    return migratingTable != null;
+  }
+
+  public int get(DHTKey key) {
+    return get(key.getMSL(), key.getLSL());
+  }
+
+  public int get(long msl, long lsl) {
+    int value;
+
+    value = table.get(msl, lsl);
+    if (value == IntCuckooConstants.noSuchValue && migratingTable != null) {
+      value = migratingTable.get(msl, lsl);
+    }
+    return value;
+  }
+
+  public void put(DHTKey key, int value) {
+    put(key.getMSL(), key.getLSL(), value);
+  }
+
+  public void put(long msl, long lsl, int value) {
+    if (migratingTable != null) {
+      // any previous mapping must not be visible once this put completes
+      migratingTable.remove(msl, lsl);
+      migrationStep();
+    }
+    try {
+      table.put(msl, lsl, value);
+    } catch (TableFullException tfe) {
+      grow();
+      table.put(msl, lsl, value);
+    }
+  }
+
+  public boolean remove(DHTKey key) {
+    return remove(key.getMSL(), key.getLSL());
+  }
+
+  public boolean remove(long msl, long lsl) {
+    boolean removed;
+
+    removed = table.remove(msl, lsl);
+    if (migratingTable != null) {
+      removed = migratingTable.remove(msl, lsl) || removed;
+      migrationStep();
+    }
+    return removed;
+  }
+
+  private void migrationStep() {
+    try {
+      for (int i = 0; i < bucketsPerStep && migratingTable != null; i++) {
+        migratingTable.moveBucket(migrationSubTable, migrationBucket, table);
+        if (++migrationBucket == migratingTable.subTableBuckets) {
+          migrationBucket = 0;
+          if (++migrationSubTable == migratingTable.getNumSubTables()) {
+            migratingTable.release();
+            migratingTable = null;
+          }
+        }
+      }
+    } catch (TableFullException tfe) {
+      grow();
+    }
+  }
+
+  /**
+   * Replace the current table with a table of twice its size. If no migration is in progress, the current
+   * table becomes the migrating table. Otherwise, the current table has filled before migration could
+   * complete (which requires an unusual key distribution); both tables are moved into the new table at once.
+   */
+  private void grow() {
+    WritableDHTKeyCuckooBase newTable;
+
+    newTable = table.newTable(table.getConfig().doubleEntries());
+    if (migratingTable == null) {
+      migratingTable = table;
+      migrationSubTable = 0;
+      migrationBucket = 0;
+    } else {
+      try {
+        moveAll(table, newTable);
+        moveAll(migratingTable, newTable);
+      } catch (TableFullException tfe) {
+        throw new RuntimeException("Unexpected table full during rehash");
+      }
+      table.release();
+      migratingTable.release();
+      migratingTable = null;
+    }
+    table = newTable;
+  }
+
+  private static void moveAll(WritableDHTKeyCuckooBase srcTable, WritableDHTKeyCuckooBase destTable) {
+    for (int i = 0; i < srcTable.getNumSubTables(); i++) {
+      for (int j = 0; j < srcTable.subTableBuckets; j++) {
+        srcTable.moveBucket(i, j, destTable);
+      }
+    }
+  }
+
+  /**
+   * Return an allocation-free cursor over all entries. As with iterator(), the table must not be
+   * modified while the cursor is in use.
+   */
+  public DHTKeyIntCursor cursor() {
+    if (migratingTable == null) {
+      return table.cursor();
+    } else {
+      return new ConcatenatedCursor(table.cursor(), migratingTable.cursor());
+    }
+  }
+
+  private static class ConcatenatedCursor implements DHTKeyIntCursor {
+    private final DHTKeyIntCursor c0;
+    private final DHTKeyIntCursor c1;
+    private DHTKeyIntCursor cur;
+
+    ConcatenatedCursor(DHTKeyIntCursor c0, DHTKeyIntCursor c1) {
+      this.c0 = c0;
+      this.c1 = c1;
+      cur = c0;
+    }
+
+    @Override
+    public boolean advance() {
+      if (cur.advance()) {
+        return true;
+      } else if (cur == c0) {
+        cur = c1;
+        return cur.advance();
+      } else {
+        return false;
+      }
+    }
+
+    @Override
+    public long getMSL() {
+      return cur.getMSL();
+    }
+
+    @Override
+    public long getLSL() {
+      return cur.getLSL();
+    }
+
+    @Override
+    public int getValue() {
+      return cur.getValue();
+    }
+
+    @Override
+    public void reset() {
+      c0.reset();
+      c1.reset();
+      cur = c0;
+    }
+  }
+
+  @Override
+  public Iterator<DHTKeyIntEntry> iterator() {
+    if (migratingTable == null) {
+      return table.iterator();
+    } else {
+      return Iterators.concat(table.iterator(), migratingTable.iterator());
+    }
+  }
+}
@@ -12,7 +12,7 @@
 /**
  *
  */
-public class IntArrayDHTKeyCuckoo extends DHTKeyCuckooBase implements Iterable<DHTKeyIntEntry> {
+public class IntArrayDHTKeyCuckoo extends WritableDHTKeyCuckooBase implements Iterable<DHTKeyIntEntry> {
   private final SubTable[] subTables;
 
   private static final int empty = IntCuckooConstants.empty;
@@ -63,12 +63,8 @@ public byte[] getAsBytes() {
     return getAsBytesWithHeader(0);
   }
 
-  public int get(DHTKey key) {
-    long msl;
-    long lsl;
-
-    msl = key.getMSL();
-    lsl = key.getLSL();
+  @Override
+  public int get(long msl, long lsl) {
     for (SubTable subTable : subTables) {
       int rVal;
 
@@ -84,6 +80,21 @@ public void put(DHTKey key, int value) {
     cuckooPut(key.getMSL(), key.getLSL(), value, 0);
   }
 
+  @Override
+  public void put(long msl, long lsl, int value) {
+    cuckooPut(msl, lsl, value, 0);
+  }
+
+  @Override
+  void moveBucket(int subTableIndex, int bucketIndex, WritableDHTKeyCuckooBase destTable) {
+    subTables[subTableIndex].moveBucket(bucketIndex, destTable);
+  }
+
+  @Override
+  WritableDHTKeyCuckooBase newTable(WritableCuckooConfig cuckooConfig) {
+    return new IntArrayDHTKeyCuckoo(cuckooConfig);
+  }
+
   private void cuckooPut(long msl, long lsl, int value, int attempt) {
     SubTable subTable;
     boolean success;
@@ -260,6 +271,20 @@ public void vacate(long msl, long lsl, int attempt, int entryIndex) {
       buf[baseOffset + lslOffset] = 0;
     }
 
+    void moveBucket(int bucketIndex, WritableDHTKeyCuckooBase destTable) {
+      for (int i = 0; i < entriesPerBucket; i++) {
+        if (!isEmpty(bucketIndex, i)) {
+          int baseOffset;
+
+          baseOffset = getHTEntryIndex(bucketIndex, i);
+          destTable.put(buf[baseOffset + mslOffset], buf[baseOffset + lslOffset], getValue(bucketIndex, i));
+          values[bucketIndex * entriesPerBucket + i] = empty;
+          buf[baseOffset + mslOffset] = 0;
+          buf[baseOffset + lslOffset] = 0;
+        }
+      }
+    }
+
     private int getBucketIndex(long lsl) {
       //return Math.abs((int)(lsl >> keyShift)) % capacity;
       if (debug) {
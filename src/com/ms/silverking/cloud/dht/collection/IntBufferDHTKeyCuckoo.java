@@ -64,12 +64,8 @@ public IntBufferDHTKeyCuckoo(WritableCuckooConfig cuckooConfig, ByteBuffer byteB
     setSubTables(subTables);
   }
 
-  public int get(DHTKey key) {
-    long msl;
-    long lsl;
-
-    msl = key.getMSL();
-    lsl = key.getLSL();
+  @Override
+  public int get(long msl, long lsl) {
     for (SubTable subTable : subTables) {
       int rVal;
 
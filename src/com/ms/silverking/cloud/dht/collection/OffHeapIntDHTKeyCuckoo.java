@@ -0,0 +1,365 @@
+package com.ms.silverking.cloud.dht.collection;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Iterator;
+
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.collection.cuckoo.IntCuckooConstants;
+import com.ms.silverking.collection.cuckoo.TableFullException;
+import com.ms.silverking.collection.cuckoo.WritableCuckooConfig;
+import com.ms.silverking.log.Log;
+
+/**
+ * Writable DHTKey to int cuckoo table stored in direct (off-heap) memory. Layout and hashing are the same
+ * as IntArrayDHTKeyCuckoo; only the storage differs. Keeping large tables off-heap removes them from the
+ * old generation so that they are neither copied nor scanned by the garbage collector.
+ *
+ * Each sub table is backed by its own direct buffer, so a single sub table is limited to 2GB. Memory is
+ * freed by release() (IncrementalRehashDHTKeyCuckoo calls this once a table has been migrated), or
+ * otherwise when the table is garbage collected.
+ */
+public class OffHeapIntDHTKeyCuckoo extends WritableDHTKeyCuckooBase implements Iterable<DHTKeyIntEntry> {
+  private final SubTable[] subTables;
+  private boolean released;
+
+  private static final int empty = IntCuckooConstants.empty;
+  private static final int[] extraShiftPerTable = { -1, -1, 32, -1, 16, -1, -1, -1, 8 };
+
+  // Direct buffers are freed with Unsafe.invokeCleaner() on Java 9+, and with DirectBuffer.cleaner().clean()
+  // on Java 8. If neither is accessible, memory is only freed by the garbage collector.
+  private static final Object unsafe;
+  private static final Method invokeCleaner;
+  private static final Method directBufferCleaner;
+  private static final Method cleanerClean;
+
+  static {
+    Object _unsafe;
+    Method _invokeCleaner;
+    Method _directBufferCleaner;
+    Method _cleanerClean;
+
+    _unsafe = null;
+    _invokeCleaner = null;
+    _directBufferCleaner = null;
+    _cleanerClean = null;
+    try {
+      Class<?> unsafeClass;
+      Field f;
+
+      unsafeClass = Class.forName("sun.misc.Unsafe");
+      _invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      f = unsafeClass.getDeclaredField("theUnsafe");
+      f.setAccessible(true);
+      _unsafe = f.get(null);
+    } catch (Exception e) {
+      _invokeCleaner = null;
+      try {
+        _directBufferCleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+        _cleanerClean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+      } catch (Exception e2) {
+        _directBufferCleaner = null;
+        _cleanerClean = null;
+      }
+    }
+    unsafe = _unsafe;
+    invokeCleaner = _invokeCleaner;
+    directBufferCleaner = _directBufferCleaner;
+    cleanerClean = _cleanerClean;
+  }
+
+  public OffHeapIntDHTKeyCuckoo(WritableCuckooConfig cuckooConfig) {
+    super(cuckooConfig);
+    subTables = new SubTable[numSubTables];
+    for (int i = 0; i < subTables.length; i++) {
+      subTables[i] = new SubTable(cuckooConfig.getNumSubTableBuckets(), entriesPerBucket,
+          extraShiftPerTable[numSubTables] * i);
+    }
+    setSubTables(subTables);
+  }
+
+  @Override
+  public int get(long msl, long lsl) {
+    for (SubTable subTable : subTables) {
+      int rVal;
+
+      rVal = subTable.get(msl, lsl);
+      if (rVal != empty) {
+        return rVal;
+      }
+    }
+    return IntCuckooConstants.noSuchValue;
+  }
+
+  public void put(DHTKey key, int value) {
+    cuckooPut(key.getMSL(), key.getLSL(), value, 0);
+  }
+
+  @Override
+  public void put(long msl, long lsl, int value) {
+    cuckooPut(msl, lsl, value, 0);
+  }
+
+  @Override
+  void moveBucket(int subTableIndex, int bucketIndex, WritableDHTKeyCuckooBase destTable) {
+    subTables[subTableIndex].moveBucket(bucketIndex, destTable);
+  }
+
+  @Override
+  WritableDHTKeyCuckooBase newTable(WritableCuckooConfig cuckooConfig) {
+    return new OffHeapIntDHTKeyCuckoo(cuckooConfig);
+  }
+
+  /**
+   * Free the direct memory used by this table. The table must not be used afterwards.
+   */
+  @Override
+  void release() {
+    if (!released) {
+      released = true;
+      for (SubTable subTable : subTables) {
+        try {
+          freeDirectBuffer(subTable.byteBuf);
+        } catch (Exception e) {
+          Log.logErrorWarning(e, "Unable to free off-heap sub table");
+        }
+      }
+    }
+  }
+
+  private static void freeDirectBuffer(ByteBuffer byteBuf) throws Exception {
+    if (invokeCleaner != null) {
+      invokeCleaner.invoke(unsafe, byteBuf);
+    } else if (directBufferCleaner != null) {
+      Object cleaner;
+
+      cleaner = directBufferCleaner.invoke(byteBuf);
+      if (cleaner != null) {
+        cleanerClean.invoke(cleaner);
+      }
+    }
+  }
+
+  /**
+   * Return the number of bytes of direct memory used by this table
+   */
+  public long offHeapSizeBytes() {
+    long total;
+
+    if (released) {
+      return 0;
+    }
+    total = 0;
+    for (SubTable subTable : subTables) {
+      total += subTable.sizeBytes();
+    }
+    return total;
+  }
+
+  private void cuckooPut(long msl, long lsl, int value, int attempt) {
+    SubTable subTable;
+    boolean success;
+
+    if (attempt > cuckooLimit) {
+      throw new TableFullException();
+    }
+    for (int i = 0; i < subTables.length; i++) {
+      int subTableIndex;
+
+      subTableIndex = (attempt + i) & subTablesMask;
+      subTable = subTables[subTableIndex];
+      if (subTable.put(msl, lsl, value)) {
+        return;
+      }
+    }
+    subTable = subTables[attempt % subTables.length];
+    subTable.vacate(lsl, attempt, Math.abs(((int) (lsl + attempt) % subTable.entriesPerBucket)));
+    success = subTable.put(msl, lsl, value);
+    if (!success) {
+      throw new RuntimeException("panic");
+    }
+  }
+
+  class SubTable extends SubTableBase {
+    private final ByteBuffer byteBuf;
+    private final LongBuffer buf;
+    private final IntBuffer values;
+    private final int keyShift;
+
+    private static final int mslOffset = 0;
+    private static final int lslOffset = 1;
+    private static final int _singleEntrySize = 2;
+
+    SubTable(int numBuckets, int entriesPerBucket, int extraShift) {
+      super(numBuckets, entriesPerBucket, _singleEntrySize);
+      long bufSizeBytes;
+      long valuesSizeBytes;
+
+      bufSizeBytes = (long) bufferSizeLongs * Long.BYTES;
+      valuesSizeBytes = (long) numBuckets * entriesPerBucket * Integer.BYTES;
+      if (bufSizeBytes + valuesSizeBytes > Integer.MAX_VALUE) {
+        throw new RuntimeException("Sub table too large for off-heap storage: " + (bufSizeBytes + valuesSizeBytes));
+      }
+      byteBuf = ByteBuffer.allocateDirect((int) (bufSizeBytes + valuesSizeBytes));
+      // slice() resets the byte order, so set the native order on each slice
+      buf = byteBuf.duplicate().limit((int) bufSizeBytes).slice().order(
+          ByteOrder.nativeOrder()).asLongBuffer();
+      values = byteBuf.duplicate().position((int) bufSizeBytes).slice().order(
+          ByteOrder.nativeOrder()).asIntBuffer();
+      keyShift = extraShift;
+      clear();
+    }
+
+    long sizeBytes() {
+      return (long) buf.capacity() * Long.BYTES + (long) values.capacity() * Integer.BYTES;
+    }
+
+    void clear() {
+      // direct buffers are zeroed on allocation; only values need to be marked empty
+      for (int i = 0; i < values.capacity(); i++) {
+        values.put(i, empty);
+      }
+    }
+
+    @Override
+    boolean remove(long msl, long lsl) {
+      int bucketIndex;
+
+      bucketIndex = getBucketIndex(lsl);
+      for (int i = 0; i < entriesPerBucket; i++) {
+        int entryIndex;
+
+        entryIndex = (((int) lsl >>> balanceShift) + i) & entriesMask;
+        if (!isEmpty(bucketIndex, entryIndex) && entryMatches(msl, lsl, bucketIndex, entryIndex)) {
+          clearEntry(bucketIndex, entryIndex);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    int get(long msl, long lsl) {
+      int bucketIndex;
+
+      bucketIndex = getBucketIndex(lsl);
+      for (int i = 0; i < entriesPerBucket; i++) {
+        int entryIndex;
+
+        entryIndex = (((int) lsl >>> balanceShift) + i) & entriesMask;
+        if (entryMatches(msl, lsl, bucketIndex, entryIndex)) {
+          return getValue(bucketIndex, entryIndex);
+        }
+      }
+      return empty;
+    }
+
+    boolean put(long msl, long lsl, int value) {
+      int bucketIndex;
+
+      bucketIndex = getBucketIndex(lsl);
+      for (int i = 0; i < entriesPerBucket; i++) {
+        int entryIndex;
+
+        entryIndex = (((int) lsl >>> balanceShift) + i) & entriesMask;
+        if (isEmpty(bucketIndex, entryIndex)) {
+          putValue(bucketIndex, msl, lsl, value, entryIndex);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void vacate(long lsl, int attempt, int entryIndex) {
+      int bucketIndex;
+
+      bucketIndex = getBucketIndex(lsl);
+      cuckooPut(getMSL(bucketIndex, entryIndex), getLSL(bucketIndex, entryIndex), getValue(bucketIndex, entryIndex),
+          attempt + 1);
+      clearEntry(bucketIndex, entryIndex);
+    }
+
+    void moveBucket(int bucketIndex, WritableDHTKeyCuckooBase destTable) {
+      for (int i = 0; i < entriesPerBucket; i++) {
+        if (!isEmpty(bucketIndex, i)) {
+          destTable.put(getMSL(bucketIndex, i), getLSL(bucketIndex, i), getValue(bucketIndex, i));
+          clearEntry(bucketIndex, i);
+        }
+      }
+    }
+
+    private void clearEntry(int bucketIndex, int entryIndex) {
+      int baseOffset;
+
+      baseOffset = getHTEntryIndex(bucketIndex, entryIndex);
+      values.put(bucketIndex * entriesPerBucket + entryIndex, empty);
+      buf.put(baseOffset + mslOffset, 0);
+      buf.put(baseOffset + lslOffset, 0);
+    }
+
+    private int getBucketIndex(long lsl) {
+      return (int) (lsl >>> keyShift) & bitMask;
+    }
+
+    protected final boolean isEmpty(int bucketIndex, int entryIndex) {
+      return getValue(bucketIndex, entryIndex) == empty;
+    }
+
+    private boolean entryMatches(long msl, long lsl, int bucketIndex, int entryIndex) {
+      int baseOffset;
+
+      baseOffset = getHTEntryIndex(bucketIndex, entryIndex);
+      return buf.get(baseOffset + mslOffset) == msl && buf.get(baseOffset + lslOffset) == lsl;
+    }
+
+    int getValue(int bucketIndex, int entryIndex) {
+      return values.get(bucketIndex * entriesPerBucket + entryIndex);
+    }
+
+    long getMSL(int bucketIndex, int entryIndex) {
+      return buf.get(getHTEntryIndex(bucketIndex, entryIndex) + mslOffset);
+    }
+
+    long getLSL(int bucketIndex, int entryIndex) {
+      return buf.get(getHTEntryIndex(bucketIndex, entryIndex) + lslOffset);
+    }
+
+    private void putValue(int bucketIndex, long msl, long lsl, int value, int entryIndex) {
+      int baseOffset;
+
+      baseOffset = getHTEntryIndex(bucketIndex, entryIndex);
+      buf.put(baseOffset + mslOffset, msl);
+      buf.put(baseOffset + lslOffset, lsl);
+      values.put(bucketIndex * entriesPerBucket + entryIndex, value);
+    }
+  }
+
+  @Override
+  public Iterator<DHTKeyIntEntry> iterator() {
+    return new CuckooIterator();
+  }
+
+  class CuckooIterator extends CuckooIteratorBase implements Iterator<DHTKeyIntEntry> {
+    CuckooIterator() {
+      super();
+    }
+
+    @Override
+    public DHTKeyIntEntry next() {
+      DHTKeyIntEntry mapEntry;
+
+      // precondition: moveToNonEmpty() has been called
+      mapEntry = new DHTKeyIntEntry(subTables[subTable].getMSL(bucket, entry),
+          subTables[subTable].getLSL(bucket, entry), subTables[subTable].getValue(bucket, entry));
+      moveToNonEmpty();
+      return mapEntry;
+    }
+
+    boolean curIsEmpty() {
+      return subTables[subTable].getValue(bucket, entry) == empty;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package com.ms.silverking.cloud.dht.collection;
+
+import com.ms.silverking.collection.cuckoo.WritableCuckooConfig;
+
+/**
+ * A DHTKeyCuckooBase that supports writes. Provides the allocation-free primitives used by
+ * IncrementalRehashDHTKeyCuckoo to grow a table.
+ */
+public abstract class WritableDHTKeyCuckooBase extends DHTKeyCuckooBase {
+  protected WritableDHTKeyCuckooBase(WritableCuckooConfig cuckooConfig) {
+    super(cuckooConfig);
+  }
+
+  public abstract void put(long msl, long lsl, int value);
+
+  /**
+   * Move all entries in the given bucket of the given sub table into destTable, leaving the bucket
+   * empty. Entries are removed from this table only once they have been added to destTable.
+   * Does not allocate.
+   */
+  abstract void moveBucket(int subTableIndex, int bucketIndex, WritableDHTKeyCuckooBase destTable);
+
+  /**
+   * Create an empty table with the same implementation as this table
+   */
+  abstract WritableDHTKeyCuckooBase newTable(WritableCuckooConfig cuckooConfig);
+
+  /**
+   * Release any memory that is not reclaimed by the garbage collector. The table must not be used
+   * afterwards. The default implementation does nothing.
+   */
+  void release() {
+  }
+}
@@ -0,0 +1,166 @@
+package com.ms.silverking.cloud.dht.collection.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ms.silverking.cloud.dht.collection.DHTKeyIntCursor;
+import com.ms.silverking.cloud.dht.collection.DHTKeyIntEntry;
+import com.ms.silverking.cloud.dht.collection.DHTKeyObjectMap;
+import com.ms.silverking.cloud.dht.collection.IncrementalRehashDHTKeyCuckoo;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.collection.Triple;
+import com.ms.silverking.collection.cuckoo.WritableCuckooConfig;
+
+/**
+ * Measures the bytes allocated per key by key-heavy code paths, before and after the move to
+ * primitive (msl, lsl) access:
+ * <ul>
+ * <li>iterating a key index with iterator() vs. cursor()</li>
+ * <li>a per-operation key state table as a HashMap vs. a DHTKeyObjectMap</li>
+ * <li>ordering a batch retrieval by segment with Triple objects vs. a primitive long sort</li>
+ * </ul>
+ * Requires a HotSpot JVM (uses com.sun.management.ThreadMXBean).
+ */
+public class KeyAllocationBenchmark {
+  private final DHTKey[] keys;
+  private final IncrementalRehashDHTKeyCuckoo keyIndex;
+  private final com.sun.management.ThreadMXBean threadMXBean;
+  private long sink;
+
+  private static final WritableCuckooConfig config = new WritableCuckooConfig(1024, 4, 4, 32);
+  private static final int numSegments = 64;
+
+  public KeyAllocationBenchmark(int numKeys) {
+    keys = new DHTKey[numKeys];
+    keyIndex = new IncrementalRehashDHTKeyCuckoo(config);
+    for (int i = 0; i < numKeys; i++) {
+      keys[i] = SimpleKey.randomKey();
+      keyIndex.put(keys[i], i % numSegments);
+    }
+    threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  }
+
+  private long allocatedBytes() {
+    return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private void report(String name, Runnable r, int reps) {
+    long allocated;
+
+    // warm up so that JIT escape analysis is in effect for both variants
+    for (int i = 0; i < reps; i++) {
+      r.run();
+    }
+    allocated = allocatedBytes();
+    for (int i = 0; i < reps; i++) {
+      r.run();
+    }
+    allocated = allocatedBytes() - allocated;
+    System.out.printf("%-32s %10.2f bytes/key\n", name, (double) allocated / ((double) reps * keys.length));
+  }
+
+  private void iterateWithIterator() {
+    for (DHTKeyIntEntry entry : keyIndex) {
+      sink += entry.getMSL() ^ entry.getValue();
+    }
+  }
+
+  private void iterateWithCursor() {
+    DHTKeyIntCursor cursor;
+
+    cursor = keyIndex.cursor();
+    while (cursor.advance()) {
+      sink += cursor.getMSL() ^ cursor.getValue();
+    }
+  }
+
+  private void stateTableHashMap() {
+    Map<DHTKey, Object> map;
+
+    map = new HashMap<>(keys.length * 2);
+    for (DHTKey key : keys) {
+      map.put(key, key);
+    }
+    for (DHTKey key : keys) {
+      sink += map.get(key) == key ? 1 : 0;
+    }
+  }
+
+  private void stateTableObjectMap() {
+    DHTKeyObjectMap<Object> map;
+
+    map = new DHTKeyObjectMap<>(keys.length);
+    for (DHTKey key : keys) {
+      map.put(key, key);
+    }
+    for (DHTKey key : keys) {
+      sink += map.get(key) == key ? 1 : 0;
+    }
+  }
+
+  private int[] segmentNumbers() {
+    int[] segmentNumbers;
+
+    segmentNumbers = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      segmentNumbers[i] = keyIndex.get(keys[i].getMSL(), keys[i].getLSL());
+    }
+    return segmentNumbers;
+  }
+
+  // mirrors the former NamespaceStore code, which sorted a generic array
+  @SuppressWarnings("unchecked")
+  private void segmentOrderTriples() {
+    int[] segmentNumbers;
+    Triple<DHTKey, Integer, Integer>[] order;
+
+    segmentNumbers = segmentNumbers();
+    order = (Triple<DHTKey, Integer, Integer>[]) new Triple<?, ?, ?>[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      order[i] = new Triple<>(keys[i], segmentNumbers[i], i);
+    }
+    Arrays.sort(order, Comparator.comparing((Triple<DHTKey, Integer, Integer> t) -> -t.getV2()).thenComparing(
+        Triple::getV3));
+    sink += order[0].getV3();
+  }
+
+  private void segmentOrderPrimitive() {
+    int[] segmentNumbers;
+    long[] order;
+
+    segmentNumbers = segmentNumbers();
+    order = new long[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      order[i] = ((long) ~segmentNumbers[i] << 32) | i;
+    }
+    Arrays.sort(order);
+    sink += (int) order[0];
+  }
+
+  public void runBenchmark(int reps) {
+    System.out.printf("keys %d reps %d\n", keys.length, reps);
+    report("keyIndex iterator()", this::iterateWithIterator, reps);
+    report("keyIndex cursor()", this::iterateWithCursor, reps);
+    report("state table HashMap", this::stateTableHashMap, reps);
+    report("state table DHTKeyObjectMap", this::stateTableObjectMap, reps);
+    report("segment order Triple sort", this::segmentOrderTriples, reps);
+    report("segment order long sort", this::segmentOrderPrimitive, reps);
+    System.out.printf("sink %d\n", sink);
+  }
+
+  public static void main(String[] args) {
+    try {
+      if (args.length != 2) {
+        System.err.println("args: <numKeys> <reps>");
+        return;
+      }
+      new KeyAllocationBenchmark(Integer.parseInt(args[0])).runBenchmark(Integer.parseInt(args[1]));
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+}
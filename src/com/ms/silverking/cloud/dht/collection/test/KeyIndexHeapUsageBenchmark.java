@@ -0,0 +1,86 @@
+package com.ms.silverking.cloud.dht.collection.test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+import com.ms.silverking.cloud.dht.collection.IncrementalRehashDHTKeyCuckoo;
+import com.ms.silverking.cloud.dht.collection.OffHeapIntDHTKeyCuckoo;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.collection.cuckoo.WritableCuckooConfig;
+import com.ms.silverking.time.SimpleStopwatch;
+import com.ms.silverking.time.Stopwatch;
+
+/**
+ * Compares heap and direct memory usage, and a full GC pause, of a namespace key index held on-heap
+ * (IntArrayDHTKeyCuckoo) and off-heap (OffHeapIntDHTKeyCuckoo).
+ *
+ * Run each mode in a separate JVM, e.g. with -Xmx large enough for the heap mode.
+ */
+public class KeyIndexHeapUsageBenchmark {
+  private static final WritableCuckooConfig initialConfig = new WritableCuckooConfig(1024 * 1024, 4, 4, 32);
+
+  private static long usedHeapAfterGC() {
+    Runtime runtime;
+
+    runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static long usedDirectMemory() {
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if (pool.getName().equals("direct")) {
+        return pool.getMemoryUsed();
+      }
+    }
+    return 0;
+  }
+
+  public static void runBenchmark(boolean offHeap, int numKeys) {
+    IncrementalRehashDHTKeyCuckoo map;
+    long heapBefore;
+    long directBefore;
+    long heapAfter;
+    long directAfter;
+    Stopwatch sw;
+
+    heapBefore = usedHeapAfterGC();
+    directBefore = usedDirectMemory();
+    sw = new SimpleStopwatch();
+    if (offHeap) {
+      map = new IncrementalRehashDHTKeyCuckoo(new OffHeapIntDHTKeyCuckoo(initialConfig));
+    } else {
+      map = new IncrementalRehashDHTKeyCuckoo(initialConfig);
+    }
+    for (int i = 0; i < numKeys; i++) {
+      map.put(new SimpleKey(i * 0x9E3779B97F4A7C15L, i * 0xC2B2AE3D27D4EB4FL), i);
+    }
+    sw.stop();
+    System.out.printf("mode %s keys %d totalEntries %d insert %f s\n", offHeap ? "offHeap" : "heap", numKeys,
+        map.getTotalEntries(), sw.getElapsedSeconds());
+
+    sw = new SimpleStopwatch();
+    heapAfter = usedHeapAfterGC();
+    sw.stop();
+    directAfter = usedDirectMemory();
+    System.out.printf("heap used %d MB\n", (heapAfter - heapBefore) / (1024 * 1024));
+    System.out.printf("direct used %d MB\n", (directAfter - directBefore) / (1024 * 1024));
+    System.out.printf("3 x full GC %f s\n", sw.getElapsedSeconds());
+    // keep the map reachable through the measurements
+    System.out.println(map.get(new SimpleKey(0, 0)));
+  }
+
+  public static void main(String[] args) {
+    try {
+      if (args.length != 2) {
+        System.err.println("args: <heap|offHeap> <numKeys>");
+        return;
+      }
+      runBenchmark(args[0].equals("offHeap"), Integer.parseInt(args[1]));
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -58,6 +58,18 @@ public class DHTConstants {
   public static final int defaultMinFinalizationIntervalMillis = 12 * 60 * 60 * 1000;
   public static final boolean defaultEnablePendingPuts = true;
   public static final long defaultMaxUnfinalizedDeletedBytes = 10L * 1024L * 1024L * 1024L;
+  public static final int defaultSegmentKeyFilterBitsPerKey = 10;
+  public static final int defaultColdSegmentCacheCapacity = 1024;
+  public static final long defaultColdSegmentBlockCacheBytes = 64 * 1024 * 1024;
+  public static final int defaultSegmentPrefetchAccessThreshold = 0; // 0 => access-based prefetch disabled
+  public static final int defaultSegmentPrefetchRecentSegments = 0; // 0 => recent segments not warmed
+  public static final int defaultChecksumTreeBuildParallelism = 0; // 0 => number of processors
+  public static final int defaultSyncRetrievalBatchSize = 256;
+  public static final int defaultSyncMinOutstandingRequests = 1;
+  public static final int defaultSyncMaxOutstandingRequests = 16;
+  public static final int defaultSyncTargetLatencyMillis = 2 * 1000;
+  public static final double defaultSyncMaxLoadPerProcessor = 1.0;
+  public static final int defaultReplicaTimeoutCheckIntervalMillis = 2 * 1000;
 
   public static final int minSegmentSize = 2 * 1024;
   public static final int defaultSegmentSize = 64 * 1024 * 1024;
@@ -120,6 +132,22 @@ public class DHTConstants {
   public static final String verboseReapLogInfoProperty = daemonPackageBase + ".VerboseReapLogInfo";
   public static final String defaultCompactionThresholdProperty = daemonPackageBase + ".DefaultCompactionThreshold";
   public static final String forceDataSegmentLoadOnReapProperty = daemonPackageBase + ".ForceDataSegmentLoadOnReap";
+  public static final String segmentKeyFilterBitsPerKeyProperty = daemonPackageBase + ".SegmentKeyFilterBitsPerKey";
+  public static final String coldSegmentCacheCapacityProperty = daemonPackageBase + ".ColdSegmentCacheCapacity";
+  public static final String coldSegmentBlockCacheBytesProperty = daemonPackageBase + ".ColdSegmentBlockCacheBytes";
+  public static final String segmentPrefetchAccessThresholdProperty =
+      daemonPackageBase + ".SegmentPrefetchAccessThreshold";
+  public static final String segmentPrefetchRecentSegmentsProperty =
+      daemonPackageBase + ".SegmentPrefetchRecentSegments";
+  public static final String checksumTreeBuildParallelismProperty =
+      daemonPackageBase + ".ChecksumTreeBuildParallelism";
+  public static final String syncRetrievalBatchSizeProperty = daemonPackageBase + ".SyncRetrievalBatchSize";
+  public static final String syncMinOutstandingRequestsProperty = daemonPackageBase + ".SyncMinOutstandingRequests";
+  public static final String syncMaxOutstandingRequestsProperty = daemonPackageBase + ".SyncMaxOutstandingRequests";
+  public static final String syncTargetLatencyMillisProperty = daemonPackageBase + ".SyncTargetLatencyMillis";
+  public static final String syncMaxLoadPerProcessorProperty = daemonPackageBase + ".SyncMaxLoadPerProcessor";
+  public static final String replicaTimeoutCheckIntervalMillisProperty =
+      daemonPackageBase + ".ReplicaTimeoutCheckIntervalMillis";
 
   public static final String verboseGlobalFinalizationProperty = systemClassBase + ".VerboseGlobalFinalization";
   public static final String jvmMonitorMaxIntervalMillisProperty = systemClassBase + ".JvmMonitorMaxIntervalMillis";
@@ -4,11 +4,18 @@
 
 import com.ms.silverking.cloud.dht.NamespaceOptions;
 import com.ms.silverking.cloud.dht.NamespaceServerSideCode;
+import com.ms.silverking.cloud.dht.NamespaceStorageOptions;
 import com.ms.silverking.cloud.dht.SecondaryTarget;
+import com.ms.silverking.thread.lwt.BaseWorker;
+import com.ms.silverking.thread.lwt.LWTPoolProvider;
 import com.ms.silverking.util.SafeTimer;
+import com.ms.silverking.util.TimerWheel;
 
 public class DHTUtil {
   private static final Timer timer = new SafeTimer(true);
+  private static final TimerWheel timerWheel = new TimerWheel("DHTTimerWheel", SystemTimeUtil.skSystemTimeSource, 1,
+      DHTUtil::runTimeoutHandler);
+  private static volatile TimeoutHandlerWorker timeoutHandlerWorker;
 
   static {
     initializeObjectParsers();
@@ -17,6 +24,7 @@ public class DHTUtil {
   private static void initializeObjectParsers() {
     new SecondaryTarget(null, null);
     NamespaceServerSideCode.init();
+    NamespaceStorageOptions.init();
     NamespaceOptions.init();
   }
 
@@ -28,4 +36,47 @@ public static long currentTimeMillis() {
   public static Timer timer() {
     return timer;
   }
+
+  /**
+   * Runs timer wheel handlers on the default work pool so that the wheel thread only tracks time
+   */
+  private static class TimeoutHandlerWorker extends BaseWorker<Runnable> {
+    TimeoutHandlerWorker() {
+      super(LWTPoolProvider.defaultConcurrentWorkPool, true);
+    }
+
+    @Override
+    public void doWork(Runnable handler) {
+      handler.run();
+    }
+
+    @Override
+    public Runnable[] newWorkArray(int size) {
+      return new Runnable[size];
+    }
+  }
+
+  private static void runTimeoutHandler(Runnable handler) {
+    if (timeoutHandlerWorker == null) {
+      synchronized (DHTUtil.class) {
+        if (timeoutHandlerWorker == null) {
+          if (LWTPoolProvider.defaultConcurrentWorkPool == null) {
+            // no pool to dispatch to yet
+            handler.run();
+            return;
+          }
+          timeoutHandlerWorker = new TimeoutHandlerWorker();
+        }
+      }
+    }
+    // never run directly on the wheel thread
+    timeoutHandlerWorker.addWork(handler, 0);
+  }
+
+  /**
+   * @return a shared wheel for operation timeouts. Handlers run on the default concurrent work pool.
+   */
+  public static TimerWheel timerWheel() {
+    return timerWheel;
+  }
 }
@@ -76,9 +76,13 @@ public static void test() {
   }
 
   public static long keyToCoordinate(DHTKey key) {
+    return keyToCoordinate(key.getMSL());
+  }
+
+  public static long keyToCoordinate(long msl) {
     // We use MSL to keep the ordering of keys
     // consistent with the ordering of coordinates.
-    return LongRingspace.longToRingspace(key.getMSL());
+    return LongRingspace.longToRingspace(msl);
   }
 
   public static DHTKey arbitraryKeyForCoordinate(long p) {
@@ -9,4 +9,5 @@ public enum MessageType {
   CHECKSUM_TREE_REQUEST, CHECKSUM_TREE, OP_UPDATE, OP_NOP, OP_PING, OP_PING_ACK, NAMESPACE_REQUEST,
   NAMESPACE_RESPONSE, SET_CONVERGENCE_STATE, REAP, GLOBAL_COMMAND_NEW, GLOBAL_COMMAND_UPDATE, GLOBAL_COMMAND_RESPONSE
   , PROGRESS, PUT_TRACE, RETRIEVE_TRACE, PUT_RESPONSE_TRACE, PUT_UPDATE_TRACE, RETRIEVE_RESPONSE_TRACE, ERROR_RESPONSE
+  , SEGMENT_TRANSFER_REQUEST, KEY_SCAN, KEY_SCAN_RESPONSE, PUT_ATOMIC, BATCH
 }
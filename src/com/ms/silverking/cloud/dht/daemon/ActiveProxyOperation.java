@@ -18,6 +18,7 @@
 import com.ms.silverking.cloud.dht.common.MessageType;
 import com.ms.silverking.cloud.dht.common.OpResult;
 import com.ms.silverking.cloud.dht.common.SimpleValueCreator;
+import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
 import com.ms.silverking.cloud.dht.daemon.storage.StorageModule;
 import com.ms.silverking.cloud.dht.daemon.storage.protocol.OpCommunicator;
 import com.ms.silverking.cloud.dht.daemon.storage.protocol.Operation;
@@ -34,6 +35,7 @@
 import com.ms.silverking.net.security.AuthorizationResult;
 import com.ms.silverking.net.security.Authorizer;
 import com.ms.silverking.net.security.NonRetryableAuthFailedException;
+import com.ms.silverking.util.TimerWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +66,7 @@
   protected final boolean sendResultsDuringStart;
   protected final boolean hasTraceID;
   protected final byte[] maybeTraceID;
+  private final long startTimeNanos;
 
   protected static final Logger log = LoggerFactory.getLogger(ActiveProxyOperation.class);
 
@@ -71,6 +74,8 @@
 
   protected Operation<K, R> operation;
 
+  private volatile TimerWheel.Timeout timeout;
+
   protected static final boolean debug = false;
 
   ActiveProxyOperation(MessageGroupConnectionProxy connection,
@@ -96,6 +101,7 @@
     }
     this.estimatedKeys = message.estimatedKeys();
     this.sendResultsDuringStart = sendResultsDuringStart;
+    startTimeNanos = SystemTimeUtil.skSystemTimeSource.relTimeNanos();
   }
 
   protected static ForwardingMode getForwardingMode(MessageGroup message) {
@@ -120,6 +126,27 @@ public boolean hasTimedOut(long curTime) {
     return curTime > absDeadlineMillis;
   }
 
+  long getAbsDeadlineMillis() {
+    return absDeadlineMillis;
+  }
+
+  long getStartTimeNanos() {
+    return startTimeNanos;
+  }
+
+  void setTimeout(TimerWheel.Timeout timeout) {
+    this.timeout = timeout;
+  }
+
+  void cancelTimeout() {
+    TimerWheel.Timeout _timeout;
+
+    _timeout = timeout;
+    if (_timeout != null) {
+      _timeout.cancel();
+    }
+  }
+
   protected void setOperation(Operation<K, R> operation) {
     this.operation = operation;
   }
@@ -162,6 +189,7 @@ private static final RingOwnerQueryOpType messageTypeToOwnerQueryOpType(MessageT
     switch (messageType) {
     case PUT:
     case PUT_TRACE:
+    case PUT_ATOMIC:
       return RingOwnerQueryOpType.Write;
     case RETRIEVE:
     case RETRIEVE_TRACE:
@@ -6,13 +6,18 @@
 import java.util.Map;
 import java.util.Set;
 
+import com.google.common.collect.ImmutableList;
+import com.ms.silverking.cloud.dht.ForwardingMode;
 import com.ms.silverking.cloud.dht.NamespaceOptions;
 import com.ms.silverking.cloud.dht.SecondaryTarget;
 import com.ms.silverking.cloud.dht.common.DHTConstants;
 import com.ms.silverking.cloud.dht.common.DHTKey;
 import com.ms.silverking.cloud.dht.common.EnumValues;
+import com.ms.silverking.cloud.dht.common.MessageType;
 import com.ms.silverking.cloud.dht.common.OpResult;
 import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
+import com.ms.silverking.cloud.dht.daemon.storage.AtomicUpdateListener;
+import com.ms.silverking.cloud.dht.daemon.storage.KeyedOpResultListener;
 import com.ms.silverking.cloud.dht.daemon.storage.StorageValueAndParameters;
 import com.ms.silverking.cloud.dht.daemon.storage.protocol.OpCommunicator;
 import com.ms.silverking.cloud.dht.daemon.storage.protocol.PutCommunicator;
@@ -30,6 +35,7 @@
 import com.ms.silverking.cloud.dht.net.ProtoPutUpdateMessageGroup;
 import com.ms.silverking.cloud.dht.net.PutResult;
 import com.ms.silverking.cloud.dht.net.protocol.PutMessageFormat;
+import com.ms.silverking.cloud.toporing.PrimarySecondaryIPListPair;
 import com.ms.silverking.id.UUIDBase;
 import com.ms.silverking.net.IPAndPort;
 import com.ms.silverking.time.SystemTimeSource;
@@ -37,6 +43,11 @@
 /**
  * Put executed on behalf of a client. The internal StorageOperation implements the StorageProtocol
  * specific behavior.
+ * <p>
+ * For PUT_ATOMIC messages, the value is an update record. The update is resolved once, by the key's first
+ * primary replica, which stores the resulting value and forwards it to the other replicas as an ordinary
+ * put. A proxy that is not that replica relays the update to it with ForwardingMode.ALL, which marks the
+ * update for resolution at the receiving replica, and relays the results back to the client.
  */
 class ActiveProxyPut extends ActiveProxyOperation<MessageGroupKeyEntry, PutResult> implements PutOperationContainer {
   private final StorageOperation storageOperation;
@@ -48,6 +59,8 @@ class ActiveProxyPut extends ActiveProxyOperation<MessageGroupKeyEntry, PutResul
   private final UUIDBase msg_uuid;
   private final long msg_context;
   private final int msg_deadline;
+  private final boolean atomic;
+  private volatile boolean relaying;
 
   ActiveProxyPut(MessageGroup message, ByteBuffer optionsByteBuffer, MessageGroupConnectionProxy connection,
       MessageModule messageModule, StorageProtocol storageProtocol, long absDeadlineMillis, boolean local,
@@ -60,6 +73,7 @@ class ActiveProxyPut extends ActiveProxyOperation<MessageGroupKeyEntry, PutResul
     msg_uuid = message.getUUID();
     msg_context = message.getContext();
     msg_deadline = message.getDeadlineRelativeMillis();
+    atomic = message.getMessageType() == MessageType.PUT_ATOMIC;
     systemTimeSource = SystemTimeUtil.skSystemTimeSource;
     _version = ProtoPutMessageGroup.getPutVersion(message);
     if (_version == DHTConstants.unspecifiedVersion) {
@@ -94,6 +108,11 @@ void startOperation() {
       System.out.println(this + " " + forwardingMode + " " + storageOperation);
     }
     pComm = new PutCommunicator(this);
+    if (atomic && forwardingMode.forwards()) {
+      startAtomicOperation();
+      message = null; // free payload for GC
+      return;
+    }
     if (!getOpResult().isComplete()) {
       if (forwardingMode.forwards()) {
         messageModule.addActivePut(uuid, this);
@@ -130,6 +149,175 @@ public MessageGroup createForward(List<MessageGroupKeyEntry> destEntries, ByteBu
     }
   }
 
+  /**
+   * Forwards the value that an atomic update resolved to in place of the update record
+   */
+  class ResolvedValueForwardCreator implements ForwardCreator<MessageGroupKeyEntry> {
+    private final StorageValueAndParameters resolvedValue;
+
+    ResolvedValueForwardCreator(StorageValueAndParameters resolvedValue) {
+      this.resolvedValue = resolvedValue;
+    }
+
+    @Override
+    public MessageGroup createForward(List<MessageGroupKeyEntry> destEntries, ByteBuffer optionsByteBuffer,
+        byte[] traceIDInFinalReplica) {
+      ProtoPutForwardMessageGroup protoMG;
+
+      protoMG = new ProtoPutForwardMessageGroup(uuid, namespace, originator, optionsByteBuffer,
+          resolvedValue.getKey(), resolvedValue.getValue().duplicate().rewind(),
+          resolvedValue.getChecksum(), PutMessageFormat.getChecksumType(optionsByteBuffer),
+          messageModule.getAbsMillisTimeSource().relMillisRemaining(absDeadlineMillis));
+      return protoMG.toMessageGroup();
+    }
+  }
+
+  /////////////////////////////////////////
+  // atomic updates
+
+  private void startAtomicOperation() {
+    MessageGroupPutEntry entry;
+    PrimarySecondaryIPListPair listPair;
+    List<IPAndPort> primaryReplicas;
+
+    // updates are single-key
+    entry = message.getPutValueKeyIterator(ProtoPutMessageGroup.getChecksumType(message)).iterator().next();
+    listPair = messageModule.getReplicaListPair(namespace, entry, RingOwnerQueryOpType.Write);
+    primaryReplicas = listPair.getPrimaryOwners();
+    if (containsLocalReplica(primaryReplicas)
+        && (isLocalReplica(primaryReplicas.get(0)) || forwardingMode == ForwardingMode.ALL)) {
+      resolveAtomicUpdate(entry, primaryReplicas, listPair.getSecondaryOwners());
+    } else if (primaryReplicas.isEmpty() || forwardingMode == ForwardingMode.ALL) {
+      // an update is relayed at most once, so that proxies with differing ring views cannot relay it in a cycle
+      sendResults(ImmutableList.of(new PutResult(entry, OpResult.REPLICA_EXCLUDED)));
+    } else {
+      relayAtomicUpdate(entry, primaryReplicas.get(0));
+    }
+  }
+
+  private void relayAtomicUpdate(MessageGroupPutEntry entry, IPAndPort resolvingReplica) {
+    ProtoPutForwardMessageGroup protoMG;
+
+    relaying = true;
+    messageModule.addActivePut(uuid, this);
+    protoMG = new ProtoPutForwardMessageGroup(MessageType.PUT_ATOMIC, uuid, namespace, originator, optionsByteBuffer,
+        ImmutableList.of(entry), PutMessageFormat.getChecksumType(optionsByteBuffer),
+        messageModule.getAbsMillisTimeSource().relMillisRemaining(absDeadlineMillis), null, ForwardingMode.ALL);
+    messageModule.getMessageGroupBase().send(protoMG.toMessageGroup(), resolvingReplica);
+  }
+
+  private void resolveAtomicUpdate(MessageGroupPutEntry entry, List<IPAndPort> primaryReplicas,
+      List<IPAndPort> secondaryReplicas) {
+    AtomicResolution resolution;
+
+    resolution = new AtomicResolution(entry, primaryReplicas, secondaryReplicas);
+    getStorage().putAtomic(getContext(), ImmutableList.of(
+        new StorageValueAndParameters(entry, this, SystemTimeUtil.skSystemTimeSource.absTimeNanos(),
+            requiredPreviousVersion, lockSeconds)), getUserData(), resolution, resolution);
+    resolution.storeReturned();
+  }
+
+  /**
+   * Local resolution of an atomic update. The storage result may be sent while the namespace is locked, or
+   * later if writes are group committed, so forwarding waits until the result is known and the store has
+   * returned.
+   */
+  private class AtomicResolution implements KeyedOpResultListener, AtomicUpdateListener {
+    private final MessageGroupPutEntry entry;
+    private final List<IPAndPort> primaryReplicas;
+    private final List<IPAndPort> secondaryReplicas;
+    private StorageValueAndParameters resolvedValue;
+    private OpResult result;
+    private boolean storeReturned;
+
+    AtomicResolution(MessageGroupPutEntry entry, List<IPAndPort> primaryReplicas,
+        List<IPAndPort> secondaryReplicas) {
+      this.entry = entry;
+      this.primaryReplicas = primaryReplicas;
+      this.secondaryReplicas = secondaryReplicas;
+    }
+
+    @Override
+    public synchronized void resolved(StorageValueAndParameters value) {
+      resolvedValue = value;
+    }
+
+    @Override
+    public void sendResult(DHTKey key, OpResult result) {
+      boolean complete;
+
+      synchronized (this) {
+        this.result = result;
+        complete = storeReturned;
+      }
+      if (complete) {
+        complete();
+      }
+    }
+
+    void storeReturned() {
+      boolean complete;
+
+      synchronized (this) {
+        storeReturned = true;
+        complete = result != null;
+      }
+      if (complete) {
+        complete();
+      }
+    }
+
+    private void complete() {
+      if (result == OpResult.SUCCEEDED) {
+        forwardResolvedValue(entry, resolvedValue, primaryReplicas, secondaryReplicas);
+      } else {
+        sendResults(ImmutableList.of(new PutResult(entry, result)));
+      }
+    }
+  }
+
+  /**
+   * Store the resolved value at the remaining replicas as an ordinary put. The local replica has already
+   * stored it.
+   */
+  private void forwardResolvedValue(MessageGroupPutEntry entry, StorageValueAndParameters resolvedValue,
+      List<IPAndPort> primaryReplicas, List<IPAndPort> secondaryReplicas) {
+    PutCommunicator pComm;
+    Map<IPAndPort, List<MessageGroupKeyEntry>> replicaMessageLists;
+
+    pComm = new PutCommunicator(this);
+    processInitialMessageGroupEntry(entry, primaryReplicas, secondaryReplicas, pComm);
+    replicaMessageLists = pComm.takeReplicaMessageLists();
+    replicaMessageLists.remove(localIPAndPort());
+    storageOperation.localUpdate(entry, StorageProtocolUtil.initialStorageStateOrdinal, OpResult.SUCCEEDED, pComm);
+    if (!getOpResult().isComplete()) {
+      messageModule.addActivePut(uuid, this);
+    }
+    forwardGroupedEntries(replicaMessageLists, optionsByteBuffer, new ResolvedValueForwardCreator(resolvedValue),
+        pComm);
+    forwardGroupedEntries(pComm.takeReplicaUpdateMessageLists(), optionsByteBuffer,
+        new PutUpdateForwardCreator(storageOperation.nextStorageState(storageOperation.initialStorageState())), pComm);
+    sendResults(pComm.takeResults());
+  }
+
+  /**
+   * Pass the results of a relayed update back to the client
+   */
+  private OpResult relayPutResponse(MessageGroup message) {
+    List<PutResult> results;
+    OpResult result;
+
+    results = new ArrayList<>(1);
+    result = OpResult.INCOMPLETE;
+    for (MessageGroupKeyOrdinalEntry entry : message.getKeyOrdinalIterator()) {
+      result = EnumValues.opResult[entry.getOrdinal()];
+      results.add(new PutResult(entry.getKey(), result));
+    }
+    messageModule.sendPutResults(message, version, connection, results,
+        ProtoPutResponseMessageGroup.getStorageState(message), message.getDeadlineRelativeMillis());
+    return result;
+  }
+
   class PutUpdateForwardCreator implements ForwardCreator<MessageGroupKeyOrdinalEntry> {
     private final byte storageState;
 
@@ -169,7 +357,11 @@ protected void localOp(List<? extends DHTKey> _entries, OpCommunicator<MessageGr
         }
         //Log.fine(entry);
       }
-      getStorage().put(getContext(), values, getUserData(), pComm);
+      if (atomic) {
+        getStorage().putAtomic(getContext(), values, getUserData(), pComm, null);
+      } else {
+        getStorage().put(getContext(), values, getUserData(), pComm);
+      }
       if (forwardingMode.forwards()) {
         for (DHTKey _entry : _entries) {
           storageOperation.localUpdate(_entry, StorageProtocolUtil.initialStorageStateOrdinal, OpResult.SUCCEEDED,
@@ -219,6 +411,9 @@ OpResult handlePutResponse(MessageGroup message, MessageGroupConnectionProxy _co
     PutCommunicator pComm;
     byte storageState;
 
+    if (relaying) {
+      return relayPutResponse(message);
+    }
     pComm = new PutCommunicator(this);
     if (debug) {
       System.out.println("handlePutResponse");
@@ -20,6 +20,7 @@
 import com.ms.silverking.cloud.dht.common.MetaDataUtil;
 import com.ms.silverking.cloud.dht.common.OpResult;
 import com.ms.silverking.cloud.dht.common.ValueUtil;
+import com.ms.silverking.cloud.dht.daemon.storage.NamespaceMetrics;
 import com.ms.silverking.cloud.dht.daemon.storage.StorageModule;
 import com.ms.silverking.cloud.dht.daemon.storage.convergence.ConvergenceController2;
 import com.ms.silverking.cloud.dht.daemon.storage.protocol.OpCommunicator;
@@ -55,6 +56,7 @@ public class ActiveProxyRetrieval extends ActiveProxyOperation<DHTKey, Retrieval
   private final RetrievalOperation retrievalOperation;
   private final Set<SecondaryTarget> secondaryTargets;
   private RetrievalCommunicator rComm;
+  private boolean waitForLatencyRecorded;
   private static Logger log = LoggerFactory.getLogger(ActiveProxyOperation.class);
 
   // FUTURE - combine common functionality between this class
@@ -239,6 +241,18 @@ public void relayWaitForResults() {
       System.out.println("relayWaitForResults");
     }
     sendResults(rComm);
+    recordLocalWaitForLatencyIfComplete();
+  }
+
+  /**
+   * Record the latency of a non-forwarded WAIT_FOR once all of its keys have been satisfied. The last key may
+   * be satisfied while the operation is started or by a later put, so this is checked at both points.
+   */
+  synchronized void recordLocalWaitForLatencyIfComplete() {
+    if (!waitForLatencyRecorded && !forwardingMode.forwards() && getOpResult().isComplete()) {
+      waitForLatencyRecorded = true;
+      messageModule.recordLatency(namespace, NamespaceMetrics.LatencyType.LocalWaitFor, getStartTimeNanos());
+    }
   }
 
   /////////////////////
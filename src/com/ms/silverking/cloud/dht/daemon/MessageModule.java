@@ -4,14 +4,13 @@
 import java.net.ConnectException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -28,8 +27,10 @@
 import com.ms.silverking.cloud.dht.RetrievalOptions;
 import com.ms.silverking.cloud.dht.SecondaryTarget;
 import com.ms.silverking.cloud.dht.ValueCreator;
+import com.ms.silverking.cloud.dht.WaitMode;
 import com.ms.silverking.cloud.dht.client.FailureCause;
 import com.ms.silverking.cloud.dht.common.DHTConstants;
+import com.ms.silverking.cloud.dht.common.DHTUtil;
 import com.ms.silverking.cloud.dht.common.DHTKey;
 import com.ms.silverking.cloud.dht.common.EnumValues;
 import com.ms.silverking.cloud.dht.common.InternalRetrievalOptions;
@@ -37,6 +38,7 @@
 import com.ms.silverking.cloud.dht.common.NamespaceProperties;
 import com.ms.silverking.cloud.dht.common.OpResult;
 import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
+import com.ms.silverking.cloud.dht.daemon.storage.NamespaceMetrics;
 import com.ms.silverking.cloud.dht.daemon.storage.NamespaceNotCreatedException;
 import com.ms.silverking.cloud.dht.daemon.storage.NamespaceStore;
 import com.ms.silverking.cloud.dht.daemon.storage.StorageModule;
@@ -53,8 +55,11 @@
 import com.ms.silverking.cloud.dht.net.MessageGroupConnection;
 import com.ms.silverking.cloud.dht.net.MessageGroupKeyEntry;
 import com.ms.silverking.cloud.dht.net.MessageGroupReceiver;
+import com.ms.silverking.cloud.dht.net.ProtoBatchMessageGroup;
 import com.ms.silverking.cloud.dht.net.ProtoChecksumTreeRequestMessageGroup;
 import com.ms.silverking.cloud.dht.net.ProtoErrorResponseMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoKeyScanMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoKeyScanResponseMessageGroup;
 import com.ms.silverking.cloud.dht.net.ProtoKeyedMessageGroup;
 import com.ms.silverking.cloud.dht.net.ProtoNopMessageGroup;
 import com.ms.silverking.cloud.dht.net.ProtoOpResponseMessageGroup;
@@ -74,6 +79,7 @@
 import com.ms.silverking.cloud.skfs.dir.DirectoryBase;
 import com.ms.silverking.cloud.toporing.PrimarySecondaryIPListPair;
 import com.ms.silverking.collection.CollectionUtil;
+import com.ms.silverking.collection.StripedLongPairMap;
 import com.ms.silverking.collection.Triple;
 import com.ms.silverking.id.UUIDBase;
 import com.ms.silverking.net.IPAddrUtil;
@@ -94,6 +100,7 @@
 import com.ms.silverking.time.AbsMillisTimeSource;
 import com.ms.silverking.util.PropertiesHelper;
 import com.ms.silverking.util.SafeTimerTask;
+import com.ms.silverking.util.TimerWheel;
 
 /**
  * DHTNode message processing module.
@@ -118,8 +125,10 @@ public class MessageModule implements MessageGroupReceiver, StorageReplicaProvid
   private final ExclusionChangeListener exclusionChangeListener;
 
   // Note - removal of operations is done only in bulk
-  private final ConcurrentMap<UUIDBase, ActiveProxyPut> activePuts;
-  private final ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals;
+  // keyed by the two longs of the operation UUID
+  private final StripedLongPairMap<ActiveProxyPut> activePuts;
+  private final StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals;
+  private final TimerWheel timerWheel;
 
   private final StorageProtocol consistencyModeToStorageProtocol[];
   private final StorageProtocol localConsistencyModeToStorageProtocol[];
@@ -144,7 +153,7 @@ public class MessageModule implements MessageGroupReceiver, StorageReplicaProvid
 
   private static final int cleanupPeriodMillis = 2 * 1000;
   //private static final int    cleanupPeriodMillis = 5 * 1000;
-  //private static final int    replicaTimeoutCheckPeriodMillis = 1 * 1000;
+  private static final int replicaTimeoutCheckIntervalMillis;
 
   private static final int statsPeriodMillis = 10 * 1000;
 
@@ -178,6 +187,9 @@ public enum OnSelfExclusion {DoNothing, DisconnectAll}
         OnSelfExclusion.DoNothing.toString());
     log.info("OnSelfExclusion: {}", value);
     onSelfExclusion = OnSelfExclusion.valueOf(value);
+    replicaTimeoutCheckIntervalMillis = PropertiesHelper.systemHelper.getInt(
+        DHTConstants.replicaTimeoutCheckIntervalMillisProperty, DHTConstants.defaultReplicaTimeoutCheckIntervalMillis);
+    log.info("ReplicaTimeoutCheckIntervalMillis: {}", replicaTimeoutCheckIntervalMillis);
   }
 
   public MessageModule(NodeRingMaster2 ringMaster, StorageModule storage, AbsMillisTimeSource absMillisTimeSource,
@@ -205,8 +217,9 @@ public MessageModule(NodeRingMaster2 ringMaster, StorageModule storage, AbsMilli
     worker = new Worker(workerPool);
     // FUTURE - could consider using soft maps instead of explicit cleaning
     //activePuts = new MapMaker().softValues().makeMap();
-    activePuts = new ConcurrentHashMap<>();
-    activeRetrievals = new ConcurrentHashMap<>();
+    activePuts = new StripedLongPairMap<>();
+    activeRetrievals = new StripedLongPairMap<>();
+    timerWheel = DHTUtil.timerWheel();
 
     this.myIPAndPort = myIPAndPort;
     myIPAndPortArray = new IPAndPort[1];
@@ -367,6 +380,7 @@ private void handleReceive(MessageGroup message, MessageGroupConnectionProxy con
       switch (message.getMessageType()) {
       case PUT:
       case PUT_TRACE:
+      case PUT_ATOMIC:
         handlePut(message, connection);
         break;
       case PUT_RESPONSE:
@@ -397,6 +411,15 @@ private void handleReceive(MessageGroup message, MessageGroupConnectionProxy con
       case CHECKSUM_TREE:
         handleIncomingChecksumTree(message, getConnectionForRemote(connection));
         break;
+      case SEGMENT_TRANSFER_REQUEST:
+        handleSegmentTransferRequest(message, getConnectionForRemote(connection));
+        break;
+      case KEY_SCAN:
+        handleKeyScan(message, getConnectionForRemote(connection));
+        break;
+      case BATCH:
+        handleBatch(message, connection);
+        break;
       case OP_NOP:
         handleNop(message, connection);
         break;
@@ -470,7 +493,9 @@ private MessageGroupConnectionProxy createProxyForConnection(MessageGroupConnect
   private void handlePut(MessageGroup message, MessageGroupConnectionProxy connection) {
     NamespaceProperties nsProperties;
     NamespaceOptions nsOptions;
+    long startNanos;
 
+    startNanos = SystemTimeUtil.skSystemTimeSource.relTimeNanos();
     nsProperties = storage.getNamespaceProperties(message.getContext(), NamespaceOptionsRetrievalMode.FetchRemotely);
     nsOptions = nsProperties.getOptions();
     if (message.getForwardingMode().forwards()) {
@@ -481,9 +506,14 @@ private void handlePut(MessageGroup message, MessageGroupConnectionProxy connect
       new ActiveProxyPut(message, ProtoPutMessageGroup.getOptionBuffer(message), connection, this,
           getLocalStorageProtocol(nsOptions), message.getDeadlineAbsMillis(absMillisTimeSource), true,
           nsOptions).startOperation();
+      recordLatency(message.getContext(), NamespaceMetrics.LatencyType.LocalPut, startNanos);
     }
   }
 
+  void recordLatency(long ns, NamespaceMetrics.LatencyType type, long startNanos) {
+    storage.recordLatency(ns, type, (SystemTimeUtil.skSystemTimeSource.relTimeNanos() - startNanos) / 1000);
+  }
+
   private RetrievalProtocol getRetrievalProtocol(NamespaceProperties nsProperties) {
     NamespaceOptions nsOptions;
 
@@ -497,6 +527,9 @@ private RetrievalProtocol getRetrievalProtocol(NamespaceProperties nsProperties)
   private void handleRetrieve(MessageGroup message, MessageGroupConnectionProxy connection) {
     ActiveProxyRetrieval retrieval;
     RetrievalProtocol retrievalProtocol;
+    long startNanos;
+
+    startNanos = SystemTimeUtil.skSystemTimeSource.relTimeNanos();
 
     if (enableMsgGroupTrace) {
       ProtoKeyedMessageGroup.tryGetTraceIDCopy(message).ifPresent(traceID -> {
@@ -558,6 +591,14 @@ private void handleRetrieve(MessageGroup message, MessageGroupConnectionProxy co
     } else {
       retrieval.startOperation();
     }
+    if (!ActiveProxyOperation.getForwardingMode(message).forwards()) {
+      if (retrieveOpts.getWaitMode() == WaitMode.WAIT_FOR) {
+        // a WAIT_FOR that is still pending is recorded when a put satisfies its last key
+        retrieval.recordLocalWaitForLatencyIfComplete();
+      } else {
+        recordLatency(message.getContext(), NamespaceMetrics.LatencyType.LocalRetrieve, startNanos);
+      }
+    }
   }
 
   /**
@@ -574,14 +615,23 @@ void handleRetrieveResponse(MessageGroup message, MessageGroupConnectionProxy co
     }
 
     ActiveProxyRetrieval activeRetrieval;
+    UUIDBase uuid;
 
-    activeRetrieval = activeRetrievals.get(message.getUUID());
+    uuid = message.getUUID();
+    activeRetrieval = activeRetrievals.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
     if (activeRetrieval != null) {
       OpResult opResult;
 
       opResult = activeRetrieval.handleRetrievalResponse(message, connection);
       if (opResult.isComplete()) { // FIXME - think about failures
-        activeRetrievals.remove(message.getUUID());
+        activeRetrievals.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        activeRetrieval.cancelTimeout();
+        if (activeRetrieval.forwardingMode.forwards()) {
+          recordLatency(activeRetrieval.namespace,
+              activeRetrieval.getRetrievalOptions().getWaitMode() == WaitMode.WAIT_FOR ?
+              NamespaceMetrics.LatencyType.ProxiedWaitFor :
+              NamespaceMetrics.LatencyType.ProxiedRetrieve, activeRetrieval.getStartTimeNanos());
+        }
 
         if (enableMsgGroupTrace) {
           ProtoKeyedMessageGroup.tryGetTraceIDCopy(message).ifPresent(traceID -> {
@@ -608,14 +658,18 @@ void handleRetrieveResponse(MessageGroup message, MessageGroupConnectionProxy co
    */
   private void handlePutResponse(MessageGroup message, MessageGroupConnectionProxy connection) {
     ActiveProxyPut activePut;
+    UUIDBase uuid;
 
-    activePut = activePuts.get(message.getUUID());
+    uuid = message.getUUID();
+    activePut = activePuts.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
     if (activePut != null) {
       OpResult opResult;
 
       opResult = activePut.handlePutResponse(message, connection);
       if (opResult.isComplete()) {
-        activePuts.remove(message.getUUID());
+        activePuts.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        activePut.cancelTimeout();
+        recordLatency(activePut.namespace, NamespaceMetrics.LatencyType.ProxiedPut, activePut.getStartTimeNanos());
         if (debugCompletion) {
           _complete.incrementAndGet();
         }
@@ -642,7 +696,9 @@ private void handlePutUpdate(MessageGroup message, MessageGroupConnectionProxy c
     List<PutResult> results;
     long version;
     byte storageState;
+    long startNanos;
 
+    startNanos = SystemTimeUtil.skSystemTimeSource.relTimeNanos();
     version = ProtoPutUpdateMessageGroup.getPutVersion(message);
     storageState = ProtoPutUpdateMessageGroup.getStorageState(message);
     results = new ArrayList<>();
@@ -653,6 +709,7 @@ private void handlePutUpdate(MessageGroup message, MessageGroupConnectionProxy c
       results.add(new PutResult(entry, opResult));
     }
     sendPutResults(message, version, connection, results, storageState, message.getDeadlineRelativeMillis());
+    recordLatency(message.getContext(), NamespaceMetrics.LatencyType.LocalPutUpdate, startNanos);
   }
 
   ////////////////////////////
@@ -709,13 +766,16 @@ protected void handleErrorResponse(MessageGroup message, MessageGroupConnectionP
     log.warn("{} {} {}", message.getUUID(), message.getMessageType(), connection.getConnectionID());
     //Check for active operations (puts or retrieval) corresponding to this UUID and mark the requests as failed
     //This should happen on the proxy, when it receives responses.
-    ActiveProxyOperation op = null;
-    if (activePuts.containsKey(message.getUUID())) {
-      op = activePuts.remove(message.getUUID());
-    } else if (activeRetrievals.containsKey(message.getUUID())) {
-      op = activeRetrievals.remove(message.getUUID());
+    ActiveProxyOperation op;
+    UUIDBase uuid;
+
+    uuid = message.getUUID();
+    op = activePuts.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    if (op == null) {
+      op = activeRetrievals.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
     }
     if (op != null) {
+      op.cancelTimeout();
       try {
         connection.sendAsynchronous(message,
             SystemTimeUtil.skSystemTimeSource.absTimeMillis() + message.getDeadlineRelativeMillis());
@@ -893,6 +953,68 @@ private void handleChecksumTreeRequest(MessageGroup message, MessageGroupConnect
     }
   }
 
+  private void handleSegmentTransferRequest(MessageGroup message, MessageGroupConnection connection) {
+    ConvergencePoint targetCP;
+    ConvergencePoint sourceCP;
+    RingRegion region;
+
+    if (log.isDebugEnabled()) {
+      log.warn("handleSegmentTransferRequest");
+      message.displayForDebug();
+    }
+    targetCP = ProtoChecksumTreeRequestMessageGroup.getTargetConvergencePoint(message);
+    sourceCP = ProtoChecksumTreeRequestMessageGroup.getSourceConvergencePoint(message);
+    region = ProtoChecksumTreeRequestMessageGroup.getRegion(message);
+    // streaming a region blocks on sends, so it must not occupy a non-blocking worker
+    storage.asyncInvocationBlocking("streamSegmentsForRemote", message.getContext(), message.getUUID(), targetCP,
+        sourceCP, connection, message.getOriginator(), region);
+  }
+
+  /**
+   * Handle each message group carried by a batch as if it had arrived on its own. Responses are sent
+   * per embedded group.
+   */
+  /**
+   * Handle the retrievals carried by a batch. Other embedded message types are dropped; in particular
+   * batches do not nest, so a received batch is handled with bounded recursion.
+   */
+  private void handleBatch(MessageGroup message, MessageGroupConnectionProxy connection) {
+    for (MessageGroup embedded : ProtoBatchMessageGroup.getMessageGroups(message)) {
+      switch (embedded.getMessageType()) {
+      case RETRIEVE:
+      case RETRIEVE_TRACE:
+        handleReceive(embedded, connection);
+        break;
+      default:
+        log.warn("Ignoring {} embedded in batch {} from {}", embedded.getMessageType(), message.getUUID(),
+            connection.getConnectionID());
+      }
+    }
+  }
+
+  private void handleKeyScan(MessageGroup message, MessageGroupConnection connection) {
+    if (ProtoKeyScanMessageGroup.getMode(message) == ProtoKeyScanMessageGroup.Mode.Regions) {
+      Map<RingRegion, Set<IPAndPort>> regions;
+      ProtoKeyScanResponseMessageGroup response;
+
+      regions = new LinkedHashMap<>();
+      for (RingRegion region : ringMaster.getAllCurrentRegions()) {
+        regions.put(region, ringMaster.getReplicas(region, OwnerQueryMode.Primary));
+      }
+      response = new ProtoKeyScanResponseMessageGroup(message.getUUID(), message.getContext(),
+          message.getOriginator(), message.getDeadlineRelativeMillis(), regions);
+      try {
+        connection.sendAsynchronous(response.toMessageGroup(),
+            message.getDeadlineAbsMillis(absMillisTimeSource));
+      } catch (IOException ioe) {
+        log.warn("Error while sending key scan regions", ioe);
+      }
+    } else {
+      // scanning reads the namespace's key table and may wait for throttling
+      storage.asyncInvocationBlocking("scanForRemote", message, connection);
+    }
+  }
+
   private void handleIncomingChecksumTree(MessageGroup message, MessageGroupConnection connection) {
     if (log.isDebugEnabled()) {
       log.warn("handleIncomingChecksumTree");
@@ -995,11 +1117,58 @@ MessageGroupBase getMessageGroupBase() {
   }
 
   void addActivePut(UUIDBase uuid, ActiveProxyPut activeProxyPut) {
-    activePuts.put(uuid, activeProxyPut);
+    activePuts.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), activeProxyPut);
+    // puts have no replica timeouts; only the operation deadline is needed
+    scheduleTimeoutCheck(activePuts, activeProxyPut, 0);
   }
 
   void addActiveRetrieval(UUIDBase uuid, ActiveProxyRetrieval activeProxyRetrieval) {
-    activeRetrievals.putIfAbsent(uuid, activeProxyRetrieval);
+    if (activeRetrievals.putIfAbsent(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+        activeProxyRetrieval) == null) {
+      scheduleTimeoutCheck(activeRetrievals, activeProxyRetrieval, replicaTimeoutCheckIntervalMillis);
+    }
+  }
+
+  /**
+   * Schedule the next timeout check for an active operation: either the operation deadline, or, if
+   * checkIntervalMillis is positive and sooner, the next replica timeout check.
+   */
+  private <T extends ActiveProxyOperation<?, ?>> void scheduleTimeoutCheck(StripedLongPairMap<T> map, T op,
+      int checkIntervalMillis) {
+    long nextCheckMillis;
+
+    // hasTimedOut() is strictly greater than
+    nextCheckMillis = op.getAbsDeadlineMillis() + 1;
+    if (checkIntervalMillis > 0) {
+      nextCheckMillis = Math.min(nextCheckMillis, absMillisTimeSource.absTimeMillis() + checkIntervalMillis);
+    }
+    op.setTimeout(timerWheel.schedule(nextCheckMillis,
+        curTimeMillis -> checkForTimeout(map, op, checkIntervalMillis, curTimeMillis)));
+  }
+
+  private <T extends ActiveProxyOperation<?, ?>> void checkForTimeout(StripedLongPairMap<T> map, T op,
+      int checkIntervalMillis, long curTimeMillis) {
+    if (op.hasTimedOut(curTimeMillis) || op.getOpResult().isComplete()) {
+      if (debugCleanup) {
+        System.out.printf("Removing %s\n", op.uuid);
+      }
+      map.remove(op.uuid.getMostSignificantBits(), op.uuid.getLeastSignificantBits(), op);
+    } else {
+      Set<IPAndPort> timedOutReplicas;
+
+      // We don't retry replicas that are near timing out. This is simply
+      // to avoid littering logs with sendTimedOut messages. I.e. we could
+      // actually do a retry right up until the timeout, but doing so
+      // causes some sends to time out and we currently like to log
+      // timed out sends since they can indicate deeper trouble.
+      // Send timeouts due to sending near the deadline is really not
+      // something that we want to see logged.
+      timedOutReplicas = op.checkForReplicaTimeouts(curTimeMillis - replicaRetryBufferMS);
+      for (IPAndPort timedOutReplica : timedOutReplicas) {
+        peerHealthMonitor.addSuspect(timedOutReplica, PeerHealthIssue.ReplicaTimeout);
+      }
+      scheduleTimeoutCheck(map, op, checkIntervalMillis);
+    }
   }
 
   ///////////////////////////////////
@@ -1074,32 +1243,33 @@ private void notifyOfReplicaChange(Set<IPAndPort> newlyExcludedReplicas, Set<IPA
     notifyOfReplicaChange(activeRetrievals, absTimeMillis, newlyExcludedReplicas, newlyIncludedReplicas);
   }
   
-  private void notifyOfReplicaChange(ConcurrentMap<UUIDBase, ? extends ActiveProxyOperation<?, ?>> map,
+  private <T extends ActiveProxyOperation<?, ?>> void notifyOfReplicaChange(StripedLongPairMap<T> map,
       long absTimeMillis, Set<IPAndPort> newlyExcludedReplicas, Set<IPAndPort> newlyIncludedReplicas) {
     log.warn("MessageModule.notifyOfReplicaChange ex {} in {}", CollectionUtil.toString(newlyExcludedReplicas),
         CollectionUtil.toString(newlyIncludedReplicas));
     if (newlyExcludedReplicas.isEmpty() && newlyIncludedReplicas.isEmpty()) {
       return;
     } else {
-      for (Map.Entry<UUIDBase, ? extends ActiveProxyOperation<?, ?>> entry : map.entrySet()) {
-        if (entry.getValue().hasTimedOut(
-            absTimeMillis) || entry.getValue().getOpResult().isComplete()) { // FIXME - think about failures
+      map.forEach((uuidMSL, uuidLSL, op) -> {
+        if (op.hasTimedOut(absTimeMillis) || op.getOpResult().isComplete()) { // FIXME - think about failures
           if (debugCleanup) {
-            System.out.printf("Removing %s\n", entry.getKey());
+            System.out.printf("Removing %s\n", new UUIDBase(uuidMSL, uuidLSL));
+          }
+          if (map.remove(uuidMSL, uuidLSL, op)) {
+            op.cancelTimeout();
           }
-          map.remove(entry.getKey());
         } else {
-          entry.getValue().exclusionsChanged(newlyExcludedReplicas, newlyIncludedReplicas);
+          op.exclusionsChanged(newlyExcludedReplicas, newlyIncludedReplicas);
         }
-      }
+      });
     }
   }
 
   /////////////////////////////////
 
   /**
-   * Cleans up complete and timed out operations.
-   * Also, sends retries for replica timeouts.
+   * Cleans up operations that completed without a response removing them, e.g. local-only operations.
+   * Timeouts and replica retries are handled by the timer wheel; see scheduleTimeoutCheck().
    */
   class Cleaner extends TimerTask {
     Cleaner() {
@@ -1128,35 +1298,18 @@ private void cleanup() {
       }
     }
 
-    private void cleanupMap(ConcurrentMap<UUIDBase, ? extends ActiveProxyOperation<?, ?>> map, long absTimeMillis) {
-      boolean newTimeouts;
-
-      newTimeouts = false;
-      for (Map.Entry<UUIDBase, ? extends ActiveProxyOperation<?, ?>> entry : map.entrySet()) {
-        if (entry.getValue().hasTimedOut(
-            absTimeMillis) || entry.getValue().getOpResult().isComplete()) { // FIXME - think about failures
+    private <T extends ActiveProxyOperation<?, ?>> void cleanupMap(StripedLongPairMap<T> map, long absTimeMillis) {
+      map.forEach((uuidMSL, uuidLSL, op) -> {
+        if (op.getOpResult().isComplete()) { // FIXME - think about failures
           if (debugCleanup) {
-            System.out.printf("Removing %s\n", entry.getKey());
+            System.out.printf("Removing %s\n", new UUIDBase(uuidMSL, uuidLSL));
           }
-          map.remove(entry.getKey());
-        } else {
-          Set<IPAndPort> timedOutReplicas;
-
-          // We don't retry replicas that are near timing out. This is simply
-          // to avoid littering logs with sendTimedOut messages. I.e. we could
-          // actually do a retry right up until the timeout, but doing so
-          // causes some sends to time out and we currently like to log
-          // timed out sends since they can indicate deeper trouble.
-          // Send timeouts due to sending near the deadline is really not
-          // something that we want to see logged.
-          timedOutReplicas = entry.getValue().checkForReplicaTimeouts(absTimeMillis - replicaRetryBufferMS);
-          for (IPAndPort timedOutReplica : timedOutReplicas) {
-            peerHealthMonitor.addSuspect(timedOutReplica, PeerHealthIssue.ReplicaTimeout);
-            newTimeouts = true;
+          if (map.remove(uuidMSL, uuidLSL, op)) {
+            op.cancelTimeout();
           }
         }
-      }
-      }
+      });
+    }
     }
 
   class Pinger extends TimerTask {
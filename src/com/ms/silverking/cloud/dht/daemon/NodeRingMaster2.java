@@ -11,7 +11,6 @@
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.ms.silverking.cloud.common.OwnerQueryMode;
 import com.ms.silverking.cloud.dht.SecondaryTarget;
@@ -37,6 +36,7 @@
 import com.ms.silverking.cloud.meta.ExclusionSet;
 import com.ms.silverking.cloud.ring.RingRegion;
 import com.ms.silverking.cloud.toporing.PrimarySecondaryIPListPair;
+import com.ms.silverking.cloud.toporing.ResolvedReplicaMap;
 import com.ms.silverking.cloud.toporing.RingEntry;
 import com.ms.silverking.cloud.toporing.meta.MetaPaths;
 import com.ms.silverking.cloud.zookeeper.SilverKingZooKeeperClient;
@@ -72,6 +72,7 @@ public class NodeRingMaster2 implements DHTMetaUpdateListener, KeyToReplicaResol
 
   private volatile RingMapState2 curMapState;
   private volatile RingMapState2 targetMapState;
+  private volatile TransitionReplicaMap transitionReplicaMap;
   private ConcurrentMap<RingIDAndVersionPair, RingMapState> mapStates;
 
   private final Lock mapLock;
@@ -423,8 +424,22 @@ public Collection<RingRegion> getRegions(RingIDAndVersionPair ringIDAndVersion)
     }
   }
 
-  private IPAndPort[] _getReplicas(DHTKey key, OwnerQueryMode oqm, RingOwnerQueryOpType opType) {
-    return _getReplicaSet(key, oqm, opType).toArray(IPAndPort.emptyArray);
+  /**
+   * Return the lookup structure for the given transition, replacing the current one if either map has changed
+   */
+  private TransitionReplicaMap getTransitionReplicaMap(RingMapState2 _curMapState, RingMapState2 _targetMapState) {
+    TransitionReplicaMap _transitionReplicaMap;
+    ResolvedReplicaMap oldMap;
+    ResolvedReplicaMap newMap;
+
+    oldMap = _curMapState.getResolvedReplicaMap();
+    newMap = _targetMapState.getResolvedReplicaMap();
+    _transitionReplicaMap = transitionReplicaMap;
+    if (_transitionReplicaMap == null || !_transitionReplicaMap.isFor(oldMap, newMap)) {
+      _transitionReplicaMap = new TransitionReplicaMap(oldMap, newMap);
+      transitionReplicaMap = _transitionReplicaMap;
+    }
+    return _transitionReplicaMap;
   }
 
   public boolean iAmPotentialReplicaFor(DHTKey key, boolean includeExcludedNodes) {
@@ -445,76 +460,67 @@ private boolean isPotentialReplicaFor(DHTKey key, IPAndPort replica, boolean inc
         replica);
   }
 
-  private Set<IPAndPort> _getReplicaSet(DHTKey key, OwnerQueryMode oqm, RingOwnerQueryOpType opType) {
-    RingMapState2 _targetMapState;
-
-    _targetMapState = targetMapState;
-    if (_targetMapState != null && _targetMapState != curMapState) {
-      TransitionReplicaSources replicaSources;
-      Set<IPAndPort> replicas;
-
-      replicaSources = _targetMapState.getReplicaSources(opType);
-      switch (replicaSources) {
-      case OLD:
-        replicas = curMapState.getResolvedReplicaMap().getReplicaSet(key, oqm);
-        break;
-      case NEW:
-        replicas = _targetMapState.getResolvedReplicaMap().getReplicaSet(key, oqm);
-        break;
-      case OLD_AND_NEW:
-        replicas = union(curMapState.getResolvedReplicaMap().getReplicaSet(key, oqm),
-            _targetMapState.getResolvedReplicaMap().getReplicaSet(key, oqm));
-        break;
-      default:
-        throw new RuntimeException("panic");
-      }
-      // FUTURE - think about the order here...
-      return replicas;
-    } else {
-      return curMapState.getResolvedReplicaMap().getReplicaSet(key, oqm);
-    }
-  }
+  // During a transition, replicas come from the current map, the target map, or their union (current
+  // replicas first), as determined by the target's replica sources for the operation type.
 
   public IPAndPort[] getReplicas(DHTKey key, OwnerQueryMode oqm, RingOwnerQueryOpType opType) {
+    RingMapState2 _curMapState;
     RingMapState2 _targetMapState;
 
+    _curMapState = curMapState;
     _targetMapState = targetMapState;
-    if (_targetMapState != null && _targetMapState != curMapState) {
-      return _getReplicas(key, oqm, opType);
+    if (_targetMapState != null && _targetMapState != _curMapState) {
+      return getTransitionReplicaMap(_curMapState, _targetMapState).getReplicas(key, oqm,
+          _targetMapState.getReplicaSources(opType));
     } else {
-      return curMapState.getResolvedReplicaMap().getReplicas(key, oqm);
+      return _curMapState.getResolvedReplicaMap().getReplicas(key, oqm);
     }
   }
 
   public List<IPAndPort> getReplicaList(DHTKey key, OwnerQueryMode oqm, RingOwnerQueryOpType opType) {
+    RingMapState2 _curMapState;
     RingMapState2 _targetMapState;
 
+    _curMapState = curMapState;
     _targetMapState = targetMapState;
-    if (_targetMapState != null && _targetMapState != curMapState) {
-      return ImmutableList.copyOf(_getReplicas(key, oqm, opType));
+    if (_targetMapState != null && _targetMapState != _curMapState) {
+      return getTransitionReplicaMap(_curMapState, _targetMapState).getReplicaList(key, oqm,
+          _targetMapState.getReplicaSources(opType));
     } else {
-      return curMapState.getResolvedReplicaMap().getReplicaList(key, oqm);
+      return _curMapState.getResolvedReplicaMap().getReplicaList(key, oqm);
     }
   }
 
   // currently unused
   public Set<IPAndPort> getReplicaSet(DHTKey key, OwnerQueryMode oqm, RingOwnerQueryOpType opType) {
-    return _getReplicaSet(key, oqm, opType);
+    RingMapState2 _curMapState;
+    RingMapState2 _targetMapState;
+
+    _curMapState = curMapState;
+    _targetMapState = targetMapState;
+    if (_targetMapState != null && _targetMapState != _curMapState) {
+      return getTransitionReplicaMap(_curMapState, _targetMapState).getReplicaSet(key, oqm,
+          _targetMapState.getReplicaSources(opType));
+    } else {
+      return _curMapState.getResolvedReplicaMap().getReplicaSet(key, oqm);
+    }
   }
 
   public PrimarySecondaryIPListPair getReplicaListPair(DHTKey key, RingOwnerQueryOpType opType) {
+    RingMapState2 _curMapState;
+
+    _curMapState = curMapState;
     switch (opType) {
     case Write:
       RingMapState2 _targetMapState;
 
       _targetMapState = targetMapState;
-      if (_targetMapState != null && _targetMapState != curMapState) {
-        return PrimarySecondaryIPListPair.merge(curMapState.getResolvedReplicaMap().getReplicaListPair(key),
-            _targetMapState.getResolvedReplicaMap().getReplicaListPair(key));
+      if (_targetMapState != null && _targetMapState != _curMapState) {
+        return getTransitionReplicaMap(_curMapState, _targetMapState).getMergedReplicaListPair(key);
       }
       // else we fall through
     case Read:
-      return curMapState.getResolvedReplicaMap().getReplicaListPair(key);
+      return _curMapState.getResolvedReplicaMap().getReplicaListPair(key);
     default:
       throw new RuntimeException("panic");
     }
@@ -532,15 +538,6 @@ public Set<IPAndPort> getReplicas(RingRegion region, OwnerQueryMode oqm) {
     return curMapState.getResolvedReplicaMap().getOwners(region, oqm);
   }
 
-  private Set<IPAndPort> union(Set<IPAndPort> r1, Set<IPAndPort> r2) {
-    Set<IPAndPort> r3;
-
-    r3 = new HashSet<>(r1.size() + r2.size());
-    r3.addAll(r1);
-    r3.addAll(r2);
-    return r3;
-  }
-
   public Set<IPAndPort> getSecondarySet(Set<SecondaryTarget> secondaryTargets) {
     return curMapState.getSecondarySet(secondaryTargets);
   }
@@ -690,6 +687,9 @@ public void setConvergenceState(MessageGroup message, MessageGroupConnection con
       if (state == RingState.CLOSED && result == OpResult.SUCCEEDED) {
         setCurMapState(targetMapState);
         setTargetMapState(null);
+        if (storageModule != null) {
+          storageModule.prefetchRecentSegments();
+        }
       } else if (state == RingState.ABANDONED) {
         setTargetMapState(null);
       }
@@ -0,0 +1,152 @@
+package com.ms.silverking.cloud.dht.daemon;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.ms.silverking.cloud.common.OwnerQueryMode;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.EnumValues;
+import com.ms.silverking.cloud.dht.common.KeyUtil;
+import com.ms.silverking.cloud.ring.RegionIndex;
+import com.ms.silverking.cloud.toporing.PrimarySecondaryIPListPair;
+import com.ms.silverking.cloud.toporing.ResolvedReplicaMap;
+import com.ms.silverking.collection.Pair;
+import com.ms.silverking.net.IPAndPort;
+
+/**
+ * Replica lookup for a ring transition. The regions of the current and target maps are merged so that,
+ * for each merged region, the current replicas, the target replicas, and their union are precomputed.
+ * Lookups do not allocate. Immutable; NodeRingMaster2 replaces the instance when either map changes.
+ */
+class TransitionReplicaMap {
+  private final ResolvedReplicaMap oldMap;
+  private final ResolvedReplicaMap newMap;
+  private final RegionIndex regionIndex;
+  private final Entry[] entries;
+
+  TransitionReplicaMap(ResolvedReplicaMap oldMap, ResolvedReplicaMap newMap) {
+    long[] starts;
+    Map<Pair<PrimarySecondaryIPListPair, PrimarySecondaryIPListPair>, Entry> internedEntries;
+
+    this.oldMap = oldMap;
+    this.newMap = newMap;
+    starts = mergeStarts(oldMap.getRegionStarts(), newMap.getRegionStarts());
+    regionIndex = new RegionIndex(starts);
+    entries = new Entry[starts.length];
+    // ResolvedReplicaMap shares list pairs between regions with the same replicas, so the pair of
+    // list pairs identifies the entry
+    internedEntries = new HashMap<>();
+    for (int i = 0; i < starts.length; i++) {
+      entries[i] = internedEntries.computeIfAbsent(
+          new Pair<>(oldMap.getReplicaListPair(starts[i]), newMap.getReplicaListPair(starts[i])),
+          k -> new Entry(k.getV1(), k.getV2()));
+    }
+  }
+
+  private static long[] mergeStarts(long[] s0, long[] s1) {
+    long[] merged;
+    int i0;
+    int i1;
+    int n;
+
+    merged = new long[s0.length + s1.length];
+    i0 = 0;
+    i1 = 0;
+    n = 0;
+    while (i0 < s0.length || i1 < s1.length) {
+      long next;
+
+      if (i1 >= s1.length || (i0 < s0.length && s0[i0] <= s1[i1])) {
+        next = s0[i0++];
+      } else {
+        next = s1[i1++];
+      }
+      if (n == 0 || merged[n - 1] != next) {
+        merged[n++] = next;
+      }
+    }
+    return Arrays.copyOf(merged, n);
+  }
+
+  boolean isFor(ResolvedReplicaMap oldMap, ResolvedReplicaMap newMap) {
+    return this.oldMap == oldMap && this.newMap == newMap;
+  }
+
+  private Entry getEntry(DHTKey key) {
+    return entries[regionIndex.indexOf(KeyUtil.keyToCoordinate(key))];
+  }
+
+  IPAndPort[] getReplicas(DHTKey key, OwnerQueryMode oqm, TransitionReplicaSources replicaSources) {
+    return getEntry(key).replicas[replicaSources.ordinal()][oqm.ordinal()];
+  }
+
+  List<IPAndPort> getReplicaList(DHTKey key, OwnerQueryMode oqm, TransitionReplicaSources replicaSources) {
+    return getEntry(key).replicaLists[replicaSources.ordinal()][oqm.ordinal()];
+  }
+
+  Set<IPAndPort> getReplicaSet(DHTKey key, OwnerQueryMode oqm, TransitionReplicaSources replicaSources) {
+    return getEntry(key).replicaSets[replicaSources.ordinal()][oqm.ordinal()];
+  }
+
+  /**
+   * @return the current and target list pairs, merged as by PrimarySecondaryIPListPair.merge()
+   */
+  PrimarySecondaryIPListPair getMergedReplicaListPair(DHTKey key) {
+    return getEntry(key).mergedListPair;
+  }
+
+  private static class Entry {
+    final IPAndPort[][][] replicas;
+    final List<IPAndPort>[][] replicaLists;
+    final Set<IPAndPort>[][] replicaSets;
+    final PrimarySecondaryIPListPair mergedListPair;
+
+    private static final int numSources = TransitionReplicaSources.values().length;
+
+    @SuppressWarnings("unchecked")
+    Entry(PrimarySecondaryIPListPair oldListPair, PrimarySecondaryIPListPair newListPair) {
+      replicas = new IPAndPort[numSources][EnumValues.ownerQueryMode.length][];
+      replicaLists = (List<IPAndPort>[][]) new List<?>[numSources][EnumValues.ownerQueryMode.length];
+      replicaSets = (Set<IPAndPort>[][]) new Set<?>[numSources][EnumValues.ownerQueryMode.length];
+      for (OwnerQueryMode oqm : EnumValues.ownerQueryMode) {
+        List<IPAndPort> oldList;
+        List<IPAndPort> newList;
+        ImmutableSet<IPAndPort> union;
+
+        oldList = getList(oldListPair, oqm);
+        newList = getList(newListPair, oqm);
+        // preserves order: current replicas first
+        union = ImmutableSet.<IPAndPort>builder().addAll(oldList).addAll(newList).build();
+        set(TransitionReplicaSources.OLD, oqm, oldList);
+        set(TransitionReplicaSources.NEW, oqm, newList);
+        set(TransitionReplicaSources.OLD_AND_NEW, oqm, union.asList());
+      }
+      mergedListPair = PrimarySecondaryIPListPair.merge(oldListPair, newListPair);
+    }
+
+    private static List<IPAndPort> getList(PrimarySecondaryIPListPair listPair, OwnerQueryMode oqm) {
+      switch (oqm) {
+      case Primary:
+        return listPair.getPrimaryOwners();
+      case Secondary:
+        return listPair.getSecondaryOwners();
+      case All:
+        return ImmutableList.<IPAndPort>builder().addAll(listPair.getPrimaryOwners()).addAll(
+            listPair.getSecondaryOwners()).build();
+      default:
+        throw new RuntimeException("panic");
+      }
+    }
+
+    private void set(TransitionReplicaSources replicaSources, OwnerQueryMode oqm, List<IPAndPort> list) {
+      replicas[replicaSources.ordinal()][oqm.ordinal()] = list.toArray(IPAndPort.emptyArray);
+      replicaLists[replicaSources.ordinal()][oqm.ordinal()] = ImmutableList.copyOf(list);
+      replicaSets[replicaSources.ordinal()][oqm.ordinal()] = ImmutableSet.copyOf(list);
+    }
+  }
+}
@@ -69,6 +69,35 @@ int getStoredLength(int offset) {
     return MetaDataUtil.getStoredLength(dataBuf, offset + DHTKey.BYTES_PER_KEY);
   }
 
+  // The following methods take the offset of an entry's metadata (i.e. after the key).
+  // Subclasses that do not map their data segment override these.
+
+  /**
+   * Return the stored length of the entry whose metadata begins at offset
+   */
+  protected int readStoredLength(int offset) {
+    return MetaDataUtil.getStoredLength(dataBuf, offset);
+  }
+
+  /**
+   * Return a read-only buffer, beginning at position 0, containing length bytes of the data segment at offset
+   */
+  protected ByteBuffer readData(int offset, int length) {
+    ByteBuffer buffer;
+
+    buffer = dataBuf.asReadOnlyBuffer();
+    buffer.position(offset);
+    buffer.limit(offset + length);
+    return buffer.slice();
+  }
+
+  /**
+   * Return a read-only buffer, beginning at position 0, containing the metadata of the entry at offset
+   */
+  protected ByteBuffer readMetaData(int offset) {
+    return readData(offset, MetaDataUtil.getMetaDataLength(dataBuf, offset));
+  }
+
   private int checkOffset(int offset) {
     if (offset < 0) {
       OffsetList offsetList;
@@ -174,7 +203,6 @@ private ByteBuffer retrieve(DHTKey key, InternalRetrievalOptions options, int of
       return null;
     } else {
       int storedLength;
-      ByteBuffer buffer;
       boolean doubleCheckVersion;
       ByteBuffer returnBuffer;
 
@@ -193,7 +221,7 @@ private ByteBuffer retrieve(DHTKey key, InternalRetrievalOptions options, int of
           offsetList.displayForDebug();
         }
         if (verifySS && options.getVerifyStorageState()) {
-          validityVerifier = new ValidityVerifier(dataBuf, options.getCPSSToVerify());
+          validityVerifier = new ValidityVerifier(this, options.getCPSSToVerify());
         } else {
           validityVerifier = null;
         }
@@ -222,34 +250,22 @@ private ByteBuffer retrieve(DHTKey key, InternalRetrievalOptions options, int of
         case VALUE:
         case VALUE_AND_META_DATA:
           // FUTURE - consider creating a new buffer type to allow creation in one operation
-          storedLength = MetaDataUtil.getStoredLength(dataBuf, offset); // FUTURE - think about this
+          storedLength = readStoredLength(offset); // FUTURE - think about this
           //System.out.println("storedLength: "+ MetaDataUtil.getStoredLength(data, offset));
-          //buffer = ByteBuffer.wrap(data, offset, storedLength);
-          buffer = dataBuf.asReadOnlyBuffer();
-          buffer.position(offset);
-          buffer.limit(offset + storedLength);
+          returnBuffer = readData(offset, storedLength);
           break;
         case EXISTENCE: // fall through
         case META_DATA:
-          //buffer = ByteBuffer.wrap(data, offset, MetaDataUtil.getMetaDataLength(data, offset));
-          buffer = dataBuf.asReadOnlyBuffer();
-          buffer.position(offset);
-          buffer.limit(offset + MetaDataUtil.getMetaDataLength(dataBuf, offset));
-          if (MetaDataUtil.isSegmented(buffer.slice())) {
+          returnBuffer = readMetaData(offset);
+          if (MetaDataUtil.isSegmented(returnBuffer)) {
             // FUTURE THIS CODE IS COPIED FROM VALUE CASES, ELIM THE DUPLICATE CODE
-            storedLength = MetaDataUtil.getStoredLength(dataBuf,
-                offset); // FUTURE & verify that segmented metadatautil works
-            //System.out.println("storedLength: "+ MetaDataUtil.getStoredLength(data, offset));
-            //buffer = ByteBuffer.wrap(data, offset, storedLength);
-            buffer = dataBuf.asReadOnlyBuffer();
-            buffer.position(offset);
-            buffer.limit(offset + storedLength);
+            storedLength = readStoredLength(offset); // FUTURE & verify that segmented metadatautil works
+            returnBuffer = readData(offset, storedLength);
           }
           break;
         default:
           throw new RuntimeException();
         }
-        returnBuffer = buffer.slice();
         if (doubleCheckVersion) {
           VersionConstraint vc;
 
@@ -0,0 +1,8 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+/**
+ * Receives the values that atomic updates resolve to (see AtomicUpdateResolver)
+ */
+public interface AtomicUpdateListener {
+  public void resolved(StorageValueAndParameters value);
+}
@@ -0,0 +1,126 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.ms.silverking.cloud.dht.RetrievalType;
+import com.ms.silverking.cloud.dht.client.ChecksumType;
+import com.ms.silverking.cloud.dht.client.Compression;
+import com.ms.silverking.cloud.dht.client.impl.ChecksumProvider;
+import com.ms.silverking.cloud.dht.common.CCSSUtil;
+import com.ms.silverking.cloud.dht.common.CorruptValueException;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.cloud.dht.common.RawRetrievalResult;
+import com.ms.silverking.cloud.dht.net.protocol.AtomicUpdateMessageFormat;
+import com.ms.silverking.collection.Pair;
+import com.ms.silverking.io.util.BufferUtil;
+import com.ms.silverking.numeric.NumConversion;
+
+/**
+ * Computes the value that results from applying an update record (see AtomicUpdateMessageFormat) to the
+ * newest stored value of a key. Resulting values are stored uncompressed with a freshly computed checksum;
+ * all other storage parameters are taken from the update.
+ */
+class AtomicUpdateResolver {
+  private static final byte[] emptyValue = new byte[0];
+
+  /**
+   * @param update      the update record together with the parameters of its PUT_ATOMIC
+   * @param storedValue the newest stored value (meta data and data), or null if there is none
+   * @return SUCCEEDED and the value to store; or the reason that the update does not apply. INVALID_VERSION
+   * indicates a failed comparison, ERROR an update that cannot be applied to the stored value.
+   */
+  static Pair<OpResult, StorageValueAndParameters> resolve(StorageValueAndParameters update,
+      ByteBuffer storedValue) {
+    ByteBuffer record;
+    ByteBuffer currentValue;
+    byte[] currentChecksum;
+    byte[] newValue;
+
+    currentValue = null;
+    currentChecksum = null;
+    if (storedValue != null) {
+      RawRetrievalResult rawResult;
+
+      rawResult = new RawRetrievalResult(RetrievalType.VALUE_AND_META_DATA);
+      try {
+        rawResult.setStoredValue(ByteBuffer.wrap(BufferUtil.arrayCopy(storedValue.duplicate())), false, true, null);
+      } catch (CorruptValueException cve) {
+        return Pair.of(OpResult.CORRUPT, null);
+      }
+      if (rawResult.isSegmented()) {
+        // fragmented values are not updated in place
+        return Pair.of(OpResult.ERROR, null);
+      }
+      if (rawResult.getOpResult() == OpResult.SUCCEEDED) {
+        currentValue = rawResult.getValue();
+        currentChecksum = rawResult.getChecksum();
+      }
+      // else the newest value is an invalidation, which is treated as no value
+    }
+
+    record = update.getValue();
+    switch (AtomicUpdateMessageFormat.getOp(record)) {
+    case CompareAndSetValue: {
+      byte[] expected;
+
+      expected = AtomicUpdateMessageFormat.getOperand(record);
+      if (expected == null ? currentValue != null
+          : currentValue == null || !currentValue.equals(ByteBuffer.wrap(expected))) {
+        return Pair.of(OpResult.INVALID_VERSION, null);
+      }
+      newValue = BufferUtil.arrayCopy(AtomicUpdateMessageFormat.getPayload(record));
+      break;
+    }
+    case CompareAndSetChecksum:
+      if (currentChecksum == null || !Arrays.equals(currentChecksum, AtomicUpdateMessageFormat.getOperand(record))) {
+        return Pair.of(OpResult.INVALID_VERSION, null);
+      }
+      newValue = BufferUtil.arrayCopy(AtomicUpdateMessageFormat.getPayload(record));
+      break;
+    case Add: {
+      long current;
+
+      if (currentValue == null) {
+        current = 0;
+      } else if (currentValue.remaining() == NumConversion.BYTES_PER_LONG) {
+        current = currentValue.getLong(currentValue.position());
+      } else {
+        return Pair.of(OpResult.ERROR, null);
+      }
+      newValue = NumConversion.longToBytes(current + AtomicUpdateMessageFormat.getDelta(record));
+      break;
+    }
+    case Append: {
+      ByteBuffer suffix;
+      byte[] current;
+
+      suffix = AtomicUpdateMessageFormat.getPayload(record);
+      current = currentValue != null ? BufferUtil.arrayCopy(currentValue.duplicate()) : emptyValue;
+      if ((long) current.length + suffix.remaining() > AtomicUpdateMessageFormat.getMaxLength(record)) {
+        return Pair.of(OpResult.ERROR, null);
+      }
+      newValue = new byte[current.length + suffix.remaining()];
+      System.arraycopy(current, 0, newValue, 0, current.length);
+      suffix.get(newValue, current.length, suffix.remaining());
+      break;
+    }
+    default:
+      throw new RuntimeException("Panic");
+    }
+    return Pair.of(OpResult.SUCCEEDED, toStorageValue(update, newValue));
+  }
+
+  private static StorageValueAndParameters toStorageValue(StorageValueAndParameters update, byte[] newValue) {
+    ChecksumType checksumType;
+    byte[] checksum;
+
+    checksumType = update.getChecksumType();
+    checksum = ChecksumProvider.getChecksum(checksumType).checksum(ByteBuffer.wrap(newValue));
+    return new StorageValueAndParameters(update.getKey(), ByteBuffer.wrap(newValue), update.getVersion(),
+        newValue.length, newValue.length,
+        CCSSUtil.createCCSS(Compression.NONE, checksumType, update.getStorageState()), checksum,
+        update.getValueCreator(), update.getCreationTime(), update.getRequiredPreviousVersion(),
+        update.getLockSeconds());
+  }
+}
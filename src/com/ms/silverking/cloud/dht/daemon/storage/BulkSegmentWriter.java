@@ -0,0 +1,134 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.ms.silverking.cloud.dht.NamespaceOptions;
+import com.ms.silverking.cloud.dht.client.ChecksumType;
+import com.ms.silverking.cloud.dht.client.Compression;
+import com.ms.silverking.cloud.dht.client.impl.ChecksumProvider;
+import com.ms.silverking.cloud.dht.common.CCSSUtil;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.collection.cuckoo.TableFullException;
+import com.ms.silverking.log.Log;
+
+/**
+ * Writes values directly into FileSegment files outside of any daemon, so that the segments can
+ * later be adopted into a namespace by NamespaceStore.adoptSegments(). Segments are numbered from
+ * zero in the output directory and are persisted (data, index, and FileSegmentMetaData) as each one fills.
+ * Values are stored uncompressed and are not fragmented; a value must fit within a single segment.
+ */
+public class BulkSegmentWriter {
+  private final File outputDir;
+  private final NamespaceOptions nsOptions;
+  private final ChecksumType checksumType;
+  private final short ccss;
+  private final byte[] valueCreator;
+  private FileSegment segment;
+  private int numSegments;
+  private int segmentValues;
+  private long numValues;
+
+  private static final byte[] emptyUserData = new byte[0];
+
+  /**
+   * Name of the directory below a daemon's base directory into which bulk load partitions are shipped.
+   * Each namespace has a subdirectory named as its namespace directory.
+   */
+  public static final String stagingDirName = "bulk_ingest";
+  /**
+   * Name of the file that is created in a shipped partition directory once all of its segments are in place
+   */
+  public static final String readyFileName = "ready";
+
+  public BulkSegmentWriter(File outputDir, NamespaceOptions nsOptions, byte[] valueCreator) throws IOException {
+    if (!nsOptions.getStorageType().isFileBased()) {
+      throw new IllegalArgumentException("Bulk segments require a file-based namespace: " + nsOptions.getStorageType());
+    }
+    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new IOException("Unable to create: " + outputDir);
+    }
+    this.outputDir = outputDir;
+    this.nsOptions = nsOptions;
+    this.valueCreator = valueCreator;
+    checksumType = nsOptions.getDefaultPutOptions().getChecksumType();
+    ccss = CCSSUtil.createCCSS(Compression.NONE, checksumType);
+  }
+
+  /**
+   * Write a serialized value
+   *
+   * @param key          the key
+   * @param value        the serialized value
+   * @param version      the version of the value
+   * @param creationTime the creation time of the value in nanoseconds
+   * @return SUCCEEDED, or the reason that the value could not be stored (e.g. MUTATION when a
+   * single-version namespace receives a second, different value for a key in the same segment)
+   */
+  public OpResult put(DHTKey key, ByteBuffer value, long version, long creationTime) throws IOException {
+    StorageParameters storageParams;
+    int valueLength;
+
+    valueLength = value.remaining();
+    storageParams = new StorageParameters(version, valueLength, valueLength, (short) 0, ccss,
+        ChecksumProvider.getChecksum(checksumType).checksum(value.duplicate()), valueCreator, creationTime);
+    if (segment == null) {
+      newSegment();
+    }
+    while (true) {
+      SegmentStorageResult result;
+
+      try {
+        result = segment.put(key, value.duplicate(), storageParams, emptyUserData, nsOptions);
+      } catch (TableFullException tfe) {
+        result = SegmentStorageResult.segmentFull;
+      }
+      if (result != SegmentStorageResult.segmentFull) {
+        if (result.toOpResult() == OpResult.SUCCEEDED) {
+          ++segmentValues;
+          ++numValues;
+        }
+        return result.toOpResult();
+      }
+      if (segmentValues == 0) {
+        // discard the empty segment so that the writer remains usable
+        segment.close();
+        segment = null;
+        --numSegments;
+        if (!FileSegment.fileForSegment(outputDir, numSegments).delete()) {
+          Log.warning("Unable to delete empty segment ", numSegments);
+        }
+        throw new IllegalArgumentException("Value too large for a segment: " + valueLength);
+      }
+      segment.persist();
+      newSegment();
+    }
+  }
+
+  private void newSegment() throws IOException {
+    segment = FileSegment.create(outputDir, numSegments, nsOptions.getSegmentSize(), FileSegment.SyncMode.NoSync,
+        nsOptions);
+    ++numSegments;
+    segmentValues = 0;
+  }
+
+  /**
+   * Persist the segment being written
+   *
+   * @return the number of segments written
+   */
+  public int close() throws IOException {
+    if (segment != null) {
+      segment.persist();
+      segment = null;
+    }
+    Log.infof("BulkSegmentWriter %s: %d values in %d segments", outputDir, numValues, numSegments);
+    return numSegments;
+  }
+
+  public long getNumValues() {
+    return numValues;
+  }
+}
@@ -2,7 +2,6 @@
 
 import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
@@ -26,7 +25,7 @@
 import com.ms.silverking.cloud.dht.daemon.ActiveProxyRetrieval;
 import com.ms.silverking.cloud.dht.daemon.NodeRingMaster2;
 import com.ms.silverking.cloud.dht.net.MessageGroupBase;
-import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.collection.StripedLongPairMap;
 import com.ms.silverking.log.Log;
 
 abstract class DynamicNamespaceStore extends NamespaceStore {
@@ -39,7 +38,7 @@ abstract class DynamicNamespaceStore extends NamespaceStore {
       DHTConstants.dynamicNamespaceOptions);
 
   DynamicNamespaceStore(String name, MessageGroupBase mgBase, NodeRingMaster2 ringMaster,
-      ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals) {
+      StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals) {
     super(getNamespace(name).contextAsLong(), null, DirCreationMode.DoNotCreateNSDir, dynamicNamespaceProperties,
         mgBase, ringMaster, false, activeRetrievals);
     this.name = name;
@@ -113,6 +112,12 @@ public void put(List<StorageValueAndParameters> values, byte[] userData, KeyedOp
     }
   }
 
+  @Override
+  public void putAtomic(List<StorageValueAndParameters> values, byte[] userData,
+      KeyedOpResultListener resultListener, AtomicUpdateListener updateListener) {
+    put(values, userData, resultListener);
+  }
+
   protected abstract byte[] createDynamicValue(DHTKey key, InternalRetrievalOptions options);
 
   private ByteBuffer createDynamicValue(DHTKey key, InternalRetrievalOptions options, byte[] value) {
@@ -13,8 +13,11 @@
 
 import com.ms.silverking.cloud.dht.NamespaceOptions;
 import com.ms.silverking.cloud.dht.NamespaceVersionMode;
+import com.ms.silverking.cloud.dht.ValueCreator;
 import com.ms.silverking.cloud.dht.collection.DHTKeyCuckooBase;
 import com.ms.silverking.cloud.dht.collection.IntArrayDHTKeyCuckoo;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.MetaDataUtil;
 import com.ms.silverking.cloud.dht.common.SegmentIndexLocation;
 import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
 import com.ms.silverking.cloud.dht.daemon.storage.fsm.FSMElementType;
@@ -33,6 +36,7 @@ public class FileSegment extends WritableSegmentBase {
   private RandomAccessFile raFile;
   private final FileSegmentStorageFormat storageFormat;
   private long segmentCreationTime = 0;
+  private PositionalSegmentReader positionalReader;
 
   private static final String roFileMode = "r";
   private static final String rwFileMode = "rw";
@@ -43,7 +47,8 @@ enum AccessMode {
     Repair,       // Repair a segment with a damaged index; recovery only
     Update,       // Update segment entries, but not index
     ReadOnly,     // Read-only access to segment
-    ReadIndexOnly // Read-only access to the segment index only; data proper is not mapped
+    ReadIndexOnly, // Read-only access to the segment index only; data proper is not mapped
+    PositionalRead // Read-only access; data proper is read with positional reads rather than mapped
   }
 
   enum SyncMode {NoSync, Sync}
@@ -72,6 +77,16 @@ static final FileSegment create(File nsDir, int segmentNumber, int dataSegmentSi
     return new FileSegment(nsDir, segmentNumber, AccessMode.Creation, raFile, dataBuf, dataSegmentSize, nsOptions);
   }
 
+  /**
+   * Rewrite the segment number in the header of a persisted segment that is being renumbered
+   */
+  static void setSegmentNumber(File segmentFile, int segmentNumber) throws IOException {
+    try (RandomAccessFile raFile = new RandomAccessFile(segmentFile, rwFileMode)) {
+      raFile.seek(SegmentFormat.segmentNumberOffset);
+      raFile.writeInt(segmentNumber);
+    }
+  }
+
   public static FileSegment openForDataUpdate(File nsDir, int segmentNumber, int dataSegmentSize, SyncMode syncMode,
       NamespaceOptions nsOptions, SegmentIndexLocation segmentIndexLocation, SegmentPrereadMode segmentPrereadMode)
       throws IOException {
@@ -85,6 +100,21 @@ public static FileSegment openReadIndexOnly(File nsDir, int segmentNumber, int d
         SegmentIndexLocation.RAM, SegmentPrereadMode.NoPreread);
   }
 
+  /**
+   * Open a segment for reading without mapping its data. The index is read onto the heap; entries
+   * are read on demand with positional reads through the given block cache.
+   */
+  static FileSegment openPositionalRead(File nsDir, int segmentNumber, int dataSegmentSize,
+      NamespaceOptions nsOptions, SegmentBlockCache blockCache) throws IOException {
+    FileSegment segment;
+
+    segment = open(nsDir, segmentNumber, AccessMode.PositionalRead, dataSegmentSize, SyncMode.NoSync, nsOptions,
+        SegmentIndexLocation.RAM, SegmentPrereadMode.NoPreread);
+    segment.positionalReader = new PositionalSegmentReader(fileForSegment(nsDir, segmentNumber), segmentNumber,
+        dataSegmentSize, blockCache);
+    return segment;
+  }
+
   public static FileSegment openReadOnly(File nsDir, int segmentNumber, int dataSegmentSize, NamespaceOptions nsOptions)
       throws IOException {
     return openReadOnly(nsDir, segmentNumber, dataSegmentSize, nsOptions, SegmentIndexLocation.RAM,
@@ -120,7 +150,8 @@ private static FileSegment open(File nsDir, int segmentNumber, AccessMode access
 
     switch (accessMode) {
     case ReadOnly:      // fall through
-    case ReadIndexOnly:
+    case ReadIndexOnly: // fall through
+    case PositionalRead:
       dataMapMode = MapMode.READ_ONLY;
       fileOpenMode = roFileMode;
       break;
@@ -141,7 +172,7 @@ private static FileSegment open(File nsDir, int segmentNumber, AccessMode access
       raFile.read(_bufArray);
       dataBuf = ByteBuffer.wrap(_bufArray);
     } else {
-      if (accessMode != AccessMode.ReadIndexOnly) {
+      if (accessMode != AccessMode.ReadIndexOnly && accessMode != AccessMode.PositionalRead) {
         dataBuf = raFile.getChannel().map(dataMapMode, 0, dataSegmentSize);
         // Presently, the data segment is in network byte order - big endian
         // While nice-to-have in principle for network data, the fact
@@ -238,7 +269,8 @@ private FileSegment(File nsDir, int segmentNumber, AccessMode accessMode, Random
       NamespaceOptions nsOptions) throws IOException {
     super(nsDir, segmentNumber, dataBuf, keyToOffset, invalidatedOffsets, offsetToLength, offsetListStore, dataSegmentSize);
     this.accessMode = accessMode;
-    if (accessMode != AccessMode.ReadOnly && accessMode != AccessMode.Update && accessMode != AccessMode.ReadIndexOnly) {
+    if (accessMode != AccessMode.ReadOnly && accessMode != AccessMode.Update && accessMode != AccessMode.ReadIndexOnly
+        && accessMode != AccessMode.PositionalRead) {
       throw new RuntimeException("Unexpected mode: " + accessMode);
     }
     raFile.close();
@@ -262,6 +294,14 @@ public void sync() {
     ((MappedByteBuffer)dataBuf).force();
   }
 
+  /**
+   * Return the mapped data buffer so that it can be forced after the namespace lock has been released.
+   * The mapping remains valid after this segment is persisted and closed.
+   */
+  MappedByteBuffer getMappedDataBuf() {
+    return (MappedByteBuffer) dataBuf;
+  }
+
   public void persist() throws IOException {
     sync();
     FileSegmentMetaData.persist(storageFormat, raFile, dataSegmentSize,
@@ -290,6 +330,68 @@ long getSegmentCreationMillis() {
 
   public void close() {
     dataBuf = null;
+    if (positionalReader != null) {
+      positionalReader.close();
+    }
+  }
+
+  // When read with positional reads, entry access goes through the PositionalSegmentReader
+
+  @Override
+  protected int readStoredLength(int offset) {
+    return positionalReader == null ? super.readStoredLength(offset) : positionalReader.readStoredLength(offset);
+  }
+
+  @Override
+  protected ByteBuffer readData(int offset, int length) {
+    return positionalReader == null ? super.readData(offset, length) : positionalReader.read(offset, length);
+  }
+
+  @Override
+  protected ByteBuffer readMetaData(int offset) {
+    return positionalReader == null ? super.readMetaData(offset) : positionalReader.readMetaData(offset);
+  }
+
+  @Override
+  byte[] getChecksum(int offset) {
+    return positionalReader == null ?
+        super.getChecksum(offset) :
+        MetaDataUtil.getChecksum(readMetaData(offset + DHTKey.BYTES_PER_KEY), 0);
+  }
+
+  @Override
+  boolean isInvalidation(int offset) {
+    return positionalReader == null || invalidatedOffsets != null ?
+        super.isInvalidation(offset) :
+        MetaDataUtil.isInvalidation(readMetaData(offset + DHTKey.BYTES_PER_KEY), 0);
+  }
+
+  @Override
+  long getVersion(int offset) {
+    return positionalReader == null ?
+        super.getVersion(offset) :
+        MetaDataUtil.getVersion(readMetaData(offset + DHTKey.BYTES_PER_KEY), 0);
+  }
+
+  @Override
+  long getCreationTime(int offset) {
+    return positionalReader == null ?
+        super.getCreationTime(offset) :
+        MetaDataUtil.getCreationTime(readMetaData(offset + DHTKey.BYTES_PER_KEY), 0);
+  }
+
+  @Override
+  ValueCreator getCreator(int offset) {
+    return positionalReader == null ?
+        super.getCreator(offset) :
+        MetaDataUtil.getCreator(readMetaData(offset + DHTKey.BYTES_PER_KEY), 0);
+  }
+
+  @Override
+  int getStoredLength(int offset) {
+    return positionalReader == null || offsetToLength != null ?
+        super.getStoredLength(offset) :
+        positionalReader.readStoredLength(offset + DHTKey.BYTES_PER_KEY);
   }
 
   public void displayForDebug() {
@@ -9,6 +9,7 @@
 import com.ms.silverking.cloud.dht.StorageType;
 import com.ms.silverking.cloud.dht.collection.DHTKeyIntEntry;
 import com.ms.silverking.cloud.dht.common.DHTConstants;
+import com.ms.silverking.cloud.dht.common.DHTKey;
 import com.ms.silverking.cloud.dht.common.KeyUtil;
 import com.ms.silverking.cloud.dht.common.NamespaceOptionsMode;
 import com.ms.silverking.cloud.dht.common.NamespaceProperties;
@@ -47,37 +48,7 @@ FileSegment recoverFullSegment(int segmentNumber, NamespaceStore nsStore, Segmen
       sw = new SimpleStopwatch();
       segment = FileSegment.openReadOnly(nsDir, segmentNumber, nsStore.getNamespaceOptions().getSegmentSize(),
           nsStore.getNamespaceOptions(), segmentIndexLocation, segmentPrereadMode);
-      for (DHTKeyIntEntry entry : segment.getPKC()) {
-        int offset;
-        long creationTime;
-
-        offset = entry.getValue();
-        if (offset < 0) {
-          OffsetList offsetList;
-
-          offsetList = segment.offsetListStore.getOffsetList(-offset);
-          for (Triple<Integer, Long, Long> offsetVersionAndStorageTime :
-              offsetList.offsetVersionAndStorageTimeIterable()) {
-            creationTime = offsetVersionAndStorageTime.getV3();
-            nsStore.putSegmentNumberAndVersion(entry.getKey(), segmentNumber, offsetVersionAndStorageTime.getV2(),
-                creationTime, segment);
-          }
-        } else {
-          long version;
-
-          if (nsStore.getNamespaceOptions().getVersionMode() == NamespaceVersionMode.SINGLE_VERSION) {
-            version = DHTConstants.unspecifiedVersion;
-          } else {
-            version = segment.getVersion(offset);
-          }
-          if (nsStore.getNamespaceOptions().getRevisionMode() == RevisionMode.UNRESTRICTED_REVISIONS) {
-            creationTime = segment.getCreationTime(offset);
-          } else {
-            creationTime = 0;
-          }
-          nsStore.putSegmentNumberAndVersion(entry.getKey(), segmentNumber, version, creationTime, segment);
-        }
-      }
+      indexFullSegment(segmentNumber, segment, nsStore);
 
       if (segmentPrereadMode != SegmentPrereadMode.Preread) {
         segment.close();
@@ -92,6 +63,60 @@ FileSegment recoverFullSegment(int segmentNumber, NamespaceStore nsStore, Segmen
     return _segment;
   }
 
+  /**
+   * Record the keys of an open full segment in the namespace's key index
+   */
+  void indexFullSegment(int segmentNumber, FileSegment segment, NamespaceStore nsStore) {
+    forEachIndexEntry(segment, nsStore.getNamespaceOptions(),
+        (key, version, creationTime) -> nsStore.putSegmentNumberAndVersion(key, segmentNumber, version, creationTime,
+            segment));
+    nsStore.addSegmentKeyFilter(segmentNumber, segment.getPKC());
+  }
+
+  /**
+   * Receives the entries of a full segment's key index
+   */
+  interface IndexEntryConsumer {
+    void accept(DHTKey key, long version, long creationTime);
+  }
+
+  /**
+   * Pass every version stored in an open full segment to the consumer, in index order. The versions and
+   * creation times passed are those that the namespace's key index records for them.
+   */
+  static void forEachIndexEntry(FileSegment segment, NamespaceOptions nsOptions, IndexEntryConsumer consumer) {
+    for (DHTKeyIntEntry entry : segment.getPKC()) {
+      int offset;
+      long creationTime;
+
+      offset = entry.getValue();
+      if (offset < 0) {
+        OffsetList offsetList;
+
+        offsetList = segment.offsetListStore.getOffsetList(-offset);
+        for (Triple<Integer, Long, Long> offsetVersionAndStorageTime :
+            offsetList.offsetVersionAndStorageTimeIterable()) {
+          creationTime = offsetVersionAndStorageTime.getV3();
+          consumer.accept(entry.getKey(), offsetVersionAndStorageTime.getV2(), creationTime);
+        }
+      } else {
+        long version;
+
+        if (nsOptions.getVersionMode() == NamespaceVersionMode.SINGLE_VERSION) {
+          version = DHTConstants.unspecifiedVersion;
+        } else {
+          version = segment.getVersion(offset);
+        }
+        if (nsOptions.getRevisionMode() == RevisionMode.UNRESTRICTED_REVISIONS) {
+          creationTime = segment.getCreationTime(offset);
+        } else {
+          creationTime = 0;
+        }
+        consumer.accept(entry.getKey(), version, creationTime);
+      }
+    }
+  }
+
   FileSegment recoverPartialSegment(int segmentNumber, NamespaceStore nsStore) {
     try {
       DataSegmentWalker dsWalker;
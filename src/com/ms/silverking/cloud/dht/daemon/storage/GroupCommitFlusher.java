@@ -0,0 +1,227 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.ms.silverking.cloud.dht.NamespaceStorageOptions;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.cloud.dht.daemon.storage.protocol.PutCommunicator;
+import com.ms.silverking.cloud.dht.daemon.storage.protocol.PutOperationContainer;
+import com.ms.silverking.log.Log;
+import com.ms.silverking.thread.ThreadUtil;
+
+/**
+ * Group commit for FILE_SYNC namespaces. Rather than making every write to the head segment
+ * synchronous, writers record the number of bytes that they have appended and receive a write
+ * sequence number, and queue the results of their writes. A single flusher thread periodically - or
+ * sooner once enough bytes have been written - forces the head segment to disk and then sends the queued
+ * results whose sequence numbers are covered by the force, and triggers any WAIT_FORs that the covered writes
+ * satisfy. Writers never wait for the force.
+ *
+ * Segments that are rolled over are forced by persist() under the namespace write lock, so
+ * forcing only the current head segment covers every write recorded before the force began.
+ */
+class GroupCommitFlusher implements Runnable {
+  private final NamespaceStore nsStore;
+  private final long intervalNanos;
+  private final long maxBytes;
+  private final Lock lock;
+  private final Condition flushRequested;
+  private final Thread runner;
+  private long writeSequence;
+  private long flushedSequence;
+  private long failedSequence;
+  private final Queue<PendingResults> pendingResults; // in sequence order
+
+  private static class PendingResults {
+    final long sequence;
+    final KeyedOpResultListener resultListener;
+    final List<DHTKey> keys;
+
+    PendingResults(long sequence, KeyedOpResultListener resultListener, List<DHTKey> keys) {
+      this.sequence = sequence;
+      this.resultListener = resultListener;
+      this.keys = keys;
+    }
+  }
+
+  GroupCommitFlusher(NamespaceStore nsStore, String name, NamespaceStorageOptions storageOptions) {
+    this.nsStore = nsStore;
+    intervalNanos = TimeUnit.MILLISECONDS.toNanos(storageOptions.getGroupCommitIntervalMillis());
+    maxBytes = storageOptions.getGroupCommitMaxBytes();
+    lock = new ReentrantLock();
+    flushRequested = lock.newCondition();
+    pendingResults = new ArrayDeque<>();
+    runner = ThreadUtil.newDaemonThread(this, "GroupCommitFlusher." + name);
+    runner.start();
+  }
+
+  /**
+   * Record bytes appended to the head segment, and queue the results of the writes until a force covering
+   * them has completed. Must be called while holding the namespace write lock so that the write sequence is
+   * ordered with respect to the head segment contents, and so that no force can cover the write before its
+   * results are queued.
+   *
+   * @param bytes          number of bytes written
+   * @param resultListener listener to send the results to once the writes are durable
+   * @param keys           keys written
+   */
+  void recordWrite(long bytes, KeyedOpResultListener resultListener, List<DHTKey> keys) {
+    lock.lock();
+    try {
+      boolean wasIdle;
+
+      wasIdle = pendingResults.isEmpty();
+      writeSequence += Math.max(bytes, 1);
+      pendingResults.add(new PendingResults(writeSequence, resultListener, keys));
+      // wake the flusher to start a batch, or to end the current batch early once it is large enough
+      if (wasIdle || writeSequence - Math.max(flushedSequence, failedSequence) >= maxBytes) {
+        flushRequested.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Return the current write sequence. The namespace read lock must be held by the caller for the value to
+   * correspond to the head segment contents.
+   */
+  long getWriteSequence() {
+    lock.lock();
+    try {
+      return writeSequence;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remove the queued results covered by the given sequence number. Must be called while holding lock.
+   */
+  private List<PendingResults> takePendingResults(long sequence) {
+    List<PendingResults> covered;
+
+    covered = new ArrayList<>();
+    while (!pendingResults.isEmpty() && pendingResults.peek().sequence <= sequence) {
+      covered.add(pendingResults.remove());
+    }
+    return covered;
+  }
+
+  /**
+   * Send results from the flusher thread. PutCommunicators may only be used for a single processing pass, so
+   * results for them are sent through a new communicator, as is done for pending puts.
+   */
+  private static void sendResults(List<PendingResults> covered, OpResult result) {
+    for (PendingResults pr : covered) {
+      try {
+        if (pr.resultListener instanceof PutCommunicator) {
+          PutOperationContainer putOperationContainer;
+          PutCommunicator pComm;
+
+          putOperationContainer = ((PutCommunicator) pr.resultListener).getPutOperationContainer();
+          pComm = new PutCommunicator(putOperationContainer);
+          for (DHTKey key : pr.keys) {
+            pComm.sendResult(key, result);
+          }
+          putOperationContainer.sendInitialResults(pComm);
+        } else {
+          for (DHTKey key : pr.keys) {
+            pr.resultListener.sendResult(key, result);
+          }
+        }
+      } catch (RuntimeException re) {
+        Log.logErrorWarning(re, "GroupCommitFlusher unable to send results");
+      }
+    }
+  }
+
+  /**
+   * Trigger the WAIT_FORs satisfied by writes that are now durable
+   */
+  private void triggerWaitFors(List<PendingResults> covered) {
+    if (!covered.isEmpty()) {
+      List<DHTKey> keys;
+
+      keys = new ArrayList<>();
+      for (PendingResults pr : covered) {
+        keys.addAll(pr.keys);
+      }
+      try {
+        nsStore.triggerWaitForsForGroupCommit(keys);
+      } catch (RuntimeException re) {
+        Log.logErrorWarning(re, "GroupCommitFlusher unable to trigger wait fors");
+      }
+    }
+  }
+
+  private void awaitBatch() throws InterruptedException {
+    lock.lock();
+    try {
+      long remainingNanos;
+
+      while (pendingResults.isEmpty()) {
+        flushRequested.await();
+      }
+      // allow the batch to fill for up to the interval unless the size trigger has been reached
+      remainingNanos = intervalNanos;
+      while (remainingNanos > 0 && writeSequence - Math.max(flushedSequence, failedSequence) < maxBytes) {
+        remainingNanos = flushRequested.awaitNanos(remainingNanos);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void flush() {
+    long minCoveredSequence;
+    List<PendingResults> covered;
+
+    minCoveredSequence = getWriteSequence();
+    try {
+      long sequence;
+
+      sequence = nsStore.forceHeadSegmentForGroupCommit();
+      lock.lock();
+      try {
+        flushedSequence = Math.max(flushedSequence, sequence);
+        covered = takePendingResults(flushedSequence);
+      } finally {
+        lock.unlock();
+      }
+      sendResults(covered, OpResult.SUCCEEDED);
+      triggerWaitFors(covered);
+    } catch (RuntimeException | Error e) {
+      Log.logErrorWarning(e, "GroupCommitFlusher flush failed");
+      lock.lock();
+      try {
+        failedSequence = Math.max(failedSequence, minCoveredSequence);
+        covered = takePendingResults(failedSequence);
+      } finally {
+        lock.unlock();
+      }
+      sendResults(covered, OpResult.ERROR);
+      ThreadUtil.pauseAfterException();
+    }
+  }
+
+  public void run() {
+    while (true) {
+      try {
+        awaitBatch();
+        flush();
+      } catch (Exception e) {
+        Log.logErrorWarning(e);
+        ThreadUtil.pauseAfterException();
+      }
+    }
+  }
+}
@@ -3,7 +3,6 @@
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.collect.ImmutableMap;
 import com.ms.silverking.cloud.dht.NonExistenceResponse;
@@ -17,7 +16,7 @@
 import com.ms.silverking.cloud.dht.daemon.NodeRingMaster2;
 import com.ms.silverking.cloud.dht.ForwardingMode;
 import com.ms.silverking.cloud.dht.net.MessageGroupBase;
-import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.collection.StripedLongPairMap;
 import com.ms.silverking.io.util.BufferUtil;
 
 public abstract class MetricsNamespaceStore extends DynamicNamespaceStore {
@@ -28,13 +27,13 @@ public abstract class MetricsNamespaceStore extends DynamicNamespaceStore {
       NonExistenceResponse.NULL_VALUE, false, false, ForwardingMode.DO_NOT_FORWARD, false, null, null);
 
   MetricsNamespaceStore(String name, MessageGroupBase mgBase, NodeRingMaster2 ringMaster,
-      ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals, Map<DHTKey, String> keyToNameMap) {
+      StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals, Map<DHTKey, String> keyToNameMap) {
     super(name, mgBase, ringMaster, activeRetrievals);
     this.keyToNameMap = keyToNameMap;
   }
 
   MetricsNamespaceStore(String name, MessageGroupBase mgBase, NodeRingMaster2 ringMaster,
-      ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals) {
+      StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals) {
     this(name, mgBase, ringMaster, activeRetrievals, new HashMap<>());
   }
 
@@ -7,10 +7,15 @@
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.google.common.collect.ImmutableSet;
+import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
 import com.ms.silverking.log.Log;
+import com.ms.silverking.numeric.IntervalLatencyHistogram;
+import com.ms.silverking.numeric.LatencyHistogram;
 import com.ms.silverking.text.StringUtil;
+import com.ms.silverking.util.PropertiesHelper;
 
 public class NamespaceMetrics {
   private volatile int totalKeys; // meta write lock is held
@@ -21,19 +26,58 @@ public class NamespaceMetrics {
   private AtomicLong totalRetrievals; // only read lock is held; use atomic
   private volatile long lastPutMillis;
   private volatile long lastRetrievalMillis;
+  private final AtomicReferenceArray<IntervalLatencyHistogram> latencies; // created on first use
+
+  /**
+   * Operation stages whose latencies are recorded. Storage latencies are measured within the NamespaceStore;
+   * StorageRetrieve covers every storage retrieval, while StorageWaitFor measures how long each key of a
+   * WAIT_FOR waited at storage for a value, from registration of the wait to the put that satisfied it.
+   * Local latencies are measured from the start to the end of the handling of a non-forwarded message
+   * (i.e. at a replica); LocalWaitFor ends when the last key of the WAIT_FOR is satisfied. Proxied latencies
+   * are measured from the receipt of a forwarded message to the completion of the operation at the proxy.
+   * Waits that time out are not recorded.
+   */
+  public enum LatencyType {
+    StoragePut, StoragePutUpdate, StorageRetrieve, StorageWaitFor, LocalPut, LocalPutUpdate, LocalRetrieve,
+    LocalWaitFor, ProxiedPut, ProxiedRetrieve, ProxiedWaitFor, StoragePutAtomic;
+
+    public String getMetricName() {
+      return latencyMetricPrefix + name() + latencyMetricSuffix;
+    }
+  }
+
+  private static final String latencyMetricPrefix = "latency";
+  private static final String latencyMetricSuffix = "Micros";
+  private static final String latenciesFieldName = "latencies";
+
+  private static final String latencyIntervalMillisProperty = NamespaceMetrics.class.getName()
+      + ".LatencyIntervalMillis";
+  private static final int defaultLatencyIntervalMillis = 60 * 1000;
+  private static final int latencyIntervalMillis;
 
   private static final Set<String> metrics;
+  private static final Set<String> latencyMetrics;
 
   static {
     Set<String> _metrics;
+    Set<String> _latencyMetrics;
+
+    latencyIntervalMillis = PropertiesHelper.systemHelper.getInt(latencyIntervalMillisProperty,
+        defaultLatencyIntervalMillis);
+    _latencyMetrics = new HashSet<>();
+    for (LatencyType type : LatencyType.values()) {
+      _latencyMetrics.add(type.getMetricName());
+    }
+    latencyMetrics = ImmutableSet.copyOf(_latencyMetrics);
 
     _metrics = new HashSet<>();
     for (Field field : NamespaceMetrics.class.getDeclaredFields()) {
-      if (!Modifier.isStatic(field.getModifiers())) {
+      if (!Modifier.isStatic(field.getModifiers()) && !field.getName().equals(latenciesFieldName)) {
         Log.finef("%s\n", field.getName());
         _metrics.add(field.getName());
       }
     }
+    _metrics.addAll(latencyMetrics);
     metrics = ImmutableSet.copyOf(_metrics);
   }
 
@@ -49,6 +93,15 @@ public static NamespaceMetrics aggregate(NamespaceMetrics nm0, NamespaceMetrics
     a.totalRetrievals.set(nm0.totalRetrievals.longValue() + nm1.totalRetrievals.longValue());
     a.lastPutMillis = Math.max(nm0.lastPutMillis, nm1.lastPutMillis);
     a.lastRetrievalMillis = Math.max(nm0.lastRetrievalMillis, nm1.lastRetrievalMillis);
+    for (LatencyType type : LatencyType.values()) {
+      if (nm0.latencies.get(type.ordinal()) != null || nm1.latencies.get(type.ordinal()) != null) {
+        IntervalLatencyHistogram histogram;
+
+        histogram = a.getLatencies(type);
+        histogram.addToLastInterval(nm0.getLatencySnapshot(type));
+        histogram.addToLastInterval(nm1.getLatencySnapshot(type));
+      }
+    }
     return a;
   }
 
@@ -56,15 +109,23 @@ public NamespaceMetrics() {
     bytesUncompressed = new AtomicLong();
     bytesCompressed = new AtomicLong();
     totalRetrievals = new AtomicLong();
+    latencies = new AtomicReferenceArray<>(LatencyType.values().length);
   }
 
   public static Set<String> getMetricNames() {
     return metrics;
   }
 
+  public static Set<String> getLatencyMetricNames() {
+    return latencyMetrics;
+  }
+
   public String getMetric(String name) {
     if (!metrics.contains(name)) {
       return null;
+    } else if (latencyMetrics.contains(name)) {
+      return getLatencySnapshot(LatencyType.valueOf(name.substring(latencyMetricPrefix.length(),
+          name.length() - latencyMetricSuffix.length()))).toString();
     } else {
       return _getMetric(name);
     }
@@ -140,6 +201,32 @@ public long getLastActivityMillis() {
     return Math.max(getLastPutMillis(), getLastRetrievalMillis());
   }
 
+  public void recordLatency(LatencyType type, long latencyMicros) {
+    getLatencies(type).record(latencyMicros);
+  }
+
+  /**
+   * @return the latencies, in microseconds, recorded for the given type during the last complete interval
+   */
+  public LatencyHistogram getLatencySnapshot(LatencyType type) {
+    IntervalLatencyHistogram histogram;
+
+    histogram = latencies.get(type.ordinal());
+    return histogram != null ? histogram.getLastInterval() : new LatencyHistogram();
+  }
+
+  private IntervalLatencyHistogram getLatencies(LatencyType type) {
+    IntervalLatencyHistogram histogram;
+
+    histogram = latencies.get(type.ordinal());
+    if (histogram == null) {
+      latencies.compareAndSet(type.ordinal(), null,
+          new IntervalLatencyHistogram(SystemTimeUtil.timerDrivenTimeSource, latencyIntervalMillis));
+      histogram = latencies.get(type.ordinal());
+    }
+    return histogram;
+  }
+
   public static void main(String[] args) {
     System.out.printf("%s\n", new NamespaceMetrics().getMetric("totalRetrievals"));
   }
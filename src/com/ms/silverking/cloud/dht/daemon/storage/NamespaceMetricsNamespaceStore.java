@@ -2,7 +2,6 @@
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentMap;
 
 import com.ms.silverking.cloud.dht.client.Namespace;
 import com.ms.silverking.cloud.dht.client.impl.KeyCreator;
@@ -12,7 +11,7 @@
 import com.ms.silverking.cloud.dht.daemon.ActiveProxyRetrieval;
 import com.ms.silverking.cloud.dht.daemon.NodeRingMaster2;
 import com.ms.silverking.cloud.dht.net.MessageGroupBase;
-import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.collection.StripedLongPairMap;
 
 /**
  * Provides information regarding the local DHT Node
@@ -33,7 +32,7 @@ class NamespaceMetricsNamespaceStore extends MetricsNamespaceStore {
   }
 
   NamespaceMetricsNamespaceStore(MessageGroupBase mgBase, NodeRingMaster2 ringMaster,
-      ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals, NamespaceStore nsStore) {
+      StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals, NamespaceStore nsStore) {
     super(Namespace.namespaceMetricsBaseName + String.format("%x", nsStore.getNamespace()), mgBase, ringMaster,
         activeRetrievals, keyToNameMap);
     this.nsMetrics = nsStore.getNamespaceMetrics();
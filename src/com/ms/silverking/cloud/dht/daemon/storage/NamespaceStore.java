@@ -3,16 +3,19 @@
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -21,7 +24,6 @@
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -32,13 +34,16 @@
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 
 import com.google.common.base.Preconditions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import com.ms.silverking.cloud.dht.KeyLevelValueRetentionPolicyImpl;
 import com.ms.silverking.cloud.dht.NamespaceOptions;
 import com.ms.silverking.cloud.dht.NamespaceServerSideCode;
@@ -57,8 +62,11 @@
 import com.ms.silverking.cloud.dht.WaitMode;
 import com.ms.silverking.cloud.dht.client.ChecksumType;
 import com.ms.silverking.cloud.dht.client.Compression;
+import com.ms.silverking.cloud.dht.collection.DHTKeyCuckooBase;
+import com.ms.silverking.cloud.dht.collection.DHTKeyIntCursor;
 import com.ms.silverking.cloud.dht.collection.DHTKeyIntEntry;
-import com.ms.silverking.cloud.dht.collection.IntArrayDHTKeyCuckoo;
+import com.ms.silverking.cloud.dht.collection.IncrementalRehashDHTKeyCuckoo;
+import com.ms.silverking.cloud.dht.collection.OffHeapIntDHTKeyCuckoo;
 import com.ms.silverking.cloud.dht.common.CCSSUtil;
 import com.ms.silverking.cloud.dht.common.CorruptValueException;
 import com.ms.silverking.cloud.dht.common.DHTConstants;
@@ -74,6 +82,7 @@
 import com.ms.silverking.cloud.dht.common.OpResult;
 import com.ms.silverking.cloud.dht.common.OptionsHelper;
 import com.ms.silverking.cloud.dht.common.SegmentIndexLocation;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
 import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
 import com.ms.silverking.cloud.dht.common.ValueUtil;
 import com.ms.silverking.cloud.dht.daemon.ActiveProxyRetrieval;
@@ -100,12 +109,16 @@
 import com.ms.silverking.cloud.dht.net.MessageGroupConnection;
 import com.ms.silverking.cloud.dht.net.MessageGroupKeyOrdinalEntry;
 import com.ms.silverking.cloud.dht.net.MessageGroupRetrievalResponseEntry;
+import com.ms.silverking.cloud.dht.net.ProtoKeyScanMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoKeyScanResponseMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoValueMessageGroup;
 import com.ms.silverking.cloud.dht.serverside.PutTrigger;
 import com.ms.silverking.cloud.dht.serverside.RetrieveCallback;
 import com.ms.silverking.cloud.dht.serverside.RetrieveTrigger;
 import com.ms.silverking.cloud.dht.serverside.SSNamespaceStore;
 import com.ms.silverking.cloud.dht.serverside.SSRetrievalOptions;
 import com.ms.silverking.cloud.dht.serverside.SSStorageParametersAndRequirements;
+import com.ms.silverking.cloud.dht.trace.TraceIDProvider;
 import com.ms.silverking.cloud.dht.trace.TracerFactory;
 import com.ms.silverking.cloud.ring.RingRegion;
 import com.ms.silverking.cloud.storagepolicy.StoragePolicy;
@@ -116,6 +129,7 @@
 import com.ms.silverking.collection.Pair;
 import com.ms.silverking.collection.Quintuple;
 import com.ms.silverking.collection.SKImmutableList;
+import com.ms.silverking.collection.StripedLongPairMap;
 import com.ms.silverking.collection.Triple;
 import com.ms.silverking.collection.cuckoo.IntCuckooConstants;
 import com.ms.silverking.collection.cuckoo.TableFullException;
@@ -157,7 +171,7 @@ public class NamespaceStore implements SSNamespaceStore, ManagedNamespaceStore {
    * a) the segment where the value is stored (for single value storage)
    * b) the list of segments where the value is stored
    */
-  private IntArrayDHTKeyCuckoo valueSegments;
+  private final IncrementalRehashDHTKeyCuckoo valueSegments;
   private final AtomicInteger nextSegmentID;
   private final OffsetListStore offsetListStore;
   private final ReadWriteLock metaRWLock;
@@ -169,9 +183,15 @@ public class NamespaceStore implements SSNamespaceStore, ManagedNamespaceStore {
   private final ReentrantLock reapLock;
   private long minVersion;
   private long curSnapshot;
-  private final ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals;
-  private final ConcurrentMap<DHTKey, Set<PendingWaitFor>> pendingWaitFors;
+  private final StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals;
+  private final StripedLongPairMap<Set<PendingWaitFor>> pendingWaitFors;
   private final Cache<Integer, FileSegment> fileSegmentCache;
+  private final ConcurrentMap<Integer, SegmentKeyFilter> segmentKeyFilters;
+  private final int coldSegmentAge;
+  private final Cache<Integer, FileSegment> coldSegmentCache;
+  private final SegmentBlockCache segmentBlockCache;
+  private final SegmentPrefetcher segmentPrefetcher;
+  private final GroupCommitFlusher groupCommitFlusher;
   private final Map<Integer, RAMSegment> ramSegments;
   private final NamespaceMetrics nsMetrics;
   private long lastConvergenceVersion;
@@ -216,6 +236,14 @@ public class NamespaceStore implements SSNamespaceStore, ManagedNamespaceStore {
       OptionsHelper.newRetrievalOptions(RetrievalType.META_DATA, WaitMode.GET, VersionConstraint.least));
   private static final InternalRetrievalOptions newestVersionOptions = new InternalRetrievalOptions(
       OptionsHelper.newRetrievalOptions(RetrievalType.META_DATA, WaitMode.GET, VersionConstraint.greatest));
+  private static final InternalRetrievalOptions segmentTransferOptions = new InternalRetrievalOptions(
+      OptionsHelper.newRetrievalOptions(RetrievalType.VALUE_AND_META_DATA, WaitMode.GET, VersionConstraint.greatest));
+  private static final InternalRetrievalOptions atomicUpdateRetrievalOptions = new InternalRetrievalOptions(
+      OptionsHelper.newRetrievalOptions(RetrievalType.VALUE_AND_META_DATA, WaitMode.GET, VersionConstraint.greatest));
+  private static final int segmentTransferBatchSize = 4096;
+  private static final int segmentTransferDeadlineRelativeMillis = 5 * 60 * 1000;
+  // key table entries examined per read lock acquisition by a key scan
+  private static final int keyScanChunkEntries = 4096;
   private static final int fileSegmentCacheCapacity = StoreConfiguration.fileSegmentCacheCapacity;
   private static final long noSuchVersion = MetaDataConstants.noSuchVersion;
 
@@ -258,6 +286,11 @@ private enum LockCheckResult {Unlocked, Locked, Ignored}
   private static final SegmentPrereadMode readSegmentPrereadMode = SegmentPrereadMode.NoPreread;
   private static final SegmentPrereadMode updateSegmentPrereadMode = SegmentPrereadMode.NoPreread;
   private static final boolean forceDataSegmentLoadOnReap;
+  private static final int segmentKeyFilterBitsPerKey;
+  private static final int coldSegmentCacheCapacity;
+  private static final long coldSegmentBlockCacheBytes;
+  private static final int segmentPrefetchAccessThreshold;
+  private static final int segmentPrefetchRecentSegments;
 
   public static final boolean enablePendingPuts;
 
@@ -294,6 +327,24 @@ private enum LockCheckResult {Unlocked, Locked, Ignored}
         DHTConstants.forceDataSegmentLoadOnReapProperty, false);
     Log.warningf("forceDataSegmentLoadOnReap: %s", forceDataSegmentLoadOnReap);
 
+    segmentKeyFilterBitsPerKey = PropertiesHelper.systemHelper.getInt(DHTConstants.segmentKeyFilterBitsPerKeyProperty,
+        DHTConstants.defaultSegmentKeyFilterBitsPerKey);
+    Log.warningf("segmentKeyFilterBitsPerKey: %d", segmentKeyFilterBitsPerKey);
+
+    coldSegmentCacheCapacity = PropertiesHelper.systemHelper.getInt(DHTConstants.coldSegmentCacheCapacityProperty,
+        DHTConstants.defaultColdSegmentCacheCapacity);
+    Log.warningf("coldSegmentCacheCapacity: %d", coldSegmentCacheCapacity);
+    coldSegmentBlockCacheBytes = PropertiesHelper.systemHelper.getLong(DHTConstants.coldSegmentBlockCacheBytesProperty,
+        DHTConstants.defaultColdSegmentBlockCacheBytes);
+    Log.warningf("coldSegmentBlockCacheBytes: %d", coldSegmentBlockCacheBytes);
+
+    segmentPrefetchAccessThreshold = PropertiesHelper.systemHelper.getInt(
+        DHTConstants.segmentPrefetchAccessThresholdProperty, DHTConstants.defaultSegmentPrefetchAccessThreshold);
+    Log.warningf("segmentPrefetchAccessThreshold: %d", segmentPrefetchAccessThreshold);
+    segmentPrefetchRecentSegments = PropertiesHelper.systemHelper.getInt(
+        DHTConstants.segmentPrefetchRecentSegmentsProperty, DHTConstants.defaultSegmentPrefetchRecentSegments);
+    Log.warningf("segmentPrefetchRecentSegments: %d", segmentPrefetchRecentSegments);
+
     Preconditions.checkState(minFinalizationIntervalMillis > 0, "minFinalizationIntervalMillis must be non-negative");
     Preconditions.checkState(maxUnfinalizedDeletedBytes > 0, "maxUnfinalizedDeletedBytes must be non-negative");
 
@@ -378,7 +429,7 @@ class PutWork {
    */
   public NamespaceStore(long ns, File nsDir, DirCreationMode dirCreationMode, NamespaceProperties nsProperties,
       NamespaceStore parent, MessageGroupBase mgBase, NodeRingMaster2 ringMaster, boolean isRecovery,
-      ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals, ReapPolicy reapPolicy, Finalization finalization,
+      StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals, ReapPolicy reapPolicy, Finalization finalization,
       FileSegmentCompactor fileSegmentCompactor) {
     this.ns = ns;
     this.nsDir = nsDir;
@@ -447,6 +498,24 @@ public NamespaceStore(long ns, File nsDir, DirCreationMode dirCreationMode, Name
     default:
       throw new RuntimeException("Panic");
     }
+    segmentKeyFilters = new ConcurrentHashMap<>();
+    if (nsOptions.getStorageType().isFileBased() && nsOptions.getStorageOptions() != null
+        && nsOptions.getStorageOptions().getColdSegmentAge() > 0) {
+      coldSegmentAge = nsOptions.getStorageOptions().getColdSegmentAge();
+      coldSegmentCache = CacheBuilder.newBuilder().maximumSize(coldSegmentCacheCapacity).removalListener(
+          (RemovalNotification<Integer, FileSegment> notification) -> notification.getValue().close()).build();
+      segmentBlockCache = new SegmentBlockCache(coldSegmentBlockCacheBytes);
+    } else {
+      coldSegmentAge = 0;
+      coldSegmentCache = null;
+      segmentBlockCache = null;
+    }
+    if (nsOptions.getStorageType().isFileBased()
+        && (segmentPrefetchAccessThreshold > 0 || segmentPrefetchRecentSegments > 0)) {
+      segmentPrefetcher = new SegmentPrefetcher(this, segmentPrefetchAccessThreshold);
+    } else {
+      segmentPrefetcher = null;
+    }
     if (fileSegmentCompactor != null) {
       fileSegmentCompactor.setFileSegmentCache(fileSegmentCache);
     }
@@ -455,7 +524,11 @@ public NamespaceStore(long ns, File nsDir, DirCreationMode dirCreationMode, Name
     }
     //headCreationLock = new ReentrantLock();
     // valueSegments = new ConcurrentHashMap<>();
-    valueSegments = new IntArrayDHTKeyCuckoo(valueSegmentsConfig);
+    if (nsOptions.getStorageOptions() != null && nsOptions.getStorageOptions().getOffHeapKeyIndex()) {
+      valueSegments = new IncrementalRehashDHTKeyCuckoo(new OffHeapIntDHTKeyCuckoo(valueSegmentsConfig));
+    } else {
+      valueSegments = new IncrementalRehashDHTKeyCuckoo(valueSegmentsConfig);
+    }
     offsetListStore = new RAMOffsetListStore(nsOptions);
     metaRWLock = new ReentrantReadWriteLock();
     metaReadLock = metaRWLock.readLock();
@@ -464,7 +537,12 @@ public NamespaceStore(long ns, File nsDir, DirCreationMode dirCreationMode, Name
     readLock = rwLock.readLock();
     writeLock = rwLock.writeLock();
     reapLock = new ReentrantLock();
-    pendingWaitFors = new ConcurrentSkipListMap<>(DHTKeyComparator.dhtKeyComparator);
+    if (usesGroupCommit()) {
+      groupCommitFlusher = new GroupCommitFlusher(this, Long.toHexString(ns), nsOptions.getStorageOptions());
+    } else {
+      groupCommitFlusher = null;
+    }
+    pendingWaitFors = new StripedLongPairMap<>();
     minVersion = nsProperties.getMinVersion();
     if (minVersion > Long.MIN_VALUE) {
       curSnapshot = minVersion - 1;
@@ -514,7 +592,7 @@ public NamespaceStore(long ns, File nsDir, DirCreationMode dirCreationMode, Name
 
   public NamespaceStore(long ns, File nsDir, DirCreationMode dirCreationMode, NamespaceProperties nsProperties,
       NamespaceStore parent, MessageGroupBase mgBase, NodeRingMaster2 ringMaster, boolean isRecovery,
-      ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals, ReapPolicy reapPolicy,
+      StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals, ReapPolicy reapPolicy,
       Finalization finalization) {
     this(ns, nsDir, dirCreationMode, nsProperties, null, mgBase, ringMaster, isRecovery, activeRetrievals, reapPolicy,
         finalization, new NamespaceFileSegmentCompactor(nsDir, nsProperties.getOptions()));
@@ -522,18 +600,88 @@ public NamespaceStore(long ns, File nsDir, DirCreationMode dirCreationMode, Name
 
   public NamespaceStore(long ns, File nsDir, DirCreationMode dirCreationMode, NamespaceProperties nsProperties,
       NamespaceStore parent, MessageGroupBase mgBase, NodeRingMaster2 ringMaster, boolean isRecovery,
-      ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals, ReapPolicy reapPolicy) {
+      StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals, ReapPolicy reapPolicy) {
     this(ns, nsDir, dirCreationMode, nsProperties, null, mgBase, ringMaster, isRecovery, activeRetrievals, reapPolicy,
         JVMUtil.getGlobalFinalization());
   }
 
   public NamespaceStore(long ns, File nsDir, DirCreationMode dirCreationMode, NamespaceProperties nsProperties,
       MessageGroupBase mgBase, NodeRingMaster2 ringMaster, boolean isRecovery,
-      ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals) {
+      StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals) {
     this(ns, nsDir, dirCreationMode, nsProperties, null, mgBase, ringMaster, isRecovery, activeRetrievals,
         NeverReapPolicy.instance);
   }
 
+  private boolean usesGroupCommit() {
+    return nsOptions.getStorageType() == StorageType.FILE_SYNC && nsOptions.getStorageOptions() != null
+        && nsOptions.getStorageOptions().groupCommitEnabled();
+  }
+
+  /**
+   * SyncMode used to create head segments of a FILE_SYNC namespace. With group commit, writes are
+   * not synchronous; durability is provided by the GroupCommitFlusher. The flusher forces only the head
+   * segment, so older segments that are reopened for update (e.g. by putUpdate) always use Sync.
+   */
+  private FileSegment.SyncMode fileSyncSegmentSyncMode() {
+    return usesGroupCommit() ? FileSegment.SyncMode.NoSync : FileSegment.SyncMode.Sync;
+  }
+
+  /**
+   * Called by the GroupCommitFlusher. Force the head segment to disk without holding the namespace lock
+   * during the force.
+   *
+   * @return the group commit write sequence covered by the force
+   */
+  long forceHeadSegmentForGroupCommit() {
+    MappedByteBuffer headBuf;
+    long sequence;
+
+    readLock.lock();
+    try {
+      sequence = groupCommitFlusher.getWriteSequence();
+      headBuf = ((FileSegment) headSegment).getMappedDataBuf();
+    } finally {
+      readLock.unlock();
+    }
+    try {
+      headBuf.force();
+    } catch (RuntimeException re) {
+      peerHealthMonitor.addSelfAsSuspect(PeerHealthIssue.StorageError);
+      throw re;
+    }
+    return sequence;
+  }
+
+  /**
+   * Called by the GroupCommitFlusher once writes of the given keys have been forced to disk. Triggers the
+   * WAIT_FORs that the writes satisfy, so that no waiter receives a value before its put is acknowledged.
+   */
+  void triggerWaitForsForGroupCommit(List<DHTKey> keys) {
+    Set<Waiter> triggeredWaitFors;
+
+    if (pendingWaitFors.isEmpty()) {
+      return;
+    }
+    triggeredWaitFors = null;
+    writeLock.lock();
+    try {
+      for (DHTKey key : keys) {
+        Set<Waiter> _triggeredWaitFors;
+
+        _triggeredWaitFors = checkPendingWaitFors(key);
+        if (_triggeredWaitFors != null) {
+          if (triggeredWaitFors == null) {
+            triggeredWaitFors = new HashSet<>();
+          }
+          triggeredWaitFors.addAll(_triggeredWaitFors);
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+    handleTriggeredWaitFors(triggeredWaitFors);
+  }
+
   private void createInitialHeadSegment() {
     FileSegment.SyncMode syncMode;
 
@@ -544,7 +692,7 @@ private void createInitialHeadSegment() {
     syncMode = FileSegment.SyncMode.NoSync;
     switch (nsOptions.getStorageType()) {
     case FILE_SYNC:
-      syncMode = FileSegment.SyncMode.Sync;
+      syncMode = fileSyncSegmentSyncMode();
       // fall through
     case FILE:
       try {
@@ -680,11 +828,13 @@ public NodeRingMaster2 getRingMaster() {
 
   // must hold lock
   private void valueSegmentsPut(DHTKey key, int value) {
-    try {
-      valueSegments.put(key, value);
-    } catch (TableFullException tfe) {
-      Log.warningAsync(String.format("valueSegments full %x. Creating new table.", ns));
-      valueSegments = IntArrayDHTKeyCuckoo.rehashAndAdd(valueSegments, key, value);
+    int totalEntries;
+
+    totalEntries = valueSegments.getTotalEntries();
+    valueSegments.put(key, value);
+    if (valueSegments.getTotalEntries() != totalEntries) {
+      Log.warningAsync(String.format("valueSegments full %x. Growing table to %d entries.", ns,
+          valueSegments.getTotalEntries()));
     }
   }
 
@@ -728,6 +878,7 @@ private void newHeadSegment(boolean verboseLogging) {
       // FUTURE - persistence may be incomplete...think about this
     try {
         oldHead.persist();
+        addSegmentKeyFilter(oldHead.getSegmentNumber(), oldHead.getPKC());
         if (TracerFactory.isInitialized()) {
           TracerFactory.getTracer().onSegmentRollover(oldHead.getSegmentNumber());
         }
@@ -748,7 +899,7 @@ private void newHeadSegment(boolean verboseLogging) {
       syncMode = FileSegment.SyncMode.NoSync;
       switch (nsOptions.getStorageType()) {
       case FILE_SYNC:
-        syncMode = FileSegment.SyncMode.Sync;
+        syncMode = fileSyncSegmentSyncMode();
         // fall through
       case FILE:
         newHead = FileSegment.create(nsDir, nextSegmentID.getAndIncrement(), nsOptions.getSegmentSize(), syncMode,
@@ -1063,12 +1214,12 @@ private Set<Waiter> checkPendingWaitFors(DHTKey key) {
       Log.warningAsync("checkPendingWaitFors");
       Log.warningAsyncf("pendingWaitFors.size() %d", pendingWaitFors.size());
     }
-    if (pendingWaitFors.size() > 0) {
+    if (!pendingWaitFors.isEmpty()) {
       Set<Waiter> triggeredWaiters;
       Collection<PendingWaitFor> pendingWaitForCollection;
 
       triggeredWaiters = null;
-      pendingWaitForCollection = pendingWaitFors.get(key);
+      pendingWaitForCollection = pendingWaitFors.get(key.getMSL(), key.getLSL());
       if (pendingWaitForCollection != null) {
         for (PendingWaitFor pendingWaitFor : pendingWaitForCollection) {
           ByteBuffer result;
@@ -1081,7 +1232,8 @@ private Set<Waiter> checkPendingWaitFors(DHTKey key) {
             Waiter waiter;
 
             // we have a result, now we need to send it back...
-            waiter = activeRetrievals.get(pendingWaitFor.getOpUUID());
+            waiter = activeRetrievals.get(pendingWaitFor.getOpUUID().getMostSignificantBits(),
+                pendingWaitFor.getOpUUID().getLeastSignificantBits());
             if (waiter != null) {
               if (triggeredWaiters == null) {
                 triggeredWaiters = new HashSet<>();
@@ -1093,6 +1245,7 @@ private Set<Waiter> checkPendingWaitFors(DHTKey key) {
                 Log.warningAsyncf("Triggering waiter for %s", pendingWaitFor.getOpUUID());
               }
               waiter.waitForTriggered(key, result.duplicate());
+              recordLatency(NamespaceMetrics.LatencyType.StorageWaitFor, pendingWaitFor.getStartTimeNanos());
               // Give the waiter the result of the waitfor.
               // In addition, we pass back the triggered wait fors so that
               // the waiter can send messages back when
@@ -1132,15 +1285,56 @@ private void handleTriggeredWaitFors(Set<Waiter> triggeredWaitFors) {
   }
 
   public void put(List<StorageValueAndParameters> values, byte[] userData, KeyedOpResultListener resultListener) {
+    long startNanos;
+
+    startNanos = SystemTimeUtil.skSystemTimeSource.relTimeNanos();
+    try {
+      put(values, userData, resultListener, false, null);
+    } finally {
+      recordLatency(NamespaceMetrics.LatencyType.StoragePut, startNanos);
+    }
+  }
+
+  /**
+   * Apply update records (see AtomicUpdateMessageFormat) to the newest stored values. Each update is
+   * resolved and stored under the write lock so that no other put can intervene, and the resulting value
+   * is subject to the same version checks as an ordinary put.
+   *
+   * @param updateListener if non-null, receives each resolved value before the result of storing it
+   */
+  public void putAtomic(List<StorageValueAndParameters> values, byte[] userData,
+      KeyedOpResultListener resultListener, AtomicUpdateListener updateListener) {
+    long startNanos;
+
+    startNanos = SystemTimeUtil.skSystemTimeSource.relTimeNanos();
+    try {
+      put(values, userData, resultListener, true, updateListener);
+    } finally {
+      recordLatency(NamespaceMetrics.LatencyType.StoragePutAtomic, startNanos);
+    }
+  }
+
+  private void recordLatency(NamespaceMetrics.LatencyType type, long startNanos) {
+    nsMetrics.recordLatency(type, (SystemTimeUtil.skSystemTimeSource.relTimeNanos() - startNanos) / 1000);
+  }
+
+  private void put(List<StorageValueAndParameters> values, byte[] userData, KeyedOpResultListener resultListener,
+      boolean atomic, AtomicUpdateListener updateListener) {
     Set<Waiter> triggeredWaitFors;
     NamespaceVersionMode nsVersionMode;
     boolean locked;
+    List<DHTKey> groupCommitKeys;
 
     triggeredWaitFors = null;
+    // with group commit, successful results are sent by the flusher once the writes have been forced to disk
+    groupCommitKeys = groupCommitFlusher != null ? new ArrayList<>(values.size()) : null;
 
     nsVersionMode = nsOptions.getVersionMode();
 
-    if (enablePendingPuts && putTrigger != null && putTrigger.supportsMerge() && (!(resultListener instanceof KeyedOpResultMultiplexor))) {
+    // pending puts are not used with group commit as their results would be sent before the flush,
+    // nor for atomic updates which must be resolved against the stored value
+    if (enablePendingPuts && putTrigger != null && putTrigger.supportsMerge() && (!(resultListener instanceof KeyedOpResultMultiplexor))
+        && groupCommitFlusher == null && !atomic) {
       // Pending puts currently only applied to server side code
       // Pending puts doesn't support userdata
       // Disallow puts to be deferred to the pending queue multiple times
@@ -1162,18 +1356,38 @@ public void put(List<StorageValueAndParameters> values, byte[] userData, KeyedOp
     try {
       int numPuts;
       int numInvalidations;
+      long groupCommitBytes;
 
       numPuts = 0;
       numInvalidations = 0;
+      groupCommitBytes = 0;
       // System.out.printf("NamespaceStore.put() group size: %d\n", values.size());
-      for (StorageValueAndParameters value : values) {
+      for (StorageValueAndParameters _value : values) {
+        StorageValueAndParameters value;
         OpResult storageResult;
+        int valueBytes;
+
+        if (atomic) {
+          Pair<OpResult, StorageValueAndParameters> resolution;
 
+          resolution = AtomicUpdateResolver.resolve(_value, _retrieve(_value.getKey(), atomicUpdateRetrievalOptions));
+          if (resolution.getV1() != OpResult.SUCCEEDED) {
+            resultListener.sendResult(_value.getKey(), resolution.getV1());
+            continue;
+          }
+          value = resolution.getV2();
+          if (updateListener != null) {
+            updateListener.resolved(value);
+          }
+        } else {
+          value = _value;
+        }
         //if (MetaDataUtil.isInvalidated(value.getValue(), value.getValue().position())) {
         //    ++numInvalidations;
         //} else {
         ++numPuts;
         //}
+        valueBytes = value.getValue().remaining();
         if (putTrigger != null) {
           storageResult = putTrigger.put(this, value.getKey(), value.getValue(),
               new SSStorageParametersImpl(value, value.getValue().remaining()), userData, nsVersionMode);
@@ -1182,8 +1396,14 @@ public void put(List<StorageValueAndParameters> values, byte[] userData, KeyedOp
         }
         //if (storageResult != OpResult.SUCCEEDED) Log.warningf("fail _put %s %s %d", KeyUtil.keyToString(value
         // .getKey()), storageResult, value.getVersion()); // for debugging
-        resultListener.sendResult(value.getKey(), storageResult);
-        if (storageResult == OpResult.SUCCEEDED) {
+        if (groupCommitKeys != null && storageResult == OpResult.SUCCEEDED) {
+          // wait fors are triggered by the flusher along with the results
+          groupCommitKeys.add(value.getKey());
+          groupCommitBytes += valueBytes;
+        } else {
+          resultListener.sendResult(value.getKey(), storageResult);
+        }
+        if (storageResult == OpResult.SUCCEEDED && groupCommitKeys == null) {
           Set<Waiter> _triggeredWaitFors;
 
           _triggeredWaitFors = checkPendingWaitFors(value.getKey());
@@ -1196,6 +1416,9 @@ public void put(List<StorageValueAndParameters> values, byte[] userData, KeyedOp
         }
       }
       nsMetrics.addPuts(numPuts, numInvalidations, SystemTimeUtil.timerDrivenTimeSource.absTimeMillis());
+      if (groupCommitKeys != null && !groupCommitKeys.isEmpty()) {
+        groupCommitFlusher.recordWrite(groupCommitBytes, resultListener, groupCommitKeys);
+      }
     } finally {
       writeLock.unlock();
       //LWTThreadUtil.setNonBlocked();
@@ -1521,7 +1744,9 @@ public void putSegmentNumberAndVersion(DHTKey key, int segmentNumber, long versi
   public List<OpResult> putUpdate(List<? extends DHTKey> updates, long version) {
     List<OpResult> results;
     Set<Waiter> triggeredWaitFors;
+    long startNanos;
 
+    startNanos = SystemTimeUtil.skSystemTimeSource.relTimeNanos();
     triggeredWaitFors = null;
     results = new ArrayList<>(updates.size());
     writeLock.lock();
@@ -1552,16 +1777,19 @@ public List<OpResult> putUpdate(List<? extends DHTKey> updates, long version) {
     if (triggeredWaitFors != null) {
       handleTriggeredWaitFors(triggeredWaitFors);
     }
+    recordLatency(NamespaceMetrics.LatencyType.StoragePutUpdate, startNanos);
     return results;
   }
 
   public OpResult putUpdate_(DHTKey key, long version, byte storageState) {
     OpResult result;
     Set<Waiter> triggeredWaitFors;
+    long startNanos;
 
     if (debug) {
       Log.warningAsync("Single key putUpdate()");
     }
+    startNanos = SystemTimeUtil.skSystemTimeSource.relTimeNanos();
     triggeredWaitFors = null;
     writeLock.lock();
     try {
@@ -1578,6 +1806,7 @@ public OpResult putUpdate_(DHTKey key, long version, byte storageState) {
     if (triggeredWaitFors != null) {
       handleTriggeredWaitFors(triggeredWaitFors);
     }
+    recordLatency(NamespaceMetrics.LatencyType.StoragePutUpdate, startNanos);
     return result;
   }
 
@@ -1688,7 +1917,9 @@ public void retrieve(List<? extends DHTKey> keys, InternalRetrievalOptions optio
     DHTKey[] _keys;
     RetrieveCallback<ByteBuffer[], Void> callback;
     RetrieveCallback<List<ByteBuffer>, Void> groupedCallback;
+    long startNanos;
 
+    startNanos = SystemTimeUtil.skSystemTimeSource.relTimeNanos();
     groupedCallback = (List<ByteBuffer> results) -> {
       for (int i = 0; i < results.size(); i++) {
         Pair<DHTKey, ByteBuffer> resultAndKey;
@@ -1770,12 +2001,15 @@ public void retrieve(List<? extends DHTKey> keys, InternalRetrievalOptions optio
     };
 
     checkTriggerAndRetrieve(_keys, options, callback);
+    recordLatency(NamespaceMetrics.LatencyType.StorageRetrieve, startNanos);
   }
 
   public void retrieve_nongroupedImpl(List<? extends DHTKey> keys, InternalRetrievalOptions options, UUIDBase opUUID,
       RetrieveCallback<Pair<DHTKey, ByteBuffer>, Void> singleResultCallback) {
     boolean shouldAcquireReadLock;
+    long startNanos;
 
+    startNanos = SystemTimeUtil.skSystemTimeSource.relTimeNanos();
     if (debugVersion) {
       Log.warningAsyncf("retrieve internal options: %s", options);
     }
@@ -1880,6 +2114,7 @@ public void retrieve_nongroupedImpl(List<? extends DHTKey> keys, InternalRetriev
         readLock.unlock();
       }
     }
+    recordLatency(NamespaceMetrics.LatencyType.StorageRetrieve, startNanos);
   }
 
   /**
@@ -2007,12 +2242,12 @@ private void addPendingWaitFor(DHTKey key, RetrievalOptions options, UUIDBase op
     if (debugWaitFor) {
       Log.warningAsyncf("addPendingWaitFor %s %s %s", key, options, opUUID);
     }
-    pendingWaitForSet = pendingWaitFors.get(key);
+    pendingWaitForSet = pendingWaitFors.get(key.getMSL(), key.getLSL());
     if (pendingWaitForSet == null) {
       Set<PendingWaitFor> prev;
 
       pendingWaitForSet = new ConcurrentSkipListSet<>();
-      prev = pendingWaitFors.putIfAbsent(key, pendingWaitForSet);
+      prev = pendingWaitFors.putIfAbsent(key.getMSL(), key.getLSL(), pendingWaitForSet);
       if (prev != null) {
         pendingWaitForSet = prev;
       }
@@ -2026,9 +2261,7 @@ protected ByteBuffer _retrieve(DHTKey key, RetrievalOptions options) {
 
   protected ByteBuffer[] _retrieve(DHTKey[] keys, InternalRetrievalOptions options) {
     int[] segmentNumbers;
-    Triple<DHTKey, Integer, Integer>[] keysSegmentNumbersAndIndices;
-    ByteBuffer[] sortedResults;
-    ByteBuffer[] unsortedResults;
+    long[] segmentOrder;
 
     if (debugParent) {
       Log.warningAsyncf("_retrieve %x batch size %d", ns, keys.length);
@@ -2043,45 +2276,26 @@ protected ByteBuffer[] _retrieve(DHTKey[] keys, InternalRetrievalOptions options
 
     // Sort so that we group segment access. Not always useful,
     // but can become critical for large retrievals that span multiple segments
-    keysSegmentNumbersAndIndices = new Triple[keys.length];
-    for (int i = 0; i < keysSegmentNumbersAndIndices.length; i++) {
-      keysSegmentNumbersAndIndices[i] = new Triple<>(keys[i], segmentNumbers[i], i);
+    segmentOrder = new long[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      segmentOrder[i] = mostRecentSegmentsFirst(segmentNumbers[i], i);
     }
-    Arrays.sort(keysSegmentNumbersAndIndices, KeyAndSegmentComparator.mostRecentSegmentsFirst);
-
-    sortedResults = _retrieve(keysSegmentNumbersAndIndices, options);
+    Arrays.sort(segmentOrder);
 
-    // We fix up the ordering here. It would be possible to avoid this
-    // by constructing the unsorted results inside of the above _retrieve() call.
-    // We currently avoid that to avoid leaking the notion of sorting/indexing changes
-    // into that method.
-    unsortedResults = new ByteBuffer[sortedResults.length];
-    for (int i = 0; i < sortedResults.length; i++) {
-      unsortedResults[keysSegmentNumbersAndIndices[i].getV3()] = sortedResults[i];
-    }
-    return unsortedResults;
+    return _retrieve(keys, segmentNumbers, segmentOrder, options);
   }
 
   /**
-   * Sort by segment number. Break ties using original index.
+   * Encode a segment number and an index into a long that sorts most recent segments first, breaking
+   * ties using the index. Sorting primitives avoids allocating an object per key.
    */
-  private static class KeyAndSegmentComparator implements Comparator<Triple<DHTKey, Integer, Integer>> {
-    private final int order;
-
-    static final KeyAndSegmentComparator mostRecentSegmentsFirst = new KeyAndSegmentComparator(-1);
-    static final KeyAndSegmentComparator leastRecentSegmentsFirst = new KeyAndSegmentComparator(1);
-
-    private KeyAndSegmentComparator(int order) {
-      this.order = order;
-    }
-
-    @Override
-    public int compare(Triple<DHTKey, Integer, Integer> o1, Triple<DHTKey, Integer, Integer> o2) {
-      int c;
+  private static long mostRecentSegmentsFirst(int segmentNumber, int index) {
+    // ~ reverses the order of the segment number without overflow
+    return ((long) ~segmentNumber << 32) | index;
+  }
 
-      c = order * Integer.compare(o1.getV2(), o2.getV2());
-      return c == 0 ? Integer.compare(o1.getV3(), o2.getV3()) : c;
-    }
+  private static int indexOf(long segmentOrderEntry) {
+    return (int) segmentOrderEntry;
   }
 
   protected <T> T _retrieve(DHTKey key, InternalRetrievalOptions options, RetrieveCallback<ByteBuffer, T> callback) {
@@ -2125,11 +2339,13 @@ protected ByteBuffer _retrieve(DHTKey key, InternalRetrievalOptions options, boo
             if (debugSegments) {
               Log.warningAsync("Done read from head segment");
             }
+          } else if (!segmentMayContain(segmentNumber, key)) {
+            result = null;
           } else {
             try {
               AbstractSegment segment;
 
-              segment = getSegment(segmentNumber, readSegmentPrereadMode);
+              segment = getSegmentForRetrieval(segmentNumber);
               if (debugSegments) {
                 Log.warningAsync("Read from file segment");
               }
@@ -2194,48 +2410,59 @@ protected ByteBuffer _retrieve(DHTKey key, InternalRetrievalOptions options, boo
     return null;
   }
 
-  protected ByteBuffer[] _retrieve(Triple<DHTKey, Integer, Integer>[] keysSegmentNumbersAndIndices,
+  /**
+   * Retrieve keys in the order given by segmentOrder. Results are returned in the order of keys.
+   */
+  protected ByteBuffer[] _retrieve(DHTKey[] keys, int[] segmentNumbers, long[] segmentOrder,
       InternalRetrievalOptions options) {
     ByteBuffer[] results;
 
-    results = new ByteBuffer[keysSegmentNumbersAndIndices.length];
-    for (int i = 0; i < keysSegmentNumbersAndIndices.length; i++) {
-      if (debugParent) {
-        Log.fineAsyncf("\t%s %d %d", KeyUtil.keyToString(keysSegmentNumbersAndIndices[i].getV1()),
-            keysSegmentNumbersAndIndices[i].getV2(), keysSegmentNumbersAndIndices[i].getV3());
-      }
-      if (debugVersion) {
-        Log.warningAsyncf("retrieve: %s", keysSegmentNumbersAndIndices[i].getV1());
-        Log.warningAsyncf("RetrievalOptions: %s", options);
-      }
-      if (keysSegmentNumbersAndIndices[i].getV2() == IntCuckooConstants.noSuchValue) {
-        results[i] = null;
+    results = new ByteBuffer[keys.length];
+    if (debugParent || debugVersion) {
+      for (int i = 0; i < segmentOrder.length; i++) {
+        int index;
+
+        index = indexOf(segmentOrder[i]);
+        if (debugParent) {
+          Log.fineAsyncf("\t%s %d %d", KeyUtil.keyToString(keys[index]), segmentNumbers[index], index);
+        }
+        if (debugVersion) {
+          Log.warningAsyncf("retrieve: %s", keys[index]);
+          Log.warningAsyncf("RetrievalOptions: %s", options);
+        }
       }
     }
     readLock.lock();
     try {
-      for (int i = 0; i < keysSegmentNumbersAndIndices.length; i++) {
-        if (keysSegmentNumbersAndIndices[i].getV2() != IntCuckooConstants.noSuchValue) {
-          if (headSegment.getSegmentNumber() == keysSegmentNumbersAndIndices[i].getV2()) {
+      for (int i = 0; i < segmentOrder.length; i++) {
+        int index;
+        int segmentNumber;
+
+        index = indexOf(segmentOrder[i]);
+        segmentNumber = segmentNumbers[index];
+        if (segmentNumber != IntCuckooConstants.noSuchValue) {
+          if (headSegment.getSegmentNumber() == segmentNumber) {
             if (debugSegments) {
               Log.warningAsync("Read from head segment");
             }
-            results[i] = retrieve(headSegment, keysSegmentNumbersAndIndices[i].getV1(), options, true);
+            results[index] = retrieve(headSegment, keys[index], options, true);
             if (debugSegments) {
               Log.warningAsync("Done read from head segment");
             }
+          } else if (!segmentMayContain(segmentNumber, keys[index])) {
+            results[index] = null;
           } else {
             try {
               AbstractSegment segment;
 
-              segment = getSegment(keysSegmentNumbersAndIndices[i].getV2(), readSegmentPrereadMode);
+              segment = getSegmentForRetrieval(segmentNumber);
               if (debugSegments) {
                 Log.warningAsync("Read from file segment");
               }
-              results[i] = retrieve(segment, keysSegmentNumbersAndIndices[i].getV1(), options, true);
+              results[index] = retrieve(segment, keys[index], options, true);
               if (debugSegments) {
                 Log.warningAsync("Done read from file segment");
-                Log.warningAsync("result: " + results[i]);
+                Log.warningAsync("result: " + results[index]);
               }
             } catch (IOException ioe) {
               peerHealthMonitor.addSelfAsSuspect(PeerHealthIssue.StorageError);
@@ -2261,7 +2488,7 @@ protected ByteBuffer[] _retrieve(Triple<DHTKey, Integer, Integer>[] keysSegmentN
             MetaDataUtil.getStorageState(results[i], 0))) {
           // If we detect a failed store, simply revert to the single key retrieval code
           // which is capable of handling this situation
-          results[i] = _retrieve(keysSegmentNumbersAndIndices[i].getV1(), options);
+          results[i] = _retrieve(keys[i], options);
         }
       }
     }
@@ -2291,6 +2518,7 @@ private ByteBuffer retrieve(AbstractSegment segment, DHTKey key, InternalRetriev
     } catch (RuntimeException re) {
       Log.warningf("Due to exception %s, removing %d from fileSegmentCache", re, segment.getSegmentNumber());
       fileSegmentCache.invalidate(segment.getSegmentNumber());
+      invalidateColdSegment(segment.getSegmentNumber());
       throw re;
     }
   }
@@ -2304,24 +2532,25 @@ public void cleanupPendingWaitFors() {
     if (debugWaitFor) {
       Log.warningAsync("Cleaning pending waitfors");
     }
-    for (Map.Entry<DHTKey, Set<PendingWaitFor>> entry : pendingWaitFors.entrySet()) {
-      for (PendingWaitFor pendingWaitFor : entry.getValue()) {
+    pendingWaitFors.forEach((keyMSL, keyLSL, pendingWaitForSet) -> {
+      for (PendingWaitFor pendingWaitFor : pendingWaitForSet) {
         ActiveProxyRetrieval waiter;
 
-        waiter = activeRetrievals.get(pendingWaitFor.getOpUUID());
+        waiter = activeRetrievals.get(pendingWaitFor.getOpUUID().getMostSignificantBits(),
+            pendingWaitFor.getOpUUID().getLeastSignificantBits());
         if (waiter == null) {
           if (debugWaitFor) {
             Log.fineAsyncf("No active retrieval for %s", pendingWaitFor.getKey());
           }
-          entry.getValue().remove(pendingWaitFor);
+          pendingWaitForSet.remove(pendingWaitFor);
         } else {
           Log.fineAsyncf("Found active retrieval for %s", pendingWaitFor.getKey());
         }
       }
-      if (entry.getValue().size() == 0) {
-        pendingWaitFors.remove(entry.getKey());
+      if (pendingWaitForSet.isEmpty()) {
+        pendingWaitFors.remove(keyMSL, keyLSL, pendingWaitForSet);
       }
-    }
+    });
   }
 
   private int getSegmentNumber(DHTKey key, VersionConstraint vc) {
@@ -2371,6 +2600,14 @@ private long[] segmentNewestVersion(int segmentNumber, DHTKey key) {
   }
 
   private long[] segmentVersion(int segmentNumber, DHTKey key, InternalRetrievalOptions retrievalOptions) {
+    if (!segmentMayContain(segmentNumber, key)) {
+      long[] versionAndStorageTime;
+
+      versionAndStorageTime = new long[2];
+      versionAndStorageTime[VERSION_INDEX] = noSuchVersion;
+      versionAndStorageTime[STORAGE_TIME_INDEX] = 0;
+      return versionAndStorageTime;
+    }
     try {
       AbstractSegment segment;
 
@@ -2416,6 +2653,7 @@ private WritableSegmentBase getSegment(int segmentNumber, SegmentPrereadMode seg
       switch (nsOptions.getStorageType()) {
       case RAM:
         return ramSegments.get(segmentNumber);
+      case FILE_SYNC: // fall through
       case FILE:
         return getFileSegment(segmentNumber, segmentPrereadMode);
       default:
@@ -2432,6 +2670,7 @@ private WritableSegmentBase getSegmentChecked(int segmentNumber) throws IOExcept
       switch (nsOptions.getStorageType()) {
       case RAM:
         return ramSegments.get(segmentNumber);
+      case FILE_SYNC: // fall through
       case FILE:
         return getFileSegment(segmentNumber, readSegmentPrereadMode);
       default:
@@ -2448,6 +2687,7 @@ private String segmentCreationTimeString(int segmentNumber) {
         switch (nsOptions.getStorageType()) {
         case RAM:
           return "RAM";
+        case FILE_SYNC: // fall through
         case FILE:
           return FileSegment.segmentCreationTime(nsDir, segmentNumber);
         default:
@@ -2472,6 +2712,7 @@ private boolean segmentExists(int segmentNumber) {
         case RAM:
           exists = true;
           break;
+        case FILE_SYNC: // fall through
         case FILE:
           exists = fileSegmentExists(segmentNumber);
           break;
@@ -2488,10 +2729,109 @@ private boolean segmentExists(int segmentNumber) {
     }
   }
 
+  /**
+   * Return the segment to use for a retrieval. Cold segments (see NamespaceStorageOptions.coldSegmentAge)
+   * that are not already mapped are opened for positional reads rather than being mapped.
+   */
+  private WritableSegmentBase getSegmentForRetrieval(int segmentNumber) throws IOException {
+    WritableSegmentBase _headSegment;
+
+    if (segmentPrefetcher != null) {
+      segmentPrefetcher.recordAccess(segmentNumber);
+    }
+    _headSegment = headSegment;
+    if (coldSegmentCache != null && _headSegment.getSegmentNumber() - segmentNumber >= coldSegmentAge) {
+      FileSegment segment;
+
+      segment = fileSegmentCache.getIfPresent(segmentNumber);
+      if (segment != null) {
+        return segment;
+      } else {
+        try {
+          return coldSegmentCache.get(segmentNumber,
+              () -> FileSegment.openPositionalRead(nsDir, segmentNumber, nsOptions.getSegmentSize(), nsOptions,
+                  segmentBlockCache));
+        } catch (ExecutionException e) {
+          throw new IOException(e);
+        }
+      }
+    } else {
+      return getSegment(segmentNumber, readSegmentPrereadMode);
+    }
+  }
+
+  /**
+   * Map the given segment into the segment cache (if it is not already cached) and bring its data
+   * into memory. MappedByteBuffer.load() advises the OS that the pages will be needed before touching
+   * them. Called by the SegmentPrefetcher; the load itself is done without holding the namespace lock.
+   */
+  void prefetchSegment(int segmentNumber) {
+    MappedByteBuffer dataBuf;
+
+    readLock.lock();
+    try {
+      if (segmentNumber == headSegment.getSegmentNumber() || !segmentExists(segmentNumber)
+          || fileSegmentCache.getIfPresent(segmentNumber) != null) {
+        return;
+      }
+      dataBuf = getFileSegment(segmentNumber, SegmentPrereadMode.NoPreread).getMappedDataBuf();
+    } catch (IOException ioe) {
+      Log.logErrorWarning(ioe, String.format("Unable to prefetch %x %d", ns, segmentNumber));
+      return;
+    } finally {
+      readLock.unlock();
+    }
+    if (dataBuf != null) {
+      dataBuf.load();
+    }
+  }
+
+  /**
+   * Queue prefetches of the most recent segments of this namespace, newest first. Used to warm
+   * the namespace after a restart or a ring transition.
+   */
+  public void prefetchRecentSegments() {
+    if (segmentPrefetcher != null && segmentPrefetchRecentSegments > 0) {
+      int headSegmentNumber;
+
+      headSegmentNumber = headSegment.getSegmentNumber();
+      for (int i = headSegmentNumber - 1; i >= Math.max(0, headSegmentNumber - segmentPrefetchRecentSegments); i--) {
+        segmentPrefetcher.queuePrefetch(i);
+      }
+    }
+  }
+
+  private void invalidateColdSegment(int segmentNumber) {
+    if (coldSegmentCache != null) {
+      coldSegmentCache.invalidate(segmentNumber);
+    }
+  }
+
   private boolean fileSegmentExists(int segmentNumber) {
     return FileSegment.fileForSegment(nsDir, segmentNumber).exists();
   }
 
+  /**
+   * Build and retain a key filter for a persisted segment so that negative lookups
+   * can be answered without opening the segment.
+   */
+  void addSegmentKeyFilter(int segmentNumber, DHTKeyCuckooBase keyToOffset) {
+    if (segmentKeyFilterBitsPerKey > 0) {
+      segmentKeyFilters.put(segmentNumber, SegmentKeyFilter.create(keyToOffset, segmentKeyFilterBitsPerKey));
+    }
+  }
+
+  /**
+   * Returns false only if the given segment is known not to contain the key.
+   * Segments without a filter (e.g. the head segment) are always assumed to possibly contain the key.
+   */
+  private boolean segmentMayContain(int segmentNumber, DHTKey key) {
+    SegmentKeyFilter filter;
+
+    filter = segmentKeyFilters.get(segmentNumber);
+    return filter == null || filter.mightContain(key);
+  }
+
   // FUTURE - getFileSegment() implementation needs to be updated
   private FileSegment getFileSegment(int segmentNumber, SegmentPrereadMode segmentPrereadMode) throws IOException {
     try {
@@ -2547,11 +2887,14 @@ private FileSegment _loadFileSegment(int segmentNumber, FileSegmentLoadMode file
       if (fileSegmentLoadMode == FileSegmentLoadMode.ReadWrite) {
         FileSegment.SyncMode syncMode;
 
+        // not fileSyncSegmentSyncMode(); group commit forces only the head segment
         syncMode = nsOptions.getStorageType() == StorageType.FILE_SYNC ?
             FileSegment.SyncMode.Sync :
             FileSegment.SyncMode.NoSync;
         fileSegment = FileSegment.openForDataUpdate(nsDir, segmentNumber, nsOptions.getSegmentSize(), syncMode,
             nsOptions, segmentIndexLocation, segmentPrereadMode);
+        // the segment may now be modified through the mapping; drop any positional-read view of it
+        invalidateColdSegment(segmentNumber);
       } else {
         if (fileSegmentLoadMode == FileSegmentLoadMode.ReadIndexOnly) {
           fileSegment = FileSegment.openReadIndexOnly(nsDir, segmentNumber, nsOptions.getSegmentSize(), nsOptions);
@@ -2584,7 +2927,7 @@ private FileSegment _loadFileSegment(int segmentNumber, FileSegmentLoadMode file
 
   static NamespaceStore recoverExisting(long ns, File nsDir, NamespaceStore parent, StoragePolicy storagePolicy,
       MessageGroupBase mgBase, NodeRingMaster2 ringMaster,
-      ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals, SilverKingZooKeeperClient zk, String nsLinkBasePath,
+      StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals, SilverKingZooKeeperClient zk, String nsLinkBasePath,
       LinkCreationListener linkCreationListener, ReapPolicy reapPolicy, NamespaceProperties nsProperties)
       throws IOException {
     NamespaceStore nsStore;
@@ -2651,6 +2994,7 @@ static NamespaceStore recoverExisting(long ns, File nsDir, NamespaceStore parent
         // FUTURE - Check for corruption
         // FUTURE - If full, then do full recovery?
         nsStore.setHeadSegment(fsr.recoverPartialSegment(headSegmentNumber, nsStore));
+        nsStore.prefetchRecentSegments();
       } else {
         nsStore.createInitialHeadSegment();
       }
@@ -2697,6 +3041,8 @@ public boolean getChecksumTreeForLocal(UUIDBase uuid, ConvergencePoint targetCP,
     Log.warningAsyncf("getChecksumTreeForLocal req uuid %s  ars uuid %s  %s %s %s %s", uuid, ars.getUUID(), targetCP,
         sourceCP, region, replica);
     activeRegionSyncs.put(ars.getUUID(), ars);
+    // Report progress to the requestor under the request uuid
+    ars.setProgressReceiver(uuid, connection);
     try {
       // Forward request to remote
       ars.startSync();
@@ -2713,6 +3059,287 @@ public void getChecksumTreeForRemote(UUIDBase uuid, ConvergencePoint targetCP, C
     checksumTreeServer.getChecksumTree(uuid, targetCP, sourceCP, connection, originator, region);
   }
 
+  /**
+   * Stream every value in the given region to a replica that is missing the region entirely. Keys are
+   * ordered by segment number so that each segment is read once and sequentially. Values are sent as
+   * retrieval responses carrying the requester's uuid, so the requester's ActiveRegionSync ingests them.
+   * The checksum tree for the region follows so that the requester can repair any remaining differences.
+   */
+  public void streamSegmentsForRemote(UUIDBase uuid, ConvergencePoint targetCP, ConvergencePoint sourceCP,
+      MessageGroupConnection connection, byte[] originator, RingRegion region) {
+    List<DHTKeyIntEntry> regionEntries;
+    int valuesSent;
+
+    regionEntries = new ArrayList<>();
+    readLock.lock();
+    try {
+      DHTKeyIntCursor cursor;
+
+      cursor = valueSegments.cursor();
+      while (cursor.advance()) {
+        if (region.contains(KeyUtil.keyToCoordinate(cursor.getMSL()))) {
+          regionEntries.add(new DHTKeyIntEntry(cursor.getMSL(), cursor.getLSL(), cursor.getValue()));
+        }
+      }
+    } finally {
+      readLock.unlock();
+    }
+    // multi-version keys (negative values) sort first; all others are grouped by segment
+    Collections.sort(regionEntries, (e1, e2) -> Integer.compare(e1.getValue(), e2.getValue()));
+    Log.warningAsyncf("streamSegmentsForRemote %x %s %s keys %d", ns, uuid, region, regionEntries.size());
+
+    valuesSent = 0;
+    try {
+      for (int i = 0; i < regionEntries.size(); i += segmentTransferBatchSize) {
+        DHTKey[] keys;
+        ByteBuffer[] values;
+        int groupStart;
+        int groupBytes;
+
+        keys = new DHTKey[Math.min(segmentTransferBatchSize, regionEntries.size() - i)];
+        for (int j = 0; j < keys.length; j++) {
+          keys[j] = regionEntries.get(i + j).getKey();
+        }
+        values = _retrieve(keys, segmentTransferOptions);
+        groupStart = 0;
+        groupBytes = 0;
+        for (int j = 0; j < keys.length; j++) {
+          int length;
+
+          length = values[j] != null ? values[j].limit() : 0;
+          if (groupBytes > 0 && groupBytes + length > ProtoValueMessageGroup.maxValueBytesPerMessage) {
+            valuesSent += sendSegmentTransferValues(uuid, connection, keys, values, groupStart, j, groupBytes);
+            groupStart = j;
+            groupBytes = 0;
+          }
+          groupBytes += length;
+        }
+        valuesSent += sendSegmentTransferValues(uuid, connection, keys, values, groupStart, keys.length, groupBytes);
+      }
+    } catch (IOException ioe) {
+      Log.logErrorWarning(ioe, "streamSegmentsForRemote failed");
+      return;
+    }
+    Log.warningAsyncf("streamSegmentsForRemote %x %s complete. values sent %d", ns, uuid, valuesSent);
+    checksumTreeServer.getChecksumTree(uuid, targetCP, sourceCP, connection, originator, region);
+  }
+
+  private int sendSegmentTransferValues(UUIDBase uuid, MessageGroupConnection connection, DHTKey[] keys,
+      ByteBuffer[] values, int start, int end, int valueBytes) throws IOException {
+    ProtoValueMessageGroup pmg;
+    int numValues;
+
+    pmg = new ProtoValueMessageGroup(uuid, ns, end - start, valueBytes, mgBase.getMyID(),
+        segmentTransferDeadlineRelativeMillis, TraceIDProvider.noTraceID);
+    numValues = 0;
+    for (int i = start; i < end; i++) {
+      if (values[i] != null) {
+        pmg.addValue(keys[i], values[i], values[i].limit(), true);
+        ++numValues;
+      }
+    }
+    if (numValues > 0) {
+      MessageGroup mg;
+
+      mg = pmg.toMessageGroup();
+      // synchronous so that a large region cannot accumulate in the outgoing queue
+      connection.sendSynchronous(mg, UUIDBase.random(), null, mg.getDeadlineAbsMillis(systemTimeSource));
+    }
+    return numValues;
+  }
+
+  /**
+   * Send one page of a client key scan of a region. Segments are walked in order, and a key is returned from
+   * the segment that holds its latest version; keys rewritten during the scan move to the head segment, which
+   * is walked last.
+   * <p>
+   * The key table of a segment that is no longer the head does not change, so such a segment is walked in
+   * table order, a page resumes at the table index where the previous page stopped, and the read lock is held
+   * for at most keyScanChunkEntries table entries at a time. The head segment's table moves keys between slots
+   * as it is written, so the head segment is instead paged in key order: each page takes the keys that follow
+   * the previous page's last key from a single walk of the table under the read lock. This continues after the
+   * segment is rolled over. Pages that include values are limited to
+   * ProtoKeyScanResponseMessageGroup.maxValueBytesPerPage.
+   *
+   * @return the number of keys sent
+   */
+  public int scanForRemote(MessageGroup message, MessageGroupConnection connection) {
+    RingRegion region;
+    int segmentNumber;
+    int tableIndex;
+    DHTKey resumeKey;
+    int maxKeys;
+    DHTKey[] keys;
+    int[] nextSegmentNumbers;
+    int[] nextTableIndices;
+    boolean[] keyOrdered;
+    int numKeys;
+    ByteBuffer[] values;
+    int valueBytes;
+    boolean complete;
+    ProtoKeyScanResponseMessageGroup response;
+
+    region = ProtoKeyScanMessageGroup.getRegion(message);
+    segmentNumber = ProtoKeyScanMessageGroup.getSegmentNumber(message);
+    tableIndex = ProtoKeyScanMessageGroup.getTableIndex(message);
+    resumeKey = ProtoKeyScanMessageGroup.getResumeKey(message);
+    maxKeys = Math.max(ProtoKeyScanMessageGroup.getMaxKeys(message), 1);
+    keys = new DHTKey[maxKeys];
+    // the position that follows each key, so that a page truncated by value size resumes after its last key
+    nextSegmentNumbers = new int[maxKeys];
+    nextTableIndices = new int[maxKeys];
+    keyOrdered = new boolean[maxKeys];
+    numKeys = 0;
+    while (numKeys < maxKeys && segmentNumber < nextSegmentID.get()) {
+      WritableSegmentBase segment;
+      boolean segmentComplete;
+
+      try {
+        segment = segmentExists(segmentNumber) ? getSegment(segmentNumber, SegmentPrereadMode.NoPreread) : null;
+      } catch (IOException ioe) {
+        // no response; the client retries or fails the page
+        Log.logErrorWarning(ioe, "scanForRemote failed");
+        return 0;
+      }
+      if (segment == null) {
+        segmentComplete = true;
+      } else {
+        readLock.lock();
+        try {
+          if (resumeKey != null || segmentNumber == headSegment.getSegmentNumber()) {
+            int keysFound;
+            int pageKeys;
+
+            keysFound = scanSegmentInKeyOrder(segment, region, resumeKey, keys, numKeys, maxKeys - numKeys);
+            pageKeys = Math.min(keysFound, maxKeys - numKeys);
+            segmentComplete = keysFound <= maxKeys - numKeys;
+            for (int i = numKeys; i < numKeys + pageKeys; i++) {
+              nextSegmentNumbers[i] = segmentNumber;
+              keyOrdered[i] = true;
+            }
+            numKeys += pageKeys;
+            if (!segmentComplete) {
+              resumeKey = keys[numKeys - 1];
+            }
+          } else {
+            DHTKeyCuckooBase.IndexedCursor cursor;
+            int entriesScanned;
+
+            segmentComplete = false;
+            entriesScanned = 0;
+            cursor = segment.getPKC().cursor(tableIndex);
+            while (numKeys < maxKeys && entriesScanned < keyScanChunkEntries) {
+              if (!cursor.advance()) {
+                segmentComplete = true;
+                break;
+              }
+              ++entriesScanned;
+              tableIndex = cursor.getIndex() + 1;
+              if (isScanKey(segment, region, cursor.getMSL(), cursor.getLSL())) {
+                keys[numKeys] = new SimpleKey(cursor.getMSL(), cursor.getLSL());
+                nextSegmentNumbers[numKeys] = segmentNumber;
+                nextTableIndices[numKeys] = tableIndex;
+                ++numKeys;
+              }
+            }
+          }
+        } finally {
+          readLock.unlock();
+        }
+      }
+      if (segmentComplete) {
+        ++segmentNumber;
+        tableIndex = 0;
+        resumeKey = null;
+      }
+    }
+    complete = segmentNumber >= nextSegmentID.get();
+
+    valueBytes = 0;
+    if (ProtoKeyScanMessageGroup.getIncludeValues(message)) {
+      values = _retrieve(Arrays.copyOf(keys, numKeys), segmentTransferOptions);
+      for (int i = 0; i < numKeys; i++) {
+        int length;
+
+        length = values[i] != null ? values[i].remaining() : 0;
+        if (i > 0 && valueBytes + length > ProtoKeyScanResponseMessageGroup.maxValueBytesPerPage) {
+          numKeys = i;
+          complete = false;
+          segmentNumber = nextSegmentNumbers[i - 1];
+          tableIndex = keyOrdered[i - 1] ? 0 : nextTableIndices[i - 1];
+          resumeKey = keyOrdered[i - 1] ? keys[i - 1] : null;
+          break;
+        }
+        valueBytes += length;
+      }
+    } else {
+      values = null;
+    }
+
+    response = new ProtoKeyScanResponseMessageGroup(message.getUUID(), ns, message.getOriginator(),
+        message.getDeadlineRelativeMillis(), complete, segmentNumber, tableIndex, resumeKey, numKeys, valueBytes);
+    for (int i = 0; i < numKeys; i++) {
+      response.addKey(keys[i], values != null ? values[i] : null);
+    }
+    try {
+      connection.sendAsynchronous(response.toMessageGroup(), message.getDeadlineAbsMillis(systemTimeSource));
+    } catch (IOException ioe) {
+      Log.logErrorWarning(ioe, "scanForRemote failed");
+    }
+    return numKeys;
+  }
+
+  /**
+   * Read lock must be held
+   *
+   * @return true if a key of the given segment is in the scanned region and its latest version is in the segment
+   */
+  private boolean isScanKey(WritableSegmentBase segment, RingRegion region, long msl, long lsl) {
+    return region.contains(KeyUtil.keyToCoordinate(msl))
+        && getSegmentNumber(new SimpleKey(msl, lsl), VersionConstraint.greatest) == segment.getSegmentNumber();
+  }
+
+  /**
+   * Find the keys of a segment that follow resumeKey in key order. Read lock must be held so that the table is
+   * walked in a single pass that no write can interleave with.
+   *
+   * @param resumeKey the key after which keys are taken, or null to take keys from the start of the segment
+   * @param keys      the array to which the keys are added, in key order, starting at offset
+   * @param maxKeys   the maximum number of keys to add
+   * @return the number of keys added, or maxKeys + 1 if maxKeys were added and the segment has further keys
+   */
+  private int scanSegmentInKeyOrder(WritableSegmentBase segment, RingRegion region, DHTKey resumeKey,
+      DHTKey[] keys, int offset, int maxKeys) {
+    PriorityQueue<DHTKey> pageKeys; // largest first, so that the largest is evicted once the page is full
+    DHTKeyIntCursor cursor;
+    int numKeys;
+
+    pageKeys = new PriorityQueue<>(maxKeys + 1, Collections.reverseOrder(DHTKeyComparator.dhtKeyComparator));
+    cursor = segment.getPKC().cursor();
+    while (cursor.advance()) {
+      if (isScanKey(segment, region, cursor.getMSL(), cursor.getLSL())) {
+        DHTKey key;
+
+        key = new SimpleKey(cursor.getMSL(), cursor.getLSL());
+        if (resumeKey == null || DHTKeyComparator.dhtKeyComparator.compare(key, resumeKey) > 0) {
+          pageKeys.add(key);
+          if (pageKeys.size() > maxKeys + 1) {
+            pageKeys.poll();
+          }
+        }
+      }
+    }
+    // one extra key is kept to tell whether the segment has keys beyond this page
+    numKeys = pageKeys.size();
+    if (numKeys > maxKeys) {
+      pageKeys.poll();
+    }
+    for (int i = offset + Math.min(numKeys, maxKeys) - 1; i >= offset; i--) {
+      keys[i] = pageKeys.poll();
+    }
+    return numKeys;
+  }
+
   public void incomingChecksumTree(UUIDBase uuidBase, ChecksumNode remoteTree, ConvergencePoint cp,
       MessageGroupConnection connection) {
     ActiveRegionSync ars;
@@ -2814,14 +3441,34 @@ public Iterator<KeyAndVersionChecksum> keyAndVersionChecksumIterator(long minVer
     }
   }
 
+  /**
+   * As keyAndVersionChecksumIterator(long, long), but returns only keys accepted by keyFilter. Keys are
+   * filtered before their checksums are computed. Several such iterators may be consumed concurrently
+   * by other threads provided that the calling thread holds readLockAll() until all are complete.
+   */
+  public Iterator<KeyAndVersionChecksum> keyAndVersionChecksumIterator(long minVersion, long maxVersion,
+      Predicate<DHTKey> keyFilter) {
+    if (retrieveTrigger == null || !retrieveTrigger.subsumesStorage()) {
+      return new KeyAndVersionChecksumIterator(minVersion, maxVersion, keyFilter);
+    } else {
+      return Iterators.filter(new KeyAndVersionChecksumIteratorForTrigger(), kvc -> keyFilter.test(kvc.getKey()));
+    }
+  }
+
   private class KeyAndVersionChecksumIterator implements Iterator<KeyAndVersionChecksum> {
     private final Iterator<DHTKeyIntEntry> valueSegmentEntries;
+    private final Predicate<DHTKey> keyFilter;
     private KeyAndVersionChecksum next;
 
     //private final RetrievalOptions retrievalOptions;
 
     private KeyAndVersionChecksumIterator(long minVersion, long maxVersion) {
+      this(minVersion, maxVersion, null);
+    }
+
+    private KeyAndVersionChecksumIterator(long minVersion, long maxVersion, Predicate<DHTKey> keyFilter) {
       valueSegmentEntries = valueSegments.iterator();
+      this.keyFilter = keyFilter;
       //retrievalOptions = OptionsHelper.newRetrievalOptions(RetrievalType.VALUE_AND_META_DATA, WaitMode.GET,
       //        new VersionConstraint(minVersion, maxVersion, Mode.GREATEST));
       //        //VersionConstraint.greatest);
@@ -2843,6 +3490,9 @@ private void moveToNext() {
         boolean validChecksum;
 
         vsEntry = valueSegmentEntries.next();
+        if (keyFilter != null && !keyFilter.test(vsEntry.getKey())) {
+          continue;
+        }
         if (nsProperties.getOptions().isWriteOnce()) {
           checksum = 0;
           validChecksum = true;
@@ -3667,6 +4317,11 @@ private int deleteSegments(Set<Integer> segmentsToDelete) {
   private void deleteSegment(int segmentNumber) {
     FileSegment segment;
 
+    segmentKeyFilters.remove(segmentNumber);
+    invalidateColdSegment(segmentNumber);
+    if (segmentPrefetcher != null) {
+      segmentPrefetcher.removeSegment(segmentNumber);
+    }
     segment = fileSegmentCache.getIfPresent(segmentNumber);
     if (segment != null) {
       Log.infof("Invalidating cache segment: ", segmentNumber);
@@ -3694,6 +4349,11 @@ private void flushCompaction(Set<Integer> deletedSegments,
     try {
       numSegmentsDeleted = deleteSegments(deletedSegments, fileSegmentCompactor.drainCurrentCompactionSourceSegments());
       fileSegmentCompactor.flushCompaction(false);
+      if (coldSegmentCache != null) {
+        // compaction rewrites segments in place; positional-read views of them are stale
+        coldSegmentCache.invalidateAll();
+      }
+      addCompactedKeysToFilters(modifiedEntries);
       updateOffsetLists(deletedSegments, modifiedEntries);
     } finally {
       writeUnlockAll();
@@ -3701,6 +4361,24 @@ private void flushCompaction(Set<Integer> deletedSegments,
     updateAndCheckForceFinalization(numSegmentsDeleted);
   }
 
+  // writeLockAll must be held
+  // Compaction may move keys into a compaction destination segment; ensure that the destination's
+  // filter admits them before the valueSegments mappings are redirected there
+  private void addCompactedKeysToFilters(HashedSetMap<DHTKey, CompactorModifiedEntry> modifiedEntries) {
+    for (DHTKey key : modifiedEntries.getKeys()) {
+      for (CompactorModifiedEntry entry : modifiedEntries.getSet(key)) {
+        if (entry.getNewSegmentNumber() != CompactorModifiedEntry.REMOVED) {
+          SegmentKeyFilter filter;
+
+          filter = segmentKeyFilters.get(entry.getNewSegmentNumber());
+          if (filter != null) {
+            filter.add(key);
+          }
+        }
+      }
+    }
+  }
+
   private Pair<Set<Integer>, HashedSetMap<DHTKey, CompactorModifiedEntry>> compactAndDelete(int curSegment,
       Triple<CompactionCheckResult, Set<Integer>, Set<Integer>> result, boolean verboseReap,
       double compactionThreshold) {
@@ -3766,6 +4444,7 @@ private void updateOffsetLists(Set<Integer> deletedSegments,
     // First, remove references to deleted segments
     if (deletedSegments.size() > 0) {
       Set<DHTKey> singleKeysInDeletedSegments;
+      DHTKeyIntCursor cursor;
 
       // Remove deleted segments from offset lists
       for (int i = 1; i <= ols.getNumLists(); i++) { // offset list indexing is 1-based
@@ -3777,9 +4456,10 @@ private void updateOffsetLists(Set<Integer> deletedSegments,
       // Remove deleted segments from single-key (non-offset-list) mappings
       // (Iteration and deletion must be performed independently)
       singleKeysInDeletedSegments = new HashSet<>();
-      for (DHTKeyIntEntry keyAndSegment : valueSegments) {
-        if (keyAndSegment.getValue() >= 0 && deletedSegments.contains(keyAndSegment.getValue())) {
-          singleKeysInDeletedSegments.add(keyAndSegment.getKey());
+      cursor = valueSegments.cursor();
+      while (cursor.advance()) {
+        if (cursor.getValue() >= 0 && deletedSegments.contains(cursor.getValue())) {
+          singleKeysInDeletedSegments.add(new SimpleKey(cursor.getMSL(), cursor.getLSL()));
         }
       }
       for (DHTKey singleKeyToRemove : singleKeysInDeletedSegments) {
@@ -3940,6 +4620,213 @@ public List<Integer> listKeySegments(DHTKey key, long beforeCreationTimeNanosInc
     }
   }
 
+  @Override
+  public int adoptSegments(File stagingDir) throws IOException {
+    List<Integer> stagedSegments;
+    IncrementalRehashDHTKeyCuckoo stagedKeys;
+    List<StagedSegmentIndex> stagedIndexes;
+
+    if (!nsOptions.getStorageType().isFileBased()) {
+      throw new IOException("Segments can't be adopted by storage type " + nsOptions.getStorageType());
+    }
+    stagedSegments = FileUtil.numericFilesInDirAsSortedIntegerList(stagingDir);
+    if (stagedSegments.isEmpty()) {
+      return 0;
+    }
+    // Validation and indexing read every staged index, so they are performed before any lock is taken.
+    // Whether a key is already stored may change until the locks are held, so that is checked again below.
+    stagedKeys = new IncrementalRehashDHTKeyCuckoo(valueSegmentsConfig);
+    stagedIndexes = new ArrayList<>(stagedSegments.size());
+    for (int stagedSegment : stagedSegments) {
+      stagedIndexes.add(validateAndIndexStagedSegment(stagingDir, stagedSegment, stagedKeys));
+    }
+
+    // Same locking order as syncPurgeKey()
+    reapLock.lock();
+    writeLockAll();
+    try {
+      if (nsOptions.getVersionMode() == NamespaceVersionMode.SINGLE_VERSION) {
+        DHTKeyIntCursor cursor;
+
+        cursor = stagedKeys.cursor();
+        while (cursor.advance()) {
+          DHTKey key;
+
+          key = new SimpleKey(cursor.getMSL(), cursor.getLSL());
+          if (newestSegment(key) != null) {
+            throw new IOException(String.format("Staged segment %d holds a key that is already stored: %s",
+                cursor.getValue(), KeyUtil.keyToString(key)));
+          }
+        }
+      }
+      adoptValidatedSegments(stagingDir, stagedSegments, stagedIndexes);
+    } finally {
+      writeUnlockAll();
+      reapLock.unlock();
+    }
+    return stagedSegments.size();
+  }
+
+  /**
+   * Move validated staged segments into the namespace and add their prebuilt indexes to the key index.
+   * Either all segments are adopted or, if any segment can't be moved, none is: moved segments are returned
+   * to the staging directory before any key is indexed. Adopted segments are numbered above the current head,
+   * and a new head is created so that the head remains the highest-numbered segment, as recovery requires.
+   * Must be called with all locks held.
+   */
+  private void adoptValidatedSegments(File stagingDir, List<Integer> stagedSegments,
+      List<StagedSegmentIndex> stagedIndexes) throws IOException {
+    int firstSegmentNumber;
+    int numMoved;
+    boolean adopted;
+
+    firstSegmentNumber = nextSegmentID.get();
+    numMoved = 0;
+    adopted = false;
+    try {
+      for (int stagedSegment : stagedSegments) {
+        File stagedFile;
+        int segmentNumber;
+
+        stagedFile = FileSegment.fileForSegment(stagingDir, stagedSegment);
+        segmentNumber = firstSegmentNumber + numMoved;
+        FileSegment.setSegmentNumber(stagedFile, segmentNumber);
+        try {
+          Files.move(stagedFile.toPath(), FileSegment.fileForSegment(nsDir, segmentNumber).toPath(),
+              StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+          FileSegment.setSegmentNumber(stagedFile, stagedSegment);
+          throw e;
+        }
+        ++numMoved;
+      }
+      nextSegmentID.set(firstSegmentNumber + numMoved);
+      // Nothing below touches the segment files, so no segment can fail once indexing has begun
+      adopted = true;
+      for (int i = 0; i < numMoved; i++) {
+        stagedIndexes.get(i).addTo(this, firstSegmentNumber + i);
+        Log.warningf("Adopted %s as segment %d of %s",
+            FileSegment.fileForSegment(stagingDir, stagedSegments.get(i)), firstSegmentNumber + i, nsDir);
+      }
+    } finally {
+      if (!adopted) {
+        rollBackAdoption(stagingDir, stagedSegments, firstSegmentNumber, numMoved);
+      }
+      if (nextSegmentID.get() != firstSegmentNumber) {
+        newHeadSegment(true);
+      }
+    }
+  }
+
+  /**
+   * Return moved segments to the staging directory under their staged numbers. A segment that can't be
+   * returned stays in the namespace, numbered above the head, and a new head is then created for it.
+   */
+  private void rollBackAdoption(File stagingDir, List<Integer> stagedSegments, int firstSegmentNumber,
+      int numMoved) {
+    int numRestored;
+
+    numRestored = numMoved;
+    for (int i = numMoved - 1; i >= 0; i--) {
+      File segmentFile;
+      File stagedFile;
+
+      segmentFile = FileSegment.fileForSegment(nsDir, firstSegmentNumber + i);
+      stagedFile = FileSegment.fileForSegment(stagingDir, stagedSegments.get(i));
+      try {
+        Files.move(segmentFile.toPath(), stagedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        numRestored = i;
+        FileSegment.setSegmentNumber(stagedFile, stagedSegments.get(i));
+      } catch (IOException | RuntimeException e) {
+        Log.logErrorWarning(e, "Unable to return " + segmentFile + " to " + stagingDir);
+        break;
+      }
+    }
+    nextSegmentID.set(firstSegmentNumber + numRestored);
+  }
+
+  /**
+   * Ensure that a staged segment can be read, that this replica owns all of its keys, that none of its keys
+   * is in another staged segment, and, for single-version namespaces, that none of its keys is already
+   * stored. Staged keys are added to stagedKeys.
+   *
+   * @return the entries that adopting the segment adds to the key index
+   */
+  private StagedSegmentIndex validateAndIndexStagedSegment(File stagingDir, int stagedSegment,
+      IncrementalRehashDHTKeyCuckoo stagedKeys) throws IOException {
+    FileSegment segment;
+    boolean singleVersion;
+
+    singleVersion = nsOptions.getVersionMode() == NamespaceVersionMode.SINGLE_VERSION;
+    segment = FileSegment.openReadOnly(stagingDir, stagedSegment, nsOptions.getSegmentSize(), nsOptions,
+        SegmentIndexLocation.RAM, SegmentPrereadMode.NoPreread);
+    try {
+      for (DHTKeyIntEntry entry : segment.getPKC()) {
+        int otherStagedSegment;
+
+        if (ringMaster != null && !ringMaster.iAmPotentialReplicaFor(entry.getKey(), false)) {
+          throw new IOException(String.format("Staged segment %d holds a key not owned by this replica: %s",
+              stagedSegment, KeyUtil.keyToString(entry.getKey())));
+        }
+        otherStagedSegment = stagedKeys.get(entry.getKey());
+        if (otherStagedSegment != IntCuckooConstants.noSuchValue) {
+          throw new IOException(String.format("Staged segments %d and %d both hold key: %s", otherStagedSegment,
+              stagedSegment, KeyUtil.keyToString(entry.getKey())));
+        }
+        stagedKeys.put(entry.getKey(), stagedSegment);
+        if (singleVersion && newestSegment(entry.getKey()) != null) {
+          throw new IOException(String.format("Staged segment %d holds a key that is already stored: %s",
+              stagedSegment, KeyUtil.keyToString(entry.getKey())));
+        }
+      }
+      return new StagedSegmentIndex(segment, nsOptions, segmentKeyFilterBitsPerKey);
+    } finally {
+      segment.close();
+    }
+  }
+
+  /**
+   * The key index entries of a staged segment, built before its adoption so that adopting it only adds them
+   */
+  private static class StagedSegmentIndex {
+    private final List<DHTKey> keys;
+    private long[] versions;
+    private long[] creationTimes;
+    private final SegmentKeyFilter keyFilter;
+
+    private static final int initialEntries = 1024;
+
+    StagedSegmentIndex(FileSegment segment, NamespaceOptions nsOptions, int keyFilterBitsPerKey) {
+      keys = new ArrayList<>();
+      versions = new long[initialEntries];
+      creationTimes = new long[initialEntries];
+      FileSegmentRecoverer.forEachIndexEntry(segment, nsOptions, this::add);
+      keyFilter = keyFilterBitsPerKey > 0 ? SegmentKeyFilter.create(segment.getPKC(), keyFilterBitsPerKey) : null;
+    }
+
+    private void add(DHTKey key, long version, long creationTime) {
+      if (keys.size() == versions.length) {
+        versions = Arrays.copyOf(versions, versions.length * 2);
+        creationTimes = Arrays.copyOf(creationTimes, versions.length);
+      }
+      versions[keys.size()] = version;
+      creationTimes[keys.size()] = creationTime;
+      keys.add(key);
+    }
+
+    /**
+     * Add the entries to the key index of a namespace, recording them as stored in the given segment
+     */
+    void addTo(NamespaceStore nsStore, int segmentNumber) {
+      for (int i = 0; i < keys.size(); i++) {
+        nsStore.putSegmentNumberAndVersion(keys.get(i), segmentNumber, versions[i], creationTimes[i], null);
+      }
+      if (keyFilter != null) {
+        nsStore.segmentKeyFilters.put(segmentNumber, keyFilter);
+      }
+    }
+  }
+
   ////////////////////////////////////
   // SSNamespaceStore implementation
 
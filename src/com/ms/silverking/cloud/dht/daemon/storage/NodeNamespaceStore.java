@@ -13,7 +13,7 @@
 import com.ms.silverking.cloud.dht.daemon.NodeRingMaster2;
 import com.ms.silverking.cloud.dht.daemon.storage.NamespaceStoreConstants.NodeConstants;
 import com.ms.silverking.cloud.dht.net.MessageGroupBase;
-import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.collection.StripedLongPairMap;
 import com.ms.silverking.log.Log;
 import com.ms.silverking.net.IPAddrUtil;
 import com.ms.silverking.util.memory.JVMMemoryObserver;
@@ -32,7 +32,7 @@ class NodeNamespaceStore extends MetricsNamespaceStore implements JVMMemoryObser
   private static final String nsName = Namespace.nodeName;
 
   NodeNamespaceStore(MessageGroupBase mgBase, NodeRingMaster2 ringMaster,
-      ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals, ConcurrentMap<Long, NamespaceStore> namespaces) {
+      StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals, ConcurrentMap<Long, NamespaceStore> namespaces) {
     super(nsName, mgBase, ringMaster, activeRetrievals);
     // static
     nodeIDKey = createAndStoreKey("nodeID");
@@ -133,6 +133,9 @@ public Map<String, Map<String, String>> getAllStats() {
       thisNsResults.put(NodeConstants.nsTotalInvalidationsVar, String.valueOf(stats.getTotalInvalidations()));
       thisNsResults.put(NodeConstants.nsTotalPutsVar, String.valueOf(stats.getTotalPuts()));
       thisNsResults.put(NodeConstants.nsTotalRetrievalsVar, String.valueOf(stats.getTotalRetrievals()));
+      for (String latencyMetric : NamespaceMetrics.getLatencyMetricNames()) {
+        thisNsResults.put(latencyMetric, stats.getMetric(latencyMetric));
+      }
       results.put(namespace, thisNsResults);
     }
     return results;
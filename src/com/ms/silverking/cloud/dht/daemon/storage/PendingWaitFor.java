@@ -3,12 +3,14 @@
 import com.ms.silverking.cloud.dht.RetrievalOptions;
 import com.ms.silverking.cloud.dht.common.DHTKey;
 import com.ms.silverking.cloud.dht.common.DHTKeyComparator;
+import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
 import com.ms.silverking.id.UUIDBase;
 
 class PendingWaitFor implements Comparable<PendingWaitFor> {
   private final DHTKey key;
   private final RetrievalOptions options;
   private final UUIDBase opUUID;
+  private final long startTimeNanos;
 
   // No timeout here as this is cleaned up when the corresponding active retrieval is no longer found
 
@@ -16,6 +18,7 @@ class PendingWaitFor implements Comparable<PendingWaitFor> {
     this.key = key;
     this.options = options;
     this.opUUID = opUUID;
+    startTimeNanos = SystemTimeUtil.skSystemTimeSource.relTimeNanos();
   }
 
   public DHTKey getKey() {
@@ -30,6 +33,13 @@ public UUIDBase getOpUUID() {
     return opUUID;
   }
 
+  /**
+   * @return the time at which this wait was registered
+   */
+  public long getStartTimeNanos() {
+    return startTimeNanos;
+  }
+
   @Override
   public String toString() {
     return key + ":" + options + ":" + opUUID;
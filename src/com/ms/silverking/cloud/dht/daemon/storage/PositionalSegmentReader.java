@@ -0,0 +1,153 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+import com.ms.silverking.cloud.dht.client.ChecksumType;
+import com.ms.silverking.cloud.dht.common.MetaDataUtil;
+
+/**
+ * Reads the data segment of a cold FileSegment with positional FileChannel reads rather than
+ * mapping it. Small reads are served from block-aligned reads kept in a SegmentBlockCache; reads
+ * larger than a block bypass the cache. The segment index is held on the heap by the FileSegment,
+ * so only the requested entries are ever read from the file.
+ *
+ * Returned buffers are read-only and begin at position 0.
+ */
+class PositionalSegmentReader {
+  private final File file;
+  private final int segmentNumber;
+  private final int dataSegmentSize;
+  private final SegmentBlockCache blockCache;
+  private final FileChannel channel;
+
+  private static final String roFileMode = "r";
+  private static final int maxMetaDataLength;
+
+  static {
+    int maxChecksumLength;
+
+    maxChecksumLength = 0;
+    for (ChecksumType checksumType : ChecksumType.values()) {
+      maxChecksumLength = Math.max(maxChecksumLength, checksumType.length());
+    }
+    maxMetaDataLength = MetaDataUtil.getMinimumEntrySize() + maxChecksumLength;
+  }
+
+  PositionalSegmentReader(File file, int segmentNumber, int dataSegmentSize, SegmentBlockCache blockCache)
+      throws IOException {
+    this.file = file;
+    this.segmentNumber = segmentNumber;
+    this.dataSegmentSize = dataSegmentSize;
+    this.blockCache = blockCache;
+    channel = openChannel();
+  }
+
+  private FileChannel openChannel() throws IOException {
+    return new RandomAccessFile(file, roFileMode).getChannel();
+  }
+
+  /**
+   * Read length bytes of the data segment beginning at offset
+   */
+  ByteBuffer read(int offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > dataSegmentSize) {
+      throw new RuntimeException(String.format("Invalid read segment %d offset %d length %d", segmentNumber, offset,
+          length));
+    }
+    try {
+      int blockOffset;
+
+      blockOffset = offset & (SegmentBlockCache.blockSize - 1);
+      if (blockOffset + length <= SegmentBlockCache.blockSize) {
+        ByteBuffer buf;
+
+        // single block; return a view of the cached block
+        buf = ByteBuffer.wrap(getBlock(offset >>> SegmentBlockCache.blockShift));
+        buf.position(blockOffset);
+        buf.limit(blockOffset + length);
+        return buf.slice().asReadOnlyBuffer();
+      } else {
+        byte[] data;
+
+        data = new byte[length];
+        readFully(ByteBuffer.wrap(data), offset);
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+      }
+    } catch (IOException ioe) {
+      throw new RuntimeException(String.format("Positional read failed segment %d", segmentNumber), ioe);
+    }
+  }
+
+  /**
+   * Read the stored length of the entry whose metadata begins at offset
+   */
+  int readStoredLength(int offset) {
+    return MetaDataUtil.getStoredLength(read(offset, Integer.BYTES), 0);
+  }
+
+  /**
+   * Read the metadata of the entry whose metadata begins at offset
+   */
+  ByteBuffer readMetaData(int offset) {
+    ByteBuffer header;
+
+    header = read(offset, Math.min(maxMetaDataLength, Math.min(readStoredLength(offset), dataSegmentSize - offset)));
+    header.limit(MetaDataUtil.getMetaDataLength(header, 0));
+    return header.slice();
+  }
+
+  private byte[] getBlock(int blockIndex) throws IOException {
+    byte[] block;
+
+    block = blockCache.get(segmentNumber, blockIndex);
+    if (block == null) {
+      long blockStart;
+
+      blockStart = (long) blockIndex << SegmentBlockCache.blockShift;
+      block = new byte[(int) Math.min(SegmentBlockCache.blockSize, dataSegmentSize - blockStart)];
+      readFully(ByteBuffer.wrap(block), blockStart);
+      blockCache.put(segmentNumber, blockIndex, block);
+    }
+    return block;
+  }
+
+  private void readFully(ByteBuffer buf, long position) throws IOException {
+    try {
+      _readFully(channel, buf, position);
+    } catch (ClosedChannelException cce) {
+      // this reader was closed (or the channel was closed by an interrupt) while the read was in flight;
+      // complete the read with a temporary channel
+      buf.clear();
+      try (FileChannel tempChannel = openChannel()) {
+        _readFully(tempChannel, buf, position);
+      }
+    }
+  }
+
+  private static void _readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+    while (buf.hasRemaining()) {
+      int numRead;
+
+      numRead = channel.read(buf, position);
+      if (numRead < 0) {
+        throw new EOFException();
+      }
+      position += numRead;
+    }
+  }
+
+  void close() {
+    try {
+      channel.close();
+    } catch (IOException ioe) {
+      throw new RuntimeException(ioe);
+    }
+    blockCache.invalidateSegment(segmentNumber, dataSegmentSize);
+  }
+}
@@ -1,7 +1,5 @@
 package com.ms.silverking.cloud.dht.daemon.storage;
 
-import java.util.concurrent.ConcurrentMap;
-
 import com.ms.silverking.cloud.common.OwnerQueryMode;
 import com.ms.silverking.cloud.dht.client.Namespace;
 import com.ms.silverking.cloud.dht.common.DHTKey;
@@ -10,7 +8,7 @@
 import com.ms.silverking.cloud.dht.daemon.ActiveProxyRetrieval;
 import com.ms.silverking.cloud.dht.daemon.NodeRingMaster2;
 import com.ms.silverking.cloud.dht.net.MessageGroupBase;
-import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.collection.StripedLongPairMap;
 import com.ms.silverking.net.IPAndPort;
 
 /**
@@ -24,7 +22,7 @@ class ReplicasNamespaceStore extends DynamicNamespaceStore {
   private static final char replicaDelimiter = ',';
 
   ReplicasNamespaceStore(MessageGroupBase mgBase, NodeRingMaster2 ringMaster,
-      ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals) {
+      StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals) {
     super(nsName, mgBase, ringMaster, activeRetrievals);
     this.ringMaster = ringMaster;
   }
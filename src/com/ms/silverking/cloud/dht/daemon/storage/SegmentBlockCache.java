@@ -0,0 +1,45 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Small user-space cache of fixed-size blocks read from cold segments by PositionalSegmentReader.
+ * Blocks are aligned to blockSize within the data segment. One cache is shared by all cold segments
+ * of a namespace; it is bounded by total bytes rather than by number of segments.
+ */
+class SegmentBlockCache {
+  private final Cache<Long, byte[]> blocks;
+
+  static final int blockSize = 64 * 1024;
+  static final int blockShift = 16;
+
+  SegmentBlockCache(long capacityBytes) {
+    blocks = CacheBuilder.newBuilder().maximumWeight(capacityBytes).weigher(
+        (Long key, byte[] block) -> block.length).build();
+  }
+
+  private static long blockKey(int segmentNumber, int blockIndex) {
+    return ((long) segmentNumber << 32) | (blockIndex & 0xffffffffL);
+  }
+
+  byte[] get(int segmentNumber, int blockIndex) {
+    return blocks.getIfPresent(blockKey(segmentNumber, blockIndex));
+  }
+
+  void put(int segmentNumber, int blockIndex, byte[] block) {
+    blocks.put(blockKey(segmentNumber, blockIndex), block);
+  }
+
+  /**
+   * Remove all blocks of the given segment. Called when the segment is mapped for update, compacted, or deleted.
+   */
+  void invalidateSegment(int segmentNumber, int dataSegmentSize) {
+    int numBlocks;
+
+    numBlocks = (dataSegmentSize + blockSize - 1) >>> blockShift;
+    for (int i = 0; i < numBlocks; i++) {
+      blocks.invalidate(blockKey(segmentNumber, i));
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import com.ms.silverking.cloud.dht.collection.DHTKeyCuckooBase;
+import com.ms.silverking.cloud.dht.collection.DHTKeyIntCursor;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+
+/**
+ * Compact Bloom filter over the keys stored in a single persisted segment.
+ * Built when a segment is finalized and kept resident so that lookups for keys
+ * that are not present in the segment can be answered without opening it.
+ *
+ * DHTKeys are already uniformly distributed hashes, so the msl and lsl are used
+ * directly for double hashing rather than rehashing the key.
+ *
+ * A negative answer is exact; a positive answer may be a false positive.
+ */
+class SegmentKeyFilter {
+  private final long[] bits;
+  private final int numBitsMask;
+  private final int numHashes;
+
+  private static final int minBits = 64;
+  private static final int maxBits = 1 << 30;
+  private static final int bitsPerWordShift = 6;
+  private static final int bitsPerWordMask = 0x3f;
+
+  /**
+   * @param expectedKeys upper bound on the number of keys that will be added
+   * @param bitsPerKey   bits of filter state allocated per expected key
+   */
+  SegmentKeyFilter(int expectedKeys, int bitsPerKey) {
+    long numBits;
+
+    if (bitsPerKey <= 0) {
+      throw new IllegalArgumentException("bitsPerKey must be > 0");
+    }
+    numBits = Math.max((long) expectedKeys * (long) bitsPerKey, minBits);
+    numBits = Math.min(Long.highestOneBit(numBits - 1) << 1, maxBits);
+    bits = new long[(int) (numBits >>> bitsPerWordShift)];
+    numBitsMask = (int) numBits - 1;
+    // optimal number of hashes is (m/n) ln 2
+    numHashes = Math.max(1, (int) Math.round(bitsPerKey * Math.log(2.0)));
+  }
+
+  /**
+   * Create a filter containing every key in the given segment index
+   *
+   * @param keyToOffset the segment index
+   * @param bitsPerKey  bits of filter state allocated per key
+   * @return a filter containing every key in the index
+   */
+  static SegmentKeyFilter create(DHTKeyCuckooBase keyToOffset, int bitsPerKey) {
+    SegmentKeyFilter filter;
+    DHTKeyIntCursor cursor;
+    int numKeys;
+
+    // size by the number of keys actually present rather than by the table capacity
+    numKeys = 0;
+    cursor = keyToOffset.cursor();
+    while (cursor.advance()) {
+      numKeys++;
+    }
+    filter = new SegmentKeyFilter(numKeys, bitsPerKey);
+    cursor.reset();
+    while (cursor.advance()) {
+      filter.add(cursor.getMSL(), cursor.getLSL());
+    }
+    return filter;
+  }
+
+  void add(DHTKey key) {
+    add(key.getMSL(), key.getLSL());
+  }
+
+  void add(long msl, long lsl) {
+    long h;
+    long delta;
+
+    h = lsl;
+    delta = msl | 1L;
+    for (int i = 0; i < numHashes; i++) {
+      int bitIndex;
+
+      bitIndex = (int) (h ^ (h >>> 32)) & numBitsMask;
+      bits[bitIndex >>> bitsPerWordShift] |= 1L << (bitIndex & bitsPerWordMask);
+      h += delta;
+    }
+  }
+
+  boolean mightContain(DHTKey key) {
+    return mightContain(key.getMSL(), key.getLSL());
+  }
+
+  boolean mightContain(long msl, long lsl) {
+    long h;
+    long delta;
+
+    h = lsl;
+    delta = msl | 1L;
+    for (int i = 0; i < numHashes; i++) {
+      int bitIndex;
+
+      bitIndex = (int) (h ^ (h >>> 32)) & numBitsMask;
+      if ((bits[bitIndex >>> bitsPerWordShift] & (1L << (bitIndex & bitsPerWordMask))) == 0) {
+        return false;
+      }
+      h += delta;
+    }
+    return true;
+  }
+
+  int getSizeBytes() {
+    return bits.length * Long.BYTES;
+  }
+}
@@ -0,0 +1,153 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
+import com.ms.silverking.log.Log;
+import com.ms.silverking.thread.ThreadUtil;
+
+/**
+ * Warms segments of a namespace in the background so that retrievals do not take the cost of
+ * mapping segments and faulting their pages in.
+ *
+ * Retrievals record the segments that they access. Access counts decay by half every
+ * decayIntervalMillis; a segment whose count reaches the access threshold is queued for prefetch.
+ * The newest segments of a namespace may also be queued explicitly, e.g. after a restart or a ring
+ * transition. A single worker thread, shared by all namespaces, performs the prefetches.
+ *
+ * Prefetch is opt-in: a prefetched segment is loaded in full, which undoes the positional reads and
+ * page-cache reliance of cold segments, so both triggers are off by default. Set
+ * DHTConstants.segmentPrefetchAccessThresholdProperty to a positive access count to enable access-driven
+ * prefetch, and DHTConstants.segmentPrefetchRecentSegmentsProperty to the number of newest segments to warm
+ * after a restart or ring transition. No prefetcher is created while both are zero.
+ */
+class SegmentPrefetcher {
+  private final NamespaceStore nsStore;
+  private final int accessThreshold;
+  private final ConcurrentMap<Integer, AtomicInteger> accessCounts;
+  private final Set<Integer> queuedSegments;
+  private final AtomicLong nextDecayMillis;
+
+  private static final long decayIntervalMillis = 60 * 1000;
+  private static final int maxQueuedPrefetches = 1024;
+
+  private static final BlockingQueue<PrefetchRequest> prefetchQueue = new LinkedBlockingQueue<>(maxQueuedPrefetches);
+
+  static {
+    ThreadUtil.newDaemonThread(new PrefetchWorker(), "SegmentPrefetcher").start();
+  }
+
+  /**
+   * @param nsStore         the namespace to prefetch segments for
+   * @param accessThreshold number of recent accesses that cause a segment to be prefetched; zero disables
+   *                        access-driven prefetch
+   */
+  SegmentPrefetcher(NamespaceStore nsStore, int accessThreshold) {
+    this.nsStore = nsStore;
+    this.accessThreshold = accessThreshold;
+    accessCounts = new ConcurrentHashMap<>();
+    queuedSegments = ConcurrentHashMap.newKeySet();
+    nextDecayMillis = new AtomicLong(SystemTimeUtil.skSystemTimeSource.absTimeMillis() + decayIntervalMillis);
+  }
+
+  /**
+   * Record a retrieval from the given segment
+   */
+  void recordAccess(int segmentNumber) {
+    if (accessThreshold > 0) {
+      AtomicInteger count;
+
+      decayIfNeeded();
+      count = accessCounts.get(segmentNumber);
+      if (count == null) {
+        count = accessCounts.computeIfAbsent(segmentNumber, k -> new AtomicInteger());
+      }
+      if (count.incrementAndGet() == accessThreshold) {
+        queuePrefetch(segmentNumber);
+      }
+    }
+  }
+
+  /**
+   * Queue a prefetch of the given segment unless one is already queued
+   */
+  void queuePrefetch(int segmentNumber) {
+    if (queuedSegments.add(segmentNumber)) {
+      if (!prefetchQueue.offer(new PrefetchRequest(this, segmentNumber))) {
+        queuedSegments.remove(segmentNumber);
+      }
+    }
+  }
+
+  /**
+   * Forget the given segment, e.g. because it has been deleted
+   */
+  void removeSegment(int segmentNumber) {
+    accessCounts.remove(segmentNumber);
+  }
+
+  private void decayIfNeeded() {
+    long curNextDecayMillis;
+    long curTimeMillis;
+
+    curNextDecayMillis = nextDecayMillis.get();
+    curTimeMillis = SystemTimeUtil.skSystemTimeSource.absTimeMillis();
+    if (curTimeMillis >= curNextDecayMillis && nextDecayMillis.compareAndSet(curNextDecayMillis,
+        curTimeMillis + decayIntervalMillis)) {
+      Iterator<Map.Entry<Integer, AtomicInteger>> iterator;
+
+      iterator = accessCounts.entrySet().iterator();
+      while (iterator.hasNext()) {
+        AtomicInteger count;
+        int prev;
+
+        count = iterator.next().getValue();
+        do {
+          prev = count.get();
+        } while (!count.compareAndSet(prev, prev >>> 1));
+        if (prev >>> 1 == 0) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  private void prefetch(int segmentNumber) {
+    queuedSegments.remove(segmentNumber);
+    nsStore.prefetchSegment(segmentNumber);
+  }
+
+  private static class PrefetchRequest {
+    private final SegmentPrefetcher prefetcher;
+    private final int segmentNumber;
+
+    PrefetchRequest(SegmentPrefetcher prefetcher, int segmentNumber) {
+      this.prefetcher = prefetcher;
+      this.segmentNumber = segmentNumber;
+    }
+  }
+
+  private static class PrefetchWorker implements Runnable {
+    public void run() {
+      while (true) {
+        try {
+          PrefetchRequest request;
+
+          request = prefetchQueue.take();
+          request.prefetcher.prefetch(request.segmentNumber);
+        } catch (Exception e) {
+          Log.logErrorWarning(e, "SegmentPrefetcher");
+          ThreadUtil.pauseAfterException();
+        }
+      }
+    }
+  }
+}
@@ -20,10 +20,12 @@
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.RateLimiter;
 import com.ms.silverking.cloud.dht.ValueCreator;
 import com.ms.silverking.cloud.dht.client.ClientDHTConfiguration;
 import com.ms.silverking.cloud.dht.client.EmbeddedSK;
@@ -53,6 +55,7 @@
 import com.ms.silverking.cloud.dht.net.MessageGroupBase;
 import com.ms.silverking.cloud.dht.net.MessageGroupConnection;
 import com.ms.silverking.cloud.dht.net.ProtoChecksumTreeMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoKeyScanResponseMessageGroup;
 import com.ms.silverking.cloud.dht.net.ProtoNamespaceResponseMessageGroup;
 import com.ms.silverking.cloud.dht.net.ProtoOpResponseMessageGroup;
 import com.ms.silverking.cloud.dht.serverside.RetrieveCallback;
@@ -63,7 +66,9 @@
 import com.ms.silverking.code.Constraint;
 import com.ms.silverking.collection.Pair;
 import com.ms.silverking.collection.CollectionUtil;
+import com.ms.silverking.collection.StripedLongPairMap;
 import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.io.FileUtil;
 import com.ms.silverking.log.Log;
 import com.ms.silverking.net.IPAndPort;
 import com.ms.silverking.numeric.NumUtil;
@@ -86,7 +91,7 @@ public class StorageModule implements LinkCreationListener, ManagedStorageModule
   private NamespaceMetaStore nsMetaStore;
   private MessageGroupBase mgBase;
   private StoragePolicyGroup spGroup;
-  private ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals;
+  private StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals;
   private NodeNamespaceStore nodeNSStore;
   private SystemNamespaceStore systemNSStore;
   private ReplicasNamespaceStore replicasNSStore;
@@ -103,6 +108,7 @@ public class StorageModule implements LinkCreationListener, ManagedStorageModule
   private final boolean enableMsgGroupTrace;
   private SafeTimerTask cleanerTask;
   private SafeTimerTask reapTask;
+  private SafeTimerTask bulkIngestTask;
   private JVMMonitor jvmMonitor;
 
   private NamespaceStore metaNamespaceStore; // used to bootstrap the meta NS store
@@ -149,6 +155,24 @@ public enum RetrievalImplementation {Ungrouped, Grouped};
 
   public static final String metricsObserversProperty = StorageModule.class.getCanonicalName() + ".MetricsObservers";
 
+  public static final String maxConcurrentKeyScansProperty = StorageModule.class.getCanonicalName() +
+      ".MaxConcurrentKeyScans";
+  public static final int defaultMaxConcurrentKeyScans = 2;
+  public static final String keyScanKeysPerSecondProperty = StorageModule.class.getCanonicalName() +
+      ".KeyScanKeysPerSecond";
+  // zero disables the rate limit
+  public static final int defaultKeyScanKeysPerSecond = 100000;
+
+  public static final String bulkIngestIntervalMillisProperty = StorageModule.class.getCanonicalName() +
+      ".BulkIngestIntervalMillis";
+  // zero disables bulk ingestion
+  public static final int defaultBulkIngestIntervalMillis = 30 * 1000;
+
+  private static final Semaphore keyScanPermits;
+  private static final RateLimiter keyScanRateLimiter;
+  private static final int bulkIngestIntervalMillis;
+  private static final String failedStagingDirSuffix = ".failed";
+
   static {
     retrievalImplementation = RetrievalImplementation.valueOf(
         PropertiesHelper.systemHelper.getString(DHTConstants.retrievalImplementationProperty,
@@ -156,6 +180,18 @@ public enum RetrievalImplementation {Ungrouped, Grouped};
     Log.warningf("retrievalImplementation: %s", retrievalImplementation);
   }
 
+  static {
+    int keyScanKeysPerSecond;
+
+    keyScanPermits = new Semaphore(
+        PropertiesHelper.systemHelper.getInt(maxConcurrentKeyScansProperty, defaultMaxConcurrentKeyScans));
+    keyScanKeysPerSecond = PropertiesHelper.systemHelper.getInt(keyScanKeysPerSecondProperty,
+        defaultKeyScanKeysPerSecond);
+    keyScanRateLimiter = keyScanKeysPerSecond > 0 ? RateLimiter.create(keyScanKeysPerSecond) : null;
+    bulkIngestIntervalMillis = PropertiesHelper.systemHelper.getInt(bulkIngestIntervalMillisProperty,
+        defaultBulkIngestIntervalMillis);
+  }
+
   public StorageModule(NodeRingMaster2 ringMaster, String dhtName, Timer timer, ZooKeeperConfig zkConfig,
       NodeInfoZK nodeInfoZK, ReapPolicy reapPolicy, JVMMonitor jvmMonitor, boolean enableMsgGroupTrace) {
 
@@ -230,7 +266,7 @@ public void setMessageGroupBase(MessageGroupBase mgBase) {
     this.mgBase = mgBase;
   }
 
-  public void setActiveRetrievals(ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals) {
+  public void setActiveRetrievals(StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals) {
     this.activeRetrievals = activeRetrievals;
   }
 
@@ -255,6 +291,10 @@ public void setReady() {
       this.reapTask = new SafeTimerTask(new Reaper());
       timer.scheduleAtFixedRate(reapTask, reapPolicy.getReapIntervalMillis(), reapPolicy.getReapIntervalMillis());
     }
+    if (bulkIngestIntervalMillis > 0) {
+      this.bulkIngestTask = new SafeTimerTask(new BulkIngester());
+      timer.scheduleAtFixedRate(bulkIngestTask, bulkIngestIntervalMillis, bulkIngestIntervalMillis);
+    }
   }
 
   // Public for testing purposes
@@ -283,6 +323,9 @@ public void stop(boolean rolloverHeadSegments) {
     if (reapTask != null) {
       reapTask.cancel();
     }
+    if (bulkIngestTask != null) {
+      bulkIngestTask.cancel();
+    }
 
     methodCallNonBlockingWorker.stopLWTPool();
     methodCallBlockingWorker.stopLWTPool();
@@ -460,7 +503,8 @@ private List<File> sortNSDirsForRecovery(File[] files) throws IOException {
 
     sorted = new ArrayList<>();
     for (File file : files) {
-      if (file.isDirectory() && !file.getName().equals(trashManualDirName)) {
+      if (file.isDirectory() && !file.getName().equals(trashManualDirName) && !file.getName().equals(
+          BulkSegmentWriter.stagingDirName)) {
         addDirAndParents(sorted, file);
       } else {
         Log.warning("Recovery ignoring: ", file);
@@ -595,6 +639,19 @@ public void linkCreated(long child, long parent) {
     childNS.linkParent(parentNS);
   }
 
+  /**
+   * Record an operation latency in the given namespace's metrics. Latencies for namespaces that are not
+   * present on this node are ignored.
+   */
+  public void recordLatency(long ns, NamespaceMetrics.LatencyType type, long latencyMicros) {
+    NamespaceStore nsStore;
+
+    nsStore = namespaces.get(ns);
+    if (nsStore != null) {
+      nsStore.getNamespaceMetrics().recordLatency(type, latencyMicros);
+    }
+  }
+
   public OpResult putUpdate(long ns, DHTKey key, long version, byte storageState) {
     NamespaceStore nsStore;
 
@@ -637,6 +694,25 @@ public void put(long ns, List<StorageValueAndParameters> values, byte[] userData
     }
   }
 
+  /**
+   * Apply update records (see AtomicUpdateMessageFormat) to the newest stored values
+   *
+   * @param updateListener if non-null, receives each resolved value before the result of storing it
+   */
+  public void putAtomic(long ns, List<StorageValueAndParameters> values, byte[] userData,
+      KeyedOpResultListener resultListener, AtomicUpdateListener updateListener) {
+    try {
+      NamespaceStore nsStore;
+
+      nsStore = getNamespaceStore(ns, NSCreationMode.CreateIfAbsent);
+      nsStore.putAtomic(values, userData, resultListener, updateListener);
+    } catch (NamespaceNotCreatedException nnce) {
+      for (StorageValueAndParameters value : values) {
+        resultListener.sendResult(value.getKey(), OpResult.NO_SUCH_NAMESPACE);
+      }
+    }
+  }
+
   public void retrieve(long ns, List<? extends DHTKey> keys, InternalRetrievalOptions options, UUIDBase opUUID,
       RetrieveCallback<Pair<DHTKey, ByteBuffer>, Void> callback) {
     try {
@@ -679,6 +755,15 @@ public void cleanup() {
     }
   }
 
+  /**
+   * Warm the most recent segments of all namespaces. Used after a ring transition.
+   */
+  public void prefetchRecentSegments() {
+    for (NamespaceStore ns : namespaces.values()) {
+      ns.prefetchRecentSegments();
+    }
+  }
+
   public void startupReap() {
     Stopwatch sw;
 
@@ -717,6 +802,56 @@ public void liveReap() {
     }
   }
 
+  /**
+   * Adopt bulk load partitions that have been shipped to this node. Each namespace has a staging
+   * directory, <baseDir>/bulk_ingest/<nsDir>/, which holds one directory of segments per partition.
+   * A partition is adopted once its ready file exists. Partitions that cannot be adopted are renamed
+   * with a .failed suffix so that they are not retried.
+   */
+  public void ingestStagedSegments() {
+    File[] nsStagingDirs;
+
+    nsStagingDirs = new File(baseDir, BulkSegmentWriter.stagingDirName).listFiles();
+    if (nsStagingDirs != null) {
+      for (File nsStagingDir : nsStagingDirs) {
+        File[] partitionDirs;
+
+        partitionDirs = nsStagingDir.listFiles();
+        if (partitionDirs != null) {
+          for (File partitionDir : partitionDirs) {
+            if (partitionDir.isDirectory() && !partitionDir.getName().endsWith(failedStagingDirSuffix) && new File(
+                partitionDir, BulkSegmentWriter.readyFileName).exists()) {
+              ingestStagedPartition(nsStagingDir.getName(), partitionDir);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void ingestStagedPartition(String nsDirName, File partitionDir) {
+    try {
+      NamespaceStore nsStore;
+      int numSegments;
+
+      nsStore = getNamespaceStore(NamespaceUtil.dirNameToContext(nsDirName), NSCreationMode.CreateIfAbsent);
+      numSegments = nsStore.adoptSegments(partitionDir);
+      Log.warningf("Bulk ingest adopted %d segments from %s", numSegments, partitionDir);
+      FileUtil.cleanDirectory(partitionDir);
+      if (!partitionDir.delete()) {
+        Log.warning("Unable to delete: ", partitionDir);
+      }
+    } catch (IOException | RuntimeException e) {
+      File failedDir;
+
+      Log.logErrorWarning(e, "Bulk ingest failed for " + partitionDir);
+      failedDir = new File(partitionDir.getParentFile(), partitionDir.getName() + failedStagingDirSuffix);
+      if (!partitionDir.renameTo(failedDir)) {
+        Log.warning("Unable to rename: ", partitionDir);
+      }
+    }
+  }
+
   /////////////////////////
   // synchronization code
 
@@ -752,6 +887,59 @@ public void getChecksumTreeForRemote(Long ns, UUIDBase uuid, ConvergencePoint ta
     nsStore.getChecksumTreeForRemote(uuid, targetCP, sourceCP, connection, originator, region);
   }
 
+  // ns is Long so that invokeAsync works
+  public void streamSegmentsForRemote(Long ns, UUIDBase uuid, ConvergencePoint targetCP, ConvergencePoint sourceCP,
+      MessageGroupConnection connection, byte[] originator, RingRegion region) {
+    NamespaceStore nsStore;
+
+    nsStore = getNamespaceStore(ns, NSCreationMode.CreateIfAbsent);
+    nsStore.streamSegmentsForRemote(uuid, targetCP, sourceCP, connection, originator, region);
+  }
+
+  /**
+   * Send one page of a client key scan. Scans are throttled so that they cannot starve foreground
+   * traffic: at most maxConcurrentKeyScans pages are produced at once, and the keys returned by all
+   * scans are limited to keyScanKeysPerSecond. A request that finds no free permit receives an empty,
+   * incomplete page, which the client retries.
+   */
+  public void scanForRemote(MessageGroup message, MessageGroupConnection connection) {
+    if (keyScanPermits.tryAcquire()) {
+      try {
+        NamespaceStore nsStore;
+
+        nsStore = getNamespaceStore(message.getContext(), NSCreationMode.DoNotCreate);
+        if (nsStore != null) {
+          int keysSent;
+
+          keysSent = nsStore.scanForRemote(message, connection);
+          if (keysSent > 0 && keyScanRateLimiter != null) {
+            keyScanRateLimiter.acquire(keysSent);
+          }
+        } else {
+          sendEmptyKeyScanPage(message, connection, true);
+        }
+      } finally {
+        keyScanPermits.release();
+      }
+    } else {
+      sendEmptyKeyScanPage(message, connection, false);
+    }
+  }
+
+  private void sendEmptyKeyScanPage(MessageGroup message, MessageGroupConnection connection, boolean complete) {
+    ProtoKeyScanResponseMessageGroup response;
+
+    // the position is unused: the client retries an empty, incomplete page from its own cursor
+    response = new ProtoKeyScanResponseMessageGroup(message.getUUID(), message.getContext(),
+        message.getOriginator(), message.getDeadlineRelativeMillis(), complete, 0, 0, null, 0, 0);
+    try {
+      connection.sendAsynchronous(response.toMessageGroup(),
+          message.getDeadlineAbsMillis(SystemTimeUtil.skSystemTimeSource));
+    } catch (IOException ioe) {
+      Log.logErrorWarning(ioe, "sendEmptyKeyScanPage failed");
+    }
+  }
+
   public void incomingSyncRetrievalResponse(MessageGroup message) {
     NamespaceStore nsStore;
 
@@ -893,6 +1081,16 @@ public void run() {
     }
   }
 
+  class BulkIngester extends TimerTask {
+    BulkIngester() {
+    }
+
+    @Override
+    public void run() {
+      ingestStagedSegments();
+    }
+  }
+
   class Cleaner extends TimerTask {
     Cleaner() {
     }
@@ -8,7 +8,6 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.collect.ImmutableList;
 import com.ms.silverking.cloud.common.OwnerQueryMode;
@@ -25,8 +24,8 @@
 import com.ms.silverking.cloud.meta.ExclusionSet;
 import org.apache.zookeeper.KeeperException;
 import com.ms.silverking.collection.Pair;
+import com.ms.silverking.collection.StripedLongPairMap;
 import com.ms.silverking.collection.Triple;
-import com.ms.silverking.id.UUIDBase;
 import com.ms.silverking.log.Log;
 import com.ms.silverking.net.IPAndPort;
 import com.ms.silverking.text.StringUtil;
@@ -55,7 +54,7 @@ class SystemNamespaceStore extends MetricsNamespaceStore implements MetricsNames
   private static final String nsName = Namespace.systemName;
 
   SystemNamespaceStore(MessageGroupBase mgBase, NodeRingMaster2 ringMaster,
-      ConcurrentMap<UUIDBase, ActiveProxyRetrieval> activeRetrievals, Iterable<NamespaceStore> nsStoreIterator,
+      StripedLongPairMap<ActiveProxyRetrieval> activeRetrievals, Iterable<NamespaceStore> nsStoreIterator,
       NodeInfoZK nodeInfoZK) {
     super(nsName, mgBase, ringMaster, activeRetrievals);
     this.nodeInfoZK = nodeInfoZK;
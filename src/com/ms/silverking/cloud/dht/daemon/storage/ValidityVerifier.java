@@ -1,7 +1,5 @@
 package com.ms.silverking.cloud.dht.daemon.storage;
 
-import java.nio.ByteBuffer;
-
 import com.ms.silverking.cloud.dht.ConsistencyProtocol;
 import com.ms.silverking.cloud.dht.common.MetaDataUtil;
 import com.ms.silverking.cloud.dht.daemon.storage.protocol.StorageProtocolUtil;
@@ -12,15 +10,16 @@
  * instance where storage state of a previous retrieval was found to be bad.
  */
 class ValidityVerifier {
-  private final ByteBuffer buf;
+  private final AbstractSegment segment;
   private final ConsistencyProtocol consistencyProtocol;
 
-  ValidityVerifier(ByteBuffer buf, ConsistencyProtocol consistencyProtocol) {
-    this.buf = buf;
+  ValidityVerifier(AbstractSegment segment, ConsistencyProtocol consistencyProtocol) {
+    this.segment = segment;
     this.consistencyProtocol = consistencyProtocol;
   }
 
   boolean isValid(int offset) {
-    return StorageProtocolUtil.storageStateValidForRead(consistencyProtocol, MetaDataUtil.getStorageState(buf, offset));
+    return StorageProtocolUtil.storageStateValidForRead(consistencyProtocol,
+        MetaDataUtil.getStorageState(segment.readMetaData(offset), 0));
   }
 }
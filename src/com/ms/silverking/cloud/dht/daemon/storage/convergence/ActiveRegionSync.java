@@ -1,5 +1,6 @@
 package com.ms.silverking.cloud.dht.daemon.storage.convergence;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -10,6 +11,7 @@
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -19,6 +21,7 @@
 import com.ms.silverking.cloud.dht.RetrievalType;
 import com.ms.silverking.cloud.dht.VersionConstraint;
 import com.ms.silverking.cloud.dht.WaitMode;
+import com.ms.silverking.cloud.dht.common.DHTConstants;
 import com.ms.silverking.cloud.dht.common.DHTKey;
 import com.ms.silverking.cloud.dht.common.InternalRetrievalOptions;
 import com.ms.silverking.cloud.dht.common.OpResult;
@@ -34,16 +37,21 @@
 import com.ms.silverking.cloud.dht.net.MessageGroupConnection;
 import com.ms.silverking.cloud.dht.net.MessageGroupRetrievalResponseEntry;
 import com.ms.silverking.cloud.dht.net.ProtoChecksumTreeRequestMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoProgressMessageGroup;
 import com.ms.silverking.cloud.dht.net.ProtoRetrievalMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoSegmentTransferRequestMessageGroup;
 import com.ms.silverking.cloud.dht.trace.TraceIDProvider;
 import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.collection.Pair;
 import com.ms.silverking.id.UUIDBase;
 import com.ms.silverking.log.Log;
 import com.ms.silverking.net.IPAddrUtil;
+import com.ms.silverking.net.IPAndPort;
 import com.ms.silverking.numeric.LongInterval;
 import com.ms.silverking.time.AbsMillisTimeSource;
 import com.ms.silverking.time.SimpleTimer;
 import com.ms.silverking.time.Timer;
+import com.ms.silverking.util.PropertiesHelper;
 
 public class ActiveRegionSync implements KeyedOpResultListener {
   private final UUIDBase uuid;
@@ -59,6 +67,15 @@ public class ActiveRegionSync implements KeyedOpResultListener {
   private boolean isComplete;
   private volatile long lastUpdateMillis;
   private volatile boolean checksumTreeProcessed;
+  private volatile boolean segmentTransferRequested;
+  private final long startTimeMillis;
+  private final AtomicLong keysCompared;
+  private final AtomicLong keysToFetch;
+  private final AtomicLong keysFetched;
+  private final AtomicLong bytesMoved;
+  private volatile UUIDBase progressUUID;
+  private volatile MessageGroupConnection progressConnection;
+  private volatile long lastProgressReportMillis;
 
   public static boolean debug = false;
   private static final boolean verbose = true;
@@ -67,14 +84,31 @@ public class ActiveRegionSync implements KeyedOpResultListener {
   private static final int timeoutCheckMillis = 1 * 60 * 1000;
   private static final int convergenceRelativeDeadlineMillis = 35 * 60 * 1000;
   private static final long checksumTreeRequestTimeout = 1 * 60 * 1000;
-  private static final int retrievalBatchSize = 256;
   private static final byte[] emptyUserData = new byte[0];
-  private static final int maxInProcess = 2;
+  private static final int initialOutstandingSyncRequests = 2;
+  private static final int segmentTransferMinKeys = 4096;
+  private static final int progressReportIntervalMillis = 10 * 1000;
+  private static final int progressReportDeadlineMillis = 60 * 1000;
+
+  private static final int retrievalBatchSize;
+  private static final SyncRateController rateController;
 
   private static final ConcurrentMap<UUIDBase, ActiveRegionSync> activeRegionSyncs;
 
   static {
     activeRegionSyncs = new MapMaker().weakValues().makeMap();
+    retrievalBatchSize = PropertiesHelper.systemHelper.getInt(DHTConstants.syncRetrievalBatchSizeProperty,
+        DHTConstants.defaultSyncRetrievalBatchSize);
+    Log.warningf("retrievalBatchSize: %d", retrievalBatchSize);
+    rateController = new SyncRateController(initialOutstandingSyncRequests,
+        PropertiesHelper.systemHelper.getInt(DHTConstants.syncMinOutstandingRequestsProperty,
+            DHTConstants.defaultSyncMinOutstandingRequests),
+        PropertiesHelper.systemHelper.getInt(DHTConstants.syncMaxOutstandingRequestsProperty,
+            DHTConstants.defaultSyncMaxOutstandingRequests),
+        PropertiesHelper.systemHelper.getInt(DHTConstants.syncTargetLatencyMillisProperty,
+            DHTConstants.defaultSyncTargetLatencyMillis),
+        PropertiesHelper.systemHelper.getDouble(DHTConstants.syncMaxLoadPerProcessorProperty,
+            DHTConstants.defaultSyncMaxLoadPerProcessor));
   }
 
   private ActiveRegionSync(NamespaceStore nsStore, long namespace, ChecksumTreeServer checksumTreeServer,
@@ -90,6 +124,11 @@ private ActiveRegionSync(NamespaceStore nsStore, long namespace, ChecksumTreeSer
     outstandingSyncRetrievalRequests = new ConcurrentHashMap<>();
     inprocessSyncRetrievalRequests = new ConcurrentSkipListSet<>();
     lastUpdateMillis = SystemTimeUtil.skSystemTimeSource.absTimeMillis();
+    startTimeMillis = lastUpdateMillis;
+    keysCompared = new AtomicLong();
+    keysToFetch = new AtomicLong();
+    keysFetched = new AtomicLong();
+    bytesMoved = new AtomicLong();
   }
 
   public ActiveRegionSync(NamespaceStore nsStore, ChecksumTreeServer checksumTreeServer, MessageGroupBase mgBase,
@@ -111,6 +150,44 @@ public void startSync() {
     sendChecksumTreeRequest(ctr);
   }
 
+  /**
+   * Periodically report the progress of this sync to the given connection as PROGRESS messages with the
+   * given uuid.
+   */
+  public void setProgressReceiver(UUIDBase progressUUID, MessageGroupConnection progressConnection) {
+    this.progressUUID = progressUUID;
+    this.progressConnection = progressConnection;
+  }
+
+  public ConvergenceProgress getProgress() {
+    return new ConvergenceProgress(namespace, ctr.getRegion(), keysCompared.get(), keysToFetch.get(),
+        keysFetched.get(), bytesMoved.get(), SystemTimeUtil.skSystemTimeSource.absTimeMillis() - startTimeMillis);
+  }
+
+  private void reportProgress(boolean force) {
+    MessageGroupConnection connection;
+    long curTimeMillis;
+
+    connection = progressConnection;
+    if (connection == null) {
+      return;
+    }
+    curTimeMillis = SystemTimeUtil.skSystemTimeSource.absTimeMillis();
+    if (force || curTimeMillis - lastProgressReportMillis >= progressReportIntervalMillis) {
+      ProtoProgressMessageGroup pmg;
+
+      lastProgressReportMillis = curTimeMillis;
+      pmg = new ProtoProgressMessageGroup(progressUUID, namespace,
+          new Pair<>((long) outstandingSyncRetrievalRequests.size(), keysFetched.get()), getProgress(),
+          mgBase.getMyID(), progressReportDeadlineMillis);
+      try {
+        connection.sendAsynchronous(pmg.toMessageGroup(), curTimeMillis + progressReportDeadlineMillis);
+      } catch (IOException ioe) {
+        Log.logErrorWarning(ioe, "Unable to report progress");
+      }
+    }
+  }
+
   public ChecksumNode createEmptyChecksumTree(RingRegion region) {
     RegionTreeBuilder rtb;
     ChecksumNode root;
@@ -166,6 +243,18 @@ public void incomingChecksumTree(ConvergencePoint cp, ChecksumNode remoteTree, M
       checkForCompletion();
       return;
     }
+    if (!segmentTransferRequested && localTree.estimatedKeys() == 0
+        && remoteTree.estimatedKeys() >= segmentTransferMinKeys) {
+      // This replica is missing the region entirely. Have the source stream the region instead of
+      // fetching it in small batches. The source sends the checksum tree again once it is done,
+      // and that tree is matched as usual to repair any remaining differences.
+      segmentTransferRequested = true;
+      keysCompared.addAndGet(remoteTree.estimatedKeys());
+      this.keysToFetch.addAndGet(remoteTree.estimatedKeys());
+      sendSegmentTransferRequest(connection);
+      reportProgress(true);
+      return;
+    }
     try {
       matchResult = TreeMatcher.match(localTree, remoteTree);
     } catch (RuntimeException re) {
@@ -178,6 +267,9 @@ public void incomingChecksumTree(ConvergencePoint cp, ChecksumNode remoteTree, M
     if (verbose) {
       Log.warningAsyncf("matchResult %s %s", uuid, matchResult.toSummaryString());
     }
+    if (!segmentTransferRequested) {
+      keysCompared.addAndGet(Math.max(localTree.estimatedKeys(), remoteTree.estimatedKeys()));
+    }
     if (debug) {
       System.out.println(matchResult);
     }
@@ -195,6 +287,10 @@ public void incomingChecksumTree(ConvergencePoint cp, ChecksumNode remoteTree, M
       keysToFetch.add(kvc);
     }
 
+    if (!segmentTransferRequested) {
+      // after a segment transfer, the keys still to fetch were already counted when the transfer was requested
+      this.keysToFetch.addAndGet(keysToFetch.size());
+    }
     initialSRR = null;
     keysToFetchList = new ArrayList<>(keysToFetch);
     Collections.sort(keysToFetchList, KeyAndVersionChecksumSegmentNumberComparator.descendingSort);
@@ -266,8 +362,10 @@ public void incomingSyncRetrievalResponse(MessageGroup message) {
         }
         if (svp != null) {
           svpList.add(svp);
+          bytesMoved.addAndGet(entry.getValue().remaining());
         }
       }
+      keysFetched.addAndGet(svpList.size());
       if (!svpList.isEmpty()) {
         if (nsStore != null) {
           // FUTURE - support migration of user data
@@ -276,10 +374,13 @@ public void incomingSyncRetrievalResponse(MessageGroup message) {
       }
       if (srr != null && srr.outstandingKeys.isEmpty()) {
         Log.warningAsyncf("ars %s complete-srr %s", uuid, srr.getUUID());
+        rateController.responseReceived(srr.getPeer(),
+            SystemTimeUtil.skSystemTimeSource.absTimeMillis() - srr.sendTime);
         outstandingSyncRetrievalRequests.remove(srr.getUUID());
         inprocessSyncRetrievalRequests.remove(srr.getUUID());
       }
       checkForCompletion();
+      reportProgress(false);
     } catch (RuntimeException re) {
       Log.warningf("Exception in ars for ns %x", namespace);
       throw re;
@@ -301,6 +402,18 @@ private void sendChecksumTreeRequest(ChecksumTreeRequest ctr) {
     ctr.setSent();
   }
 
+  private void sendSegmentTransferRequest(MessageGroupConnection connection) {
+    MessageGroup mg;
+
+    // streamed values carry this sync's uuid
+    activeRegionSyncs.put(uuid, this);
+    mg = new ProtoSegmentTransferRequestMessageGroup(uuid, namespace, ctr.getTargetCP(), ctr.getCurCP(),
+        mgBase.getMyID(), ctr.getRegion()).toMessageGroup();
+    Log.warningAsyncf("%x requestSegmentTransfer: %s\t%s\t%s", namespace, connection.getRemoteIPAndPort(),
+        ctr.getRegion(), uuid);
+    mgBase.send(mg, connection.getRemoteIPAndPort());
+  }
+
   private static VersionConstraint checksumVersionConstraint(long max) {
     return new VersionConstraint(checksumVCMin, Long.MAX_VALUE, VersionConstraint.Mode.GREATEST);
     // FUTURE - consider max; for now; always greatest
@@ -312,6 +425,7 @@ private void sendSyncRetrievalRequest(SyncRetrievalRequest srr) {
     RetrievalOptions retrievalOptions;
 
     Log.warningAsyncf("ars %s send srr %s", uuid, srr.getUUID());
+    srr.setSent();
     inprocessSyncRetrievalRequests.add(srr.getUUID());
     retrievalOptions = OptionsHelper.newRetrievalOptions(RetrievalType.VALUE_AND_META_DATA, WaitMode.GET,
         checksumVersionConstraint(srr.dataVersion));
@@ -337,12 +451,13 @@ private void checkForCompletion() {
       inprocessSize = inprocessSyncRetrievalRequests.size();
       Log.warningAsyncf("ars progress: %s outstanding %d inprocess %d", uuid, outstandingSyncRetrievalRequests.size(),
           inprocessSize);
-      if (inprocessSize < maxInProcess) {
-        for (Map.Entry<UUIDBase, SyncRetrievalRequest> e : outstandingSyncRetrievalRequests.entrySet()) {
-          if (!inprocessSyncRetrievalRequests.contains(e.getKey())) {
-            sendSyncRetrievalRequest(e.getValue());
-            break;
-          }
+      // the rate controller limits the requests in process to the replica
+      for (Map.Entry<UUIDBase, SyncRetrievalRequest> e : outstandingSyncRetrievalRequests.entrySet()) {
+        if (inprocessSyncRetrievalRequests.size() >= rateController.getMaxOutstanding(e.getValue().getPeer())) {
+          break;
+        }
+        if (!inprocessSyncRetrievalRequests.contains(e.getKey())) {
+          sendSyncRetrievalRequest(e.getValue());
         }
       }
     }
@@ -359,6 +474,7 @@ private void setComplete() {
     } finally {
       completionLock.unlock();
     }
+    reportProgress(true);
   }
 
   public boolean waitForCompletion(long time, TimeUnit unit) {
@@ -421,12 +537,16 @@ UUIDBase getUUID() {
       return uuid;
     }
 
+    IPAndPort getPeer() {
+      return connection.getRemoteIPAndPort();
+    }
+
     void setSent() {
-      sendTime = absMillisTimeSource.absTimeMillis();
+      sendTime = SystemTimeUtil.skSystemTimeSource.absTimeMillis();
     }
 
     boolean hasTimedOut() {
-      return absMillisTimeSource.absTimeMillis() > sendTime + checksumTreeRequestTimeout;
+      return SystemTimeUtil.skSystemTimeSource.absTimeMillis() > sendTime + checksumTreeRequestTimeout;
     }
 
     @Override
@@ -5,6 +5,7 @@
 import java.util.Collection;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -12,6 +13,7 @@
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
+import com.ms.silverking.cloud.dht.common.DHTConstants;
 import com.ms.silverking.cloud.dht.common.DHTKey;
 import com.ms.silverking.cloud.dht.daemon.NodeRingMaster2;
 import com.ms.silverking.cloud.dht.daemon.storage.NamespaceStore;
@@ -23,6 +25,7 @@
 import com.ms.silverking.log.Log;
 import com.ms.silverking.numeric.LongInterval;
 import com.ms.silverking.numeric.NumUtil;
+import com.ms.silverking.util.PropertiesHelper;
 import com.ms.silverking.time.AbsMillisTimeSource;
 
 /**
@@ -47,6 +50,23 @@ public class ChecksumTreeServer {
   private static final int mapMaxSize = 2;
   private static final int mapExpirationMinutes = 30;
 
+  private static final int treeBuildParallelism;
+  private static final ForkJoinPool treeBuildPool;
+
+  static {
+    int parallelism;
+
+    parallelism = PropertiesHelper.systemHelper.getInt(DHTConstants.checksumTreeBuildParallelismProperty,
+        DHTConstants.defaultChecksumTreeBuildParallelism);
+    if (parallelism <= 0) {
+      parallelism = Runtime.getRuntime().availableProcessors();
+    }
+    treeBuildParallelism = parallelism;
+    Log.warningf("treeBuildParallelism: %d", treeBuildParallelism);
+    // shared by all namespaces; only used when more than one thread is allowed
+    treeBuildPool = treeBuildParallelism > 1 ? new ForkJoinPool(treeBuildParallelism) : null;
+  }
+
   public ChecksumTreeServer(NamespaceStore nsStore, AbsMillisTimeSource absMillisTimeSource) {
     this.ns = nsStore.getNamespace();
     this.nsStore = nsStore;
@@ -223,8 +243,17 @@ private ChecksumTreeGroup computeChecksumTreeGroup(Collection<RingRegion> region
     if (regions != null) {
       nsStore.readLockAll();
       try {
-        return TreeBuilder.build(regions, nsStore.keyAndVersionChecksumIterator(minVersion, maxVersion), entriesPerNode,
-            nsStore.getTotalKeys(), absMillisTimeSource.absTimeMillis(), minVersion, maxVersion, allowRegionNotFound);
+        if (treeBuildPool != null && regions.size() > 1) {
+          // workers do not acquire the namespace locks; the read locks held here exclude writers
+          return TreeBuilder.buildParallel(regions,
+              keyFilter -> nsStore.keyAndVersionChecksumIterator(minVersion, maxVersion, keyFilter), treeBuildPool,
+              treeBuildParallelism, entriesPerNode, nsStore.getTotalKeys(), absMillisTimeSource.absTimeMillis(),
+              minVersion, maxVersion, allowRegionNotFound);
+        } else {
+          return TreeBuilder.build(regions, nsStore.keyAndVersionChecksumIterator(minVersion, maxVersion),
+              entriesPerNode, nsStore.getTotalKeys(), absMillisTimeSource.absTimeMillis(), minVersion, maxVersion,
+              allowRegionNotFound);
+        }
       } finally {
         nsStore.readUnlockAll();
       }
@@ -0,0 +1,130 @@
+package com.ms.silverking.cloud.dht.daemon.storage.convergence;
+
+import java.nio.ByteBuffer;
+
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.numeric.NumConversion;
+
+/**
+ * Snapshot of the progress of convergence for a namespace region, or - when aggregated - for several regions.
+ * Reported by the node that is synchronizing the region, and aggregated by the ring master.
+ */
+public class ConvergenceProgress {
+  private final long ns;
+  private final RingRegion region;
+  private final long keysCompared;
+  private final long keysToFetch;
+  private final long keysFetched;
+  private final long bytesMoved;
+  private final long elapsedMillis;
+
+  public static final int serializedSizeBytes = NumConversion.BYTES_PER_LONG * 7;
+
+  private static final long unknownETA = -1;
+
+  public ConvergenceProgress(long ns, RingRegion region, long keysCompared, long keysToFetch, long keysFetched,
+      long bytesMoved, long elapsedMillis) {
+    this.ns = ns;
+    this.region = region;
+    this.keysCompared = keysCompared;
+    this.keysToFetch = keysToFetch;
+    this.keysFetched = keysFetched;
+    this.bytesMoved = bytesMoved;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public long getNamespace() {
+    return ns;
+  }
+
+  /**
+   * @return the region, or null if this progress is aggregated over several regions
+   */
+  public RingRegion getRegion() {
+    return region;
+  }
+
+  public long getKeysCompared() {
+    return keysCompared;
+  }
+
+  public long getKeysToFetch() {
+    return keysToFetch;
+  }
+
+  public long getKeysFetched() {
+    return keysFetched;
+  }
+
+  public long getBytesMoved() {
+    return bytesMoved;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  public double getBytesPerSecond() {
+    return elapsedMillis > 0 ? (double) bytesMoved * 1000.0 / (double) elapsedMillis : 0.0;
+  }
+
+  /**
+   * Estimate the time remaining from the rate at which keys have been fetched so far
+   *
+   * @return estimated millis remaining, or -1 if no estimate is possible yet
+   */
+  public long getETAMillis() {
+    long keysRemaining;
+
+    keysRemaining = Math.max(keysToFetch - keysFetched, 0);
+    if (keysRemaining == 0) {
+      return 0;
+    } else if (keysFetched == 0 || elapsedMillis <= 0) {
+      return unknownETA;
+    } else {
+      return (long) ((double) keysRemaining * (double) elapsedMillis / (double) keysFetched);
+    }
+  }
+
+  /**
+   * Combine with progress made concurrently in another region. Counts are summed; elapsed time is the
+   * longer of the two.
+   */
+  public ConvergenceProgress add(ConvergenceProgress o) {
+    return new ConvergenceProgress(ns, region != null && region.equals(o.region) ? region : null,
+        keysCompared + o.keysCompared, keysToFetch + o.keysToFetch, keysFetched + o.keysFetched,
+        bytesMoved + o.bytesMoved, Math.max(elapsedMillis, o.elapsedMillis));
+  }
+
+  public void writeToBuffer(ByteBuffer buf) {
+    buf.putLong(region.getStart());
+    buf.putLong(region.getEnd());
+    buf.putLong(keysCompared);
+    buf.putLong(keysToFetch);
+    buf.putLong(keysFetched);
+    buf.putLong(bytesMoved);
+    buf.putLong(elapsedMillis);
+  }
+
+  public static ConvergenceProgress readFromBuffer(long ns, ByteBuffer buf, int offset) {
+    RingRegion region;
+
+    region = new RingRegion(buf.getLong(offset), buf.getLong(offset + NumConversion.BYTES_PER_LONG));
+    offset += 2 * NumConversion.BYTES_PER_LONG;
+    return new ConvergenceProgress(ns, region, buf.getLong(offset),
+        buf.getLong(offset + NumConversion.BYTES_PER_LONG), buf.getLong(offset + 2 * NumConversion.BYTES_PER_LONG),
+        buf.getLong(offset + 3 * NumConversion.BYTES_PER_LONG),
+        buf.getLong(offset + 4 * NumConversion.BYTES_PER_LONG));
+  }
+
+  @Override
+  public String toString() {
+    long eta;
+
+    eta = getETAMillis();
+    return String.format("%x\t%s\tcompared %d\ttoFetch %d\tfetched %d\tbytes %d\t%.3f MB/s\telapsed %d s\teta %s",
+        ns, region != null ? region : "*", keysCompared, keysToFetch, keysFetched, bytesMoved,
+        getBytesPerSecond() / (1024.0 * 1024.0), elapsedMillis / 1000,
+        eta == unknownETA ? "unknown" : Long.toString(eta / 1000) + " s");
+  }
+}
@@ -0,0 +1,117 @@
+package com.ms.silverking.cloud.dht.daemon.storage.convergence;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.DoubleSupplier;
+
+import com.ms.silverking.net.IPAndPort;
+
+/**
+ * Adapts the number of sync retrieval requests that may be outstanding to each peer during convergence.
+ * <p>
+ * The limit for each peer is adjusted by additive increase and multiplicative decrease. A response
+ * that arrives within the target latency while the local foreground load is acceptable grows the
+ * limit by one request per limit's worth of responses. A slow response, or a high foreground load,
+ * halves it. After a decrease, further decreases are ignored until a limit's worth of responses has
+ * arrived, so that responses to requests sent before the decrease do not compound it.
+ * <p>
+ * Foreground load is measured as the system load average per processor.
+ */
+public class SyncRateController {
+  private final int initialOutstanding;
+  private final int minOutstanding;
+  private final int maxOutstanding;
+  private final long targetLatencyMillis;
+  private final double maxLoad;
+  private final DoubleSupplier loadSupplier;
+  private final ConcurrentMap<IPAndPort, Window> windows;
+
+  public SyncRateController(int initialOutstanding, int minOutstanding, int maxOutstanding, long targetLatencyMillis,
+      double maxLoad, DoubleSupplier loadSupplier) {
+    if (minOutstanding < 1 || maxOutstanding < minOutstanding) {
+      throw new IllegalArgumentException("Invalid outstanding limits: " + minOutstanding + " " + maxOutstanding);
+    }
+    this.initialOutstanding = Math.max(Math.min(initialOutstanding, maxOutstanding), minOutstanding);
+    this.minOutstanding = minOutstanding;
+    this.maxOutstanding = maxOutstanding;
+    this.targetLatencyMillis = targetLatencyMillis;
+    this.maxLoad = maxLoad;
+    this.loadSupplier = loadSupplier;
+    windows = new ConcurrentHashMap<>();
+  }
+
+  public SyncRateController(int initialOutstanding, int minOutstanding, int maxOutstanding, long targetLatencyMillis,
+      double maxLoad) {
+    this(initialOutstanding, minOutstanding, maxOutstanding, targetLatencyMillis, maxLoad,
+        SyncRateController::systemLoadPerProcessor);
+  }
+
+  private static double systemLoadPerProcessor() {
+    double load;
+
+    load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+    // negative when unavailable on this platform
+    return load < 0.0 ? 0.0 : load / Runtime.getRuntime().availableProcessors();
+  }
+
+  private Window getWindow(IPAndPort peer) {
+    Window window;
+
+    window = windows.get(peer);
+    if (window == null) {
+      Window prev;
+
+      window = new Window(initialOutstanding);
+      prev = windows.putIfAbsent(peer, window);
+      if (prev != null) {
+        window = prev;
+      }
+    }
+    return window;
+  }
+
+  /**
+   * @return the number of sync retrieval requests that may currently be outstanding to the given peer
+   */
+  public int getMaxOutstanding(IPAndPort peer) {
+    return getWindow(peer).getLimit();
+  }
+
+  /**
+   * Record the completion of a sync retrieval request to the given peer
+   */
+  public void responseReceived(IPAndPort peer, long latencyMillis) {
+    boolean congested;
+
+    congested = latencyMillis > targetLatencyMillis || loadSupplier.getAsDouble() > maxLoad;
+    getWindow(peer).update(congested);
+  }
+
+  private class Window {
+    private double size;
+    private int responsesUntilDecreaseAllowed;
+
+    Window(int initialSize) {
+      size = initialSize;
+    }
+
+    synchronized int getLimit() {
+      return (int) size;
+    }
+
+    synchronized void update(boolean congested) {
+      if (responsesUntilDecreaseAllowed > 0) {
+        --responsesUntilDecreaseAllowed;
+      }
+      if (congested) {
+        if (responsesUntilDecreaseAllowed == 0) {
+          size = Math.max(size / 2.0, minOutstanding);
+          responsesUntilDecreaseAllowed = (int) size;
+        }
+      } else {
+        size = Math.min(size + 1.0 / size, maxOutstanding);
+      }
+    }
+  }
+}
@@ -1,10 +1,17 @@
 package com.ms.silverking.cloud.dht.daemon.storage.convergence;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import com.ms.silverking.cloud.dht.common.DHTKey;
 import com.ms.silverking.cloud.dht.common.KeyUtil;
@@ -55,6 +62,22 @@ public static ChecksumTreeGroup build(Collection<RingRegion> regions, Iterator<K
         new TreeBuilder(regions, keyIterator, entriesPerNode, estimatedKeys).build(allowRegionNotFound));
   }
 
+  /**
+   * As build(), but builds the region trees in parallel on the given pool. Regions are divided into at
+   * most parallelism groups of roughly equal ringspace; each group is built by a single task. Each task
+   * obtains its own iterator from iteratorFactory, passing a filter that accepts only the keys of the
+   * task's regions, so that the keys of other regions can be skipped before their checksums are computed.
+   * The per-group results are merged into a single ChecksumTreeGroup.
+   */
+  public static ChecksumTreeGroup buildParallel(Collection<RingRegion> regions,
+      Function<Predicate<DHTKey>, Iterator<KeyAndVersionChecksum>> iteratorFactory, ForkJoinPool pool,
+      int parallelism, int entriesPerNode, long estimatedKeys, long creationTimeMillis, long minVersion,
+      long maxVersion, boolean allowRegionNotFound) {
+    return new ChecksumTreeGroup(creationTimeMillis, minVersion, maxVersion,
+        new TreeBuilder(regions, null, entriesPerNode, estimatedKeys).buildParallel(iteratorFactory, pool,
+            parallelism, allowRegionNotFound));
+  }
+
   private static int estimateRegionKeys(RingRegion region, long estimatedKeys) {
     return (int) (region.getRingspaceFraction() * (double) estimatedKeys);
   }
@@ -105,6 +128,76 @@ private NavigableMap<Long, RegionTreeBuilder> build(boolean allowRegionNotFound)
     return rtBuilders;
   }
 
+  private NavigableMap<Long, RegionTreeBuilder> buildParallel(
+      Function<Predicate<DHTKey>, Iterator<KeyAndVersionChecksum>> iteratorFactory, ForkJoinPool pool,
+      int parallelism, boolean allowRegionNotFound) {
+    List<RegionTreeBuilder> sortedBuilders;
+    Map<RegionTreeBuilder, Integer> builderGroups;
+    double[] groupSizes;
+    int numGroups;
+    List<ForkJoinTask<?>> tasks;
+
+    numGroups = Math.max(Math.min(parallelism, rtBuilders.size()), 1);
+    // assign the largest regions first, each to the group with the least ringspace so far
+    sortedBuilders = new ArrayList<>(rtBuilders.values());
+    sortedBuilders.sort((b1, b2) -> Double.compare(b2.getRegion().getRingspaceFraction(),
+        b1.getRegion().getRingspaceFraction()));
+    builderGroups = new IdentityHashMap<>();
+    groupSizes = new double[numGroups];
+    for (RegionTreeBuilder rtb : sortedBuilders) {
+      int minGroup;
+
+      minGroup = 0;
+      for (int i = 1; i < numGroups; i++) {
+        if (groupSizes[i] < groupSizes[minGroup]) {
+          minGroup = i;
+        }
+      }
+      builderGroups.put(rtb, minGroup);
+      groupSizes[minGroup] += rtb.getRegion().getRingspaceFraction();
+    }
+
+    tasks = new ArrayList<>(numGroups);
+    for (int i = 0; i < numGroups; i++) {
+      int group;
+
+      group = i;
+      tasks.add(pool.submit(() -> buildGroup(group, builderGroups, iteratorFactory, allowRegionNotFound)));
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+    return rtBuilders;
+  }
+
+  private void buildGroup(int group, Map<RegionTreeBuilder, Integer> builderGroups,
+      Function<Predicate<DHTKey>, Iterator<KeyAndVersionChecksum>> iteratorFactory, boolean allowRegionNotFound) {
+    Iterator<KeyAndVersionChecksum> groupIterator;
+
+    // keys outside of all regions are passed to group 0 so that getBuilderForKey() can reject them
+    groupIterator = iteratorFactory.apply(key -> {
+      RegionTreeBuilder rtb;
+
+      rtb = getBuilderForKey(key, true);
+      return rtb != null ? builderGroups.get(rtb) == group : group == 0;
+    });
+    while (groupIterator.hasNext()) {
+      KeyAndVersionChecksum kvc;
+      RegionTreeBuilder rtb;
+
+      kvc = groupIterator.next();
+      rtb = getBuilderForKey(kvc.getKey(), allowRegionNotFound);
+      if (rtb != null) {
+        rtb.addChecksum(kvc);
+      }
+    }
+    for (Map.Entry<RegionTreeBuilder, Integer> entry : builderGroups.entrySet()) {
+      if (entry.getValue() == group) {
+        entry.getKey().freeze();
+      }
+    }
+  }
+
   private void freezeBuilders() {
     for (RegionTreeBuilder rtb : rtBuilders.values()) {
       rtb.freeze();
@@ -190,7 +190,18 @@ public void handleProgress(MessageGroup message, MessageGroupConnection connecti
     Pair<Long, Long> progress;
 
     progress = ProtoProgressMessageGroup.progress(message);
-    syncController.updateProgress(message.getUUID(), progress);
+    syncController.updateProgress(message.getUUID(), progress, ProtoProgressMessageGroup.detail(message));
+  }
+
+  public String getProgressReport() {
+    SyncController _syncController;
+
+    _syncController = syncController;
+    if (_syncController != null) {
+      return _syncController.getProgressReport();
+    } else {
+      return "<init>";
+    }
   }
 
   //////////////////////////////////////////////////////////////////
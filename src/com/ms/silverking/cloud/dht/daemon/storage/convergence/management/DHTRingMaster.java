@@ -900,6 +900,24 @@ public RequestStatus getStatus(UUIDBase uuid) {
     }
   }
 
+  /**
+   * Return a report of the progress of the given convergence, or of the current convergence if uuid is null.
+   */
+  public String getConvergenceProgress(UUIDBase uuid) {
+    ConvergenceControllerBase ccc;
+
+    if (uuid == null) {
+      ccc = targetConvergenceController;
+    } else {
+      ccc = convergenceControllers.get(uuid);
+    }
+    if (ccc == null) {
+      return null;
+    } else {
+      return ccc.getProgressReport();
+    }
+  }
+
   /////////////////////////////////////////////////////////////
 
   public void reap() {
@@ -40,6 +40,8 @@ public UUIDBase syncData(Triple<String, Long, Long> source, Triple<String, Long,
 
   public UUIDBase getCurrentConvergenceID() throws RemoteException;
 
+  public String getConvergenceProgress(UUIDBase uuid) throws RemoteException;
+
   public UUIDBase recoverData() throws RemoteException;
 
   public void requestChecksumTree(Triple<Long, Long, Long> nsAndRegion, Triple<String, Long, Long> source,
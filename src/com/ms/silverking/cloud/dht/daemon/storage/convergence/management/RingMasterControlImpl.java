@@ -96,4 +96,9 @@ public void reap() {
   public UUIDBase getCurrentConvergenceID() {
     return rm.getCurrentConvergenceID();
   }
+
+  @Override
+  public String getConvergenceProgress(UUIDBase uuid) {
+    return rm.getConvergenceProgress(uuid);
+  }
 }
@@ -4,6 +4,8 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -17,6 +19,7 @@
 
 import com.ms.silverking.cloud.dht.common.OpResult;
 import com.ms.silverking.cloud.dht.daemon.storage.convergence.ConvergencePoint;
+import com.ms.silverking.cloud.dht.daemon.storage.convergence.ConvergenceProgress;
 import com.ms.silverking.cloud.dht.net.MessageGroup;
 import com.ms.silverking.cloud.dht.net.MessageGroupBase;
 import com.ms.silverking.cloud.dht.net.ProtoChecksumTreeRequestMessageGroup;
@@ -43,6 +46,7 @@ class SyncController {
   private final ConcurrentMap<IPAndPort, Set<ReplicaSyncRequest>> ownerToActiveSyncs;
   private final ConcurrentMap<UUIDBase, ReplicaSyncRequest> activeSyncs;
   private final ConcurrentMap<UUIDBase, Integer> outstandingSyncRetrievalRequests;
+  private final ConcurrentMap<UUIDBase, ConvergenceProgress> syncProgress;
   private final Set<UUIDBase> completeActions;
   private final AtomicInteger completeActions_size;
   private final AtomicInteger recentCompletions;
@@ -100,6 +104,7 @@ class SyncController {
     ownerToActiveSyncs = new ConcurrentHashMap<>();
     activeSyncs = new ConcurrentHashMap<>();
     outstandingSyncRetrievalRequests = new ConcurrentHashMap<>();
+    syncProgress = new ConcurrentHashMap<>();
     ineligibleActions = new ConcurrentSkipListSet<>();
     eligibleSyncs = new ConcurrentSkipListSet<>();
     lock = new ReentrantLock();
@@ -217,6 +222,7 @@ private void setInactive(ReplicaSyncRequest r) {
       checkDownstreamDependencies(r);
     }
     outstandingSyncRetrievalRequests.remove(r.getUUID());
+    syncProgress.remove(r.getUUID());
   }
 
   private void checkDownstreamDependencies(Action a) {
@@ -510,6 +516,51 @@ public String getStatus() {
   }
 
   public void updateProgress(UUIDBase uuid, Pair<Long, Long> progress) {
-    outstandingSyncRetrievalRequests.put(uuid, progress.getV1().intValue());
+    updateProgress(uuid, progress, null);
+  }
+
+  public void updateProgress(UUIDBase uuid, Pair<Long, Long> progress, ConvergenceProgress detail) {
+    if (activeSyncs.containsKey(uuid)) {
+      outstandingSyncRetrievalRequests.put(uuid, progress.getV1().intValue());
+      if (detail != null) {
+        syncProgress.put(uuid, detail);
+      }
+    }
+  }
+
+  /**
+   * Report the progress of the active syncs that have reported progress: the total, a line per namespace, and
+   * a line per region. Completed syncs are not included.
+   */
+  public String getProgressReport() {
+    StringBuilder sb;
+    SortedMap<Long, ConvergenceProgress> nsProgress;
+    ConvergenceProgress total;
+
+    nsProgress = new TreeMap<>();
+    total = null;
+    for (ConvergenceProgress p : syncProgress.values()) {
+      ConvergenceProgress prev;
+
+      prev = nsProgress.get(p.getNamespace());
+      nsProgress.put(p.getNamespace(), prev == null ? p : prev.add(p));
+      total = total == null ? p : total.add(p);
+    }
+    sb = new StringBuilder();
+    sb.append(String.format("%s => %s\tsyncs %d\n", curCP, targetCP, syncProgress.size()));
+    if (total != null) {
+      sb.append(String.format("total\tcompared %d\ttoFetch %d\tfetched %d\tbytes %d\teta %d s\n",
+          total.getKeysCompared(), total.getKeysToFetch(), total.getKeysFetched(), total.getBytesMoved(),
+          total.getETAMillis() / 1000));
+    }
+    sb.append("namespaces\n");
+    for (ConvergenceProgress p : nsProgress.values()) {
+      sb.append(p).append('\n');
+    }
+    sb.append("regions\n");
+    for (ConvergenceProgress p : syncProgress.values()) {
+      sb.append(p).append('\n');
+    }
+    return sb.toString();
   }
 }
@@ -0,0 +1,170 @@
+package com.ms.silverking.cloud.dht.daemon.storage.convergence.test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.cloud.dht.daemon.storage.KeyAndVersionChecksum;
+import com.ms.silverking.cloud.dht.daemon.storage.convergence.ChecksumTreeGroup;
+import com.ms.silverking.cloud.dht.daemon.storage.convergence.TreeBuilder;
+import com.ms.silverking.cloud.dht.daemon.storage.convergence.TreeMatcher;
+import com.ms.silverking.cloud.ring.LongRingspace;
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.time.SimpleStopwatch;
+import com.ms.silverking.time.Stopwatch;
+
+/**
+ * Compares sequential and parallel checksum tree construction over a synthetic namespace.
+ *
+ * The synthetic namespace holds random keys. Computing the checksum of a key performs checksumWork rounds
+ * of mixing, standing in for the segment read that NamespaceStore performs to find a key's latest version.
+ */
+public class TreeBuildBenchmark {
+  private final DHTKey[] keys;
+  private final List<RingRegion> regions;
+  private final int checksumWork;
+
+  private static final int entriesPerNode = 65536;
+  private static final long minVersion = Long.MIN_VALUE;
+  private static final long maxVersion = Long.MAX_VALUE;
+
+  public TreeBuildBenchmark(int numKeys, int numRegions, int checksumWork) {
+    long regionSize;
+    long start;
+
+    keys = new DHTKey[numKeys];
+    for (int i = 0; i < numKeys; i++) {
+      keys[i] = SimpleKey.randomKey();
+    }
+    regions = new ArrayList<>(numRegions);
+    regionSize = LongRingspace.size / numRegions;
+    start = LongRingspace.start;
+    for (int i = 0; i < numRegions; i++) {
+      long end;
+
+      end = i < numRegions - 1 ? start + regionSize - 1 : LongRingspace.end;
+      regions.add(new RingRegion(start, end));
+      start = end + 1;
+    }
+    this.checksumWork = checksumWork;
+  }
+
+  private long checksum(DHTKey key) {
+    long checksum;
+
+    checksum = key.getMSL() ^ key.getLSL();
+    for (int i = 0; i < checksumWork; i++) {
+      checksum ^= checksum >>> 33;
+      checksum *= 0xff51afd7ed558ccdL;
+    }
+    return checksum;
+  }
+
+  private Iterator<KeyAndVersionChecksum> iterator(Predicate<DHTKey> keyFilter) {
+    return new SyntheticKeyIterator(keyFilter);
+  }
+
+  public ChecksumTreeGroup buildSequential() {
+    return TreeBuilder.build(regions, iterator(key -> true), entriesPerNode, keys.length, 0, minVersion, maxVersion,
+        false);
+  }
+
+  public ChecksumTreeGroup buildParallel(ForkJoinPool pool, int parallelism) {
+    return TreeBuilder.buildParallel(regions, this::iterator, pool, parallelism, entriesPerNode, keys.length, 0,
+        minVersion, maxVersion, false);
+  }
+
+  private boolean matches(ChecksumTreeGroup ctg0, ChecksumTreeGroup ctg1) {
+    for (RingRegion region : regions) {
+      if (TreeMatcher.match(ctg0.getTreeRoot(region.getStart()), ctg1.getTreeRoot(region.getStart())).isNonEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void runBenchmark(int parallelism, int reps) {
+    ForkJoinPool pool;
+    ChecksumTreeGroup sequentialCTG;
+
+    pool = new ForkJoinPool(parallelism);
+    sequentialCTG = buildSequential();
+    System.out.printf("parallel result matches sequential: %s\n", matches(sequentialCTG,
+        buildParallel(pool, parallelism)));
+    for (int i = 0; i < reps; i++) {
+      Stopwatch sw;
+      double sequentialSeconds;
+      double parallelSeconds;
+
+      sw = new SimpleStopwatch();
+      buildSequential();
+      sw.stop();
+      sequentialSeconds = sw.getElapsedSeconds();
+
+      sw = new SimpleStopwatch();
+      buildParallel(pool, parallelism);
+      sw.stop();
+      parallelSeconds = sw.getElapsedSeconds();
+
+      System.out.printf("keys %d regions %d parallelism %d\tsequential %f s\tparallel %f s\tspeedup %.2f\n",
+          keys.length, regions.size(), parallelism, sequentialSeconds, parallelSeconds,
+          sequentialSeconds / parallelSeconds);
+    }
+    pool.shutdown();
+  }
+
+  private class SyntheticKeyIterator implements Iterator<KeyAndVersionChecksum> {
+    private final Predicate<DHTKey> keyFilter;
+    private int index;
+
+    SyntheticKeyIterator(Predicate<DHTKey> keyFilter) {
+      this.keyFilter = keyFilter;
+      moveToNext();
+    }
+
+    private void moveToNext() {
+      while (index < keys.length && !keyFilter.test(keys[index])) {
+        index++;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return index < keys.length;
+    }
+
+    @Override
+    public KeyAndVersionChecksum next() {
+      DHTKey key;
+
+      if (index >= keys.length) {
+        throw new NoSuchElementException();
+      }
+      key = keys[index++];
+      moveToNext();
+      return new KeyAndVersionChecksum(key, checksum(key), 0);
+    }
+  }
+
+  public static void main(String[] args) {
+    try {
+      if (args.length != 5) {
+        System.out.println("args: <numKeys> <numRegions> <checksumWork> <parallelism> <reps>");
+        return;
+      } else {
+        TreeBuildBenchmark benchmark;
+
+        benchmark = new TreeBuildBenchmark(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+            Integer.parseInt(args[2]));
+        benchmark.runBenchmark(Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package com.ms.silverking.cloud.dht.daemon.storage.management;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
@@ -16,4 +17,13 @@ public interface ManagedNamespaceStore {
   List<Integer> listKeySegments(DHTKey key, long beforeCreationTimeNanosInclusive) throws IOException;
 
   void rollOverHeadSegment(boolean force);
+
+  /**
+   * Validate the numbered segment files in the given directory, which were written by a BulkSegmentWriter,
+   * and move them into this namespace. Either all segments are adopted or, if validation fails, none are.
+   *
+   * @param stagingDir directory on the same file system as the namespace
+   * @return the number of segments adopted
+   */
+  int adoptSegments(File stagingDir) throws IOException;
 }
@@ -1,10 +1,9 @@
 package com.ms.silverking.cloud.dht.daemon.storage.protocol;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.ms.silverking.cloud.dht.collection.DHTKeyObjectMap;
 import com.ms.silverking.cloud.dht.common.DHTKey;
 import com.ms.silverking.cloud.dht.common.OpResult;
 import com.ms.silverking.cloud.dht.ForwardingMode;
@@ -16,7 +15,7 @@
 public abstract class BaseOperation<S> {
   // entryStateMap is only written to during creation
   // Hence, no concurrency control around reads
-  private final Map<DHTKey, S> entryStateMap;
+  private final DHTKeyObjectMap<S> entryStateMap;
   private final long deadline;
   private final long minInternalAbsTimeoutMillis;
   protected final int numEntries;
@@ -29,8 +28,6 @@
 
   protected static final boolean debug = false;
 
-  private static final int capacityFactor = 2;
-
   protected static AbsMillisTimeSource absMillisTimeSource;
 
   public static void setAbsMillisTimeSource(AbsMillisTimeSource _absMillisTimeSource) {
@@ -43,7 +40,7 @@ public BaseOperation(long deadline, OperationContainer operationContainer, Forwa
     this.operationContainer = operationContainer;
     this.forwardingMode = forwardingMode;
     this.minInternalAbsTimeoutMillis = absMillisTimeSource.absTimeMillis() + minInternalRelTimeoutMillis;
-    entryStateMap = new HashMap<>(numEntries * capacityFactor);
+    entryStateMap = new DHTKeyObjectMap<>(numEntries);
     this.numEntries = numEntries;
     completeEntries = new AtomicInteger();
     wholeOpResult = OpResult.INCOMPLETE;
@@ -72,7 +69,7 @@ public void setEntryState(DHTKey key, S state) {
   }
 
   protected Collection<DHTKey> opKeys() {
-    return entryStateMap.keySet();
+    return entryStateMap.keys();
   }
 
   public OpResult getOpResult() {
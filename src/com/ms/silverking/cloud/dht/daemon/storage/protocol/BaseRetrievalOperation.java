@@ -110,7 +110,10 @@ public Set<IPAndPort> checkForInternalTimeouts(long curTimeMillis, RetrievalVirt
           S entryState;
 
           entryState = getEntryState(key);
-          if (entryState.hasTimedOut(curTimeMillis)) {
+          // Null only if this check races the creation of this operation: a lookup that overlaps a
+          // resize of the entry state map may not find a key that is being copied. (Unlike HashMap, the
+          // map does not throw ConcurrentModificationException.) The entry is checked again next time.
+          if (entryState != null && entryState.hasTimedOut(curTimeMillis)) {
             IPAndPort replica;
 
             replica = entryState.currentReplica();
@@ -18,13 +18,19 @@
 import com.ms.silverking.cloud.config.HostGroupTable;
 import com.ms.silverking.cloud.dht.ConsistencyProtocol;
 import com.ms.silverking.cloud.dht.NamespaceOptions;
+import com.ms.silverking.cloud.dht.SessionOptions;
 import com.ms.silverking.cloud.dht.client.ClientException;
+import com.ms.silverking.cloud.dht.client.DHTClient;
+import com.ms.silverking.cloud.dht.client.DHTSession;
+import com.ms.silverking.cloud.dht.client.Namespace;
+import com.ms.silverking.cloud.dht.client.SynchronousNamespacePerspective;
 import com.ms.silverking.cloud.dht.common.DHTConstants;
 import com.ms.silverking.cloud.dht.common.NamespaceOptionsClientZKImpl;
 import com.ms.silverking.cloud.dht.common.NamespaceOptionsMode;
 import com.ms.silverking.cloud.dht.daemon.DaemonState;
 import com.ms.silverking.cloud.dht.daemon.ReplicaNaiveIPPrioritizer;
 import com.ms.silverking.cloud.dht.daemon.RingHealth;
+import com.ms.silverking.cloud.dht.daemon.storage.NamespaceMetrics;
 import com.ms.silverking.cloud.dht.daemon.storage.ReapPolicy;
 import com.ms.silverking.cloud.dht.gridconfig.SKGridConfiguration;
 import com.ms.silverking.cloud.dht.meta.ClassVars;
@@ -849,6 +855,9 @@ private boolean execAdminCommandGroup(SKAdminCommand[] commands)
         case GenerateNodeStartCmd:
           _result = executeGenerateNodeStartCmd(options);
           break;
+        case GetNamespaceLatencies:
+          _result = displayNamespaceLatencies();
+          break;
         default:
           throw new RuntimeException("panic");
         }
@@ -990,6 +999,48 @@ private RingHealth getRingHealth() throws KeeperException, IOException {
     return ringHealthZK.readHealth();
   }
 
+  /**
+   * Display the latencies of the last complete metrics interval for each of the specified namespaces on
+   * each active daemon (or on each specified target daemon).
+   */
+  private boolean displayNamespaceLatencies() throws KeeperException, IOException, ClientException {
+    Set<String> namespaces;
+    Set<String> targetServers;
+    DHTClient client;
+
+    if (options.namespaces == null) {
+      Log.warning("GetNamespaceLatencies requires -ns");
+      return false;
+    }
+    namespaces = CollectionUtil.parseSet(options.namespaces, ",");
+    targetServers = options.targets != null ? CollectionUtil.parseSet(options.targets, ",") : null;
+    client = new DHTClient();
+    for (IPAndPort daemon : suspectsZK.readActiveNodesFromZK()) {
+      if (targetServers == null || targetServers.contains(daemon.getIPAsString())) {
+        DHTSession session;
+
+        session = client.openSession(new SessionOptions(gc.getClientDHTConfiguration(), daemon.getIPAsString()));
+        try {
+          for (String namespace : namespaces) {
+            SynchronousNamespacePerspective<String, String> syncNSP;
+            Map<String, String> latencies;
+
+            syncNSP = session.openSyncNamespacePerspective(Namespace.namespaceMetricsBaseName + namespace,
+                String.class, String.class);
+            latencies = syncNSP.get(NamespaceMetrics.getLatencyMetricNames());
+            for (NamespaceMetrics.LatencyType type : NamespaceMetrics.LatencyType.values()) {
+              System.out.printf("%s\t%s\t%s\t%s\n", daemon.getIPAsString(), namespace, type,
+                  latencies.get(type.getMetricName()));
+            }
+          }
+        } finally {
+          session.close();
+        }
+      }
+    }
+    return true;
+  }
+
   private boolean execCreateSKFSns() throws IOException, ClientException, KeeperException {
     SKFSNamespaceCreator nsCreator;
     String preferredServer;
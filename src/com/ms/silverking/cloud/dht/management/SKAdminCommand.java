@@ -4,7 +4,7 @@ public enum SKAdminCommand {
   StartNodes, StopNodes, ClearData, LockInstance, UnlockInstance, CheckSKFS, StartSKFS, StopSKFS, CreateSKFSns,
   ClearInstanceExclusions, SetInstanceExclusions, GetInstanceExclusions, AddToInstanceExclusions,
   RemoveFromInstanceExclusions, ClearInstanceExclusionsData, GetActiveDaemons, EnsureNoActiveDaemons, SetRingHealth,
-  GetRingHealth, GenerateNodeStartCmd;
+  GetRingHealth, GenerateNodeStartCmd, GetNamespaceLatencies;
 
   public static final String commandDelimiter = ",";
 
@@ -31,6 +31,7 @@ public boolean isClusterCommand() {
     case SetRingHealth:
     case GetRingHealth:
     case GenerateNodeStartCmd:
+    case GetNamespaceLatencies:
       return false;
     default:
       throw new RuntimeException("panic");
@@ -175,6 +175,9 @@ public ReapPolicy getReapPolicy() {
   @Option(name = "-ps", usage = "PreferredServer", required = false)
   public String preferredServer;
 
+  @Option(name = "-ns", usage = "Namespace(s)", required = false)
+  public String namespaces;
+
   @Option(name = "-skfsEntryTimeoutSecs", usage = "skfsEntryTimeoutSecs", required = false)
   public int skfsEntryTimeoutSecs = skfsTimeoutNotSet;
 
@@ -472,6 +472,17 @@ private void doSyncData(String[] args) throws RemoteException {
     }
   }
 
+  private void doConvergenceProgress(UUIDBase uuid) throws RemoteException {
+    String progress;
+
+    progress = rmc.getConvergenceProgress(uuid);
+    if (progress == null) {
+      out.printf("No current convergence\n");
+    } else {
+      out.print(progress);
+    }
+  }
+
   private void doRecoverData(String[] args) throws RemoteException {
     if (args.length != 0) {
       out.println("Too many arguments to recover data. 0 expected.");
@@ -577,6 +588,9 @@ private void doCommand(SKAdminShellAction action, String[] args)
     case RequestChecksumTree:
       doRequestChecksumTree(args);
       break;
+    case ConvergenceProgress:
+      doConvergenceProgress(requestUUID(args));
+      break;
     case Display:
       doDisplay(args);
       break;
@@ -5,7 +5,8 @@
 
 enum SKAdminShellAction {
   Mode, SyncData("sd", false), Target, Display, Help(false), Quit, ToggleVerbose("v", false), WaitForConvergence("w",
-      false), TestTarget("tt", false), RecoverData("rd", false), RequestChecksumTree("rct", false);
+      false), TestTarget("tt", false), RecoverData("rd", false), RequestChecksumTree("rct", false),
+      ConvergenceProgress("cp", false);
 
   public final String shortFormUpperCase;
   public final String shortFormLowerCase;
@@ -74,6 +74,7 @@ public MessageGroup(MessageType messageType, int options, UUIDBase uuid, long co
     switch (messageType) {
     case PUT:
     case PUT_TRACE:
+    case PUT_ATOMIC:
     case RETRIEVE:
     case RETRIEVE_TRACE:
     case RETRIEVE_RESPONSE:
@@ -95,6 +96,10 @@ public MessageGroup(MessageType messageType, int options, UUIDBase uuid, long co
     case SYNC_REQUEST:
     case CHECKSUM_TREE:
     case CHECKSUM_TREE_REQUEST:
+    case SEGMENT_TRANSFER_REQUEST:
+    case KEY_SCAN:
+    case KEY_SCAN_RESPONSE:
+    case BATCH:
     case OP_RESPONSE:
     case ERROR_RESPONSE:
     case NAMESPACE_REQUEST:
@@ -260,6 +265,13 @@ public Iterable<MessageGroupKeyEntry> getKeyIterator() {
     return new KeyIterator();
   }
 
+  /**
+   * Return an allocation-free cursor over the keys of this message
+   */
+  public MessageGroupKeyCursor getKeyCursor() {
+    return new MessageGroupKeyCursor(buffers[keyBufferIndex], keyBufferMetaDataLength);
+  }
+
   class KeyIterator implements Iterator<MessageGroupKeyEntry>, Iterable<MessageGroupKeyEntry> {
     private final ByteBuffer keyBuffer;
     private int curKey;
@@ -4,6 +4,7 @@
 import java.net.ConnectException;
 import java.net.UnknownHostException;
 
+import com.ms.silverking.cloud.dht.ConnectionAssignmentPolicy;
 import com.ms.silverking.cloud.dht.SessionPolicyOnDisconnect;
 import com.ms.silverking.cloud.dht.ValueCreator;
 import com.ms.silverking.cloud.dht.common.SimpleValueCreator;
@@ -32,6 +33,7 @@ public class MessageGroupBase {
   private final MessageGroupReceiver messageGroupReceiver; // TEMP
   private final IPAliasMap aliasMap;
   private final boolean isClient;
+  private final ConnectionAssignmentPolicy connectionAssignmentPolicy;
 
   private static final boolean debug = false;
 
@@ -40,14 +42,17 @@ private MessageGroupBase(int interfacePort, IPAndPort myIPAndPort, int incomingC
       NewConnectionTimeoutController newConnectionTimeoutController, QueueingConnectionLimitListener limitListener,
       int queueLimit, int numSelectorControllers, String controllerClass,
       MultipleConnectionQueueLengthListener mqListener, UUIDBase mqUUID, IPAliasMap aliasMap, boolean isClient,
-      SessionPolicyOnDisconnect onDisconnect) throws IOException {
+      SessionPolicyOnDisconnect onDisconnect, int connectionsPerDestination,
+      ConnectionAssignmentPolicy connectionAssignmentPolicy) throws IOException {
     this.myIPAndPort = myIPAndPort;
+    this.connectionAssignmentPolicy = connectionAssignmentPolicy;
 
     this.deadlineTimeSource = deadlineTimeSource != null ? deadlineTimeSource : SystemTimeUtil.timerDrivenTimeSource;
     paServer = new PersistentAsyncServer<>(interfacePort,
         new MessageGroupConnectionCreator(messageGroupReceiver, limitListener, queueLimit),
         newConnectionTimeoutController, numSelectorControllers, controllerClass, mqListener, mqUUID,
-        SelectorController.defaultSelectionThreadWorkLimit, isClient, onDisconnect);
+        SelectorController.defaultSelectionThreadWorkLimit, isClient, onDisconnect, connectionsPerDestination,
+        connectionAssignmentPolicy);
     myID = SimpleValueCreator.forLocalProcess();
     this.messageGroupReceiver = messageGroupReceiver;
     if (aliasMap != null) {
@@ -71,10 +76,27 @@ public static MessageGroupBase newClientMessageGroupBase(int interfacePort, Mess
       AbsMillisTimeSource deadlineTimeSource, NewConnectionTimeoutController newConnectionTimeoutController,
       QueueingConnectionLimitListener limitListener, int queueLimit, int numSelectorControllers, String controllerClass,
       IPAliasMap aliasMap, SessionPolicyOnDisconnect onDisconnect) throws IOException {
+    return newClientMessageGroupBase(interfacePort, messageGroupReceiver, deadlineTimeSource,
+        newConnectionTimeoutController, limitListener, queueLimit, numSelectorControllers, controllerClass, aliasMap,
+        onDisconnect, PersistentAsyncServer.defaultConnectionsPerDestination,
+        PersistentAsyncServer.defaultConnectionAssignmentPolicy);
+  }
+
+  /**
+   * Create a client MessageGroupBase that may open multiple connections to each server
+   *
+   * @param connectionsPerServer       the number of connections opened to each server
+   * @param connectionAssignmentPolicy how messages are assigned to those connections
+   */
+  public static MessageGroupBase newClientMessageGroupBase(int interfacePort, MessageGroupReceiver messageGroupReceiver,
+      AbsMillisTimeSource deadlineTimeSource, NewConnectionTimeoutController newConnectionTimeoutController,
+      QueueingConnectionLimitListener limitListener, int queueLimit, int numSelectorControllers, String controllerClass,
+      IPAliasMap aliasMap, SessionPolicyOnDisconnect onDisconnect, int connectionsPerServer,
+      ConnectionAssignmentPolicy connectionAssignmentPolicy) throws IOException {
     return new MessageGroupBase(interfacePort, new IPAndPort(IPAddrUtil.localIP(), interfacePort),
         PersistentAsyncServer.useDefaultBacklog, messageGroupReceiver, deadlineTimeSource,
         newConnectionTimeoutController, limitListener, queueLimit, numSelectorControllers, controllerClass, null, null,
-        aliasMap, true, onDisconnect);
+        aliasMap, true, onDisconnect, connectionsPerServer, connectionAssignmentPolicy);
   }
 
   public static MessageGroupBase newServerMessageGroupBase(int interfacePort, IPAndPort myIPAndPort,
@@ -84,7 +106,8 @@ public static MessageGroupBase newServerMessageGroupBase(int interfacePort, IPAn
       MultipleConnectionQueueLengthListener mqListener, UUIDBase mqUUID, IPAliasMap aliasMap) throws IOException {
     return new MessageGroupBase(interfacePort, myIPAndPort, PersistentAsyncServer.useDefaultBacklog,
         messageGroupReceiver, deadlineTimeSource, newConnectionTimeoutController, limitListener, queueLimit,
-        numSelectorControllers, controllerClass, mqListener, mqUUID, aliasMap, false, SessionPolicyOnDisconnect.DoNothing);
+        numSelectorControllers, controllerClass, mqListener, mqUUID, aliasMap, false, SessionPolicyOnDisconnect.DoNothing,
+        PersistentAsyncServer.defaultConnectionsPerDestination, PersistentAsyncServer.defaultConnectionAssignmentPolicy);
   }
 
   public void enable() {
@@ -141,13 +164,40 @@ public void send(MessageGroup mg, AddrAndPort dest) {
     } else {
       try {
         paServer.sendAsynchronous(aliasMap.daemonToInterface(dest), mg, null, null,
-            mg.getDeadlineAbsMillis(deadlineTimeSource));
+            mg.getDeadlineAbsMillis(deadlineTimeSource), getAffinity(mg));
       } catch (UnknownHostException uhe) {
         throw new RuntimeException(uhe);
       }
     }
   }
 
+  /**
+   * For KeyHash assignment, messages carrying keys are assigned by their first key so that messages for a
+   * given key use the same connection. Other messages are assigned by their uuid.
+   */
+  private int getAffinity(MessageGroup mg) {
+    if (connectionAssignmentPolicy != ConnectionAssignmentPolicy.KeyHash) {
+      return PersistentAsyncServer.noAffinity;
+    } else {
+      switch (mg.getMessageType()) {
+      case PUT:
+      case RETRIEVE:
+      case PUT_TRACE:
+      case RETRIEVE_TRACE:
+      case PUT_ATOMIC:
+        MessageGroupKeyCursor keys;
+
+        // the cursor avoids allocating a key entry on every send; (int) lsl is the key's hashCode()
+        keys = mg.getKeyCursor();
+        if (keys.advance()) {
+          return (int) keys.getLSL();
+        }
+        break;
+      }
+      return mg.getUUID().hashCode();
+    }
+  }
+
   public void ensureConnected(AddrAndPort dest) throws ConnectException, AuthFailedException {
     paServer.ensureConnected(aliasMap.daemonToInterface(dest));
   }
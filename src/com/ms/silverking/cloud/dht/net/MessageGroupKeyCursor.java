@@ -0,0 +1,47 @@
+package com.ms.silverking.cloud.dht.net;
+
+import java.nio.ByteBuffer;
+
+import com.ms.silverking.cloud.dht.net.protocol.KeyedMessageFormat;
+
+/**
+ * Allocation-free iteration over the keys of a MessageGroup. Unlike MessageGroup.getKeyIterator(), no
+ * MessageGroupKeyEntry is created per key; callers read the current key's two longs directly from the
+ * message buffer. Callers that need to retain a key must copy it, e.g. with new SimpleKey(msl, lsl).
+ */
+public class MessageGroupKeyCursor {
+  private final ByteBuffer keyBuffer;
+  private final int firstEntryOffset;
+  private int entryOffset;
+
+  MessageGroupKeyCursor(ByteBuffer keyBuffer, int firstEntryOffset) {
+    this.keyBuffer = keyBuffer;
+    this.firstEntryOffset = firstEntryOffset;
+    reset();
+  }
+
+  /**
+   * Move to the next key
+   *
+   * @return true if the cursor is positioned at a key, false if no keys remain
+   */
+  public boolean advance() {
+    entryOffset += MessageGroupKeyEntry.bytesPerEntry;
+    return entryOffset + MessageGroupKeyEntry.bytesPerEntry <= keyBuffer.limit();
+  }
+
+  public long getMSL() {
+    return keyBuffer.getLong(entryOffset + KeyedMessageFormat.keyMslOffset);
+  }
+
+  public long getLSL() {
+    return keyBuffer.getLong(entryOffset + KeyedMessageFormat.keyLslOffset);
+  }
+
+  /**
+   * Reposition the cursor before the first key
+   */
+  public void reset() {
+    entryOffset = firstEntryOffset - MessageGroupKeyEntry.bytesPerEntry;
+  }
+}
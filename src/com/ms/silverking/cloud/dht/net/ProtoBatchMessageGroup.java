@@ -0,0 +1,116 @@
+package com.ms.silverking.cloud.dht.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ms.silverking.cloud.dht.ForwardingMode;
+import com.ms.silverking.cloud.dht.common.MessageType;
+import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.numeric.NumConversion;
+
+/**
+ * Carries complete message groups - typically for several namespaces - in a single message so that they
+ * share one send and one receive. The first buffer is a header that describes each embedded group; the
+ * embedded groups' buffers follow in order. Receivers unpack the embedded groups with getMessageGroups()
+ * and handle each as if it had arrived on its own. Servers only accept embedded retrievals.
+ */
+public class ProtoBatchMessageGroup extends ProtoMessageGroup {
+  private final ByteBuffer headerByteBuffer;
+  private final int numGroups;
+
+  private static final int headerBufferIndex = 0;
+  private static final int numGroupsOffset = 0;
+  private static final int entriesOffset = numGroupsOffset + NumConversion.BYTES_PER_INT;
+  // room for type + forwarding mode + context + uuid + deadline + number of buffers
+  private static final int entrySize = 2 + 3 * NumConversion.BYTES_PER_LONG + 2 * NumConversion.BYTES_PER_INT;
+  private static final int typeOffset = 0;
+  private static final int forwardOffset = typeOffset + 1;
+  private static final int contextOffset = forwardOffset + 1;
+  private static final int uuidMSLOffset = contextOffset + NumConversion.BYTES_PER_LONG;
+  private static final int uuidLSLOffset = uuidMSLOffset + NumConversion.BYTES_PER_LONG;
+  private static final int deadlineOffset = uuidLSLOffset + NumConversion.BYTES_PER_LONG;
+  private static final int numBuffersOffset = deadlineOffset + NumConversion.BYTES_PER_INT;
+
+  /**
+   * @param messageGroups the groups to carry; their buffers must be ready to send (as from toMessageGroup())
+   */
+  public ProtoBatchMessageGroup(UUIDBase uuid, byte[] originator, List<MessageGroup> messageGroups) {
+    super(MessageType.BATCH, uuid, 0, originator, maxDeadlineRelativeMillis(messageGroups),
+        ForwardingMode.DO_NOT_FORWARD);
+    numGroups = messageGroups.size();
+    headerByteBuffer = ByteBuffer.allocate(entriesOffset + numGroups * entrySize);
+    bufferList.add(headerByteBuffer);
+    headerByteBuffer.putInt(numGroups);
+    for (MessageGroup mg : messageGroups) {
+      ByteBuffer[] buffers;
+
+      buffers = mg.getBuffers();
+      headerByteBuffer.put((byte) mg.getMessageType().ordinal());
+      headerByteBuffer.put((byte) mg.getForwardingMode().ordinal());
+      headerByteBuffer.putLong(mg.getContext());
+      headerByteBuffer.putLong(mg.getUUID().getMostSignificantBits());
+      headerByteBuffer.putLong(mg.getUUID().getLeastSignificantBits());
+      headerByteBuffer.putInt(mg.getDeadlineRelativeMillis());
+      headerByteBuffer.putInt(buffers.length);
+      for (ByteBuffer buffer : buffers) {
+        bufferList.add(buffer);
+      }
+    }
+  }
+
+  private static int maxDeadlineRelativeMillis(List<MessageGroup> messageGroups) {
+    int max;
+
+    max = 0;
+    for (MessageGroup mg : messageGroups) {
+      max = Math.max(max, mg.getDeadlineRelativeMillis());
+    }
+    return max;
+  }
+
+  @Override
+  public boolean isNonEmpty() {
+    return numGroups > 0;
+  }
+
+  @Override
+  public MessageGroup toMessageGroup() {
+    // the embedded groups' buffers are already flipped
+    headerByteBuffer.flip();
+    return toMessageGroup(false);
+  }
+
+  /**
+   * @return the message groups carried by the given BATCH message
+   */
+  public static List<MessageGroup> getMessageGroups(MessageGroup batch) {
+    ByteBuffer header;
+    ByteBuffer[] batchBuffers;
+    int numGroups;
+    int bufferIndex;
+    List<MessageGroup> messageGroups;
+
+    batchBuffers = batch.getBuffers();
+    header = batchBuffers[headerBufferIndex];
+    numGroups = header.getInt(numGroupsOffset);
+    messageGroups = new ArrayList<>(numGroups);
+    bufferIndex = headerBufferIndex + 1;
+    for (int i = 0; i < numGroups; i++) {
+      int entryOffset;
+      ByteBuffer[] buffers;
+      UUIDBase uuid;
+
+      entryOffset = entriesOffset + i * entrySize;
+      buffers = new ByteBuffer[header.getInt(entryOffset + numBuffersOffset)];
+      System.arraycopy(batchBuffers, bufferIndex, buffers, 0, buffers.length);
+      bufferIndex += buffers.length;
+      uuid = new UUIDBase(header.getLong(entryOffset + uuidMSLOffset), header.getLong(entryOffset + uuidLSLOffset));
+      messageGroups.add(new MessageGroup(MessageType.values()[header.get(entryOffset + typeOffset)], 0, uuid,
+          header.getLong(entryOffset + contextOffset), buffers, batch.getOriginator(),
+          header.getInt(entryOffset + deadlineOffset),
+          ForwardingMode.values()[header.get(entryOffset + forwardOffset)]));
+    }
+    return messageGroups;
+  }
+}
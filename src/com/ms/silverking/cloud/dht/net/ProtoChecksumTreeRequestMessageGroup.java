@@ -33,9 +33,10 @@ public class ProtoChecksumTreeRequestMessageGroup extends ProtoMessageGroup {
   private static final int deadlineRelativeMillis = 25 * 60 * 1000; // For now, interpreted as a progress deadline,
   // not at absolute op deadline
 
-  public ProtoChecksumTreeRequestMessageGroup(UUIDBase uuid, long context, ConvergencePoint targetCP,
-      ConvergencePoint curCP, byte[] originator, RingRegion ringRegion, IPAndPort replica, boolean localFlag) {
-    super(MessageType.CHECKSUM_TREE_REQUEST, uuid, context, originator, deadlineRelativeMillis, ForwardingMode.FORWARD);
+  protected ProtoChecksumTreeRequestMessageGroup(MessageType type, UUIDBase uuid, long context,
+      ConvergencePoint targetCP, ConvergencePoint curCP, byte[] originator, RingRegion ringRegion, IPAndPort replica,
+      boolean localFlag) {
+    super(type, uuid, context, originator, deadlineRelativeMillis, ForwardingMode.FORWARD);
     dataByteBuffer = ByteBuffer.allocate(dataBufferSize);
     bufferList.add(dataByteBuffer);
     dataByteBuffer.putLong(uuid.getMostSignificantBits());
@@ -52,6 +53,12 @@ public ProtoChecksumTreeRequestMessageGroup(UUIDBase uuid, long context, Converg
     dataByteBuffer.put(localFlag ? (byte) 1 : (byte) 0);
   }
 
+  public ProtoChecksumTreeRequestMessageGroup(UUIDBase uuid, long context, ConvergencePoint targetCP,
+      ConvergencePoint curCP, byte[] originator, RingRegion ringRegion, IPAndPort replica, boolean localFlag) {
+    this(MessageType.CHECKSUM_TREE_REQUEST, uuid, context, targetCP, curCP, originator, ringRegion, replica,
+        localFlag);
+  }
+
   public ProtoChecksumTreeRequestMessageGroup(UUIDBase uuid, long context, ConvergencePoint targetCP,
       ConvergencePoint curCP, byte[] originator, RingRegion ringRegion, boolean localFlag) {
     this(uuid, context, targetCP, curCP, originator, ringRegion, IPAndPort.emptyIPAndPort, localFlag);
@@ -0,0 +1,138 @@
+package com.ms.silverking.cloud.dht.net;
+
+import java.nio.ByteBuffer;
+
+import com.ms.silverking.cloud.dht.ForwardingMode;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.MessageType;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.numeric.NumConversion;
+
+/**
+ * Client request for one page of a namespace key scan, or for the regions that partition a scan.
+ * A page request names a ring region and the position in the replica's key storage at which the page starts:
+ * either an index into a segment's key table, or - for segments that were still being written when the scan
+ * reached them - the key after which the segment's keys continue in key order.
+ */
+public class ProtoKeyScanMessageGroup extends ProtoMessageGroup {
+  private final ByteBuffer dataByteBuffer;
+
+  public enum Mode {Regions, Keys}
+
+  private static final int dataBufferIndex = 0;
+  // room for mode + includeValues + hasResumeKey + region start + region end + segment number + table index
+  // + resume key msl + resume key lsl + maxKeys
+  private static final int dataBufferSize = 3 + 4 * NumConversion.BYTES_PER_LONG + 3 * NumConversion.BYTES_PER_INT;
+  private static final int modeOffset = 0;
+  private static final int includeValuesOffset = modeOffset + 1;
+  private static final int hasResumeKeyOffset = includeValuesOffset + 1;
+  private static final int regionStartOffset = hasResumeKeyOffset + 1;
+  private static final int regionEndOffset = regionStartOffset + NumConversion.BYTES_PER_LONG;
+  private static final int segmentNumberOffset = regionEndOffset + NumConversion.BYTES_PER_LONG;
+  private static final int tableIndexOffset = segmentNumberOffset + NumConversion.BYTES_PER_INT;
+  private static final int resumeKeyMSLOffset = tableIndexOffset + NumConversion.BYTES_PER_INT;
+  private static final int resumeKeyLSLOffset = resumeKeyMSLOffset + NumConversion.BYTES_PER_LONG;
+  private static final int maxKeysOffset = resumeKeyLSLOffset + NumConversion.BYTES_PER_LONG;
+
+  private ProtoKeyScanMessageGroup(UUIDBase uuid, long context, byte[] originator, int deadlineRelativeMillis,
+      Mode mode, RingRegion region, int segmentNumber, int tableIndex, DHTKey resumeKey, int maxKeys,
+      boolean includeValues) {
+    super(MessageType.KEY_SCAN, uuid, context, originator, deadlineRelativeMillis, ForwardingMode.DO_NOT_FORWARD);
+    dataByteBuffer = ByteBuffer.allocate(dataBufferSize);
+    bufferList.add(dataByteBuffer);
+    dataByteBuffer.put((byte) mode.ordinal());
+    dataByteBuffer.put(includeValues ? (byte) 1 : (byte) 0);
+    dataByteBuffer.put(resumeKey != null ? (byte) 1 : (byte) 0);
+    dataByteBuffer.putLong(region.getStart());
+    dataByteBuffer.putLong(region.getEnd());
+    dataByteBuffer.putInt(segmentNumber);
+    dataByteBuffer.putInt(tableIndex);
+    dataByteBuffer.putLong(resumeKey != null ? resumeKey.getMSL() : 0);
+    dataByteBuffer.putLong(resumeKey != null ? resumeKey.getLSL() : 0);
+    dataByteBuffer.putInt(maxKeys);
+  }
+
+  /**
+   * Create a request for the regions that partition a scan of the given namespace
+   */
+  public ProtoKeyScanMessageGroup(UUIDBase uuid, long context, byte[] originator, int deadlineRelativeMillis) {
+    this(uuid, context, originator, deadlineRelativeMillis, Mode.Regions, RingRegion.allRingspace, 0, 0, null, 0,
+        false);
+  }
+
+  /**
+   * Create a request for a page of keys
+   *
+   * @param region        the region to scan
+   * @param segmentNumber the segment at which the page starts; zero at the beginning of the region
+   * @param tableIndex    the index within the segment's key table at which the page starts
+   * @param resumeKey     if non-null, the page starts after this key in the segment's key order, and
+   *                      tableIndex is ignored
+   * @param maxKeys       the maximum number of keys to return
+   * @param includeValues true if values should be returned with the keys
+   */
+  public ProtoKeyScanMessageGroup(UUIDBase uuid, long context, byte[] originator, int deadlineRelativeMillis,
+      RingRegion region, int segmentNumber, int tableIndex, DHTKey resumeKey, int maxKeys, boolean includeValues) {
+    this(uuid, context, originator, deadlineRelativeMillis, Mode.Keys, region, segmentNumber, tableIndex,
+        resumeKey, maxKeys, includeValues);
+  }
+
+  /**
+   * Create a request for a page of keys that starts at a table index
+   */
+  public ProtoKeyScanMessageGroup(UUIDBase uuid, long context, byte[] originator, int deadlineRelativeMillis,
+      RingRegion region, int segmentNumber, int tableIndex, int maxKeys, boolean includeValues) {
+    this(uuid, context, originator, deadlineRelativeMillis, region, segmentNumber, tableIndex, null, maxKeys,
+        includeValues);
+  }
+
+  @Override
+  public boolean isNonEmpty() {
+    return true;
+  }
+
+  public static Mode getMode(MessageGroup mg) {
+    return Mode.values()[mg.getBuffers()[dataBufferIndex].get(modeOffset)];
+  }
+
+  public static boolean getIncludeValues(MessageGroup mg) {
+    return mg.getBuffers()[dataBufferIndex].get(includeValuesOffset) != 0;
+  }
+
+  public static RingRegion getRegion(MessageGroup mg) {
+    long start;
+    long end;
+
+    start = mg.getBuffers()[dataBufferIndex].getLong(regionStartOffset);
+    end = mg.getBuffers()[dataBufferIndex].getLong(regionEndOffset);
+    return new RingRegion(start, end);
+  }
+
+  public static int getSegmentNumber(MessageGroup mg) {
+    return mg.getBuffers()[dataBufferIndex].getInt(segmentNumberOffset);
+  }
+
+  public static int getTableIndex(MessageGroup mg) {
+    return mg.getBuffers()[dataBufferIndex].getInt(tableIndexOffset);
+  }
+
+  /**
+   * @return the key after which the page starts, or null if the page starts at a table index
+   */
+  public static DHTKey getResumeKey(MessageGroup mg) {
+    ByteBuffer buf;
+
+    buf = mg.getBuffers()[dataBufferIndex];
+    if (buf.get(hasResumeKeyOffset) == 0) {
+      return null;
+    } else {
+      return new SimpleKey(buf.getLong(resumeKeyMSLOffset), buf.getLong(resumeKeyLSLOffset));
+    }
+  }
+
+  public static int getMaxKeys(MessageGroup mg) {
+    return mg.getBuffers()[dataBufferIndex].getInt(maxKeysOffset);
+  }
+}
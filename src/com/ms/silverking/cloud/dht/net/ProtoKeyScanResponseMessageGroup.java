@@ -0,0 +1,254 @@
+package com.ms.silverking.cloud.dht.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ms.silverking.cloud.dht.ForwardingMode;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.MessageType;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.cloud.dht.net.ProtoKeyScanMessageGroup.Mode;
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.net.IPAndPort;
+import com.ms.silverking.numeric.NumConversion;
+
+/**
+ * Response to a ProtoKeyScanMessageGroup. A regions response lists each ring region together with its
+ * primary replicas. A keys response lists the keys of one page in scan order, and optionally their stored
+ * values, which are copied into a single value buffer, followed by the position at which the next page starts.
+ */
+public class ProtoKeyScanResponseMessageGroup extends ProtoMessageGroup {
+  private final ByteBuffer headerByteBuffer;
+  private final ByteBuffer entryByteBuffer;
+  private final ByteBuffer valueByteBuffer;
+  private int numEntries;
+
+  private static final int headerBufferIndex = 0;
+  private static final int entryBufferIndex = 1;
+  private static final int valueBufferIndex = 2;
+  // room for mode + complete + hasNextResumeKey + next segment number + next table index + next resume key msl
+  // + next resume key lsl + numEntries
+  private static final int headerBufferSize = 3 + 3 * NumConversion.BYTES_PER_INT + 2 * NumConversion.BYTES_PER_LONG;
+  private static final int modeOffset = 0;
+  private static final int completeOffset = modeOffset + 1;
+  private static final int hasNextResumeKeyOffset = completeOffset + 1;
+  private static final int nextSegmentNumberOffset = hasNextResumeKeyOffset + 1;
+  private static final int nextTableIndexOffset = nextSegmentNumberOffset + NumConversion.BYTES_PER_INT;
+  private static final int nextResumeKeyMSLOffset = nextTableIndexOffset + NumConversion.BYTES_PER_INT;
+  private static final int nextResumeKeyLSLOffset = nextResumeKeyMSLOffset + NumConversion.BYTES_PER_LONG;
+  private static final int numEntriesOffset = nextResumeKeyLSLOffset + NumConversion.BYTES_PER_LONG;
+
+  // region entries: start + end + numReplicas + replicas
+  private static final int regionEntryBaseSize = 2 * NumConversion.BYTES_PER_LONG + NumConversion.BYTES_PER_INT;
+  // key entries: msl + lsl + value offset + value length
+  private static final int keyEntrySize = 2 * NumConversion.BYTES_PER_LONG + 2 * NumConversion.BYTES_PER_INT;
+  private static final int keyValueOffsetOffset = 2 * NumConversion.BYTES_PER_LONG;
+  private static final int keyValueLengthOffset = keyValueOffsetOffset + NumConversion.BYTES_PER_INT;
+  private static final int noValue = -1;
+
+  /**
+   * Maximum number of value bytes in a single page. A page always holds at least one value.
+   */
+  public static final int maxValueBytesPerPage = ProtoValueMessageGroupBase.maxValueBytesPerMessage;
+
+  private ProtoKeyScanResponseMessageGroup(UUIDBase uuid, long context, byte[] originator,
+      int deadlineRelativeMillis, Mode mode, boolean complete, int nextSegmentNumber, int nextTableIndex,
+      DHTKey nextResumeKey, int entryBytes, int valueBytes) {
+    super(MessageType.KEY_SCAN_RESPONSE, uuid, context, originator, deadlineRelativeMillis,
+        ForwardingMode.DO_NOT_FORWARD);
+    headerByteBuffer = ByteBuffer.allocate(headerBufferSize);
+    entryByteBuffer = ByteBuffer.allocate(entryBytes);
+    valueByteBuffer = ByteBuffer.allocate(valueBytes);
+    bufferList.add(headerByteBuffer);
+    bufferList.add(entryByteBuffer);
+    bufferList.add(valueByteBuffer);
+    headerByteBuffer.put((byte) mode.ordinal());
+    headerByteBuffer.put(complete ? (byte) 1 : (byte) 0);
+    headerByteBuffer.put(nextResumeKey != null ? (byte) 1 : (byte) 0);
+    headerByteBuffer.putInt(nextSegmentNumber);
+    headerByteBuffer.putInt(nextTableIndex);
+    headerByteBuffer.putLong(nextResumeKey != null ? nextResumeKey.getMSL() : 0);
+    headerByteBuffer.putLong(nextResumeKey != null ? nextResumeKey.getLSL() : 0);
+  }
+
+  /**
+   * Create a regions response
+   *
+   * @param regions map of each region to its replicas
+   */
+  public ProtoKeyScanResponseMessageGroup(UUIDBase uuid, long context, byte[] originator,
+      int deadlineRelativeMillis, Map<RingRegion, ? extends Collection<IPAndPort>> regions) {
+    this(uuid, context, originator, deadlineRelativeMillis, Mode.Regions, true, 0, 0, null,
+        regionEntryBytes(regions), 0);
+    for (Map.Entry<RingRegion, ? extends Collection<IPAndPort>> entry : regions.entrySet()) {
+      entryByteBuffer.putLong(entry.getKey().getStart());
+      entryByteBuffer.putLong(entry.getKey().getEnd());
+      entryByteBuffer.putInt(entry.getValue().size());
+      for (IPAndPort replica : entry.getValue()) {
+        entryByteBuffer.put(replica.toByteArray());
+      }
+      ++numEntries;
+    }
+  }
+
+  /**
+   * Create a keys response. Keys are then added with addKey().
+   *
+   * @param complete          true if this is the last page of its region
+   * @param nextSegmentNumber the segment at which the next page starts
+   * @param nextTableIndex    the index within that segment's key table at which the next page starts
+   * @param nextResumeKey     if non-null, the next page starts after this key in the segment's key order
+   * @param numKeys           the number of keys that will be added
+   * @param valueBytes        the total length of the values that will be added
+   */
+  public ProtoKeyScanResponseMessageGroup(UUIDBase uuid, long context, byte[] originator,
+      int deadlineRelativeMillis, boolean complete, int nextSegmentNumber, int nextTableIndex,
+      DHTKey nextResumeKey, int numKeys, int valueBytes) {
+    this(uuid, context, originator, deadlineRelativeMillis, Mode.Keys, complete, nextSegmentNumber, nextTableIndex,
+        nextResumeKey, numKeys * keyEntrySize, valueBytes);
+  }
+
+  private static int regionEntryBytes(Map<RingRegion, ? extends Collection<IPAndPort>> regions) {
+    int bytes;
+
+    bytes = 0;
+    for (Collection<IPAndPort> replicas : regions.values()) {
+      bytes += regionEntryBaseSize + replicas.size() * IPAndPort.SIZE_BYTES;
+    }
+    return bytes;
+  }
+
+  /**
+   * Add a key and, optionally, its stored value
+   *
+   * @param key   the key
+   * @param value the stored value, or null if values are not included
+   */
+  public void addKey(DHTKey key, ByteBuffer value) {
+    entryByteBuffer.putLong(key.getMSL());
+    entryByteBuffer.putLong(key.getLSL());
+    if (value != null) {
+      entryByteBuffer.putInt(valueByteBuffer.position());
+      entryByteBuffer.putInt(value.remaining());
+      valueByteBuffer.put(value.duplicate());
+    } else {
+      entryByteBuffer.putInt(noValue);
+      entryByteBuffer.putInt(0);
+    }
+    ++numEntries;
+  }
+
+  @Override
+  public boolean isNonEmpty() {
+    return true;
+  }
+
+  @Override
+  protected MessageGroup toMessageGroup(boolean flip) {
+    headerByteBuffer.putInt(numEntries);
+    return super.toMessageGroup(flip);
+  }
+
+  public static Mode getMode(MessageGroup mg) {
+    return Mode.values()[mg.getBuffers()[headerBufferIndex].get(modeOffset)];
+  }
+
+  /**
+   * @return true if this is the last page of its region
+   */
+  public static boolean isComplete(MessageGroup mg) {
+    return mg.getBuffers()[headerBufferIndex].get(completeOffset) != 0;
+  }
+
+  public static int getNextSegmentNumber(MessageGroup mg) {
+    return mg.getBuffers()[headerBufferIndex].getInt(nextSegmentNumberOffset);
+  }
+
+  public static int getNextTableIndex(MessageGroup mg) {
+    return mg.getBuffers()[headerBufferIndex].getInt(nextTableIndexOffset);
+  }
+
+  /**
+   * @return the key after which the next page starts, or null if it starts at a table index
+   */
+  public static SimpleKey getNextResumeKey(MessageGroup mg) {
+    ByteBuffer buf;
+
+    buf = mg.getBuffers()[headerBufferIndex];
+    if (buf.get(hasNextResumeKeyOffset) == 0) {
+      return null;
+    } else {
+      return new SimpleKey(buf.getLong(nextResumeKeyMSLOffset), buf.getLong(nextResumeKeyLSLOffset));
+    }
+  }
+
+  public static int getNumEntries(MessageGroup mg) {
+    return mg.getBuffers()[headerBufferIndex].getInt(numEntriesOffset);
+  }
+
+  /**
+   * @return map of each region to its replicas, in the order sent
+   */
+  public static Map<RingRegion, List<IPAndPort>> getRegions(MessageGroup mg) {
+    Map<RingRegion, List<IPAndPort>> regions;
+    ByteBuffer buf;
+    int offset;
+    int numEntries;
+
+    regions = new LinkedHashMap<>();
+    buf = mg.getBuffers()[entryBufferIndex];
+    offset = 0;
+    numEntries = getNumEntries(mg);
+    for (int i = 0; i < numEntries; i++) {
+      RingRegion region;
+      List<IPAndPort> replicas;
+      int numReplicas;
+
+      region = new RingRegion(buf.getLong(offset), buf.getLong(offset + NumConversion.BYTES_PER_LONG));
+      numReplicas = buf.getInt(offset + 2 * NumConversion.BYTES_PER_LONG);
+      offset += regionEntryBaseSize;
+      replicas = new ArrayList<>(numReplicas);
+      for (int j = 0; j < numReplicas; j++) {
+        replicas.add(IPAndPort.fromByteBuffer(buf, offset));
+        offset += IPAndPort.SIZE_BYTES;
+      }
+      regions.put(region, replicas);
+    }
+    return regions;
+  }
+
+  public static SimpleKey getKey(MessageGroup mg, int index) {
+    ByteBuffer buf;
+    int offset;
+
+    buf = mg.getBuffers()[entryBufferIndex];
+    offset = index * keyEntrySize;
+    return new SimpleKey(buf.getLong(offset), buf.getLong(offset + NumConversion.BYTES_PER_LONG));
+  }
+
+  /**
+   * @return the stored value of the given key positioned at its start, or null if values were not included
+   */
+  public static ByteBuffer getValue(MessageGroup mg, int index) {
+    ByteBuffer buf;
+    int valueOffset;
+
+    buf = mg.getBuffers()[entryBufferIndex];
+    valueOffset = buf.getInt(index * keyEntrySize + keyValueOffsetOffset);
+    if (valueOffset == noValue) {
+      return null;
+    } else {
+      ByteBuffer value;
+
+      value = mg.getBuffers()[valueBufferIndex].duplicate();
+      value.position(valueOffset);
+      value.limit(valueOffset + buf.getInt(index * keyEntrySize + keyValueLengthOffset));
+      return value;
+    }
+  }
+}
@@ -4,6 +4,7 @@
 
 import com.ms.silverking.cloud.dht.ForwardingMode;
 import com.ms.silverking.cloud.dht.common.MessageType;
+import com.ms.silverking.cloud.dht.daemon.storage.convergence.ConvergenceProgress;
 import com.ms.silverking.collection.Pair;
 import com.ms.silverking.id.UUIDBase;
 
@@ -11,6 +12,7 @@ public class ProtoProgressMessageGroup extends ProtoMessageGroup {
   private final ByteBuffer buffer;
 
   private static final int dataBufferIndex = 0;
+  private static final int detailBufferIndex = 1;
 
   private static final int bufferSize = Long.BYTES * 2;
   private static final int progressIndex0 = 0;
@@ -26,6 +28,22 @@ public ProtoProgressMessageGroup(UUIDBase uuid, long context, Pair<Long, Long> p
     buffer.putLong(progressIndex1, progress.getV2());
   }
 
+  /**
+   * Create a progress message that also carries detailed convergence progress. The detail is carried in an
+   * additional buffer so that receivers that only read the basic progress are unaffected.
+   */
+  public ProtoProgressMessageGroup(UUIDBase uuid, long context, Pair<Long, Long> progress,
+      ConvergenceProgress detail, byte[] originator, int deadlineRelativeMillis) {
+    this(uuid, context, progress, originator, deadlineRelativeMillis);
+
+    ByteBuffer detailBuffer;
+
+    detailBuffer = ByteBuffer.allocate(ConvergenceProgress.serializedSizeBytes);
+    detail.writeToBuffer(detailBuffer);
+    detailBuffer.flip();
+    bufferList.add(detailBuffer);
+  }
+
   @Override
   public boolean isNonEmpty() {
     return true;
@@ -39,4 +57,15 @@ public static Pair<Long, Long> progress(MessageGroup mg) {
     l1 = mg.getBuffers()[dataBufferIndex].getLong(progressIndex1);
     return new Pair<>(l0, l1);
   }
+
+  /**
+   * @return the detailed progress carried by this message, or null if the message carries none
+   */
+  public static ConvergenceProgress detail(MessageGroup mg) {
+    if (mg.getBuffers().length > detailBufferIndex) {
+      return ConvergenceProgress.readFromBuffer(mg.getContext(), mg.getBuffers()[detailBufferIndex], 0);
+    } else {
+      return null;
+    }
+  }
 }
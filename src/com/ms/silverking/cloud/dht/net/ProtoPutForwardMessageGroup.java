@@ -21,10 +21,18 @@ public final class ProtoPutForwardMessageGroup extends ProtoValueMessageGroupBas
   public ProtoPutForwardMessageGroup(UUIDBase uuid, long context, byte[] originator, ByteBuffer optionsByteBuffer,
       List<MessageGroupKeyEntry> destEntries, ChecksumType checksumType, int deadlineRelativeMillis,
       byte[] maybeTraceID) {
-    super(TraceIDProvider.isValidTraceID(maybeTraceID) ? MessageType.PUT_TRACE : MessageType.PUT, uuid, context,
-        destEntries.size(), totalLength(destEntries), (ByteBuffer) optionsByteBuffer.asReadOnlyBuffer(),
+    this(TraceIDProvider.isValidTraceID(maybeTraceID) ? MessageType.PUT_TRACE : MessageType.PUT, uuid, context,
+        originator, optionsByteBuffer, destEntries, checksumType, deadlineRelativeMillis, maybeTraceID,
+        ForwardingMode.DO_NOT_FORWARD);
+  }
+
+  public ProtoPutForwardMessageGroup(MessageType messageType, UUIDBase uuid, long context, byte[] originator,
+      ByteBuffer optionsByteBuffer, List<MessageGroupKeyEntry> destEntries, ChecksumType checksumType,
+      int deadlineRelativeMillis, byte[] maybeTraceID, ForwardingMode forwardingMode) {
+    super(messageType, uuid, context, destEntries.size(), totalLength(destEntries),
+        optionsByteBuffer.asReadOnlyBuffer(),
         PutMessageFormat.size(checksumType) - KeyedMessageFormat.baseBytesPerKeyEntry, originator,
-        deadlineRelativeMillis, ForwardingMode.DO_NOT_FORWARD, maybeTraceID);
+        deadlineRelativeMillis, forwardingMode, maybeTraceID);
     if (debug) {
       System.out.println("\toptionsByteBuffer " + optionsByteBuffer + "\t last " + (bufferList.size() - 1));
     }
@@ -36,6 +44,18 @@ public ProtoPutForwardMessageGroup(UUIDBase uuid, long context, byte[] originato
     }
   }
 
+  /**
+   * Create a put of a single uncompressed value computed by this node, such as the value that an atomic
+   * update resolved to
+   */
+  public ProtoPutForwardMessageGroup(UUIDBase uuid, long context, byte[] originator, ByteBuffer optionsByteBuffer,
+      DHTKey dhtKey, ByteBuffer value, byte[] checksum, ChecksumType checksumType, int deadlineRelativeMillis) {
+    super(MessageType.PUT, uuid, context, 1, value.remaining(), optionsByteBuffer.asReadOnlyBuffer(),
+        PutMessageFormat.size(checksumType) - KeyedMessageFormat.baseBytesPerKeyEntry, originator,
+        deadlineRelativeMillis, ForwardingMode.DO_NOT_FORWARD, null);
+    addValue(dhtKey, value, value.remaining(), value.remaining(), checksum);
+  }
+
   private static int totalLength(List<MessageGroupKeyEntry> destEntries) {
     int totalLength;
 
@@ -47,6 +67,15 @@ private static int totalLength(List<MessageGroupKeyEntry> destEntries) {
   }
 
   public void addValue(DHTKey dhtKey, MessageGroupPutEntry entry) {
+    if (debug) {
+      System.out.println("entry: " + entry);
+      System.out.println("entry.getValue(): " + entry.getValue());
+    }
+    addValue(dhtKey, entry.getValue(), entry.getStoredLength(), entry.getUncompressedLength(), entry.getChecksum());
+  }
+
+  private void addValue(DHTKey dhtKey, ByteBuffer entryValue, int storedLength, int uncompressedLength,
+      byte[] checksum) {
     boolean copyValue;
     int compressedValueSize;
     int uncompressedValueSize;
@@ -55,11 +84,7 @@ public void addValue(DHTKey dhtKey, MessageGroupPutEntry entry) {
 
     ByteBuffer value;
 
-    if (debug) {
-      System.out.println("entry: " + entry);
-      System.out.println("entry.getValue(): " + entry.getValue());
-    }
-    value = entry.getValue().asReadOnlyBuffer();
+    value = entryValue.asReadOnlyBuffer();
     if (debug) {
       System.out.println("v0: " + value);
     }
@@ -70,9 +95,9 @@ public void addValue(DHTKey dhtKey, MessageGroupPutEntry entry) {
 
     storedValueSize = value.remaining();
 
-    compressedValueSize = entry.getStoredLength();
+    compressedValueSize = storedLength;
     totalValueBytes += storedValueSize;
-    uncompressedValueSize = entry.getUncompressedLength();
+    uncompressedValueSize = uncompressedLength;
     //uncompressedValueSize = MetaDataUtil.getUncompressedLength(value.array(), value.position());
 
     if (Log.levelMet(Level.FINE)) {
@@ -118,7 +143,7 @@ public void addValue(DHTKey dhtKey, MessageGroupPutEntry entry) {
       keyByteBuffer.putInt(valueBuffer.position());
       keyByteBuffer.putInt(uncompressedValueSize);
       keyByteBuffer.putInt(compressedValueSize);
-      keyByteBuffer.put(entry.getChecksum());
+      keyByteBuffer.put(checksum);
       //keyByteBuffer.put(compression);
 
       //System.arraycopy(value.array(), value.arrayOffset(), valueBuffer.array(), valueBuffer.position(),
@@ -143,7 +168,7 @@ public void addValue(DHTKey dhtKey, MessageGroupPutEntry entry) {
       keyByteBuffer.putInt(value.position());
       keyByteBuffer.putInt(uncompressedValueSize);
       keyByteBuffer.putInt(compressedValueSize);
-      keyByteBuffer.put(entry.getChecksum());
+      keyByteBuffer.put(checksum);
       //keyByteBuffer.put(compression);
       // FIXME - think about removing the need for size since strictly speaking
       // it isn't necessary
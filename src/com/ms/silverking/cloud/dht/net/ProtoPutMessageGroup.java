@@ -43,8 +43,27 @@
   public ProtoPutMessageGroup(UUIDBase uuid, long context, int putOpSize, int valueBytes, long version,
       BufferDestSerializer<V> bdSerializer, PutOptions putOptions, ChecksumType checksumType, byte[] originator,
       byte[] creator, int deadlineRelativeMillis, EncrypterDecrypter encrypterDecrypter, byte[] maybeTraceID) {
-    super(TraceIDProvider.isValidTraceID(maybeTraceID) ? MessageType.PUT_TRACE : MessageType.PUT, uuid, context,
-        putOpSize, valueBytes, ByteBuffer.allocate(optionBufferLength(putOptions)),
+    this(TraceIDProvider.isValidTraceID(maybeTraceID) ? MessageType.PUT_TRACE : MessageType.PUT, uuid, context,
+        putOpSize, valueBytes, version, bdSerializer, putOptions, checksumType, originator, creator,
+        deadlineRelativeMillis, encrypterDecrypter, maybeTraceID);
+  }
+
+  /**
+   * Create a PUT_ATOMIC message group. Update records are added with addValueDedicated(); see
+   * AtomicUpdateMessageFormat.
+   */
+  public ProtoPutMessageGroup(UUIDBase uuid, long context, int putOpSize, int valueBytes, long version,
+      PutOptions putOptions, ChecksumType checksumType, byte[] originator, byte[] creator,
+      int deadlineRelativeMillis) {
+    this(MessageType.PUT_ATOMIC, uuid, context, putOpSize, valueBytes, version, null, putOptions, checksumType,
+        originator, creator, deadlineRelativeMillis, null, null);
+  }
+
+  private ProtoPutMessageGroup(MessageType messageType, UUIDBase uuid, long context, int putOpSize, int valueBytes,
+      long version, BufferDestSerializer<V> bdSerializer, PutOptions putOptions, ChecksumType checksumType,
+      byte[] originator, byte[] creator, int deadlineRelativeMillis, EncrypterDecrypter encrypterDecrypter,
+      byte[] maybeTraceID) {
+    super(messageType, uuid, context, putOpSize, valueBytes, ByteBuffer.allocate(optionBufferLength(putOptions)),
         PutMessageFormat.size(checksumType) - KeyedMessageFormat.baseBytesPerKeyEntry, originator,
         deadlineRelativeMillis, ForwardingMode.FORWARD, maybeTraceID);
     Set<SecondaryTarget> secondaryTargets;
@@ -0,0 +1,20 @@
+package com.ms.silverking.cloud.dht.net;
+
+import com.ms.silverking.cloud.dht.common.MessageType;
+import com.ms.silverking.cloud.dht.daemon.storage.convergence.ConvergencePoint;
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.net.IPAndPort;
+
+/**
+ * Requests that a replica stream all of its values in a region, rather than a checksum tree.
+ * Used when the requester is missing the region entirely. Shares the checksum tree request format, so the
+ * static accessors of ProtoChecksumTreeRequestMessageGroup may be used to read this message.
+ */
+public class ProtoSegmentTransferRequestMessageGroup extends ProtoChecksumTreeRequestMessageGroup {
+  public ProtoSegmentTransferRequestMessageGroup(UUIDBase uuid, long context, ConvergencePoint targetCP,
+      ConvergencePoint curCP, byte[] originator, RingRegion ringRegion) {
+    super(MessageType.SEGMENT_TRANSFER_REQUEST, uuid, context, targetCP, curCP, originator, ringRegion,
+        IPAndPort.emptyIPAndPort, false);
+  }
+}
@@ -0,0 +1,132 @@
+package com.ms.silverking.cloud.dht.net.protocol;
+
+import java.nio.ByteBuffer;
+
+import com.ms.silverking.numeric.NumConversion;
+
+/**
+ * Format of the per-key value carried by a PUT_ATOMIC message. Rather than a value to store, each key
+ * carries an update record that the replica applies to its newest stored value:
+ * [op][operandLength][operand][payload]. An operandLength of -1 indicates that the operand is absent.
+ */
+public class AtomicUpdateMessageFormat {
+  public enum Op {
+    /**
+     * Operand: the expected value, or absent if the key must have no value. Payload: the new value.
+     */
+    CompareAndSetValue,
+    /**
+     * Operand: the expected stored checksum. Payload: the new value.
+     */
+    CompareAndSetChecksum,
+    /**
+     * Operand: the delta to add to an 8-byte big-endian value. No payload.
+     */
+    Add,
+    /**
+     * Operand: the maximum length of the resulting value. Payload: the bytes to append.
+     */
+    Append
+  }
+
+  public static final int opSize = 1;
+  public static final int operandLengthSize = NumConversion.BYTES_PER_INT;
+
+  public static final int opOffset = 0;
+  public static final int operandLengthOffset = opOffset + opSize;
+  public static final int operandOffset = operandLengthOffset + operandLengthSize;
+
+  private static final int absentOperand = -1;
+
+  private static ByteBuffer create(Op op, byte[] operand, ByteBuffer payload) {
+    ByteBuffer record;
+    int payloadLength;
+
+    payloadLength = payload != null ? payload.remaining() : 0;
+    record = ByteBuffer.allocate(operandOffset + (operand != null ? operand.length : 0) + payloadLength);
+    record.put((byte) op.ordinal());
+    if (operand != null) {
+      record.putInt(operand.length);
+      record.put(operand);
+    } else {
+      record.putInt(absentOperand);
+    }
+    if (payload != null) {
+      record.put(payload.duplicate());
+    }
+    record.flip();
+    return record;
+  }
+
+  /**
+   * @param expectedValue the serialized expected value, or null if the key must have no value
+   * @param newValue      the serialized value to store if the comparison succeeds
+   */
+  public static ByteBuffer createCompareAndSetValue(byte[] expectedValue, ByteBuffer newValue) {
+    return create(Op.CompareAndSetValue, expectedValue, newValue);
+  }
+
+  public static ByteBuffer createCompareAndSetChecksum(byte[] expectedChecksum, ByteBuffer newValue) {
+    return create(Op.CompareAndSetChecksum, expectedChecksum, newValue);
+  }
+
+  public static ByteBuffer createAdd(long delta) {
+    return create(Op.Add, NumConversion.longToBytes(delta), null);
+  }
+
+  public static ByteBuffer createAppend(ByteBuffer suffix, int maxLength) {
+    return create(Op.Append, NumConversion.intToBytes(maxLength), suffix);
+  }
+
+  /////////////////
+
+  // all accessors are relative to the record's position
+
+  public static Op getOp(ByteBuffer record) {
+    return Op.values()[record.get(record.position() + opOffset)];
+  }
+
+  private static int getOperandLength(ByteBuffer record) {
+    return record.getInt(record.position() + operandLengthOffset);
+  }
+
+  /**
+   * @return the operand, or null if it is absent
+   */
+  public static byte[] getOperand(ByteBuffer record) {
+    int operandLength;
+
+    operandLength = getOperandLength(record);
+    if (operandLength == absentOperand) {
+      return null;
+    } else {
+      byte[] operand;
+      ByteBuffer buf;
+
+      operand = new byte[operandLength];
+      buf = record.duplicate();
+      buf.position(record.position() + operandOffset);
+      buf.get(operand);
+      return operand;
+    }
+  }
+
+  public static long getDelta(ByteBuffer record) {
+    return record.getLong(record.position() + operandOffset);
+  }
+
+  public static int getMaxLength(ByteBuffer record) {
+    return record.getInt(record.position() + operandOffset);
+  }
+
+  /**
+   * @return the payload, positioned at its start
+   */
+  public static ByteBuffer getPayload(ByteBuffer record) {
+    ByteBuffer payload;
+
+    payload = record.duplicate();
+    payload.position(record.position() + operandOffset + Math.max(getOperandLength(record), 0));
+    return payload;
+  }
+}
@@ -0,0 +1,75 @@
+package com.ms.silverking.cloud.ring;
+
+/**
+ * Maps ring coordinates to the index of the region that contains them.
+ * <p>
+ * Regions are given by their sorted start coordinates. A table indexed by the high bits of the
+ * coordinate gives the first candidate region, so a lookup examines a small, typically constant,
+ * number of region starts. Lookups neither walk a tree nor allocate. Immutable.
+ */
+public final class RegionIndex {
+  private final long[] starts;
+  private final int[] bucketFirstRegion;
+  private final int bucketShift;
+
+  private static final int bucketsPerRegion = 4;
+  private static final int maxBucketBits = 16;
+
+  /**
+   * @param starts region start coordinates in ascending order
+   */
+  public RegionIndex(long[] starts) {
+    int bucketBits;
+    int region;
+
+    for (int i = 1; i < starts.length; i++) {
+      if (starts[i] <= starts[i - 1]) {
+        throw new IllegalArgumentException("starts not strictly ascending");
+      }
+    }
+    this.starts = starts.clone();
+    bucketBits = Math.min(maxBucketBits,
+        Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(starts.length * bucketsPerRegion - 1, 1)));
+    // offsets from LongRingspace.start are non-negative longs
+    bucketShift = Long.SIZE - 1 - bucketBits;
+    bucketFirstRegion = new int[1 << bucketBits];
+    region = -1;
+    for (int i = 0; i < bucketFirstRegion.length; i++) {
+      long bucketStart;
+
+      bucketStart = LongRingspace.start + ((long) i << bucketShift);
+      while (region + 1 < starts.length && starts[region + 1] <= bucketStart) {
+        region++;
+      }
+      bucketFirstRegion[i] = region;
+    }
+  }
+
+  public int numRegions() {
+    return starts.length;
+  }
+
+  public long getStart(int index) {
+    return starts[index];
+  }
+
+  /**
+   * @return the index of the region with the greatest start that is <= coordinate. Coordinates before
+   * the first start wrap around to the last region.
+   */
+  public int indexOf(long coordinate) {
+    long offset;
+    int region;
+
+    offset = coordinate - LongRingspace.start;
+    if (offset < 0) {
+      region = -1;
+    } else {
+      region = bucketFirstRegion[(int) Math.min(offset >>> bucketShift, bucketFirstRegion.length - 1)];
+    }
+    while (region + 1 < starts.length && starts[region + 1] <= coordinate) {
+      region++;
+    }
+    return region >= 0 ? region : starts.length - 1;
+  }
+}
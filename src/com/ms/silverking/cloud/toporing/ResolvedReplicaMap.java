@@ -4,6 +4,7 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -19,9 +20,11 @@
 import com.ms.silverking.cloud.dht.common.DHTKey;
 import com.ms.silverking.cloud.dht.common.EnumValues;
 import com.ms.silverking.cloud.dht.common.KeyUtil;
+import com.ms.silverking.cloud.ring.RegionIndex;
 import com.ms.silverking.cloud.ring.RingRegion;
 import com.ms.silverking.cloud.topology.Node;
 import com.ms.silverking.collection.HashedListMap;
+import com.ms.silverking.collection.Pair;
 import com.ms.silverking.log.Log;
 import com.ms.silverking.net.IPAndPort;
 
@@ -32,6 +35,10 @@ public class ResolvedReplicaMap {
   private final List<RingRegion> regions;
   private Set<IPAndPort> allReplicas;
   private final Comparator<IPAndPort> replicaPrioritizer;
+  // regions with the same replicas share a MapEntry
+  private final Map<Pair<List<IPAndPort>, List<IPAndPort>>, MapEntry> internedEntries;
+  // built on first lookup after the map is modified
+  private volatile Lookup lookup;
 
   private static final boolean debug = false;
 
@@ -55,6 +62,7 @@ public ResolvedReplicaMap(Comparator<IPAndPort> replicaPrioritizer) {
     replicaMap = new TreeMap<>();
     replicaEntries = new HashedListMap[EnumValues.ownerQueryMode.length];
     regions = new ArrayList<>();
+    internedEntries = new HashMap<>();
     for (OwnerQueryMode oqm : EnumValues.ownerQueryMode) {
       replicaEntries[oqm.ordinal()] = new HashedListMap<>();
     }
@@ -90,13 +98,14 @@ public void addEntry(RingEntry entry) {
     if (debug) {
       System.out.println("ResolvedReplicaMap.addEntry() " + entry);
     }
-    mapEntry = new MapEntry(entry);
+    mapEntry = intern(new MapEntry(entry));
     if (replicaMap.get(entry.getRegion().getStart()) != null) {
       throw new RuntimeException("Duplicate regions");
     }
     entryMap.put(entry.getRegion().getStart(), entry);
     replicaMap.put(entry.getRegion().getStart(), mapEntry);
     regions.add(entry.getRegion());
+    lookup = null;
 
     for (OwnerQueryMode oqm : EnumValues.ownerQueryMode) {
       if (debug) {
@@ -116,24 +125,94 @@ private void addReplicaEntries(HashedListMap<IPAndPort, RingEntry> replicaEntrie
     }
   }
 
+  private MapEntry intern(MapEntry mapEntry) {
+    Pair<List<IPAndPort>, List<IPAndPort>> replicaLists;
+    MapEntry prev;
+
+    replicaLists = new Pair<>(mapEntry.getReplicaList(OwnerQueryMode.Primary),
+        mapEntry.getReplicaList(OwnerQueryMode.Secondary));
+    prev = internedEntries.putIfAbsent(replicaLists, mapEntry);
+    return prev != null ? prev : mapEntry;
+  }
+
   public IPAndPort[] getReplicas(DHTKey key, OwnerQueryMode oqm) {
-    return getEntry(key).getReplicas(oqm);
+    return getEntry(KeyUtil.keyToCoordinate(key)).getReplicas(oqm);
   }
 
   public List<IPAndPort> getReplicaList(DHTKey key, OwnerQueryMode oqm) {
-    return getEntry(key).getReplicaList(oqm);
+    return getEntry(KeyUtil.keyToCoordinate(key)).getReplicaList(oqm);
   }
 
   public Set<IPAndPort> getReplicaSet(DHTKey key, OwnerQueryMode oqm) {
-    return getEntry(key).getReplicaSet(oqm);
+    return getEntry(KeyUtil.keyToCoordinate(key)).getReplicaSet(oqm);
   }
 
   public PrimarySecondaryIPListPair getReplicaListPair(DHTKey key) {
-    return getEntry(key).getIPListPair();
+    return getEntry(KeyUtil.keyToCoordinate(key)).getIPListPair();
+  }
+
+  public IPAndPort[] getReplicas(long coordinate, OwnerQueryMode oqm) {
+    return getEntry(coordinate).getReplicas(oqm);
+  }
+
+  public List<IPAndPort> getReplicaList(long coordinate, OwnerQueryMode oqm) {
+    return getEntry(coordinate).getReplicaList(oqm);
+  }
+
+  public Set<IPAndPort> getReplicaSet(long coordinate, OwnerQueryMode oqm) {
+    return getEntry(coordinate).getReplicaSet(oqm);
+  }
+
+  public PrimarySecondaryIPListPair getReplicaListPair(long coordinate) {
+    return getEntry(coordinate).getIPListPair();
+  }
+
+  /**
+   * @return the start coordinates of all regions in ascending order
+   */
+  public long[] getRegionStarts() {
+    long[] starts;
+    int i;
+
+    starts = new long[replicaMap.size()];
+    i = 0;
+    for (long start : replicaMap.keySet()) {
+      starts[i++] = start;
+    }
+    return starts;
+  }
+
+  private MapEntry getEntry(long coordinate) {
+    return getLookup().getEntry(coordinate);
+  }
+
+  private Lookup getLookup() {
+    Lookup _lookup;
+
+    _lookup = lookup;
+    if (_lookup == null) {
+      // maps are fully built before they are shared, so a concurrent rebuild produces an identical lookup
+      _lookup = new Lookup(getRegionStarts(), replicaMap.values().toArray(new MapEntry[0]));
+      lookup = _lookup;
+    }
+    return _lookup;
   }
 
-  private MapEntry getEntry(DHTKey key) {
-    return replicaMap.floorEntry(KeyUtil.keyToCoordinate(key)).getValue();
+  /**
+   * Flat, allocation-free replacement for replicaMap.floorEntry()
+   */
+  private static class Lookup {
+    private final RegionIndex regionIndex;
+    private final MapEntry[] entries;
+
+    Lookup(long[] starts, MapEntry[] entries) {
+      regionIndex = new RegionIndex(starts);
+      this.entries = entries;
+    }
+
+    MapEntry getEntry(long coordinate) {
+      return entries[regionIndex.indexOf(coordinate)];
+    }
   }
 
   public List<RingEntry> getReplicaEntries(IPAndPort replica, OwnerQueryMode oqm) {
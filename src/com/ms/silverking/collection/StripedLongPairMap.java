@@ -0,0 +1,360 @@
+package com.ms.silverking.collection;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent map keyed by a pair of longs, e.g. the two longs of a UUID or of a DHTKey.
+ * <p>
+ * The map is split into lock-striped open-addressing tables. Keys are stored inline as primitives, so
+ * unlike ConcurrentHashMap, lookups do not require a key object, and insertions do not allocate an entry
+ * object. Null values are not permitted.
+ * <p>
+ * forEach() is designed for periodic scans such as timeout checks: each stripe is copied while its lock
+ * is held and the consumer is invoked after the lock has been released. The consumer may therefore
+ * modify the map and may perform slow work without blocking other threads. Entries added or removed
+ * during a scan may or may not be observed.
+ */
+public class StripedLongPairMap<V> {
+  private final Stripe<V>[] stripes;
+  private final int stripeShift;
+  private final LongAdder size;
+
+  private static final int defaultStripesPerProcessor = 4;
+  private static final int defaultInitialStripeCapacity = 16;
+
+  /**
+   * Receives entries during forEach()
+   */
+  public interface EntryConsumer<V> {
+    void accept(long k0, long k1, V value);
+  }
+
+  @SuppressWarnings("unchecked")
+  public StripedLongPairMap(int numStripes, int initialStripeCapacity) {
+    if (numStripes < 1 || initialStripeCapacity < 1) {
+      throw new IllegalArgumentException("numStripes and initialStripeCapacity must be >= 1");
+    }
+    numStripes = ceilingPowerOf2(numStripes);
+    stripes = (Stripe<V>[]) new Stripe<?>[numStripes];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe<>(ceilingPowerOf2(Math.max(initialStripeCapacity, 2)));
+    }
+    stripeShift = Long.SIZE - Integer.numberOfTrailingZeros(numStripes);
+    size = new LongAdder();
+  }
+
+  public StripedLongPairMap() {
+    this(Runtime.getRuntime().availableProcessors() * defaultStripesPerProcessor, defaultInitialStripeCapacity);
+  }
+
+  private static int ceilingPowerOf2(int x) {
+    return x == 1 ? 1 : Integer.highestOneBit(x - 1) << 1;
+  }
+
+  private static long hash(long k0, long k1) {
+    long h;
+
+    // keys such as locally generated UUIDs may differ only in a few low bits of one long
+    h = k0 * 0x9E3779B97F4A7C15L + k1;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private Stripe<V> stripe(long h) {
+    // high bits select the stripe; low bits select the slot within the stripe
+    return stripes.length == 1 ? stripes[0] : stripes[(int) (h >>> stripeShift)];
+  }
+
+  public V get(long k0, long k1) {
+    long h;
+
+    h = hash(k0, k1);
+    return stripe(h).get(k0, k1, (int) h);
+  }
+
+  public boolean containsKey(long k0, long k1) {
+    return get(k0, k1) != null;
+  }
+
+  /**
+   * @return the previous value associated with the key, or null if there was none
+   */
+  public V put(long k0, long k1, V value) {
+    long h;
+    V prev;
+
+    checkValue(value);
+    h = hash(k0, k1);
+    prev = stripe(h).put(k0, k1, (int) h, value, false);
+    if (prev == null) {
+      size.increment();
+    }
+    return prev;
+  }
+
+  /**
+   * @return the value currently associated with the key, or null if value was added
+   */
+  public V putIfAbsent(long k0, long k1, V value) {
+    long h;
+    V prev;
+
+    checkValue(value);
+    h = hash(k0, k1);
+    prev = stripe(h).put(k0, k1, (int) h, value, true);
+    if (prev == null) {
+      size.increment();
+    }
+    return prev;
+  }
+
+  /**
+   * @return the removed value, or null if there was no value associated with the key
+   */
+  public V remove(long k0, long k1) {
+    long h;
+    V prev;
+
+    h = hash(k0, k1);
+    prev = stripe(h).remove(k0, k1, (int) h, null);
+    if (prev != null) {
+      size.decrement();
+    }
+    return prev;
+  }
+
+  /**
+   * Remove the entry for the given key only if it is currently mapped to the given value (by identity)
+   *
+   * @return true if the entry was removed
+   */
+  public boolean remove(long k0, long k1, V value) {
+    long h;
+
+    checkValue(value);
+    h = hash(k0, k1);
+    if (stripe(h).remove(k0, k1, (int) h, value) != null) {
+      size.decrement();
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  private static void checkValue(Object value) {
+    if (value == null) {
+      throw new NullPointerException("Null values not supported");
+    }
+  }
+
+  public int size() {
+    return (int) size.sum();
+  }
+
+  public boolean isEmpty() {
+    return size.sum() == 0;
+  }
+
+  public void clear() {
+    for (Stripe<V> stripe : stripes) {
+      size.add(-stripe.clear());
+    }
+  }
+
+  /**
+   * Pass each entry to the consumer. See the class comment for consistency guarantees.
+   */
+  public void forEach(EntryConsumer<? super V> consumer) {
+    for (Stripe<V> stripe : stripes) {
+      stripe.forEach(consumer);
+    }
+  }
+
+  /**
+   * A single lock-protected open-addressing table using linear probing. Removal shifts subsequent entries
+   * back so that no tombstones are required.
+   */
+  private static class Stripe<V> {
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    private static final int k0Offset = 0;
+    private static final int k1Offset = 1;
+    private static final int longsPerKey = 2;
+    // maximum load is 3/4
+    private static final int maxLoadNumerator = 3;
+    private static final int maxLoadDenominator = 4;
+
+    Stripe(int capacity) {
+      allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+      keys = new long[capacity * longsPerKey];
+      values = new Object[capacity];
+      mask = capacity - 1;
+    }
+
+    private boolean keyMatches(int i, long k0, long k1) {
+      return keys[i * longsPerKey + k0Offset] == k0 && keys[i * longsPerKey + k1Offset] == k1;
+    }
+
+    // returns the slot holding the key, or -(slot + 1) for the empty slot where it would be inserted
+    private int findSlot(long k0, long k1, int h) {
+      int i;
+
+      i = h & mask;
+      while (values[i] != null) {
+        if (keyMatches(i, k0, k1)) {
+          return i;
+        }
+        i = (i + 1) & mask;
+      }
+      return -(i + 1);
+    }
+
+    synchronized V get(long k0, long k1, int h) {
+      int i;
+
+      i = findSlot(k0, k1, h);
+      return i >= 0 ? cast(values[i]) : null;
+    }
+
+    synchronized V put(long k0, long k1, int h, V value, boolean onlyIfAbsent) {
+      int i;
+
+      i = findSlot(k0, k1, h);
+      if (i >= 0) {
+        V prev;
+
+        prev = cast(values[i]);
+        if (!onlyIfAbsent) {
+          values[i] = value;
+        }
+        return prev;
+      } else {
+        if ((size + 1) * maxLoadDenominator > values.length * maxLoadNumerator) {
+          grow();
+          i = findSlot(k0, k1, h);
+        }
+        insert(-(i + 1), k0, k1, value);
+        size++;
+        return null;
+      }
+    }
+
+    private void insert(int i, long k0, long k1, Object value) {
+      keys[i * longsPerKey + k0Offset] = k0;
+      keys[i * longsPerKey + k1Offset] = k1;
+      values[i] = value;
+    }
+
+    private void grow() {
+      long[] oldKeys;
+      Object[] oldValues;
+
+      oldKeys = keys;
+      oldValues = values;
+      allocate(values.length << 1);
+      for (int i = 0; i < oldValues.length; i++) {
+        if (oldValues[i] != null) {
+          long k0;
+          long k1;
+
+          k0 = oldKeys[i * longsPerKey + k0Offset];
+          k1 = oldKeys[i * longsPerKey + k1Offset];
+          insert(-(findSlot(k0, k1, (int) hash(k0, k1)) + 1), k0, k1, oldValues[i]);
+        }
+      }
+    }
+
+    /**
+     * @param expectedValue if non-null, only remove if the current value is expectedValue
+     */
+    synchronized V remove(long k0, long k1, int h, V expectedValue) {
+      int i;
+      V prev;
+
+      i = findSlot(k0, k1, h);
+      if (i < 0) {
+        return null;
+      }
+      prev = cast(values[i]);
+      if (expectedValue != null && prev != expectedValue) {
+        return null;
+      }
+      deleteSlot(i);
+      size--;
+      return prev;
+    }
+
+    // backward shift deletion for linear probing
+    private void deleteSlot(int i) {
+      int j;
+
+      j = i;
+      while (true) {
+        int home;
+
+        j = (j + 1) & mask;
+        if (values[j] == null) {
+          break;
+        }
+        home = (int) hash(keys[j * longsPerKey + k0Offset], keys[j * longsPerKey + k1Offset]) & mask;
+        // move entry j into the hole at i unless its home lies cyclically within (i, j]
+        if (i <= j ? (i < home && home <= j) : (i < home || home <= j)) {
+          continue;
+        }
+        insert(i, keys[j * longsPerKey + k0Offset], keys[j * longsPerKey + k1Offset], values[j]);
+        i = j;
+      }
+      values[i] = null;
+    }
+
+    synchronized int clear() {
+      int cleared;
+
+      cleared = size;
+      for (int i = 0; i < values.length; i++) {
+        values[i] = null;
+      }
+      size = 0;
+      return cleared;
+    }
+
+    void forEach(EntryConsumer<? super V> consumer) {
+      long[] _keys;
+      Object[] _values;
+      int n;
+
+      synchronized (this) {
+        if (size == 0) {
+          return;
+        }
+        _keys = new long[size * longsPerKey];
+        _values = new Object[size];
+        n = 0;
+        for (int i = 0; i < values.length; i++) {
+          if (values[i] != null) {
+            _keys[n * longsPerKey + k0Offset] = keys[i * longsPerKey + k0Offset];
+            _keys[n * longsPerKey + k1Offset] = keys[i * longsPerKey + k1Offset];
+            _values[n] = values[i];
+            n++;
+          }
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        consumer.accept(_keys[i * longsPerKey + k0Offset], _keys[i * longsPerKey + k1Offset], cast(_values[i]));
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object o) {
+      return (V) o;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.ms.silverking.net.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.ms.silverking.cloud.dht.ConnectionAssignmentPolicy;
+
+/**
+ * The connections that a PersistentAsyncServer maintains to a single destination. Each slot is
+ * established independently; slots that have no established connection hold null.
+ */
+class ConnectionStripe<T extends Connection> {
+  private final AtomicReferenceArray<T> slots;
+  private final AtomicInteger nextIndex;
+
+  ConnectionStripe(int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("size < 1");
+    }
+    slots = new AtomicReferenceArray<>(size);
+    nextIndex = new AtomicInteger();
+  }
+
+  int size() {
+    return slots.length();
+  }
+
+  T get(int index) {
+    return slots.get(index);
+  }
+
+  /**
+   * Place the given connection in the first empty slot, starting at the given index
+   *
+   * @return the index of the slot used, or -1 if all slots are occupied
+   */
+  int add(int index, T connection) {
+    for (int i = 0; i < slots.length(); i++) {
+      int slot;
+
+      slot = (index + i) % slots.length();
+      if (slots.compareAndSet(slot, null, connection)) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Remove the given connection if present
+   *
+   * @return true if the connection was removed
+   */
+  boolean remove(Connection connection) {
+    for (int i = 0; i < slots.length(); i++) {
+      T slot;
+
+      slot = slots.get(i);
+      if (slot == connection && slots.compareAndSet(i, slot, null)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  boolean isEmpty() {
+    for (int i = 0; i < slots.length(); i++) {
+      if (slots.get(i) != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  List<T> getConnections() {
+    List<T> connections;
+
+    connections = new ArrayList<>(slots.length());
+    for (int i = 0; i < slots.length(); i++) {
+      T connection;
+
+      connection = slots.get(i);
+      if (connection != null) {
+        connections.add(connection);
+      }
+    }
+    return connections;
+  }
+
+  /**
+   * Select the slot to use for a message. The selected slot may not yet hold an established connection.
+   *
+   * @param policy   the assignment policy
+   * @param affinity for KeyHash, a hash that selects the same slot for the same key
+   * @return the index of the selected slot
+   */
+  int select(ConnectionAssignmentPolicy policy, int affinity) {
+    if (slots.length() == 1) {
+      return 0;
+    }
+    switch (policy) {
+    case RoundRobin:
+      return Math.floorMod(nextIndex.getAndIncrement(), slots.length());
+    case KeyHash:
+      return Math.floorMod(affinity, slots.length());
+    case LeastQueued:
+      return leastQueued();
+    default:
+      throw new RuntimeException("Panic");
+    }
+  }
+
+  /**
+   * Find the slot with the shortest outgoing queue. Empty slots are preferred, so that all slots are
+   * established once load warrants it. Scanning begins at a rotating index so that ties are spread evenly.
+   */
+  private int leastQueued() {
+    int start;
+    int bestIndex;
+    long bestLength;
+
+    start = Math.floorMod(nextIndex.getAndIncrement(), slots.length());
+    bestIndex = start;
+    bestLength = Long.MAX_VALUE;
+    for (int i = 0; i < slots.length(); i++) {
+      int slot;
+      T connection;
+      long length;
+
+      slot = (start + i) % slots.length();
+      connection = slots.get(slot);
+      if (connection == null) {
+        return slot;
+      }
+      length = connection.getQueueLength();
+      if (length < bestLength) {
+        bestIndex = slot;
+        bestLength = length;
+      }
+    }
+    return bestIndex;
+  }
+}
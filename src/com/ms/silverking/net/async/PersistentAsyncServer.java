@@ -10,6 +10,7 @@
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
+import com.ms.silverking.cloud.dht.ConnectionAssignmentPolicy;
 import com.ms.silverking.cloud.dht.SessionPolicyOnDisconnect;
 import com.ms.silverking.cloud.dht.common.SystemTimeUtil;
 import com.ms.silverking.id.UUIDBase;
@@ -24,11 +25,14 @@
 import com.ms.silverking.thread.lwt.LWTPoolProvider;
 
 /**
- * Maintains persistent TCP connections to other peers
+ * Maintains persistent TCP connections to other peers.
+ * <p>
+ * Outgoing messages to a destination may be spread over multiple connections. Each connection is created
+ * when first selected, and the connection used for a message is chosen by the ConnectionAssignmentPolicy.
  */
 public class PersistentAsyncServer<T extends Connection> implements IncomingConnectionListener<T>, ConnectionListener {
   private final AsyncServer<T> asyncServer;
-  private final ConcurrentMap<InetSocketAddress, T> connections = new ConcurrentHashMap<InetSocketAddress, T>();
+  private final ConcurrentMap<InetSocketAddress, ConnectionStripe<T>> connections = new ConcurrentHashMap<>();
   private final ConcurrentMap<InetSocketAddress, ReentrantLock> newConnectionLocks;
   private final boolean debug;
   private final BaseWorker<OutgoingAsyncMessage> asyncConnector;
@@ -39,6 +43,8 @@
   // it will not open a new connection in reply - the client rejects such incoming connections
   private final boolean isClient;
   private final SessionPolicyOnDisconnect sessionPolicyOnDisconnect;
+  private final int connectionsPerDestination;
+  private final ConnectionAssignmentPolicy connectionAssignmentPolicy;
 
   private AddressStatusProvider addressStatusProvider;
   private SuspectAddressListener suspectAddressListener;
@@ -58,6 +64,13 @@
   private static final String defaultSelectorControllerClass = "PAServer";
 
   public static final int useDefaultBacklog = 0;
+  public static final int defaultConnectionsPerDestination = 1;
+  public static final ConnectionAssignmentPolicy defaultConnectionAssignmentPolicy =
+      ConnectionAssignmentPolicy.RoundRobin;
+  /**
+   * Affinity used for messages that have no natural key
+   */
+  public static final int noAffinity = 0;
 
   // Mainly used for test or inject cutomized AsyncServer
   PersistentAsyncServer(AsyncServer<T> asyncServer, NewConnectionTimeoutController newConnectionTimeoutController,
@@ -74,6 +87,8 @@
     }
     this.isClient = false;
     this.sessionPolicyOnDisconnect = SessionPolicyOnDisconnect.DoNothing;
+    connectionsPerDestination = defaultConnectionsPerDestination;
+    connectionAssignmentPolicy = defaultConnectionAssignmentPolicy;
     asyncServer.registerConnectionManager();
     //new ConnectionDebugger();
   }
@@ -100,6 +115,20 @@ public PersistentAsyncServer(int port, int backlog, int numSelectorControllers,
       LWTPool readerLWTPool, LWTPool writerLWTPool, LWTPool acceptorPool, LWTPool connectorPool,
       int selectionThreadWorkLimit, boolean enabled, boolean debug, MultipleConnectionQueueLengthListener mqListener,
       UUIDBase mqUUID, boolean isClient, SessionPolicyOnDisconnect onDisconnect) throws IOException {
+    this(port, backlog, numSelectorControllers, controllerClass, connectionCreator, newConnectionTimeoutController,
+        readerLWTPool, writerLWTPool, acceptorPool, connectorPool, selectionThreadWorkLimit, enabled, debug, mqListener,
+        mqUUID, isClient, onDisconnect, defaultConnectionsPerDestination, defaultConnectionAssignmentPolicy);
+  }
+
+  public PersistentAsyncServer(int port, int backlog, int numSelectorControllers, String controllerClass,
+      ConnectionCreator<T> connectionCreator, NewConnectionTimeoutController newConnectionTimeoutController,
+      LWTPool readerLWTPool, LWTPool writerLWTPool, LWTPool acceptorPool, LWTPool connectorPool,
+      int selectionThreadWorkLimit, boolean enabled, boolean debug, MultipleConnectionQueueLengthListener mqListener,
+      UUIDBase mqUUID, boolean isClient, SessionPolicyOnDisconnect onDisconnect, int connectionsPerDestination,
+      ConnectionAssignmentPolicy connectionAssignmentPolicy) throws IOException {
+    if (connectionsPerDestination < 1) {
+      throw new IllegalArgumentException("connectionsPerDestination < 1");
+    }
     isRunning = true;
     this.debug = debug;
     this.newConnectionTimeoutController = newConnectionTimeoutController;
@@ -112,6 +141,8 @@ public PersistentAsyncServer(int port, int backlog, int numSelectorControllers,
     }
     this.isClient = isClient;
     this.sessionPolicyOnDisconnect = onDisconnect;
+    this.connectionsPerDestination = connectionsPerDestination;
+    this.connectionAssignmentPolicy = connectionAssignmentPolicy;
     Log.warningf("On disconnect PersistentAsyncServer will %s", onDisconnect);
 
     //For server side optional logic of disconnecting all connections on node exclusion.
@@ -169,11 +200,22 @@ public PersistentAsyncServer(int port, ConnectionCreator<T> connectionCreator,
       NewConnectionTimeoutController newConnectionTimeoutController, int numSelectorControllers, String controllerClass,
       MultipleConnectionQueueLengthListener mqListener, UUIDBase mqUUID, int selectionThreadWorkLimit, boolean isClient,
       SessionPolicyOnDisconnect onDisconnectPolicy) throws IOException {
+    this(port, connectionCreator, newConnectionTimeoutController, numSelectorControllers, controllerClass, mqListener,
+        mqUUID, selectionThreadWorkLimit, isClient, onDisconnectPolicy, defaultConnectionsPerDestination,
+        defaultConnectionAssignmentPolicy);
+  }
+
+  public PersistentAsyncServer(int port, ConnectionCreator<T> connectionCreator,
+      NewConnectionTimeoutController newConnectionTimeoutController, int numSelectorControllers, String controllerClass,
+      MultipleConnectionQueueLengthListener mqListener, UUIDBase mqUUID, int selectionThreadWorkLimit, boolean isClient,
+      SessionPolicyOnDisconnect onDisconnectPolicy, int connectionsPerDestination,
+      ConnectionAssignmentPolicy connectionAssignmentPolicy) throws IOException {
 
     this(port, useDefaultBacklog, numSelectorControllers, controllerClass, connectionCreator,
         newConnectionTimeoutController, LWTPoolProvider.defaultConcurrentWorkPool,
         LWTPoolProvider.defaultConcurrentWorkPool, LWTPoolProvider.defaultConcurrentWorkPool, defaultConnectorPool,
-        selectionThreadWorkLimit, false, false, mqListener, mqUUID, isClient, onDisconnectPolicy);
+        selectionThreadWorkLimit, false, false, mqListener, mqUUID, isClient, onDisconnectPolicy,
+        connectionsPerDestination, connectionAssignmentPolicy);
   }
 
   //////////////////////////////////////////////////////////////////////
@@ -183,8 +225,10 @@ public void enable() {
   }
 
   public void shutdown() {
-    for (Connection connection : connections.values()) {
-      connection.close();
+    for (ConnectionStripe<T> stripe : connections.values()) {
+      for (Connection connection : stripe.getConnections()) {
+        connection.close();
+      }
     }
     if (asyncServer != null) {
     asyncServer.shutdown();
@@ -226,19 +270,35 @@ public void sendAsynchronous(AddrAndPort dest, Object data, UUIDBase uuid, Async
     sendAsynchronous(dest.toInetSocketAddress(), data, uuid, listener, deadline);
   }
 
+  /**
+   * Send asynchronously, using the given affinity to select among the destination's connections
+   * when connections are assigned by ConnectionAssignmentPolicy.KeyHash
+   */
+  public void sendAsynchronous(AddrAndPort dest, Object data, UUIDBase uuid, AsyncSendListener listener, long deadline,
+      int affinity) throws UnknownHostException {
+    sendAsynchronous(dest.toInetSocketAddress(), data, uuid, listener, deadline, affinity);
+  }
+
   public void sendAsynchronous(InetSocketAddress dest, Object data, UUIDBase uuid, AsyncSendListener listener,
       long deadline) {
+    sendAsynchronous(dest, data, uuid, listener, deadline, noAffinity);
+  }
+
+  public void sendAsynchronous(InetSocketAddress dest, Object data, UUIDBase uuid, AsyncSendListener listener,
+      long deadline, int affinity) {
     try {
       Connection connection;
+      int index;
 
-      connection = getEstablishedConnection(dest);
+      index = selectIndex(dest, affinity);
+      connection = getEstablishedConnection(dest, index);
       //if (DebugUtil.delayedDebug()) {
       //    System.out.println("getEstablishedConnection: "+ connection);
       //}
       if (connection != null) {
         connection.sendAsynchronous(data, uuid, listener, deadline);
       } else {
-        newConnectionSendAsynchronous(dest, data, uuid, listener, deadline);
+        newConnectionSendAsynchronous(dest, index, data, uuid, listener, deadline);
       }
     } catch (IOException ioe) {
       ioe.printStackTrace();
@@ -273,7 +333,7 @@ public void sendSynchronous(InetSocketAddress dest, Object data, UUIDBase uuid,
     backoff = null;
     while (true) {
       try {
-        connection = getConnectionFast(dest, deadline, null);
+        connection = getConnectionFast(dest, selectIndex(dest, noAffinity), deadline, null);
       } catch (AuthFailedException e) {
         throw new IOException(e);
       }
@@ -281,7 +341,7 @@ public void sendSynchronous(InetSocketAddress dest, Object data, UUIDBase uuid,
         connection.sendSynchronous(data, uuid, listener, deadline);
         return;
       } catch (IOException ioe) {
-        connections.remove(dest);
+        removeConnection(dest, connection);
         informSuspectAddressListener(dest);
         Log.warning(ioe + " " + dest);
         Log.logErrorWarning(ioe);
@@ -329,8 +389,52 @@ public void send(InetSocketAddress dest, Object data, boolean synchronous, long
 
   //////////////////////////////////////////////////////////////////////
 
-  private Connection getEstablishedConnection(InetSocketAddress dest) throws ConnectException {
-    return connections.get(dest);
+  private int selectIndex(InetSocketAddress dest, int affinity) {
+    if (connectionsPerDestination == 1) {
+      return 0;
+    } else {
+      return connections.computeIfAbsent(dest, _dest -> new ConnectionStripe<>(connectionsPerDestination)).select(
+          connectionAssignmentPolicy, affinity);
+    }
+  }
+
+  /**
+   * Add a connection to the stripe of its destination, creating the stripe if needed. The addition is made
+   * within connections.compute() so that it cannot race the removal of the stripe once it is empty, which
+   * would leave the connection in a stripe that is no longer mapped.
+   *
+   * @return the index of the slot used, or -1 if all slots are occupied
+   */
+  int addConnection(InetSocketAddress dest, int index, T connection) {
+    int[] slot;
+
+    slot = new int[1];
+    connections.compute(dest, (_dest, stripe) -> {
+      if (stripe == null) {
+        stripe = new ConnectionStripe<>(connectionsPerDestination);
+      }
+      slot[0] = stripe.add(index, connection);
+      return stripe;
+    });
+    return slot[0];
+  }
+
+  /**
+   * Remove a connection from the stripe of its destination, and remove the stripe once it is empty. Both are
+   * done within connections.computeIfPresent() for the reason given in addConnection().
+   */
+  void removeConnection(InetSocketAddress dest, Connection connection) {
+    connections.computeIfPresent(dest, (_dest, stripe) -> {
+      stripe.remove(connection);
+      return stripe.isEmpty() ? null : stripe;
+    });
+  }
+
+  Connection getEstablishedConnection(InetSocketAddress dest, int index) {
+    ConnectionStripe<T> stripe;
+
+    stripe = connections.get(dest);
+    return stripe != null ? stripe.get(index) : null;
   }
 
   public void ensureConnected(AddrAndPort dest) throws ConnectException, AuthFailedException {
@@ -341,24 +445,24 @@ public void ensureConnected(AddrAndPort dest) throws ConnectException, AuthFaile
 
   public Connection getConnection(AddrAndPort dest, long deadline) throws ConnectException, AuthFailedException {
     try {
-      return getConnectionFast(dest.toInetSocketAddress(), deadline, null);
+      return getConnectionFast(dest.toInetSocketAddress(), 0, deadline, null);
     } catch (UnknownHostException uhe) {
       throw new RuntimeException(uhe);
     }
   }
 
-  private Connection getConnectionFast(InetSocketAddress dest, long deadline, String context)
+  private Connection getConnectionFast(InetSocketAddress dest, int index, long deadline, String context)
       throws ConnectException, AuthFailedException {
     Connection connection;
 
-    connection = connections.get(dest);
+    connection = getEstablishedConnection(dest, index);
     if (connection == null) {
-      connection = getConnectionSlow(dest, deadline, context);
+      connection = getConnectionSlow(dest, index, deadline, context);
     }
     return connection;
   }
 
-  private Connection getConnectionSlow(InetSocketAddress dest, long deadline, String context)
+  private Connection getConnectionSlow(InetSocketAddress dest, int index, long deadline, String context)
       throws ConnectException, AuthFailedException {
     Connection connection;
     ReentrantLock destNewConnectionLock;
@@ -370,9 +474,9 @@ private Connection getConnectionSlow(InetSocketAddress dest, long deadline, Stri
     }
     destNewConnectionLock.lock();
     try {
-      connection = connections.get(dest);
+      connection = getEstablishedConnection(dest, index);
       if (connection == null) {
-        connection = createConnection(dest, deadline, context);
+        connection = createConnection(dest, index, deadline, context);
       }
       return connection;
     } finally {
@@ -385,7 +489,7 @@ private Connection getConnectionSlow(InetSocketAddress dest, long deadline, Stri
    *
    * @return
    */
-  private Connection createConnection(InetSocketAddress dest, long deadline, String context)
+  private Connection createConnection(InetSocketAddress dest, int index, long deadline, String context)
       throws ConnectException, AuthFailedException {
     RandomBackoff backoff;
     IPAndPort _dest;
@@ -412,7 +516,17 @@ private Connection createConnection(InetSocketAddress dest, long deadline, Strin
         T connection;
 
         connection = asyncServer.newOutgoingConnection(dest, this);
-        connections.putIfAbsent(dest, connection);
+        if (addConnection(dest, index, connection) < 0) {
+          Connection established;
+
+          // all slots were filled concurrently; use an established connection rather than leak this one
+          established = getEstablishedConnection(dest, index);
+          if (established != null) {
+            connection.close();
+            return established;
+          }
+          Log.warning("Untracked connection: all slots occupied ", dest);
+        }
         if (suspectAddressListener != null) {
           suspectAddressListener.removeSuspect(dest);
         }
@@ -502,7 +616,9 @@ public void incomingConnection(T connection) {
     if (this.isClient) {
       throw new RuntimeException("Client refused an unexpected incoming connection");
     }
-    connections.putIfAbsent(connection.getRemoteSocketAddress(), connection);
+    if (addConnection(connection.getRemoteSocketAddress(), 0, connection) < 0) {
+      Log.warning("Incoming connection not used for sends: all slots occupied ", connection);
+    }
     connection.setConnectionListener(this);
     if (suspectAddressListener != null) {
       suspectAddressListener.removeSuspect(connection.getRemoteSocketAddress());
@@ -524,7 +640,7 @@ public void disconnected(Connection connection, InetSocketAddress remoteAddr, Ob
   public void removeAndCloseConnection(Connection connection) {
     Log.warning("removeAndCloseConnection " + connection);
     if (connection.getRemoteSocketAddress() != null) {
-      connections.remove(connection.getRemoteSocketAddress());
+      removeConnection(connection.getRemoteSocketAddress(), connection);
     }
   }
     
@@ -543,22 +659,24 @@ public void sendSucceeded(Connection connection, Object data) {
 
   //////////////////////////////////////////////////////////////////////
 
-  private void newConnectionSendAsynchronous(InetSocketAddress dest, Object data, UUIDBase uuid,
+  private void newConnectionSendAsynchronous(InetSocketAddress dest, int index, Object data, UUIDBase uuid,
       AsyncSendListener listener, long deadline) {
-    asyncConnector.addWork(new OutgoingAsyncMessage(dest, data, uuid, listener, deadline));
+    asyncConnector.addWork(new OutgoingAsyncMessage(dest, index, data, uuid, listener, deadline));
   }
 
   class OutgoingAsyncMessage {
     private final InetSocketAddress dest;
+    private final int index;
     private final Object data;
     private final UUIDBase uuid;
     private final AsyncSendListener listener;
     private final long deadline;
     private final String context;
 
-    public OutgoingAsyncMessage(InetSocketAddress dest, Object data, UUIDBase uuid, AsyncSendListener listener,
-        long deadline) {
+    public OutgoingAsyncMessage(InetSocketAddress dest, int index, Object data, UUIDBase uuid,
+        AsyncSendListener listener, long deadline) {
       this.dest = dest;
+      this.index = index;
       this.data = data;
       this.uuid = uuid;
       this.listener = listener;
@@ -579,6 +697,10 @@ public InetSocketAddress getDest() {
       return dest;
     }
 
+    public int getIndex() {
+      return index;
+    }
+
     public Object getData() {
       return data;
     }
@@ -615,7 +737,7 @@ public void doWork(OutgoingAsyncMessage msg) {
       try {
         Connection connection;
 
-        connection = getConnectionFast(msg.getDest(), msg.getDeadline(), msg.getContext());
+        connection = getConnectionFast(msg.getDest(), msg.getIndex(), msg.getDeadline(), msg.getContext());
         connection.sendAsynchronous(msg.getData(), msg.getUUID(), msg.getListener(), msg.getDeadline());
       } catch (UnhealthyConnectionAttemptException ucae) {
         Log.warning("Attempted connect to unhealthy address: ", msg.getDest());
@@ -643,8 +765,10 @@ class ConnectionDebugger implements Runnable {
     private void debugConnections() {
       System.out.println();
       System.out.println("\nConnections:");
-      for (T connection : connections.values()) {
-        debugConnection(connection);
+      for (ConnectionStripe<T> stripe : connections.values()) {
+        for (T connection : stripe.getConnections()) {
+          debugConnection(connection);
+        }
       }
       System.out.println();
       LWTPoolProvider.defaultConcurrentWorkPool.debug();
@@ -696,13 +820,15 @@ private void checkConnections() {
       maxQueuedConnection = null;
       longestQueueLength = 0;
       totalQueueLength = 0;
-      for (Connection connection : connections.values()) {
-        long queueLength;
-
-        queueLength = connection.getQueueLength();
-        totalQueueLength += queueLength;
-        if (queueLength > longestQueueLength) {
-          maxQueuedConnection = connection;
+      for (ConnectionStripe<T> stripe : connections.values()) {
+        for (Connection connection : stripe.getConnections()) {
+          long queueLength;
+
+          queueLength = connection.getQueueLength();
+          totalQueueLength += queueLength;
+          if (queueLength > longestQueueLength) {
+            maxQueuedConnection = connection;
+          }
         }
       }
       listener.queueLength(uuid, totalQueueLength, maxQueuedConnection);
@@ -0,0 +1,77 @@
+package com.ms.silverking.numeric;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.ms.silverking.time.AbsMillisTimeSource;
+
+/**
+ * A LatencyHistogram that is reset every intervalMillis. Readers see the histogram of the last complete
+ * interval rather than the partially-filled current interval, so that successive reads are comparable.
+ * Intervals are rolled lazily by whichever thread records or reads first after an interval has elapsed;
+ * if no interval has been rolled for two intervals, the last complete interval is empty.
+ */
+public class IntervalLatencyHistogram {
+  private final AbsMillisTimeSource absMillisTimeSource;
+  private final long intervalMillis;
+  private final AtomicReference<LatencyHistogram> current;
+  private final AtomicLong intervalStartMillis;
+  private volatile LatencyHistogram lastInterval;
+
+  public IntervalLatencyHistogram(AbsMillisTimeSource absMillisTimeSource, long intervalMillis) {
+    if (intervalMillis <= 0) {
+      throw new IllegalArgumentException("Invalid intervalMillis: " + intervalMillis);
+    }
+    this.absMillisTimeSource = absMillisTimeSource;
+    this.intervalMillis = intervalMillis;
+    current = new AtomicReference<>(new LatencyHistogram());
+    intervalStartMillis = new AtomicLong(absMillisTimeSource.absTimeMillis());
+    lastInterval = new LatencyHistogram();
+  }
+
+  public void record(long value) {
+    checkForIntervalEnd();
+    current.get().record(value);
+  }
+
+  /**
+   * @return the histogram of the last complete interval
+   */
+  public LatencyHistogram getLastInterval() {
+    checkForIntervalEnd();
+    return lastInterval;
+  }
+
+  /**
+   * Add the given histogram to the last complete interval. Used to aggregate the snapshots of
+   * several instances into a newly-created instance.
+   */
+  public void addToLastInterval(LatencyHistogram histogram) {
+    lastInterval.add(histogram);
+  }
+
+  private void checkForIntervalEnd() {
+    long curTimeMillis;
+    long _intervalStartMillis;
+
+    curTimeMillis = absMillisTimeSource.absTimeMillis();
+    _intervalStartMillis = intervalStartMillis.get();
+    if (curTimeMillis - _intervalStartMillis >= intervalMillis
+        && intervalStartMillis.compareAndSet(_intervalStartMillis, curTimeMillis)) {
+      LatencyHistogram completed;
+
+      // Recorders that obtained the old histogram just before the swap may still add to it; this is benign
+      completed = current.getAndSet(new LatencyHistogram());
+      if (curTimeMillis - _intervalStartMillis < 2 * intervalMillis) {
+        lastInterval = completed;
+      } else {
+        lastInterval = new LatencyHistogram();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getLastInterval().toString();
+  }
+}
@@ -0,0 +1,140 @@
+package com.ms.silverking.numeric;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of non-negative latencies. Values below 16 have their own bins; larger values
+ * are binned logarithmically with 8 bins per power of two, bounding the relative error of a reported
+ * percentile to 12.5%. Values above maxValue are counted in the last bin.
+ * <p>
+ * decay() halves all counts so that, when called periodically, recent samples dominate.
+ */
+public class LatencyHistogram {
+  private final AtomicLongArray counts;
+
+  private static final int linearBins = 16;
+  private static final int subBinBits = 3;
+  private static final int subBinsPerPower = 1 << subBinBits;
+  private static final int firstLogPower = 4; // log2(linearBins)
+  private static final int maxPower = 30;
+  private static final int numBins = linearBins + (maxPower - firstLogPower + 1) * subBinsPerPower;
+  public static final long maxValue = (1L << (maxPower + 1)) - 1;
+
+  public LatencyHistogram() {
+    counts = new AtomicLongArray(numBins);
+  }
+
+  static int binIndex(long value) {
+    if (value < linearBins) {
+      return (int) Math.max(value, 0);
+    } else if (value > maxValue) {
+      return numBins - 1;
+    } else {
+      int power;
+      int subBin;
+
+      power = 63 - Long.numberOfLeadingZeros(value);
+      subBin = (int) (value >>> (power - subBinBits)) & (subBinsPerPower - 1);
+      return linearBins + (power - firstLogPower) * subBinsPerPower + subBin;
+    }
+  }
+
+  /**
+   * @return the largest value that falls into the given bin
+   */
+  static long binUpperBound(int index) {
+    if (index < linearBins) {
+      return index;
+    } else {
+      int power;
+      int subBin;
+
+      power = firstLogPower + (index - linearBins) / subBinsPerPower;
+      subBin = (index - linearBins) % subBinsPerPower;
+      return (1L << power) + ((long) (subBin + 1) << (power - subBinBits)) - 1;
+    }
+  }
+
+  public void record(long value) {
+    counts.incrementAndGet(binIndex(value));
+  }
+
+  public long getCount() {
+    long count;
+
+    count = 0;
+    for (int i = 0; i < numBins; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * @param percentile a percentile in [0, 100]
+   * @return an upper bound of the given percentile of the recorded values, or -1 if none have been recorded
+   */
+  public long getPercentile(double percentile) {
+    long[] snapshot;
+    long count;
+    long threshold;
+    long cumulative;
+
+    snapshot = new long[numBins];
+    count = 0;
+    for (int i = 0; i < numBins; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    if (count == 0) {
+      return -1;
+    }
+    threshold = Math.max((long) Math.ceil(count * percentile / 100.0), 1);
+    cumulative = 0;
+    for (int i = 0; i < numBins; i++) {
+      cumulative += snapshot[i];
+      if (cumulative >= threshold) {
+        return binUpperBound(i);
+      }
+    }
+    return binUpperBound(numBins - 1);
+  }
+
+  /**
+   * Add the counts of another histogram to this histogram
+   */
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < numBins; i++) {
+      long count;
+
+      count = other.counts.get(i);
+      if (count != 0) {
+        counts.addAndGet(i, count);
+      }
+    }
+  }
+
+  /**
+   * Halve all counts
+   */
+  public void decay() {
+    for (int i = 0; i < numBins; i++) {
+      long count;
+
+      do {
+        count = counts.get(i);
+      } while (count != 0 && !counts.compareAndSet(i, count, count >> 1));
+    }
+  }
+
+  public void reset() {
+    for (int i = 0; i < numBins; i++) {
+      counts.set(i, 0);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count=%d p50=%d p90=%d p99=%d p999=%d", getCount(), getPercentile(50.0),
+        getPercentile(90.0), getPercentile(99.0), getPercentile(99.9));
+  }
+}
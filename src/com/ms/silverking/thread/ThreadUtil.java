@@ -2,8 +2,13 @@
 
 package com.ms.silverking.thread;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 
@@ -12,8 +17,68 @@ public class ThreadUtil {
 
   protected static final int DEF_EXCEPTION_PAUSE_MILLIS = 1000;
 
+  // virtual thread support is looked up reflectively so that this class runs on pre-virtual-thread JVMs
+  private static final MethodHandle isVirtualHandle;
+  private static final MethodHandle newVirtualThreadPerTaskExecutorHandle;
+
   static {
+    MethodHandle _isVirtualHandle;
+    MethodHandle _newVirtualThreadPerTaskExecutorHandle;
+
     random = new Random();
+    try {
+      _isVirtualHandle = MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual",
+          MethodType.methodType(boolean.class));
+      _newVirtualThreadPerTaskExecutorHandle = MethodHandles.publicLookup().findStatic(Executors.class,
+          "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      _isVirtualHandle = null;
+      _newVirtualThreadPerTaskExecutorHandle = null;
+    }
+    isVirtualHandle = _isVirtualHandle;
+    newVirtualThreadPerTaskExecutorHandle = _newVirtualThreadPerTaskExecutorHandle;
+  }
+
+  /**
+   * @return true if this JVM supports virtual threads
+   */
+  public static boolean virtualThreadsSupported() {
+    return isVirtualHandle != null;
+  }
+
+  /**
+   * @return true if the given thread is a virtual thread
+   */
+  public static boolean isVirtual(Thread thread) {
+    if (isVirtualHandle == null) {
+      return false;
+    } else {
+      try {
+        return (boolean) isVirtualHandle.invokeExact(thread);
+      } catch (Throwable t) {
+        throw new RuntimeException(t);
+      }
+    }
+  }
+
+  public static boolean isCurrentThreadVirtual() {
+    return isVirtual(Thread.currentThread());
+  }
+
+  /**
+   * @return an executor that runs each task in a new virtual thread
+   * @throws UnsupportedOperationException if this JVM does not support virtual threads
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor() {
+    if (newVirtualThreadPerTaskExecutorHandle == null) {
+      throw new UnsupportedOperationException("Virtual threads not supported by this JVM");
+    } else {
+      try {
+        return (ExecutorService) newVirtualThreadPerTaskExecutorHandle.invokeExact();
+      } catch (Throwable t) {
+        throw new RuntimeException(t);
+      }
+    }
   }
 
   public static void sleepNanos(int nanos) {
@@ -62,6 +62,10 @@ public void pause() {
     paused = true;
   }
 
+  public boolean isPaused() {
+    return paused;
+  }
+
   public void unpause() {
     if (debugPause) {
       System.out.println("unpause\t" + pauseQ.size());
@@ -0,0 +1,352 @@
+package com.ms.silverking.util;
+
+import java.util.concurrent.Executor;
+
+import com.ms.silverking.log.Log;
+import com.ms.silverking.time.AbsMillisTimeSource;
+
+/**
+ * Hierarchical timing wheel for large numbers of timeouts that are usually cancelled before they expire.
+ * <p>
+ * Scheduling and cancellation are O(1). Time is divided into ticks of tickMillis. The first level holds
+ * timeouts that expire within slotsPerLevel ticks; each further level covers slotsPerLevel times the span
+ * of the level below it, and its timeouts are cascaded down a level as their expiration approaches.
+ * Timeouts beyond the span of the top level are held in the top level and re-examined when cascaded.
+ * <p>
+ * Expired timeouts are handed to their handlers outside of the wheel's lock, via the wheel's handler
+ * executor. By default, the wheel is driven by a daemon thread that is started when the first timeout is
+ * scheduled; the thread parks until the next occupied tick. Wheels created without an executor run handlers
+ * on the driving thread, in which case handlers should be brief.
+ */
+public class TimerWheel {
+  private final String name;
+  private final AbsMillisTimeSource timeSource;
+  private final int tickMillis;
+  private final Executor handlerExecutor;
+  private final Timeout[] slots;
+  private long curTick; // the next tick to be processed
+  private int size;
+  private boolean running;
+  private Thread thread;
+  private long wakeTick; // tick at which the parked driving thread will wake
+
+  private static final int levelBits = 8;
+  private static final int slotsPerLevel = 1 << levelBits;
+  private static final int slotMask = slotsPerLevel - 1;
+  private static final int numLevels = 4;
+  private static final long maxTicks = (1L << (levelBits * numLevels)) - 1;
+
+  /**
+   * Receives expired timeouts
+   */
+  public interface TimeoutHandler {
+    void timeoutExpired(long curTimeMillis);
+  }
+
+  /**
+   * A scheduled timeout. May be cancelled until it expires.
+   */
+  public static final class Timeout {
+    private final TimerWheel wheel;
+    private final TimeoutHandler handler;
+    private final long deadlineTick;
+    private Timeout prev;
+    private Timeout next;
+    private int slot;
+
+    private static final int unlinked = -1;
+
+    private Timeout(TimerWheel wheel, TimeoutHandler handler, long deadlineTick) {
+      this.wheel = wheel;
+      this.handler = handler;
+      this.deadlineTick = deadlineTick;
+      slot = unlinked;
+    }
+
+    /**
+     * @return true if the timeout was pending and has been cancelled; false if it had already expired or
+     * been cancelled
+     */
+    public boolean cancel() {
+      return wheel.cancel(this);
+    }
+  }
+
+  /**
+   * @param handlerExecutor executor on which handlers of expired timeouts are run
+   */
+  public TimerWheel(String name, AbsMillisTimeSource timeSource, int tickMillis, Executor handlerExecutor) {
+    if (tickMillis < 1) {
+      throw new IllegalArgumentException("tickMillis < 1");
+    }
+    this.name = name;
+    this.timeSource = timeSource;
+    this.tickMillis = tickMillis;
+    this.handlerExecutor = handlerExecutor;
+    slots = new Timeout[slotsPerLevel * numLevels];
+    curTick = timeSource.absTimeMillis() / tickMillis;
+    wakeTick = Long.MAX_VALUE;
+  }
+
+  /**
+   * Create a wheel that runs handlers on the thread that advances the wheel
+   */
+  public TimerWheel(String name, AbsMillisTimeSource timeSource, int tickMillis) {
+    this(name, timeSource, tickMillis, Runnable::run);
+  }
+
+  /**
+   * Schedule a timeout and start the driving thread if it is not already running
+   *
+   * @param absDeadlineMillis time at or after which the handler will be called
+   */
+  public Timeout schedule(long absDeadlineMillis, TimeoutHandler handler) {
+    Timeout timeout;
+
+    timeout = scheduleWithoutThread(absDeadlineMillis, handler);
+    synchronized (this) {
+      if (thread == null) {
+        start();
+      } else if (timeout.deadlineTick < wakeTick) {
+        // the driving thread is idle or parked beyond this deadline
+        notifyAll();
+      }
+    }
+    return timeout;
+  }
+
+  /**
+   * Schedule a timeout without starting the driving thread. Used when the wheel is driven explicitly via
+   * advance().
+   */
+  public synchronized Timeout scheduleWithoutThread(long absDeadlineMillis, TimeoutHandler handler) {
+    Timeout timeout;
+    long deadlineTick;
+
+    // round up so that the handler is never called early
+    deadlineTick = (absDeadlineMillis + tickMillis - 1) / tickMillis;
+    if (size == 0 && deadlineTick > curTick) {
+      // nothing is pending; skip the idle ticks rather than processing them one at a time
+      curTick = Math.max(curTick, timeSource.absTimeMillis() / tickMillis);
+    }
+    timeout = new Timeout(this, handler, deadlineTick);
+    link(timeout);
+    size++;
+    return timeout;
+  }
+
+  private void link(Timeout timeout) {
+    long delta;
+    int slot;
+
+    delta = timeout.deadlineTick - curTick;
+    if (delta < 0) {
+      // already due; place in the slot processed next
+      slot = (int) (curTick & slotMask);
+    } else {
+      int level;
+
+      if (delta > maxTicks) {
+        delta = maxTicks;
+      }
+      level = 0;
+      while (delta >= 1L << (levelBits * (level + 1))) {
+        level++;
+      }
+      slot = level * slotsPerLevel + (int) ((curTick + delta) >>> (levelBits * level) & slotMask);
+    }
+    timeout.slot = slot;
+    timeout.prev = null;
+    timeout.next = slots[slot];
+    if (timeout.next != null) {
+      timeout.next.prev = timeout;
+    }
+    slots[slot] = timeout;
+  }
+
+  private void unlink(Timeout timeout) {
+    if (timeout.prev != null) {
+      timeout.prev.next = timeout.next;
+    } else {
+      slots[timeout.slot] = timeout.next;
+    }
+    if (timeout.next != null) {
+      timeout.next.prev = timeout.prev;
+    }
+    timeout.prev = null;
+    timeout.next = null;
+    timeout.slot = Timeout.unlinked;
+  }
+
+  private synchronized boolean cancel(Timeout timeout) {
+    if (timeout.slot == Timeout.unlinked) {
+      return false;
+    } else {
+      unlink(timeout);
+      size--;
+      return true;
+    }
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Process all ticks up to curTimeMillis, calling the handlers of expired timeouts
+   *
+   * @return the number of expired timeouts
+   */
+  public int advance(long curTimeMillis) {
+    Timeout expired;
+    int numExpired;
+
+    expired = takeExpired(curTimeMillis / tickMillis);
+    numExpired = 0;
+    while (expired != null) {
+      Timeout next;
+
+      next = expired.next;
+      expired.next = null;
+      dispatch(expired.handler, curTimeMillis);
+      numExpired++;
+      expired = next;
+    }
+    return numExpired;
+  }
+
+  private void dispatch(TimeoutHandler handler, long curTimeMillis) {
+    try {
+      handlerExecutor.execute(() -> {
+        try {
+          handler.timeoutExpired(curTimeMillis);
+        } catch (Exception e) {
+          Log.logErrorWarning(e, name + " TimeoutHandler threw");
+        }
+      });
+    } catch (Exception e) {
+      Log.logErrorWarning(e, name + " unable to dispatch TimeoutHandler");
+    }
+  }
+
+  /**
+   * Find the next tick at which processing may expire or cascade timeouts: the next occupied first level
+   * slot, or the next tick at which higher levels cascade, whichever is sooner. Each first level slot holds
+   * timeouts for a single tick, and a cascade occurs at least every slotsPerLevel ticks, so at most
+   * slotsPerLevel slots are examined.
+   */
+  private long nextOccupiedTick() {
+    long tick;
+
+    tick = curTick;
+    while ((tick & slotMask) != 0 && slots[(int) (tick & slotMask)] == null) {
+      tick++;
+    }
+    return tick;
+  }
+
+  // returns a list linked through Timeout.next
+  private synchronized Timeout takeExpired(long targetTick) {
+    Timeout expired;
+
+    expired = null;
+    while (curTick <= targetTick && size > 0) {
+      int slot;
+
+      // skip unoccupied ticks, but never past targetTick + 1 as later schedules are linked relative to curTick
+      curTick = Math.min(nextOccupiedTick(), targetTick + 1);
+      if (curTick > targetTick) {
+        break;
+      }
+      slot = (int) (curTick & slotMask);
+      if (slot == 0) {
+        cascade(1);
+      }
+      while (slots[slot] != null) {
+        Timeout timeout;
+
+        timeout = slots[slot];
+        unlink(timeout);
+        size--;
+        timeout.next = expired;
+        expired = timeout;
+      }
+      curTick++;
+    }
+    if (curTick <= targetTick) {
+      curTick = targetTick + 1;
+    }
+    return expired;
+  }
+
+  // move the timeouts in the current slot of the given level down the hierarchy
+  private void cascade(int level) {
+    int slot;
+    Timeout timeout;
+
+    if (level >= numLevels) {
+      return;
+    }
+    slot = (int) (curTick >>> (levelBits * level) & slotMask);
+    if (slot == 0) {
+      cascade(level + 1);
+    }
+    slot += level * slotsPerLevel;
+    timeout = slots[slot];
+    slots[slot] = null;
+    while (timeout != null) {
+      Timeout next;
+
+      next = timeout.next;
+      link(timeout);
+      timeout = next;
+    }
+  }
+
+  private synchronized void start() {
+    running = true;
+    thread = new Thread(this::run, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public void stop() {
+    synchronized (this) {
+      running = false;
+      notifyAll();
+    }
+  }
+
+  private void run() {
+    while (true) {
+      try {
+        synchronized (this) {
+          // park until the next occupied tick; schedule() wakes us for anything sooner
+          while (running) {
+            long waitMillis;
+
+            if (size == 0) {
+              wakeTick = Long.MAX_VALUE;
+              wait();
+            } else {
+              wakeTick = nextOccupiedTick();
+              waitMillis = wakeTick * tickMillis - timeSource.absTimeMillis();
+              if (waitMillis <= 0) {
+                break;
+              }
+              wait(waitMillis);
+            }
+          }
+          wakeTick = Long.MIN_VALUE;
+          if (!running) {
+            break;
+          }
+        }
+        advance(timeSource.absTimeMillis());
+      } catch (InterruptedException ie) {
+      } catch (Exception e) {
+        Log.logErrorWarning(e, name);
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.ms.silverking.cloud.dht;
+
+import static com.ms.silverking.testing.AssertFunction.checkHashCodeEquals;
+import static com.ms.silverking.testing.AssertFunction.checkHashCodeNotEquals;
+import static com.ms.silverking.testing.AssertFunction.test_FirstEqualsSecond_FirstNotEqualsThird;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.ms.silverking.cloud.dht.client.gen.OmitGeneration;
+import com.ms.silverking.code.ConstraintViolationException;
+
+@OmitGeneration
+public class NamespaceStorageOptionsTest {
+
+  private static final NamespaceStorageOptions defaultOptions = NamespaceStorageOptions.template;
+  private static final NamespaceStorageOptions defaultOptionsCopy = new NamespaceStorageOptions(
+      NamespaceStorageOptions.defaultGroupCommitIntervalMillis, NamespaceStorageOptions.defaultGroupCommitMaxBytes,
+      NamespaceStorageOptions.defaultColdSegmentAge, NamespaceStorageOptions.defaultOffHeapKeyIndex);
+  private static final NamespaceStorageOptions defaultOptionsAlmostCopy = defaultOptions.groupCommitMaxBytes(1024);
+  private static final NamespaceStorageOptions defaultOptionsDiff = new NamespaceStorageOptions(5, 1024, 8, true);
+
+  @Test
+  public void testGetters() {
+    assertEquals(NamespaceStorageOptions.defaultGroupCommitIntervalMillis,
+        defaultOptions.getGroupCommitIntervalMillis());
+    assertEquals(NamespaceStorageOptions.defaultGroupCommitMaxBytes, defaultOptions.getGroupCommitMaxBytes());
+    assertFalse(defaultOptions.groupCommitEnabled());
+    assertEquals(5, defaultOptionsDiff.getGroupCommitIntervalMillis());
+    assertEquals(1024, defaultOptionsDiff.getGroupCommitMaxBytes());
+    assertTrue(defaultOptionsDiff.groupCommitEnabled());
+    assertEquals(NamespaceStorageOptions.defaultColdSegmentAge, defaultOptions.getColdSegmentAge());
+    assertEquals(8, defaultOptionsDiff.getColdSegmentAge());
+    assertEquals(NamespaceStorageOptions.defaultOffHeapKeyIndex, defaultOptions.getOffHeapKeyIndex());
+    assertTrue(defaultOptionsDiff.getOffHeapKeyIndex());
+  }
+
+  @Test(expected = ConstraintViolationException.class)
+  public void testNegativeInterval() {
+    defaultOptions.groupCommitIntervalMillis(-1);
+  }
+
+  @Test(expected = ConstraintViolationException.class)
+  public void testZeroMaxBytes() {
+    defaultOptions.groupCommitMaxBytes(0);
+  }
+
+  @Test(expected = ConstraintViolationException.class)
+  public void testNegativeColdSegmentAge() {
+    defaultOptions.coldSegmentAge(-1);
+  }
+
+  @Test
+  public void testHashCode() {
+    checkHashCodeEquals(defaultOptions, defaultOptionsCopy);
+    checkHashCodeNotEquals(defaultOptions, defaultOptionsAlmostCopy);
+    checkHashCodeNotEquals(defaultOptions, defaultOptionsDiff);
+  }
+
+  @Test
+  public void testEqualsObject() {
+    NamespaceStorageOptions[][] testCases = { { defaultOptions, defaultOptions, defaultOptionsDiff },
+        { defaultOptionsCopy, defaultOptions, defaultOptionsDiff },
+        { defaultOptionsAlmostCopy, defaultOptionsAlmostCopy, defaultOptions },
+        { defaultOptionsDiff, defaultOptionsDiff, defaultOptions }, };
+    test_FirstEqualsSecond_FirstNotEqualsThird(testCases);
+  }
+
+  @Test
+  public void testToStringAndParse() {
+    NamespaceStorageOptions[] testCases = { defaultOptions, defaultOptionsCopy, defaultOptionsAlmostCopy,
+        defaultOptionsDiff, };
+
+    for (NamespaceStorageOptions testCase : testCases) {
+      assertEquals(testCase, NamespaceStorageOptions.parse(testCase.toString()));
+    }
+  }
+
+  @Test
+  public void testNamespaceOptions() {
+    NamespaceOptions nsOptions;
+
+    assertNull(NamespaceOptions.templateOptions.getStorageOptions());
+    nsOptions = NamespaceOptions.templateOptions.storageType(StorageType.FILE_SYNC).storageOptions(defaultOptionsDiff);
+    assertEquals(defaultOptionsDiff, nsOptions.getStorageOptions());
+    assertEquals(nsOptions, NamespaceOptions.parse(nsOptions.toString()));
+    // options without storageOptions must keep their existing definition
+    assertFalse(NamespaceOptions.templateOptions.toString().contains("storageOptions"));
+  }
+}
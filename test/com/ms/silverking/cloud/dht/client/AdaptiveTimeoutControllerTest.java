@@ -0,0 +1,101 @@
+package com.ms.silverking.cloud.dht.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptiveTimeoutControllerTest {
+  private static final AdaptiveTimeoutController defaultController = AdaptiveTimeoutController.template;
+  // no jitter, so that timeouts are deterministic
+  private static final AdaptiveTimeoutController noJitterController = new AdaptiveTimeoutController(3, 99.0, 2.0,
+      10, 1000, 50, 60 * 1000, 0.0, 0.5, 1, 5000);
+
+  private static class FixedLatencyStats implements OpLatencyStats {
+    private final long numSamples;
+    private final long percentileMillis;
+    private int retries;
+
+    FixedLatencyStats(long numSamples, long percentileMillis) {
+      this.numSamples = numSamples;
+      this.percentileMillis = percentileMillis;
+    }
+
+    @Override
+    public long getNumSamples() {
+      return numSamples;
+    }
+
+    @Override
+    public long getLatencyPercentileMillis(double percentile) {
+      return percentileMillis;
+    }
+
+    @Override
+    public boolean tryAcquireRetry(double retryRatio, int minRetries) {
+      if (retries < retryRatio * numSamples + minRetries) {
+        ++retries;
+        return true;
+      } else {
+        return false;
+      }
+    }
+  }
+
+  @Test
+  public void testAttemptTimeouts() {
+    // insufficient samples: initial timeout
+    assertEquals(1000, noJitterController.getRelativeTimeoutMillisForAttempt(null, 0, new FixedLatencyStats(5, 10)));
+    assertEquals(1000, noJitterController.getRelativeTimeoutMillisForAttempt(null, 0));
+    // percentile multiple, doubled per retry
+    assertEquals(400, noJitterController.getRelativeTimeoutMillisForAttempt(null, 0, new FixedLatencyStats(10, 200)));
+    assertEquals(800, noJitterController.getRelativeTimeoutMillisForAttempt(null, 1, new FixedLatencyStats(10, 200)));
+    // bounded below and above
+    assertEquals(50, noJitterController.getRelativeTimeoutMillisForAttempt(null, 0, new FixedLatencyStats(10, 1)));
+    assertEquals(60 * 1000, noJitterController.getRelativeTimeoutMillisForAttempt(null, 10,
+        new FixedLatencyStats(10, 200)));
+  }
+
+  @Test
+  public void testJitter() {
+    OpLatencyStats stats;
+
+    stats = new FixedLatencyStats(1000, 1000);
+    for (int i = 0; i < 100; i++) {
+      int timeout;
+
+      timeout = defaultController.getRelativeTimeoutMillisForAttempt(null, 0, stats);
+      assertTrue(timeout >= 2400 && timeout <= 3600);
+    }
+  }
+
+  @Test
+  public void testRetryBudget() {
+    OpLatencyStats stats;
+
+    stats = new FixedLatencyStats(4, 100);
+    // 0.5 * 4 + 1
+    assertTrue(noJitterController.retryAllowed(null, 1, stats));
+    assertTrue(noJitterController.retryAllowed(null, 1, stats));
+    assertTrue(noJitterController.retryAllowed(null, 1, stats));
+    assertFalse(noJitterController.retryAllowed(null, 1, stats));
+  }
+
+  @Test
+  public void testEqualsAndParse() {
+    assertEquals(defaultController, new AdaptiveTimeoutController());
+    assertEquals(defaultController.hashCode(), new AdaptiveTimeoutController().hashCode());
+    assertNotEquals(defaultController, defaultController.maxAttempts(7));
+    assertNotEquals(defaultController, defaultController.retryBudget(0.2, 5));
+    assertNotEquals(defaultController, SimpleTimeoutController.template);
+    assertEquals(defaultController, AdaptiveTimeoutController.parse(defaultController.toString()));
+    assertEquals(noJitterController, AdaptiveTimeoutController.parse(noJitterController.toString()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPercentile() {
+    defaultController.percentile(0.0, 3.0);
+  }
+}
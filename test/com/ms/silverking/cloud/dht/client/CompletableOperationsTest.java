@@ -0,0 +1,331 @@
+package com.ms.silverking.cloud.dht.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.ms.silverking.cloud.dht.RetrievalOptions;
+import com.ms.silverking.collection.Pair;
+import org.junit.Test;
+
+public class CompletableOperationsTest {
+  @Test
+  public void testCompletion() throws Exception {
+    FakeRetrieval retrieval;
+    CompletableFuture<Map<String, String>> values;
+    CompletableFuture<FakeRetrieval> completion;
+
+    retrieval = new FakeRetrieval("a", "b");
+    values = CompletableOperations.values(retrieval).toCompletableFuture();
+    completion = CompletableOperations.completion(retrieval).toCompletableFuture();
+    assertFalse(values.isDone());
+    retrieval.receive("a", "A");
+    assertFalse(values.isDone());
+    retrieval.complete(OperationState.SUCCEEDED);
+    assertEquals(1, values.get().size());
+    assertEquals("A", values.get().get("a"));
+    assertSame(retrieval, completion.get());
+    // already complete
+    assertTrue(CompletableOperations.completion(retrieval).toCompletableFuture().isDone());
+  }
+
+  @Test
+  public void testFailure() throws InterruptedException {
+    FakeRetrieval retrieval;
+    CompletableFuture<Map<String, String>> values;
+
+    retrieval = new FakeRetrieval("a");
+    values = CompletableOperations.values(retrieval).toCompletableFuture();
+    retrieval.complete(OperationState.FAILED);
+    try {
+      values.get();
+    } catch (ExecutionException ee) {
+      assertSame(retrieval.failure, ee.getCause());
+    }
+    assertTrue(values.isCompletedExceptionally());
+  }
+
+  @Test
+  public void testValueFutures() throws Exception {
+    FakeRetrieval retrieval;
+    Map<String, CompletionStage<String>> futures;
+
+    retrieval = new FakeRetrieval("a", "b", "c");
+    futures = CompletableOperations.valueFutures(retrieval);
+    retrieval.receive("b", "B");
+    assertTrue(futures.get("b").toCompletableFuture().isDone());
+    assertFalse(futures.get("a").toCompletableFuture().isDone());
+    retrieval.receive("a", "A");
+    assertEquals("A", futures.get("a").toCompletableFuture().get());
+    retrieval.complete(OperationState.SUCCEEDED);
+    assertEquals("B", futures.get("b").toCompletableFuture().get());
+    // no value
+    assertNull(futures.get("c").toCompletableFuture().get());
+  }
+
+  @Test
+  public void testExecutor() throws Exception {
+    FakeRetrieval retrieval;
+    List<Runnable> tasks;
+    CompletableFuture<FakeRetrieval> completion;
+
+    retrieval = new FakeRetrieval("a");
+    tasks = new ArrayList<>();
+    completion = CompletableOperations.completion(retrieval, tasks::add).toCompletableFuture();
+    retrieval.complete(OperationState.SUCCEEDED);
+    assertFalse(completion.isDone());
+    assertEquals(1, tasks.size());
+    tasks.get(0).run();
+    assertTrue(completion.isDone());
+  }
+
+  @Test
+  public void testPublisher() {
+    FakeRetrieval retrieval;
+    RetrievalPublisher<String, String> publisher;
+    List<String> received;
+    RetrievalPublisher.Subscription[] subscription;
+    boolean[] completed;
+
+    retrieval = new FakeRetrieval("a", "b", "c");
+    publisher = new RetrievalPublisher<>(retrieval);
+    received = new ArrayList<>();
+    subscription = new RetrievalPublisher.Subscription[1];
+    completed = new boolean[1];
+    publisher.subscribe(new RetrievalPublisher.Subscriber<Map.Entry<String, ? extends StoredValue<String>>>() {
+      @Override
+      public void onSubscribe(RetrievalPublisher.Subscription _subscription) {
+        subscription[0] = _subscription;
+      }
+
+      @Override
+      public void onNext(Map.Entry<String, ? extends StoredValue<String>> item) {
+        received.add(item.getKey());
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        throw new RuntimeException(throwable);
+      }
+
+      @Override
+      public void onComplete() {
+        completed[0] = true;
+      }
+    });
+    retrieval.receive("a", "A");
+    retrieval.receive("b", "B");
+    // no demand
+    assertEquals(0, received.size());
+    subscription[0].request(1);
+    assertEquals(Arrays.asList("a"), received);
+    retrieval.complete(OperationState.SUCCEEDED);
+    assertFalse(completed[0]);
+    subscription[0].request(10);
+    assertEquals(Arrays.asList("a", "b"), received);
+    assertTrue(completed[0]);
+  }
+
+  /**
+   * Retrieval driven explicitly by the test. Listeners are notified in the calling thread.
+   */
+  private static class FakeRetrieval implements AsyncValueRetrieval<String, String> {
+    private final Set<String> keys;
+    private final Map<String, String> values;
+    private final Map<String, String> latestValues;
+    private final List<Pair<AsyncOperationListener, Set<OperationState>>> listeners;
+    private OperationState state;
+    final RetrievalException failure;
+
+    FakeRetrieval(String... keys) {
+      this.keys = new HashSet<>(Arrays.asList(keys));
+      values = new HashMap<>();
+      latestValues = new HashMap<>();
+      listeners = new ArrayList<>();
+      state = OperationState.INCOMPLETE;
+      failure = mock(RetrievalException.class);
+    }
+
+    void receive(String key, String value) {
+      values.put(key, value);
+      latestValues.put(key, value);
+      notifyListeners();
+    }
+
+    void complete(OperationState state) {
+      this.state = state;
+      notifyListeners();
+    }
+
+    private void notifyListeners() {
+      for (Pair<AsyncOperationListener, Set<OperationState>> listener : listeners) {
+        if (listener.getV2().contains(state)) {
+          listener.getV1().asyncOperationUpdated(this);
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private StoredValue<String> storedValue(String value) {
+      StoredValue<String> storedValue;
+
+      storedValue = mock(StoredValue.class);
+      when(storedValue.getValue()).thenReturn(value);
+      return storedValue;
+    }
+
+    @Override
+    public OperationState getState() {
+      return state;
+    }
+
+    @Override
+    public FailureCause getFailureCause() {
+      return FailureCause.ERROR;
+    }
+
+    @Override
+    public void waitForCompletion() throws RetrievalException {
+      if (state == OperationState.FAILED) {
+        throw failure;
+      }
+    }
+
+    @Override
+    public boolean waitForCompletion(long timeout, TimeUnit unit) throws OperationException {
+      waitForCompletion();
+      return state != OperationState.INCOMPLETE;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void addListener(AsyncOperationListener listener) {
+      addListener(listener, OperationState.SUCCEEDED, OperationState.FAILED);
+    }
+
+    @Override
+    public void addListener(AsyncOperationListener listener, OperationState... listenStates) {
+      listeners.add(new Pair<>(listener, EnumSet.copyOf(Arrays.asList(listenStates))));
+      if (state != OperationState.INCOMPLETE) {
+        listener.asyncOperationUpdated(this);
+      }
+    }
+
+    @Override
+    public void addListeners(Iterable<AsyncOperationListener> listeners) {
+      for (AsyncOperationListener listener : listeners) {
+        addListener(listener);
+      }
+    }
+
+    @Override
+    public void addListeners(Iterable<AsyncOperationListener> listeners, OperationState... listenStates) {
+      for (AsyncOperationListener listener : listeners) {
+        addListener(listener, listenStates);
+      }
+    }
+
+    @Override
+    public int getNumKeys() {
+      return keys.size();
+    }
+
+    @Override
+    public Set<String> getKeys() {
+      return keys;
+    }
+
+    @Override
+    public Set<String> getIncompleteKeys() {
+      return state == OperationState.INCOMPLETE ? keys : new HashSet<>();
+    }
+
+    @Override
+    public OperationState getOperationState(String key) {
+      return values.containsKey(key) ? OperationState.SUCCEEDED : state;
+    }
+
+    @Override
+    public Map<String, OperationState> getOperationStateMap() {
+      Map<String, OperationState> stateMap;
+
+      stateMap = new HashMap<>();
+      for (String key : keys) {
+        stateMap.put(key, getOperationState(key));
+      }
+      return stateMap;
+    }
+
+    @Override
+    public RetrievalOptions getRetrievalOptions() {
+      return null;
+    }
+
+    @Override
+    public Map<String, ? extends StoredValue<String>> getStoredValues() {
+      Map<String, StoredValue<String>> storedValues;
+
+      storedValues = new HashMap<>();
+      for (Map.Entry<String, String> entry : values.entrySet()) {
+        storedValues.put(entry.getKey(), storedValue(entry.getValue()));
+      }
+      return storedValues;
+    }
+
+    @Override
+    public StoredValue<String> getStoredValue(String key) {
+      return values.containsKey(key) ? storedValue(values.get(key)) : null;
+    }
+
+    @Override
+    public Map<String, ? extends StoredValue<String>> getLatestStoredValues() {
+      Map<String, StoredValue<String>> storedValues;
+
+      storedValues = new HashMap<>();
+      for (Map.Entry<String, String> entry : getLatestValues().entrySet()) {
+        storedValues.put(entry.getKey(), storedValue(entry.getValue()));
+      }
+      return storedValues;
+    }
+
+    @Override
+    public Map<String, String> getValues() throws RetrievalException {
+      waitForCompletion();
+      return new HashMap<>(values);
+    }
+
+    @Override
+    public String getValue(String key) {
+      return values.get(key);
+    }
+
+    @Override
+    public Map<String, String> getLatestValues() {
+      Map<String, String> latest;
+
+      latest = new HashMap<>(latestValues);
+      latestValues.clear();
+      return latest;
+    }
+  }
+}
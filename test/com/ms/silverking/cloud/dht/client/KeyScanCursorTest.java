@@ -0,0 +1,39 @@
+package com.ms.silverking.cloud.dht.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.net.IPAndPort;
+import org.junit.Test;
+
+public class KeyScanCursorTest {
+  @Test
+  public void testParse() {
+    KeyScanCursor partition;
+    KeyScanCursor cursor;
+    KeyScanCursor keyCursor;
+
+    partition = new KeyScanCursor(-100, 200);
+    cursor = new KeyScanCursor(-100, 200, new IPAndPort("10.0.0.1", 7000), 12, Integer.MAX_VALUE);
+    assertEquals(partition, KeyScanCursor.parse(partition.toString()));
+    assertEquals(cursor, KeyScanCursor.parse(cursor.toString()));
+    assertNull(KeyScanCursor.parse(partition.toString()).getReplica());
+    assertEquals(12, KeyScanCursor.parse(cursor.toString()).getSegmentNumber());
+    assertEquals(Integer.MAX_VALUE, KeyScanCursor.parse(cursor.toString()).getTableIndex());
+    assertEquals(partition, cursor.getPartition());
+
+    keyCursor = new KeyScanCursor(-100, 200, new IPAndPort("10.0.0.1", 7000), 12, 0, new SimpleKey(-1, 2));
+    assertEquals(keyCursor, KeyScanCursor.parse(keyCursor.toString()));
+    assertEquals(new SimpleKey(-1, 2), KeyScanCursor.parse(keyCursor.toString()).getResumeKey());
+    assertNull(cursor.getResumeKey());
+    assertNotEquals(cursor, new KeyScanCursor(-100, 200, new IPAndPort("10.0.0.1", 7000), 12, Integer.MAX_VALUE,
+        new SimpleKey(-1, 2)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseInvalid() {
+    KeyScanCursor.parse("1,2,3");
+  }
+}
@@ -0,0 +1,248 @@
+package com.ms.silverking.cloud.dht.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+import com.ms.silverking.cloud.dht.CreationTime;
+import com.ms.silverking.cloud.dht.NamespaceOptions;
+import com.ms.silverking.cloud.dht.NamespacePerspectiveOptions;
+import com.ms.silverking.cloud.dht.NamespaceVersionMode;
+import com.ms.silverking.cloud.dht.RetrievalOptions;
+import com.ms.silverking.cloud.dht.RetrievalType;
+import com.ms.silverking.cloud.dht.common.DHTConstants;
+import com.ms.silverking.time.AbsMillisTimeSource;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NearCacheTest {
+  private Map<String, StoredValue<String>> store;
+  private int valueRetrievals;
+  private int metaDataRetrievals;
+  private long curTimeMillis;
+  private long nextVersion;
+  private AbsMillisTimeSource timeSource;
+  private Runnable onValueRetrieval;
+
+  private static final long maxStalenessMillis = 100;
+
+  @Before
+  public void setUp() {
+    store = new HashMap<>();
+    curTimeMillis = 1000;
+    nextVersion = 1;
+    onValueRetrieval = null;
+    timeSource = new AbsMillisTimeSource() {
+      @Override
+      public long absTimeMillis() {
+        return curTimeMillis;
+      }
+
+      @Override
+      public int relMillisRemaining(long absDeadlineMillis) {
+        return (int) (absDeadlineMillis - curTimeMillis);
+      }
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private void store(String key, String value) {
+    StoredValue<String> storedValue;
+    long version;
+
+    version = nextVersion++;
+    storedValue = mock(StoredValue.class);
+    when(storedValue.getValue()).thenReturn(value);
+    when(storedValue.getVersion()).thenReturn(version);
+    when(storedValue.getCreationTime()).thenReturn(new CreationTime(version * 1000));
+    when(storedValue.getUncompressedLength()).thenReturn(value.length());
+    store.put(key, storedValue);
+  }
+
+  @SuppressWarnings("unchecked")
+  private NearCache<String, String> createCache(NamespaceOptions nsOptions, NearCacheOptions options)
+      throws Exception {
+    SynchronousNamespacePerspective<String, String> nsp;
+    Namespace ns;
+
+    nsp = mock(SynchronousNamespacePerspective.class);
+    ns = mock(Namespace.class);
+    when(ns.getOptions()).thenReturn(nsOptions);
+    when(nsp.getNamespace()).thenReturn(ns);
+    when(nsp.getOptions()).thenReturn(new NamespacePerspectiveOptions<>(String.class, String.class,
+        KeyDigestType.MD5, DHTConstants.standardPutOptions, DHTConstants.standardInvalidationOptions,
+        DHTConstants.standardGetOptions, DHTConstants.standardWaitOptions, new ConstantVersionProvider(0)));
+    doAnswer(invocation -> {
+      Set<String> keys;
+      RetrievalOptions retrievalOptions;
+      Map<String, StoredValue<String>> results;
+
+      keys = invocation.getArgument(0);
+      retrievalOptions = invocation.getArgument(1);
+      if (retrievalOptions.getRetrievalType() == RetrievalType.META_DATA) {
+        metaDataRetrievals++;
+      } else {
+        valueRetrievals++;
+      }
+      results = new HashMap<>();
+      for (String key : keys) {
+        if (store.containsKey(key)) {
+          results.put(key, store.get(key));
+        }
+      }
+      if (onValueRetrieval != null && retrievalOptions.getRetrievalType() != RetrievalType.META_DATA) {
+        Runnable r;
+
+        // simulates a put that completes after the server has answered this retrieval
+        r = onValueRetrieval;
+        onValueRetrieval = null;
+        r.run();
+      }
+      return results;
+    }).when(nsp).retrieve(anySet(), any(RetrievalOptions.class));
+    doAnswer(invocation -> {
+      store(invocation.getArgument(0), invocation.getArgument(1));
+      return null;
+    }).when(nsp).put(any(String.class), any(String.class));
+    return new NearCache<>(nsp, options, timeSource);
+  }
+
+  private static final NamespaceOptions versionedNSOptions = DHTConstants.defaultNamespaceOptions.versionMode(
+      NamespaceVersionMode.SYSTEM_TIME_MILLIS);
+
+  private NearCache<String, String> createCache() throws Exception {
+    return createCache(versionedNSOptions, NearCacheOptions.defaultOptions.maxStalenessMillis(maxStalenessMillis));
+  }
+
+  @Test
+  public void testHitWithinStalenessBound() throws Exception {
+    NearCache<String, String> cache;
+
+    cache = createCache();
+    store("k", "v1");
+    assertEquals("v1", cache.get("k"));
+    assertEquals("v1", cache.get("k"));
+    assertEquals(1, valueRetrievals);
+    assertEquals(1, cache.getStats().getHits());
+    assertEquals(1, cache.getStats().getMisses());
+    // not observed until the bound elapses
+    store("k", "v2");
+    curTimeMillis += maxStalenessMillis - 1;
+    assertEquals("v1", cache.get("k"));
+    assertEquals(0, metaDataRetrievals);
+  }
+
+  @Test
+  public void testRevalidation() throws Exception {
+    NearCache<String, String> cache;
+
+    cache = createCache();
+    store("k", "v1");
+    cache.get("k");
+    curTimeMillis += maxStalenessMillis;
+    // unchanged: meta data only
+    assertEquals("v1", cache.get("k"));
+    assertEquals(1, metaDataRetrievals);
+    assertEquals(1, valueRetrievals);
+    assertEquals(1, cache.getStats().getRevalidationsUnchanged());
+    // revalidated entries are fresh again
+    assertEquals("v1", cache.get("k"));
+    assertEquals(1, metaDataRetrievals);
+    // changed: re-fetched
+    store("k", "v2");
+    assertEquals("v2", cache.get("k", 0));
+    assertEquals(2, metaDataRetrievals);
+    assertEquals(2, valueRetrievals);
+    assertEquals(2, cache.getStats().getRevalidations());
+    // deleted
+    store.remove("k");
+    assertNull(cache.get("k", 0));
+  }
+
+  @Test
+  public void testNoRevalidation() throws Exception {
+    NearCache<String, String> cache;
+
+    cache = createCache(versionedNSOptions, NearCacheOptions.defaultOptions.maxStalenessMillis(
+        maxStalenessMillis).revalidate(false));
+    store("k", "v1");
+    cache.get("k");
+    curTimeMillis += maxStalenessMillis;
+    cache.get("k");
+    assertEquals(0, metaDataRetrievals);
+    assertEquals(2, valueRetrievals);
+  }
+
+  @Test
+  public void testWriteOnceCachedIndefinitely() throws Exception {
+    NearCache<String, String> cache;
+
+    cache = createCache(DHTConstants.defaultNamespaceOptions.asWriteOnce(), NearCacheOptions.defaultOptions);
+    store("k", "v1");
+    cache.get("k");
+    curTimeMillis += 1000000;
+    assertEquals("v1", cache.get("k", 0));
+    assertEquals(1, valueRetrievals);
+    assertEquals(0, metaDataRetrievals);
+  }
+
+  @Test
+  public void testMultiKeyAndPut() throws Exception {
+    NearCache<String, String> cache;
+    Map<String, String> values;
+
+    cache = createCache();
+    store("a", "A");
+    store("b", "B");
+    values = cache.get(ImmutableSet.of("a", "b", "c"));
+    assertEquals(2, values.size());
+    assertEquals(1, valueRetrievals);
+    cache.put("a", "A2");
+    values = cache.get(ImmutableSet.of("a", "b"));
+    assertEquals("A2", values.get("a"));
+    assertEquals("B", values.get("b"));
+    assertEquals(2, valueRetrievals);
+  }
+
+  @Test
+  public void testBoundedBySize() throws Exception {
+    NearCache<String, String> cache;
+
+    cache = createCache(versionedNSOptions, NearCacheOptions.defaultOptions.maxBytes(10000));
+    for (int i = 0; i < 1000; i++) {
+      store("k" + i, "0123456789012345678901234567890123456789");
+      cache.get("k" + i);
+    }
+    cache.invalidate("k0");
+    assertTrue(cache.getStats().getCachedBytes() <= 10000);
+  }
+
+  @Test
+  public void testPutDuringFetchNotCached() throws Exception {
+    NearCache<String, String> cache;
+
+    cache = createCache();
+    store("k", "v1");
+    onValueRetrieval = () -> {
+      try {
+        cache.put("k", "v2");
+      } catch (PutException pe) {
+        throw new RuntimeException(pe);
+      }
+    };
+    // the in-flight get still returns what it fetched, but must not cache it
+    assertEquals("v1", cache.get("k"));
+    assertEquals("v2", cache.get("k"));
+    assertEquals(2, valueRetrievals);
+  }
+}
@@ -0,0 +1,77 @@
+package com.ms.silverking.cloud.dht.client.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.ms.silverking.cloud.dht.client.AdaptiveTimeoutController;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.time.AbsMillisTimeSource;
+import com.ms.silverking.time.ConstantAbsMillisTimeSource;
+import org.junit.Test;
+
+public class OpLatencyTrackerTest {
+
+  @Test
+  public void testRetryBudget() {
+    OpLatencyTracker tracker;
+
+    tracker = new OpLatencyTracker(new ConstantAbsMillisTimeSource(0));
+    for (int i = 0; i < 20; i++) {
+      tracker.recordOperation();
+    }
+    // 0.1 * 20 + 1
+    assertTrue(tracker.tryAcquireRetry(0.1, 1));
+    assertTrue(tracker.tryAcquireRetry(0.1, 1));
+    assertTrue(tracker.tryAcquireRetry(0.1, 1));
+    assertFalse(tracker.tryAcquireRetry(0.1, 1));
+    for (int i = 0; i < 10; i++) {
+      tracker.recordOperation();
+    }
+    assertTrue(tracker.tryAcquireRetry(0.1, 1));
+  }
+
+  @Test
+  public void testTimeoutStateReportsLatency() {
+    OpLatencyTracker tracker;
+    OpTimeoutState state;
+
+    tracker = new OpLatencyTracker(new ConstantAbsMillisTimeSource(100));
+    state = new OpTimeoutState(null, new AdaptiveTimeoutController(), tracker, 40);
+    state.operationCompleted(OpResult.SUCCEEDED);
+    assertEquals(1, tracker.getNumSamples());
+    assertEquals(60, tracker.getLatencyPercentileMillis(50.0), 60 / 8);
+    state.operationCompleted(OpResult.SESSION_CLOSED);
+    assertEquals(1, tracker.getNumSamples());
+    // the attempt timeout is fixed for the duration of the attempt
+    assertEquals(state.getCurRelTimeoutMillis(), state.getCurRelTimeoutMillis());
+  }
+
+  @Test
+  public void testTimedOutAttemptsRecordCensoredLatency() {
+    AbsMillisTimeSource timeSource;
+    OpLatencyTracker tracker;
+    OpTimeoutState state;
+    int attemptTimeoutMillis;
+
+    timeSource = mock(AbsMillisTimeSource.class);
+    when(timeSource.absTimeMillis()).thenReturn(0L);
+    tracker = new OpLatencyTracker(timeSource);
+    state = new OpTimeoutState(null, new AdaptiveTimeoutController(), tracker, 0);
+
+    // an operation that times out before its attempt does is recorded at the time the attempt ran
+    when(timeSource.absTimeMillis()).thenReturn(10L);
+    state.operationCompleted(OpResult.TIMEOUT);
+    assertEquals(1, tracker.getNumSamples());
+    assertEquals(10, tracker.getLatencyPercentileMillis(50.0), 1);
+
+    // an attempt that is retried after timing out is recorded at its timeout
+    state = new OpTimeoutState(null, new AdaptiveTimeoutController(), tracker, 0);
+    attemptTimeoutMillis = state.getCurRelTimeoutMillis();
+    state.newAttempt(attemptTimeoutMillis * 4L);
+    assertEquals(2, tracker.getNumSamples());
+    assertEquals(attemptTimeoutMillis, tracker.getLatencyPercentileMillis(100.0), attemptTimeoutMillis / 8);
+  }
+}
@@ -0,0 +1,100 @@
+package com.ms.silverking.cloud.dht.client.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.ms.silverking.thread.lwt.LWTPoolProvider;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class OpSenderTest {
+  private static final int opBytes = 100;
+
+  @BeforeClass
+  public static void setUpClass() {
+    LWTPoolProvider.createDefaultWorkPools();
+  }
+
+  private static class TestOpSender extends OpSender {
+    final List<List<AsyncOperationImpl>> batches;
+
+    TestOpSender(int coalescingWindowMicros, int coalescingMaxBytes, ScheduledExecutorService windowScheduler) {
+      super(null, null, coalescingWindowMicros, coalescingMaxBytes, windowScheduler);
+      batches = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Override
+    int estimateBytes(AsyncOperationImpl asyncOpImpl) {
+      return opBytes;
+    }
+
+    @Override
+    public void doWork(AsyncOperationImpl asyncOpImpl) {
+      batches.add(Collections.singletonList(asyncOpImpl));
+    }
+
+    @Override
+    public void doWork(AsyncOperationImpl[] asyncOpImpls) {
+      batches.add(Arrays.asList(asyncOpImpls));
+    }
+  }
+
+  @Test
+  public void testWindowSentWhenFull() {
+    TestOpSender sender;
+    AsyncOperationImpl[] ops;
+
+    // a long window, so that only the size limit sends
+    sender = new TestOpSender(60 * 1000 * 1000, 3 * opBytes, mock(ScheduledExecutorService.class));
+    ops = new AsyncOperationImpl[4];
+    for (int i = 0; i < ops.length; i++) {
+      ops[i] = mock(AsyncOperationImpl.class);
+      sender.addWorkForGrouping(ops[i], 0);
+    }
+    assertEquals(1, sender.batches.size());
+    assertEquals(Arrays.asList(ops[0], ops[1], ops[2]), sender.batches.get(0));
+    sender.flushWindow();
+    assertEquals(2, sender.batches.size());
+    assertEquals(Collections.singletonList(ops[3]), sender.batches.get(1));
+  }
+
+  @Test(timeout = 10000)
+  public void testWindowSentWhenPeriodExpires() throws InterruptedException {
+    ScheduledExecutorService windowScheduler;
+    ArgumentCaptor<Runnable> windowExpiration;
+    TestOpSender sender;
+    AsyncOperationImpl op0;
+    AsyncOperationImpl op1;
+
+    windowScheduler = mock(ScheduledExecutorService.class);
+    sender = new TestOpSender(1000, Integer.MAX_VALUE, windowScheduler);
+    op0 = mock(AsyncOperationImpl.class);
+    op1 = mock(AsyncOperationImpl.class);
+    sender.addWorkForGrouping(op0, 0);
+    sender.addWorkForGrouping(op1, 0);
+    // the window is scheduled once, for its period, and nothing is sent until it expires
+    windowExpiration = ArgumentCaptor.forClass(Runnable.class);
+    verify(windowScheduler).schedule(windowExpiration.capture(), eq(TimeUnit.MICROSECONDS.toNanos(1000)),
+        eq(TimeUnit.NANOSECONDS));
+    assertTrue(sender.batches.isEmpty());
+
+    // expiration hands the send to the sender pool
+    windowExpiration.getValue().run();
+    while (sender.batches.isEmpty()) {
+      Thread.sleep(1);
+    }
+    assertEquals(1, sender.batches.size());
+    assertEquals(Arrays.asList(op0, op1), sender.batches.get(0));
+  }
+}
@@ -0,0 +1,197 @@
+package com.ms.silverking.cloud.dht.client.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableSet;
+import com.ms.silverking.cloud.dht.ForwardingMode;
+import com.ms.silverking.cloud.dht.RetrievalOptions;
+import com.ms.silverking.cloud.dht.ValueCreator;
+import com.ms.silverking.cloud.dht.client.AsyncRetrieval;
+import com.ms.silverking.cloud.dht.client.RetrievalBatch;
+import com.ms.silverking.cloud.dht.client.RetrievalException;
+import com.ms.silverking.cloud.dht.common.MessageType;
+import com.ms.silverking.cloud.dht.net.MessageGroup;
+import com.ms.silverking.cloud.dht.net.MessageGroupBase;
+import com.ms.silverking.cloud.dht.net.ProtoBatchMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoMessageGroup;
+import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.net.AddrAndPort;
+import com.ms.silverking.net.IPAndPort;
+import com.ms.silverking.thread.lwt.BaseWorker;
+import com.ms.silverking.thread.lwt.LWTPool;
+import com.ms.silverking.thread.lwt.LWTPoolProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class RetrievalBatchImplTest {
+  private static final byte[] originator = new byte[ValueCreator.BYTES];
+  private static final AddrAndPort server = new IPAndPort("10.0.0.1:7575");
+  private static final Set<String> keys = ImmutableSet.of("k1", "k2");
+
+  private DHTSessionImpl session;
+  private MessageGroupBase mgBase;
+  // per retrieval message group, released when its response arrives
+  private Map<UUIDBase, CountDownLatch> responses;
+
+  @Before
+  public void init() {
+    BaseWorker.class.getClassLoader().setClassAssertionStatus(BaseWorker.class.getName(), false);
+    LWTPoolProvider.defaultNonConcurrentWorkPool = mock(LWTPool.class);
+    session = mock(DHTSessionImpl.class);
+    mgBase = mock(MessageGroupBase.class);
+    when(session.getMessageGroupBase()).thenReturn(mgBase);
+    when(session.getServer()).thenReturn(server);
+    responses = new ConcurrentHashMap<>();
+  }
+
+  @After
+  public void tearDown() {
+    BaseWorker.class.getClassLoader().setClassAssertionStatus(BaseWorker.class.getName(), true);
+    LWTPoolProvider.defaultNonConcurrentWorkPool = null;
+  }
+
+  /**
+   * Create a perspective whose retrievals each send a single RETRIEVE and complete once it is answered
+   */
+  @SuppressWarnings("unchecked")
+  private AsyncRetrievalOperationImpl<String, String> addRetrieval(RetrievalBatch batch, long context)
+      throws Exception {
+    BaseNamespacePerspectiveImpl<String, String> nsp;
+    ClientNamespace clientNamespace;
+    AsyncRetrievalOperationImpl<String, String> opImpl;
+    ProtoMessageGroup protoMG;
+    MessageGroup retrieve;
+    CountDownLatch response;
+    AsyncRetrieval<String, String> retrieval;
+
+    nsp = mock(BaseNamespacePerspectiveImpl.class);
+    clientNamespace = mock(ClientNamespace.class);
+    opImpl = mock(AsyncRetrievalOperationImpl.class);
+    protoMG = mock(ProtoMessageGroup.class);
+    retrieve = new MessageGroup(MessageType.RETRIEVE, 0, UUIDBase.random(), context,
+        new ByteBuffer[] { ByteBuffer.allocate(16) }, originator, 1000, ForwardingMode.FORWARD);
+    response = new CountDownLatch(1);
+    responses.put(retrieve.getUUID(), response);
+
+    when(nsp.getClientNamespace()).thenReturn(clientNamespace);
+    when(nsp.newRetrievalOperation(eq(keys), any(RetrievalOptions.class))).thenReturn(opImpl);
+    when(clientNamespace.getSession()).thenReturn(session);
+    when(clientNamespace.getOriginator()).thenReturn(originator);
+    when(opImpl.createProtoMG(any())).thenReturn(protoMG);
+    when(opImpl.createMessagesForIncomplete(eq(protoMG), anyList(), any())).thenReturn(protoMG);
+    doAnswer(invocation -> {
+      ((List<MessageGroup>) invocation.getArgument(0)).add(retrieve);
+      return null;
+    }).when(protoMG).addToMessageGroupList(anyList());
+    doAnswer(invocation -> {
+      if (!response.await(10, TimeUnit.SECONDS)) {
+        throw new RuntimeException("Timed out waiting for response");
+      }
+      return null;
+    }).when(opImpl).waitForCompletion();
+
+    retrieval = batch.add(nsp, keys, mock(RetrievalOptions.class));
+    assertSame(opImpl, retrieval);
+    return opImpl;
+  }
+
+  /**
+   * Answer each retrieval carried by a sent batch
+   */
+  private void respondToBatches() {
+    doAnswer(invocation -> {
+      new Thread(() -> {
+        for (MessageGroup embedded : ProtoBatchMessageGroup.getMessageGroups(invocation.getArgument(0))) {
+          responses.get(embedded.getUUID()).countDown();
+        }
+      }).start();
+      return null;
+    }).when(mgBase).send(any(MessageGroup.class), eq(server));
+  }
+
+  @Test(timeout = 20000)
+  public void testBatchCompletes() throws Exception {
+    RetrievalBatch batch;
+    AsyncRetrievalOperationImpl<String, String> op1;
+    AsyncRetrievalOperationImpl<String, String> op2;
+    ArgumentCaptor<MessageGroup> sent;
+    List<MessageGroup> embedded;
+
+    respondToBatches();
+    batch = new RetrievalBatchImpl(session);
+    op1 = addRetrieval(batch, 1);
+    op2 = addRetrieval(batch, 2);
+    batch.send();
+
+    sent = ArgumentCaptor.forClass(MessageGroup.class);
+    verify(mgBase).send(sent.capture(), eq(server));
+    assertEquals(MessageType.BATCH, sent.getValue().getMessageType());
+    embedded = ProtoBatchMessageGroup.getMessageGroups(sent.getValue());
+    assertEquals(2, embedded.size());
+    assertEquals(1, embedded.get(0).getContext());
+    assertEquals(2, embedded.get(1).getContext());
+    for (MessageGroup mg : embedded) {
+      assertEquals(MessageType.RETRIEVE, mg.getMessageType());
+      assertTrue(responses.containsKey(mg.getUUID()));
+    }
+
+    batch.waitForCompletion();
+    verify(op1).waitForCompletion();
+    verify(op2).waitForCompletion();
+  }
+
+  @Test(timeout = 20000)
+  public void testFirstFailureThrownAfterAllComplete() throws Exception {
+    RetrievalBatch batch;
+    AsyncRetrievalOperationImpl<String, String> op1;
+    AsyncRetrievalOperationImpl<String, String> op2;
+    RetrievalException failure;
+
+    respondToBatches();
+    batch = new RetrievalBatchImpl(session);
+    op1 = addRetrieval(batch, 1);
+    op2 = addRetrieval(batch, 2);
+    failure = mock(RetrievalException.class);
+    doThrow(failure).when(op1).waitForCompletion();
+    batch.send();
+    try {
+      batch.waitForCompletion();
+      fail("Expected RetrievalException");
+    } catch (RetrievalException re) {
+      assertSame(failure, re);
+    }
+    verify(op2).waitForCompletion();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAddAfterSendRejected() throws Exception {
+    RetrievalBatch batch;
+
+    respondToBatches();
+    batch = new RetrievalBatchImpl(session);
+    addRetrieval(batch, 1);
+    batch.send();
+    addRetrieval(batch, 2);
+  }
+}
@@ -0,0 +1,161 @@
+package com.ms.silverking.cloud.dht.client.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ValueViewTest {
+  private static final byte[] value = "The quick brown fox é中".getBytes(StandardCharsets.UTF_8);
+
+  // the value as it appears in a retrieval: embedded in a larger message buffer
+  private static ByteBuffer embedded() {
+    byte[] message;
+
+    message = new byte[value.length + 20];
+    System.arraycopy(value, 0, message, 10, value.length);
+    return ByteBuffer.wrap(message, 10, value.length);
+  }
+
+  private static ByteBuffer[] segmented() {
+    return new ByteBuffer[] { ByteBuffer.wrap(value, 0, 5), ByteBuffer.wrap(value, 5, 7),
+        ByteBuffer.wrap(value, 12, value.length - 12) };
+  }
+
+  @Test
+  public void testDeserializeDoesNotCopy() {
+    ByteBuffer source;
+    ValueView view;
+    ByteBuffer readOnly;
+
+    source = embedded();
+    view = new ValueViewSerDes().deserialize(source);
+    assertEquals(value.length, view.size());
+    readOnly = view.asReadOnlyBuffer();
+    assertTrue(readOnly.isReadOnly());
+    source.array()[10] = 'X';
+    assertEquals('X', view.get(0));
+    assertEquals('X', readOnly.get(readOnly.position()));
+    // the view's position is independent of the source
+    assertEquals(10, source.position());
+  }
+
+  @Test
+  public void testSegmented() throws IOException {
+    ValueView view;
+    ByteArrayOutputStream out;
+
+    view = new ValueViewSerDes().deserialize(segmented());
+    assertEquals(3, view.numBuffers());
+    assertEquals(value.length, view.size());
+    assertArrayEquals(value, view.toByteArray());
+    for (int i = 0; i < value.length; i++) {
+      assertEquals(value[i], view.get(i));
+    }
+    assertEquals(new String(value, StandardCharsets.UTF_8), view.toString(StandardCharsets.UTF_8));
+    out = new ByteArrayOutputStream();
+    view.writeTo(out);
+    assertArrayEquals(value, out.toByteArray());
+  }
+
+  @Test
+  public void testSerialize() {
+    ValueViewSerDes serDes;
+    ByteBuffer serialized;
+    ByteBuffer dest;
+    ByteBuffer source;
+
+    serDes = new ValueViewSerDes();
+    for (ValueView view : new ValueView[] { serDes.deserialize(embedded()), serDes.deserialize(segmented()) }) {
+      assertEquals(value.length, serDes.estimateSerializedSize(view));
+      serialized = serDes.serializeToBuffer(view);
+      assertEquals(0, serialized.position());
+      assertArrayEquals(value, serialized.array());
+      dest = ByteBuffer.allocate(value.length);
+      serDes.serializeToBuffer(view, dest);
+      assertArrayEquals(value, dest.array());
+    }
+    // values that begin their array are shared
+    source = ByteBuffer.wrap(value);
+    assertSame(value, serDes.serializeToBuffer(serDes.deserialize(source)).array());
+    assertNotSame(value, serDes.serializeToBuffer(serDes.deserialize(embedded())).array());
+  }
+
+  @Test
+  public void testViewSharesBuffers() {
+    byte[] array;
+    ValueView view;
+    byte[] copy;
+
+    array = value.clone();
+    view = ValueView.wrap(ByteBuffer.wrap(array));
+    copy = view.toByteArray();
+    array[0] = (byte) 'X';
+    assertEquals((byte) 'X', view.get(0));
+    assertArrayEquals(value, copy);
+  }
+
+  @Test
+  public void testEmpty() {
+    assertEquals(0, ValueView.empty.size());
+    assertEquals(0, ValueView.empty.toByteArray().length);
+  }
+
+  @Test
+  public void testCharsetStringSerDes() {
+    String[] strings;
+
+    strings = new String[] { "", "ascii", "café", "中文", "😀 emoji", "unpaired \ud83d" };
+    for (CharsetStringSerDes serDes : new CharsetStringSerDes[] { CharsetStringSerDes.utf8,
+        CharsetStringSerDes.latin1 }) {
+      for (String s : strings) {
+        ByteBuffer serialized;
+        ByteBuffer direct;
+
+        serialized = serDes.serializeToBuffer(s);
+        assertEquals(serialized.remaining(), serDes.estimateSerializedSize(s));
+        direct = ByteBuffer.allocateDirect(serialized.remaining());
+        direct.put(serialized.duplicate()).flip();
+        assertEquals(new String(serialized.array(), serDes.getCharset()), serDes.deserialize(serialized));
+        assertEquals(serDes.deserialize(serialized), serDes.deserialize(direct));
+      }
+    }
+    assertEquals("café", CharsetStringSerDes.utf8.deserialize(CharsetStringSerDes.utf8.serializeToBuffer(
+        "café")));
+  }
+
+  @Test
+  public void testDefaultRegistry() {
+    SerializationRegistry registry;
+    ByteBuffer serialized;
+
+    registry = SerializationRegistry.createDefaultRegistry();
+    assertTrue(registry.getSerializer(String.class) instanceof CharsetStringSerDes);
+    assertSame(registry.getSerializer(String.class), registry.getDeserializer(String.class));
+    assertTrue(registry.getDeserializer(ValueView.class) instanceof ValueViewSerDes);
+    // values are encoded as StringSerDes encodes them
+    serialized = registry.getSerializer(String.class).serializeToBuffer("café");
+    assertEquals(new StringSerDes().serializeToBuffer("café"), serialized);
+    assertEquals(new StringSerDes().deserialize(serialized),
+        registry.getDeserializer(String.class).deserialize(embeddedIn(serialized)));
+  }
+
+  private static ByteBuffer embeddedIn(ByteBuffer buffer) {
+    ByteBuffer message;
+
+    message = ByteBuffer.allocate(buffer.remaining() + 4);
+    message.position(2);
+    message.put(buffer.duplicate());
+    message.position(2);
+    message.limit(2 + buffer.remaining());
+    return message.slice();
+  }
+}
@@ -0,0 +1,60 @@
+package com.ms.silverking.cloud.dht.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+
+public class DHTKeyObjectMapTest {
+  private static final int numKeys = 10000;
+
+  private static DHTKey key(int i) {
+    return new SimpleKey(i * 31L, i);
+  }
+
+  @Test
+  public void testPutGetAcrossGrowth() {
+    DHTKeyObjectMap<Integer> map;
+
+    map = new DHTKeyObjectMap<>(1);
+    for (int i = 0; i < numKeys; i++) {
+      assertNull(map.put(key(i), i));
+    }
+    assertEquals(numKeys, map.size());
+    for (int i = 0; i < numKeys; i++) {
+      // lookups by an equal key instance and by the key's longs
+      assertEquals(Integer.valueOf(i), map.get(key(i)));
+      assertEquals(Integer.valueOf(i), map.get(i * 31L, i));
+    }
+    assertNull(map.get(key(numKeys)));
+    assertFalse(map.containsKey(key(numKeys)));
+    assertEquals(Integer.valueOf(0), map.put(key(0), -1));
+    assertEquals(Integer.valueOf(-1), map.get(key(0)));
+    assertEquals(numKeys, map.size());
+  }
+
+  @Test
+  public void testKeys() {
+    DHTKeyObjectMap<Integer> map;
+    Set<DHTKey> keys;
+
+    map = new DHTKeyObjectMap<>(numKeys);
+    for (int i = 0; i < numKeys; i++) {
+      map.put(key(i), i);
+    }
+    keys = new HashSet<>();
+    for (DHTKey key : map.keys()) {
+      assertTrue(keys.add(key));
+    }
+    assertEquals(numKeys, keys.size());
+    assertEquals(numKeys, map.keys().size());
+  }
+}
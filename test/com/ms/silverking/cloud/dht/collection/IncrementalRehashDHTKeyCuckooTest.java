@@ -0,0 +1,116 @@
+package com.ms.silverking.cloud.dht.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.collection.cuckoo.IntCuckooConstants;
+import com.ms.silverking.collection.cuckoo.WritableCuckooConfig;
+
+public class IncrementalRehashDHTKeyCuckooTest {
+  private static final WritableCuckooConfig config = new WritableCuckooConfig(16, 4, 4, 32);
+  private static final int numKeys = 10000;
+
+  private static DHTKey key(int i) {
+    return new SimpleKey(i * 31L, i);
+  }
+
+  @Test
+  public void testPutAndGetAcrossGrowth() {
+    IncrementalRehashDHTKeyCuckoo map;
+    boolean sawMigration;
+
+    map = new IncrementalRehashDHTKeyCuckoo(config, 1);
+    sawMigration = false;
+    for (int i = 0; i < numKeys; i++) {
+      map.put(key(i), i);
+      sawMigration = sawMigration || map.isMigrating();
+      // spot check keys that may still reside in the migrating table
+      assertEquals(i / 2, map.get(key(i / 2)));
+    }
+    assertTrue(sawMigration);
+    assertTrue(map.getTotalEntries() >= numKeys);
+    for (int i = 0; i < numKeys; i++) {
+      assertEquals(i, map.get(key(i)));
+    }
+    assertEquals(IntCuckooConstants.noSuchValue, map.get(key(numKeys)));
+  }
+
+  @Test
+  public void testUpdateAndRemoveDuringMigration() {
+    IncrementalRehashDHTKeyCuckoo map;
+    int i;
+
+    map = new IncrementalRehashDHTKeyCuckoo(config, 1);
+    i = 0;
+    while (!map.isMigrating()) {
+      map.put(key(i), i);
+      i++;
+    }
+    // key 0 is still in the migrating table; update it without removing it first
+    map.put(key(0), -1);
+    assertEquals(-1, map.get(key(0)));
+    assertTrue(map.remove(key(1)));
+    assertFalse(map.remove(key(1)));
+    assertEquals(IntCuckooConstants.noSuchValue, map.get(key(1)));
+    while (map.isMigrating()) {
+      map.put(key(i), i);
+      i++;
+    }
+    assertEquals(-1, map.get(key(0)));
+    assertEquals(IntCuckooConstants.noSuchValue, map.get(key(1)));
+  }
+
+  @Test
+  public void testIterator() {
+    IncrementalRehashDHTKeyCuckoo map;
+    Set<Integer> values;
+    int i;
+
+    map = new IncrementalRehashDHTKeyCuckoo(config, 1);
+    i = 0;
+    while (!map.isMigrating()) {
+      map.put(key(i), i);
+      i++;
+    }
+    values = new HashSet<>();
+    for (DHTKeyIntEntry entry : map) {
+      assertTrue(values.add(entry.getValue()));
+      assertEquals(entry.getValue(), map.get(entry.getKey()));
+    }
+    assertEquals(i, values.size());
+  }
+
+  @Test
+  public void testCursor() {
+    IncrementalRehashDHTKeyCuckoo map;
+    DHTKeyIntCursor cursor;
+    Set<Integer> values;
+    int i;
+
+    map = new IncrementalRehashDHTKeyCuckoo(config, 1);
+    i = 0;
+    while (!map.isMigrating()) {
+      map.put(key(i), i);
+      i++;
+    }
+    cursor = map.cursor();
+    for (int pass = 0; pass < 2; pass++) {
+      values = new HashSet<>();
+      while (cursor.advance()) {
+        assertTrue(values.add(cursor.getValue()));
+        assertEquals(cursor.getValue(), map.get(cursor.getMSL(), cursor.getLSL()));
+      }
+      assertEquals(i, values.size());
+      assertFalse(cursor.advance());
+      cursor.reset();
+    }
+  }
+}
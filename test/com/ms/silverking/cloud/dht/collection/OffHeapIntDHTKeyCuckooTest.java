@@ -0,0 +1,117 @@
+package com.ms.silverking.cloud.dht.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.collection.cuckoo.IntCuckooConstants;
+import com.ms.silverking.collection.cuckoo.TableFullException;
+import com.ms.silverking.collection.cuckoo.WritableCuckooConfig;
+
+public class OffHeapIntDHTKeyCuckooTest {
+  private static final WritableCuckooConfig config = new WritableCuckooConfig(1024, 4, 4, 32);
+  private static final int numKeys = 10000;
+  private static final DHTKey[] keys;
+
+  static {
+    keys = new DHTKey[numKeys + 1];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = SimpleKey.randomKey();
+    }
+  }
+
+  private static DHTKey key(int i) {
+    return keys[i];
+  }
+
+  @Test
+  public void testPutGetRemove() {
+    OffHeapIntDHTKeyCuckoo map;
+    int numPut;
+
+    map = new OffHeapIntDHTKeyCuckoo(config);
+    numPut = 0;
+    try {
+      while (numPut < numKeys) {
+        map.put(key(numPut), numPut);
+        numPut++;
+      }
+    } catch (TableFullException tfe) {
+    }
+    assertTrue(numPut > config.getTotalEntries() / 2);
+    for (int i = 0; i < numPut; i++) {
+      assertEquals(i, map.get(key(i)));
+    }
+    assertEquals(IntCuckooConstants.noSuchValue, map.get(key(numPut + 1)));
+    assertTrue(map.remove(key(0)));
+    assertFalse(map.remove(key(0)));
+    assertEquals(IntCuckooConstants.noSuchValue, map.get(key(0)));
+  }
+
+  @Test
+  public void testMatchesIntArrayImplementation() {
+    OffHeapIntDHTKeyCuckoo offHeapMap;
+    IntArrayDHTKeyCuckoo heapMap;
+    Set<DHTKeyIntEntry> offHeapEntries;
+
+    offHeapMap = new OffHeapIntDHTKeyCuckoo(config);
+    heapMap = new IntArrayDHTKeyCuckoo(config);
+    for (int i = 0; i < config.getTotalEntries() / 2; i++) {
+      offHeapMap.put(key(i), i);
+      heapMap.put(key(i), i);
+    }
+    offHeapEntries = new HashSet<>();
+    for (DHTKeyIntEntry entry : offHeapMap) {
+      offHeapEntries.add(entry);
+    }
+    for (DHTKeyIntEntry entry : heapMap) {
+      assertTrue(offHeapEntries.remove(entry));
+    }
+    assertTrue(offHeapEntries.isEmpty());
+    assertTrue(offHeapMap.offHeapSizeBytes() > 0);
+  }
+
+  @Test
+  public void testIncrementalRehash() {
+    IncrementalRehashDHTKeyCuckoo map;
+
+    map = new IncrementalRehashDHTKeyCuckoo(new OffHeapIntDHTKeyCuckoo(new WritableCuckooConfig(16, 4, 4, 32)), 1);
+    for (int i = 0; i < numKeys; i++) {
+      map.put(key(i), i);
+    }
+    for (int i = 0; i < numKeys; i++) {
+      assertEquals(i, map.get(key(i)));
+    }
+  }
+
+  @Test
+  public void testReleasedAfterMigration() {
+    OffHeapIntDHTKeyCuckoo initialTable;
+    IncrementalRehashDHTKeyCuckoo map;
+    int i;
+
+    initialTable = new OffHeapIntDHTKeyCuckoo(new WritableCuckooConfig(16, 4, 4, 32));
+    map = new IncrementalRehashDHTKeyCuckoo(initialTable, 1);
+    i = 0;
+    while (!map.isMigrating()) {
+      map.put(key(i), i);
+      i++;
+    }
+    assertTrue(initialTable.offHeapSizeBytes() > 0);
+    while (map.isMigrating()) {
+      map.put(key(i), i);
+      i++;
+    }
+    assertEquals(0, initialTable.offHeapSizeBytes());
+    for (int j = 0; j < i; j++) {
+      assertEquals(j, map.get(key(j)));
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.ms.silverking.cloud.dht.daemon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.ms.silverking.cloud.common.OwnerQueryMode;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.EnumValues;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.cloud.ring.LongRingspace;
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.cloud.toporing.PrimarySecondaryIPListPair;
+import com.ms.silverking.cloud.toporing.ResolvedReplicaMap;
+import com.ms.silverking.cloud.toporing.RingEntry;
+import com.ms.silverking.cloud.topology.GenericNode;
+import com.ms.silverking.cloud.topology.Node;
+import com.ms.silverking.cloud.topology.NodeClass;
+import com.ms.silverking.net.IPAndPort;
+import org.junit.Test;
+
+public class TransitionReplicaMapTest {
+  private static final int numServers = 10;
+  private static final int replication = 3;
+
+  private static ResolvedReplicaMap createMap(int numRegions, int offset) {
+    ResolvedReplicaMap map;
+    long regionSize;
+
+    map = new ResolvedReplicaMap();
+    regionSize = LongRingspace.size / numRegions;
+    for (int i = 0; i < numRegions; i++) {
+      List<Node> primaries;
+      List<Node> secondaries;
+      long start;
+      long end;
+
+      primaries = new ArrayList<>();
+      for (int j = 0; j < replication; j++) {
+        primaries.add(new GenericNode(NodeClass.server, "10.0.0." + ((i + j + offset) % numServers)));
+      }
+      secondaries = ImmutableList.of(new GenericNode(NodeClass.server, "10.0.1." + ((i + offset) % numServers)));
+      start = LongRingspace.start + regionSize * i;
+      end = i < numRegions - 1 ? start + regionSize - 1 : LongRingspace.end;
+      map.addEntry(new RingEntry(primaries, secondaries, new RingRegion(start, end), replication));
+    }
+    return map;
+  }
+
+  @Test
+  public void testMatchesPerKeyComputation() {
+    ResolvedReplicaMap oldMap;
+    ResolvedReplicaMap newMap;
+    TransitionReplicaMap transitionMap;
+    Random random;
+
+    oldMap = createMap(7, 0);
+    newMap = createMap(11, 3);
+    transitionMap = new TransitionReplicaMap(oldMap, newMap);
+    random = new Random(0);
+    for (int i = 0; i < 10000; i++) {
+      DHTKey key;
+
+      key = new SimpleKey(random.nextLong(), random.nextLong());
+      for (OwnerQueryMode oqm : EnumValues.ownerQueryMode) {
+        Set<IPAndPort> union;
+        PrimarySecondaryIPListPair merged;
+
+        assertArrayEquals(oldMap.getReplicas(key, oqm),
+            transitionMap.getReplicas(key, oqm, TransitionReplicaSources.OLD));
+        assertArrayEquals(newMap.getReplicas(key, oqm),
+            transitionMap.getReplicas(key, oqm, TransitionReplicaSources.NEW));
+        union = new HashSet<>(oldMap.getReplicaSet(key, oqm));
+        union.addAll(newMap.getReplicaSet(key, oqm));
+        assertEquals(union, transitionMap.getReplicaSet(key, oqm, TransitionReplicaSources.OLD_AND_NEW));
+        assertEquals(union.size(), transitionMap.getReplicas(key, oqm, TransitionReplicaSources.OLD_AND_NEW).length);
+        assertEquals(oldMap.getReplicaList(key, oqm), transitionMap.getReplicaList(key, oqm,
+            TransitionReplicaSources.OLD_AND_NEW).subList(0, oldMap.getReplicaList(key, oqm).size()));
+        merged = PrimarySecondaryIPListPair.merge(oldMap.getReplicaListPair(key), newMap.getReplicaListPair(key));
+        assertEquals(merged.toString(), transitionMap.getMergedReplicaListPair(key).toString());
+      }
+    }
+  }
+}
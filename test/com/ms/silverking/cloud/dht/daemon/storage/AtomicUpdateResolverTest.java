@@ -0,0 +1,141 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.google.common.io.Files;
+import com.ms.silverking.cloud.dht.NamespaceOptions;
+import com.ms.silverking.cloud.dht.NamespaceVersionMode;
+import com.ms.silverking.cloud.dht.PutOptions;
+import com.ms.silverking.cloud.dht.client.ChecksumType;
+import com.ms.silverking.cloud.dht.client.Compression;
+import com.ms.silverking.cloud.dht.client.impl.ChecksumProvider;
+import com.ms.silverking.cloud.dht.common.CCSSUtil;
+import com.ms.silverking.cloud.dht.common.DHTConstants;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.InternalRetrievalOptions;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.cloud.dht.common.SegmentIndexLocation;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.cloud.dht.common.SimpleValueCreator;
+import com.ms.silverking.cloud.dht.net.protocol.AtomicUpdateMessageFormat;
+import com.ms.silverking.collection.Pair;
+import com.ms.silverking.io.util.BufferUtil;
+import com.ms.silverking.numeric.NumConversion;
+import org.junit.Test;
+
+public class AtomicUpdateResolverTest {
+  private static final NamespaceOptions nsOptions = DHTConstants.defaultNamespaceOptions.versionMode(
+      NamespaceVersionMode.SYSTEM_TIME_NANOS);
+  private static final ChecksumType checksumType = nsOptions.getDefaultPutOptions().getChecksumType();
+  private static final DHTKey key = new SimpleKey(1, 2);
+  private static final long version = 7;
+
+  private static StorageValueAndParameters update(ByteBuffer record) {
+    return new StorageValueAndParameters(key, record, version, record.remaining(), record.remaining(),
+        CCSSUtil.createCCSS(Compression.NONE, checksumType), new byte[checksumType.length()],
+        SimpleValueCreator.forLocalProcess().getBytes(), 0, PutOptions.noVersionRequired, PutOptions.noLock);
+  }
+
+  /**
+   * @return the given value in stored form (meta data and data)
+   */
+  private static ByteBuffer stored(byte[] value) throws IOException {
+    File dir;
+    BulkSegmentWriter writer;
+    FileSegment segment;
+    ByteBuffer storedValue;
+
+    dir = Files.createTempDir();
+    writer = new BulkSegmentWriter(dir, nsOptions, SimpleValueCreator.forLocalProcess().getBytes());
+    writer.put(key, ByteBuffer.wrap(value), 1, 0);
+    writer.close();
+    segment = FileSegment.openReadOnly(dir, 0, nsOptions.getSegmentSize(), nsOptions, SegmentIndexLocation.RAM,
+        FileSegment.SegmentPrereadMode.Preread);
+    storedValue = ByteBuffer.wrap(BufferUtil.arrayCopy(segment.retrieve(key,
+        new InternalRetrievalOptions(nsOptions.getDefaultGetOptions()))));
+    segment.close();
+    return storedValue;
+  }
+
+  private static byte[] checkSucceeded(Pair<OpResult, StorageValueAndParameters> resolution) {
+    StorageValueAndParameters value;
+    byte[] bytes;
+
+    assertEquals(OpResult.SUCCEEDED, resolution.getV1());
+    value = resolution.getV2();
+    bytes = BufferUtil.arrayCopy(value.getValue().duplicate());
+    assertEquals(version, value.getVersion());
+    assertEquals(Compression.NONE, value.getCompression());
+    assertArrayEquals(ChecksumProvider.getChecksum(checksumType).checksum(ByteBuffer.wrap(bytes)), value.getChecksum());
+    return bytes;
+  }
+
+  private static void checkFailed(OpResult expected, Pair<OpResult, StorageValueAndParameters> resolution) {
+    assertEquals(expected, resolution.getV1());
+    assertNull(resolution.getV2());
+  }
+
+  @Test
+  public void testCompareAndSetValue() throws IOException {
+    ByteBuffer newValue;
+
+    newValue = ByteBuffer.wrap("new".getBytes());
+    assertArrayEquals("new".getBytes(), checkSucceeded(AtomicUpdateResolver.resolve(
+        update(AtomicUpdateMessageFormat.createCompareAndSetValue("old".getBytes(), newValue)),
+        stored("old".getBytes()))));
+    checkFailed(OpResult.INVALID_VERSION, AtomicUpdateResolver.resolve(
+        update(AtomicUpdateMessageFormat.createCompareAndSetValue("other".getBytes(), newValue)),
+        stored("old".getBytes())));
+    // absent expected value
+    assertArrayEquals("new".getBytes(), checkSucceeded(AtomicUpdateResolver.resolve(
+        update(AtomicUpdateMessageFormat.createCompareAndSetValue(null, newValue)), null)));
+    checkFailed(OpResult.INVALID_VERSION, AtomicUpdateResolver.resolve(
+        update(AtomicUpdateMessageFormat.createCompareAndSetValue(null, newValue)), stored("old".getBytes())));
+  }
+
+  @Test
+  public void testCompareAndSetChecksum() throws IOException {
+    byte[] checksum;
+    ByteBuffer newValue;
+
+    checksum = ChecksumProvider.getChecksum(checksumType).checksum(ByteBuffer.wrap("old".getBytes()));
+    newValue = ByteBuffer.wrap("new".getBytes());
+    assertArrayEquals("new".getBytes(), checkSucceeded(AtomicUpdateResolver.resolve(
+        update(AtomicUpdateMessageFormat.createCompareAndSetChecksum(checksum, newValue)),
+        stored("old".getBytes()))));
+    checkFailed(OpResult.INVALID_VERSION, AtomicUpdateResolver.resolve(
+        update(AtomicUpdateMessageFormat.createCompareAndSetChecksum(checksum, newValue)),
+        stored("other".getBytes())));
+    checkFailed(OpResult.INVALID_VERSION, AtomicUpdateResolver.resolve(
+        update(AtomicUpdateMessageFormat.createCompareAndSetChecksum(checksum, newValue)), null));
+  }
+
+  @Test
+  public void testAdd() throws IOException {
+    assertEquals(5, NumConversion.bytesToLong(checkSucceeded(AtomicUpdateResolver.resolve(
+        update(AtomicUpdateMessageFormat.createAdd(5)), null))));
+    assertEquals(42, NumConversion.bytesToLong(checkSucceeded(AtomicUpdateResolver.resolve(
+        update(AtomicUpdateMessageFormat.createAdd(-8)), stored(NumConversion.longToBytes(50))))));
+    checkFailed(OpResult.ERROR, AtomicUpdateResolver.resolve(update(AtomicUpdateMessageFormat.createAdd(1)),
+        stored("not a long".getBytes())));
+  }
+
+  @Test
+  public void testAppend() throws IOException {
+    ByteBuffer suffix;
+
+    suffix = ByteBuffer.wrap("def".getBytes());
+    assertArrayEquals("abcdef".getBytes(), checkSucceeded(AtomicUpdateResolver.resolve(
+        update(AtomicUpdateMessageFormat.createAppend(suffix, 6)), stored("abc".getBytes()))));
+    assertArrayEquals("def".getBytes(), checkSucceeded(AtomicUpdateResolver.resolve(
+        update(AtomicUpdateMessageFormat.createAppend(suffix, 6)), null)));
+    checkFailed(OpResult.ERROR, AtomicUpdateResolver.resolve(
+        update(AtomicUpdateMessageFormat.createAppend(suffix, 5)), stored("abc".getBytes())));
+  }
+}
@@ -0,0 +1,119 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import com.google.common.io.Files;
+import com.ms.silverking.cloud.dht.NamespaceOptions;
+import com.ms.silverking.cloud.dht.NamespaceVersionMode;
+import com.ms.silverking.cloud.dht.RetrievalType;
+import com.ms.silverking.cloud.dht.common.DHTConstants;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.InternalRetrievalOptions;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.cloud.dht.common.RawRetrievalResult;
+import com.ms.silverking.cloud.dht.common.SegmentIndexLocation;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.cloud.dht.common.SimpleValueCreator;
+import com.ms.silverking.io.util.BufferUtil;
+import org.junit.Test;
+
+public class BulkSegmentWriterTest {
+  private static final int segmentSize = 8192;
+  private static final long version = 5;
+  private static final NamespaceOptions nsOptions = DHTConstants.defaultNamespaceOptions.versionMode(
+      NamespaceVersionMode.SYSTEM_TIME_NANOS).segmentSize(segmentSize);
+
+  private static byte[] value(int i) {
+    return String.format("[VALUE %d] %0100d", i, i).getBytes();
+  }
+
+  private static BulkSegmentWriter newWriter(File dir) throws IOException {
+    return new BulkSegmentWriter(dir, nsOptions, SimpleValueCreator.forLocalProcess().getBytes());
+  }
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    File dir;
+    BulkSegmentWriter writer;
+    int numKeys;
+    int numSegments;
+    int found;
+
+    dir = Files.createTempDir();
+    writer = newWriter(dir);
+    numKeys = 200;
+    for (int i = 0; i < numKeys; i++) {
+      assertEquals(OpResult.SUCCEEDED, writer.put(new SimpleKey(i, i), ByteBuffer.wrap(value(i)), version, i));
+    }
+    numSegments = writer.close();
+    assertTrue(numSegments > 1);
+    assertEquals(numKeys, writer.getNumValues());
+
+    found = 0;
+    for (int s = 0; s < numSegments; s++) {
+      FileSegment segment;
+
+      segment = FileSegment.openReadOnly(dir, s, segmentSize, nsOptions, SegmentIndexLocation.RAM,
+          FileSegment.SegmentPrereadMode.Preread);
+      for (int i = 0; i < numKeys; i++) {
+        DHTKey key;
+        ByteBuffer result;
+
+        key = new SimpleKey(i, i);
+        result = segment.retrieve(key, new InternalRetrievalOptions(nsOptions.getDefaultGetOptions()));
+        if (result != null) {
+          RawRetrievalResult rr;
+
+          rr = new RawRetrievalResult(RetrievalType.VALUE_AND_META_DATA);
+          rr.setStoredValue(ByteBuffer.wrap(BufferUtil.arrayCopy(result)), true, false, null);
+          assertArrayEquals(value(i), BufferUtil.arrayCopy(rr.getValue()));
+          assertEquals(version, rr.getVersion());
+          ++found;
+        }
+      }
+      segment.close();
+    }
+    assertEquals(numKeys, found);
+  }
+
+  @Test
+  public void testValueTooLarge() throws IOException {
+    File dir;
+    BulkSegmentWriter writer;
+
+    dir = Files.createTempDir();
+    writer = newWriter(dir);
+    try {
+      writer.put(new SimpleKey(0, 0), ByteBuffer.allocate(2 * segmentSize), version, 0);
+      throw new RuntimeException("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException iae) {
+    }
+    assertEquals(OpResult.SUCCEEDED, writer.put(new SimpleKey(1, 1), ByteBuffer.wrap(value(1)), version, 0));
+    assertEquals(1, writer.close());
+  }
+
+  @Test
+  public void testSetSegmentNumber() throws IOException {
+    File dir;
+    BulkSegmentWriter writer;
+    File segmentFile;
+
+    dir = Files.createTempDir();
+    writer = newWriter(dir);
+    writer.put(new SimpleKey(0, 0), ByteBuffer.wrap(value(0)), version, 0);
+    writer.close();
+    segmentFile = FileSegment.fileForSegment(dir, 0);
+    FileSegment.setSegmentNumber(segmentFile, 42);
+    try (RandomAccessFile raFile = new RandomAccessFile(segmentFile, "r")) {
+      raFile.seek(SegmentFormat.segmentNumberOffset);
+      assertEquals(42, raFile.readInt());
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.collect.ImmutableList;
+import com.ms.silverking.cloud.dht.NamespaceStorageOptions;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import org.junit.Test;
+
+public class GroupCommitFlusherTest {
+  private static final NamespaceStorageOptions storageOptions = new NamespaceStorageOptions(20,
+      4 * 1024 * 1024, 0, false);
+  private static final long resultTimeoutMillis = 10 * 1000;
+
+  private static class QueueingListener implements KeyedOpResultListener {
+    final BlockingQueue<OpResult> results = new LinkedBlockingQueue<>();
+
+    @Override
+    public void sendResult(DHTKey key, OpResult result) {
+      results.add(result);
+    }
+  }
+
+  @Test
+  public void testResultsSentAfterForce() throws InterruptedException {
+    NamespaceStore nsStore;
+    GroupCommitFlusher flusher;
+    QueueingListener listener;
+    AtomicLong forcedSequence;
+
+    nsStore = mock(NamespaceStore.class);
+    forcedSequence = new AtomicLong();
+    when(nsStore.forceHeadSegmentForGroupCommit()).thenAnswer(invocation -> forcedSequence.get());
+    flusher = new GroupCommitFlusher(nsStore, "test", storageOptions);
+    listener = new QueueingListener();
+
+    // the writer does not wait; results are held until a force covers the write
+    flusher.recordWrite(100, listener, ImmutableList.of(new SimpleKey(0, 1), new SimpleKey(0, 2)));
+    assertTrue(listener.results.isEmpty());
+    forcedSequence.set(flusher.getWriteSequence());
+    assertEquals(OpResult.SUCCEEDED, listener.results.poll(resultTimeoutMillis, TimeUnit.MILLISECONDS));
+    assertEquals(OpResult.SUCCEEDED, listener.results.poll(resultTimeoutMillis, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testSmallWriteAckedWithoutFurtherWrites() throws InterruptedException {
+    NamespaceStore nsStore;
+    GroupCommitFlusher flusher;
+    QueueingListener listener;
+    AtomicReference<GroupCommitFlusher> flusherRef;
+    int intervalMillis;
+    long startMillis;
+
+    intervalMillis = 500;
+    nsStore = mock(NamespaceStore.class);
+    flusherRef = new AtomicReference<>();
+    when(nsStore.forceHeadSegmentForGroupCommit()).thenAnswer(invocation -> flusherRef.get().getWriteSequence());
+    flusher = new GroupCommitFlusher(nsStore, "test", storageOptions.groupCommitIntervalMillis(intervalMillis));
+    flusherRef.set(flusher);
+    listener = new QueueingListener();
+
+    // a single write far below groupCommitMaxBytes is flushed once the interval elapses
+    startMillis = System.currentTimeMillis();
+    flusher.recordWrite(1, listener, ImmutableList.of(new SimpleKey(0, 1)));
+    assertEquals(OpResult.SUCCEEDED, listener.results.poll(2 * intervalMillis, TimeUnit.MILLISECONDS));
+    assertTrue(System.currentTimeMillis() - startMillis < 2 * intervalMillis);
+    verify(nsStore, timeout(resultTimeoutMillis)).triggerWaitForsForGroupCommit(
+        ImmutableList.of(new SimpleKey(0, 1)));
+  }
+
+  @Test
+  public void testFailedForce() throws InterruptedException {
+    NamespaceStore nsStore;
+    GroupCommitFlusher flusher;
+    QueueingListener listener;
+
+    nsStore = mock(NamespaceStore.class);
+    when(nsStore.forceHeadSegmentForGroupCommit()).thenThrow(new RuntimeException("test force failure"));
+    flusher = new GroupCommitFlusher(nsStore, "test", storageOptions);
+    listener = new QueueingListener();
+
+    flusher.recordWrite(100, listener, ImmutableList.of(new SimpleKey(0, 1)));
+    assertEquals(OpResult.ERROR, listener.results.poll(resultTimeoutMillis, TimeUnit.MILLISECONDS));
+  }
+}
@@ -1,5 +1,9 @@
 package com.ms.silverking.cloud.dht.daemon.storage;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import org.junit.Test;
 
 public class NamespaceMetricsTest {
@@ -22,4 +26,22 @@ public void testAggregation() {
       System.out.printf("%s\t%s\n", n, a.getMetric(n));
     }
   }
+
+  @Test
+  public void testLatencyMetrics() {
+    NamespaceMetrics nm;
+    NamespaceMetrics a;
+
+    nm = new NamespaceMetrics();
+    nm.recordLatency(NamespaceMetrics.LatencyType.StoragePut, 100);
+    a = NamespaceMetrics.aggregate(nm, new NamespaceMetrics());
+    for (NamespaceMetrics.LatencyType type : NamespaceMetrics.LatencyType.values()) {
+      assertTrue(NamespaceMetrics.getMetricNames().contains(type.getMetricName()));
+      assertTrue(NamespaceMetrics.getLatencyMetricNames().contains(type.getMetricName()));
+      // the current interval is not yet complete
+      assertEquals(0, a.getLatencySnapshot(type).getCount());
+      assertTrue(nm.getMetric(type.getMetricName()).startsWith("count=0"));
+    }
+    assertFalse(NamespaceMetrics.getMetricNames().contains("latencies"));
+  }
 }
@@ -0,0 +1,440 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import static com.ms.silverking.cloud.dht.daemon.storage.NamespaceStoreTestUtil.put;
+import static com.ms.silverking.cloud.dht.daemon.storage.NamespaceStoreTestUtil.storageValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.io.Files;
+import com.ms.silverking.cloud.dht.ConsistencyProtocol;
+import com.ms.silverking.cloud.dht.NamespaceOptions;
+import com.ms.silverking.cloud.dht.NamespaceVersionMode;
+import com.ms.silverking.cloud.dht.PutOptions;
+import com.ms.silverking.cloud.dht.RetrievalType;
+import com.ms.silverking.cloud.dht.StorageType;
+import com.ms.silverking.cloud.dht.client.Compression;
+import com.ms.silverking.cloud.dht.common.CorruptValueException;
+import com.ms.silverking.cloud.dht.common.DHTConstants;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.InternalRetrievalOptions;
+import com.ms.silverking.cloud.dht.common.KeyUtil;
+import com.ms.silverking.cloud.dht.common.MessageType;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.cloud.dht.common.RawRetrievalResult;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.cloud.dht.daemon.storage.convergence.ConvergencePoint;
+import com.ms.silverking.cloud.dht.daemon.storage.convergence.RingID;
+import com.ms.silverking.cloud.dht.daemon.storage.convergence.RingIDAndVersionPair;
+import com.ms.silverking.cloud.dht.daemon.storage.protocol.PutOperationContainer;
+import com.ms.silverking.cloud.dht.net.MessageGroup;
+import com.ms.silverking.cloud.dht.net.MessageGroupConnection;
+import com.ms.silverking.cloud.dht.net.MessageGroupPutEntry;
+import com.ms.silverking.cloud.dht.net.MessageGroupRetrievalResponseEntry;
+import com.ms.silverking.cloud.dht.net.ProtoKeyScanMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoKeyScanResponseMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoPutForwardMessageGroup;
+import com.ms.silverking.cloud.dht.net.ProtoPutMessageGroup;
+import com.ms.silverking.cloud.dht.net.protocol.AtomicUpdateMessageFormat;
+import com.ms.silverking.cloud.ring.LongRingspace;
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.collection.Pair;
+import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.io.util.BufferUtil;
+import com.ms.silverking.numeric.NumConversion;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class NamespaceStoreTest {
+  private static final int segmentSize = 8192;
+  private static final long version = 5;
+  private static final NamespaceOptions nsOptions = DHTConstants.defaultNamespaceOptions.storageType(
+      StorageType.FILE).consistencyProtocol(ConsistencyProtocol.LOOSE).versionMode(
+      NamespaceVersionMode.SYSTEM_TIME_NANOS).segmentSize(segmentSize);
+  private static final ConvergencePoint cp = new ConvergencePoint(1,
+      new RingIDAndVersionPair(new RingID(1, 2), new Pair<>(3L, 4L)), version);
+
+  private static DHTKey key(int i) {
+    return new SimpleKey(i * 0x9E3779B97F4A7C15L, i);
+  }
+
+  private static byte[] value(int i) {
+    return String.format("[VALUE %d] %0100d", i, i).getBytes();
+  }
+
+  private static byte[] getValue(ByteBuffer storedValue) throws CorruptValueException {
+    RawRetrievalResult rr;
+
+    rr = new RawRetrievalResult(RetrievalType.VALUE_AND_META_DATA);
+    rr.setStoredValue(ByteBuffer.wrap(BufferUtil.arrayCopy(storedValue)), true, false, null);
+    return BufferUtil.arrayCopy(rr.getValue());
+  }
+
+  @Test
+  public void testStreamSegmentsForRemote() throws Exception {
+    NamespaceStore nsStore;
+    MessageGroupConnection connection;
+    ArgumentCaptor<Object> valueGroups;
+    ArgumentCaptor<Object> treeGroup;
+    RingRegion region;
+    Map<DHTKey, byte[]> received;
+    UUIDBase uuid;
+    int numKeys;
+    int numInRegion;
+
+    region = new RingRegion(LongRingspace.start, 0);
+    nsStore = NamespaceStoreTestUtil.newNamespaceStore(nsOptions, NamespaceStoreTestUtil.mockMessageGroupBase(),
+        NamespaceStoreTestUtil.mockRingMaster(region, new RingRegion(1, LongRingspace.end)));
+    numKeys = 500;
+    for (int i = 0; i < numKeys; i++) {
+      assertEquals(OpResult.SUCCEEDED, put(nsStore, storageValue(key(i), value(i), version, i)).get(key(i)));
+    }
+    assertTrue(nsStore.getHeadSegmentNumber() > 1);
+
+    uuid = UUIDBase.random();
+    connection = NamespaceStoreTestUtil.mockConnection();
+    nsStore.streamSegmentsForRemote(uuid, cp, cp, connection, NamespaceStoreTestUtil.valueCreator, region);
+
+    valueGroups = ArgumentCaptor.forClass(Object.class);
+    verify(connection, atLeastOnce()).sendSynchronous(valueGroups.capture(), any(), any(), anyLong());
+    received = new HashMap<>();
+    for (Object o : valueGroups.getAllValues()) {
+      MessageGroup mg;
+
+      mg = (MessageGroup) o;
+      assertEquals(MessageType.RETRIEVE_RESPONSE, mg.getMessageType());
+      assertEquals(uuid, mg.getUUID());
+      for (MessageGroupRetrievalResponseEntry entry : mg.getRetrievalResponseValueKeyIterator()) {
+        received.put(new SimpleKey(entry), getValue(entry.getValue()));
+      }
+    }
+    numInRegion = 0;
+    for (int i = 0; i < numKeys; i++) {
+      if (region.contains(KeyUtil.keyToCoordinate(key(i)))) {
+        assertArrayEquals(value(i), received.get(key(i)));
+        ++numInRegion;
+      }
+    }
+    assertTrue(numInRegion > 0 && numInRegion < numKeys);
+    assertEquals(numInRegion, received.size());
+
+    // the checksum tree for the region follows the values
+    treeGroup = ArgumentCaptor.forClass(Object.class);
+    verify(connection).sendAsynchronous(treeGroup.capture(), anyLong());
+    assertEquals(MessageType.CHECKSUM_TREE, ((MessageGroup) treeGroup.getValue()).getMessageType());
+    assertEquals(uuid, ((MessageGroup) treeGroup.getValue()).getUUID());
+  }
+
+  /**
+   * Scan a region in pages of pageSize keys, running betweenPages after each page
+   *
+   * @return the keys received, mapped to their values; each key is received at most once
+   */
+  private static Map<DHTKey, byte[]> scan(NamespaceStore nsStore, RingRegion region, int pageSize,
+      Runnable betweenPages) throws Exception {
+    Map<DHTKey, byte[]> received;
+    int segmentNumber;
+    int tableIndex;
+    DHTKey resumeKey;
+    boolean complete;
+
+    received = new HashMap<>();
+    segmentNumber = 0;
+    tableIndex = 0;
+    resumeKey = null;
+    complete = false;
+    while (!complete) {
+      MessageGroupConnection connection;
+      ArgumentCaptor<Object> responseGroup;
+      MessageGroup request;
+      MessageGroup response;
+      int numEntries;
+
+      request = new ProtoKeyScanMessageGroup(UUIDBase.random(), NamespaceStoreTestUtil.ns,
+          NamespaceStoreTestUtil.valueCreator, 10000, region, segmentNumber, tableIndex, resumeKey, pageSize,
+          true).toMessageGroup();
+      connection = NamespaceStoreTestUtil.mockConnection();
+      numEntries = nsStore.scanForRemote(request, connection);
+      responseGroup = ArgumentCaptor.forClass(Object.class);
+      verify(connection).sendAsynchronous(responseGroup.capture(), anyLong());
+      response = (MessageGroup) responseGroup.getValue();
+      assertEquals(MessageType.KEY_SCAN_RESPONSE, response.getMessageType());
+      assertEquals(numEntries, ProtoKeyScanResponseMessageGroup.getNumEntries(response));
+      for (int i = 0; i < numEntries; i++) {
+        assertNull(received.put(ProtoKeyScanResponseMessageGroup.getKey(response, i),
+            getValue(ProtoKeyScanResponseMessageGroup.getValue(response, i))));
+      }
+      complete = ProtoKeyScanResponseMessageGroup.isComplete(response);
+      assertTrue(complete || numEntries == pageSize);
+      segmentNumber = ProtoKeyScanResponseMessageGroup.getNextSegmentNumber(response);
+      tableIndex = ProtoKeyScanResponseMessageGroup.getNextTableIndex(response);
+      resumeKey = ProtoKeyScanResponseMessageGroup.getNextResumeKey(response);
+      betweenPages.run();
+    }
+    return received;
+  }
+
+  @Test
+  public void testScanForRemoteResumesAcrossPages() throws Exception {
+    NamespaceStore nsStore;
+    RingRegion region;
+    Map<DHTKey, byte[]> received;
+    AtomicInteger pages;
+    int numKeys;
+    int numRewritten;
+    int numInRegion;
+
+    region = new RingRegion(LongRingspace.start, 0);
+    nsStore = NamespaceStoreTestUtil.newNamespaceStore(nsOptions, NamespaceStoreTestUtil.mockMessageGroupBase(),
+        NamespaceStoreTestUtil.mockRingMaster(region, new RingRegion(1, LongRingspace.end)));
+    numKeys = 500;
+    numRewritten = 50;
+    for (int i = 0; i < numKeys; i++) {
+      assertEquals(OpResult.SUCCEEDED, put(nsStore, storageValue(key(i), value(i), version, i)).get(key(i)));
+    }
+    // rewritten keys must only be returned from the segment that holds their latest version
+    for (int i = 0; i < numRewritten; i++) {
+      assertEquals(OpResult.SUCCEEDED,
+          put(nsStore, storageValue(key(i), value(numKeys + i), version + 1, numKeys + i)).get(key(i)));
+    }
+    assertTrue(nsStore.getHeadSegmentNumber() > 1);
+
+    pages = new AtomicInteger();
+    received = scan(nsStore, region, 7, pages::incrementAndGet);
+    numInRegion = 0;
+    for (int i = 0; i < numKeys; i++) {
+      if (region.contains(KeyUtil.keyToCoordinate(key(i)))) {
+        assertArrayEquals(i < numRewritten ? value(numKeys + i) : value(i), received.get(key(i)));
+        ++numInRegion;
+      } else {
+        assertFalse(received.containsKey(key(i)));
+      }
+    }
+    assertTrue(numInRegion > 0 && numInRegion < numKeys);
+    assertEquals(numInRegion, received.size());
+    assertTrue(pages.get() > 1);
+  }
+
+  @Test
+  public void testScanForRemoteHeadSegmentWrittenBetweenPages() throws Exception {
+    NamespaceStore nsStore;
+    RingRegion region;
+    Map<DHTKey, byte[]> received;
+    AtomicInteger nextKey;
+    int numKeys;
+    int keysPerPage;
+
+    region = new RingRegion(LongRingspace.start, 0);
+    // a single head segment holds every key, so its key table is modified between pages
+    nsStore = NamespaceStoreTestUtil.newNamespaceStore(nsOptions.segmentSize(16 * 1024 * 1024),
+        NamespaceStoreTestUtil.mockMessageGroupBase(),
+        NamespaceStoreTestUtil.mockRingMaster(region, new RingRegion(1, LongRingspace.end)));
+    numKeys = 200;
+    keysPerPage = 50;
+    for (int i = 0; i < numKeys; i++) {
+      assertEquals(OpResult.SUCCEEDED, put(nsStore, storageValue(key(i), value(i), version, i)).get(key(i)));
+    }
+
+    // the keys written between pages displace existing keys within the table and grow it
+    nextKey = new AtomicInteger(numKeys);
+    received = scan(nsStore, region, 5, () -> {
+      for (int j = 0; j < keysPerPage; j++) {
+        int i;
+
+        i = nextKey.getAndIncrement();
+        assertEquals(OpResult.SUCCEEDED, put(nsStore, storageValue(key(i), value(i), version, i)).get(key(i)));
+      }
+    });
+    assertEquals(0, nsStore.getHeadSegmentNumber());
+    assertTrue(nextKey.get() > 4 * numKeys);
+    for (int i = 0; i < numKeys; i++) {
+      if (region.contains(KeyUtil.keyToCoordinate(key(i)))) {
+        assertArrayEquals(value(i), received.get(key(i)));
+      }
+    }
+  }
+
+  private static int stageSegments(File stagingDir, int firstKey, int numKeys) throws IOException {
+    BulkSegmentWriter writer;
+
+    writer = new BulkSegmentWriter(stagingDir, nsOptions, NamespaceStoreTestUtil.valueCreator);
+    for (int i = firstKey; i < firstKey + numKeys; i++) {
+      assertEquals(OpResult.SUCCEEDED, writer.put(key(i), ByteBuffer.wrap(value(i)), version, i));
+    }
+    return writer.close();
+  }
+
+  private static byte[] retrieve(NamespaceStore nsStore, DHTKey key) throws CorruptValueException {
+    ByteBuffer result;
+
+    result = nsStore.retrieve(key, new InternalRetrievalOptions(nsOptions.getDefaultGetOptions()));
+    return result != null ? getValue(result) : null;
+  }
+
+  @Test
+  public void testAdoptSegments() throws Exception {
+    NamespaceStore nsStore;
+    File stagingDir;
+    int numSegments;
+    int headSegmentNumber;
+
+    nsStore = NamespaceStoreTestUtil.newNamespaceStore(nsOptions, NamespaceStoreTestUtil.mockMessageGroupBase(),
+        NamespaceStoreTestUtil.mockRingMaster(new RingRegion(LongRingspace.start, LongRingspace.end)));
+    assertEquals(OpResult.SUCCEEDED, put(nsStore, storageValue(key(0), value(0), version, 0)).get(key(0)));
+    headSegmentNumber = nsStore.getHeadSegmentNumber();
+    stagingDir = Files.createTempDir();
+    numSegments = stageSegments(stagingDir, 1, 200);
+    assertTrue(numSegments > 1);
+
+    assertEquals(numSegments, nsStore.adoptSegments(stagingDir));
+    // adopted segments are numbered above the old head, and a new head above them
+    assertEquals(headSegmentNumber + numSegments + 1, nsStore.getHeadSegmentNumber());
+    for (int i = 0; i <= 200; i++) {
+      assertArrayEquals(value(i), retrieve(nsStore, key(i)));
+    }
+    assertEquals(0, stagingDir.listFiles().length);
+    // puts continue in the new head
+    assertEquals(OpResult.SUCCEEDED, put(nsStore, storageValue(key(201), value(201), version, 201)).get(key(201)));
+    assertArrayEquals(value(201), retrieve(nsStore, key(201)));
+  }
+
+  @Test
+  public void testAdoptSegmentsIsAllOrNothing() throws Exception {
+    NamespaceStore nsStore;
+    File stagingDir;
+    File otherStagingDir;
+    int numSegments;
+    int headSegmentNumber;
+
+    nsStore = NamespaceStoreTestUtil.newNamespaceStore(nsOptions, NamespaceStoreTestUtil.mockMessageGroupBase(),
+        NamespaceStoreTestUtil.mockRingMaster(new RingRegion(LongRingspace.start, LongRingspace.end)));
+    headSegmentNumber = nsStore.getHeadSegmentNumber();
+    stagingDir = Files.createTempDir();
+    numSegments = stageSegments(stagingDir, 0, 100);
+    // a final staged segment that repeats a key of the first
+    otherStagingDir = Files.createTempDir();
+    stageSegments(otherStagingDir, 0, 1);
+    Files.move(FileSegment.fileForSegment(otherStagingDir, 0), FileSegment.fileForSegment(stagingDir, numSegments));
+
+    try {
+      nsStore.adoptSegments(stagingDir);
+      throw new RuntimeException("Expected IOException");
+    } catch (IOException ioe) {
+    }
+    assertEquals(headSegmentNumber, nsStore.getHeadSegmentNumber());
+    assertEquals(numSegments + 1, stagingDir.listFiles().length);
+    for (int i = 0; i < 100; i++) {
+      assertNull(retrieve(nsStore, key(i)));
+    }
+  }
+
+  private static MessageGroup atomicUpdateMessage(DHTKey key, ByteBuffer record, long version) {
+    PutOptions putOptions;
+    ProtoPutMessageGroup<byte[]> protoMG;
+
+    putOptions = nsOptions.getDefaultPutOptions().version(version).compression(Compression.NONE);
+    protoMG = new ProtoPutMessageGroup<>(UUIDBase.random(), NamespaceStoreTestUtil.ns, 1, record.remaining(), version,
+        putOptions, putOptions.getChecksumType(), NamespaceStoreTestUtil.valueCreator,
+        NamespaceStoreTestUtil.valueCreator, 1000);
+    protoMG.addValueDedicated(key, record);
+    return protoMG.toMessageGroup();
+  }
+
+  /**
+   * Read the values of a put message as a replica does
+   */
+  private static List<StorageValueAndParameters> storageValues(MessageGroup message) {
+    PutOperationContainer putOperationContainer;
+    List<StorageValueAndParameters> values;
+
+    putOperationContainer = mock(PutOperationContainer.class);
+    when(putOperationContainer.getVersion()).thenReturn(ProtoPutMessageGroup.getPutVersion(message));
+    when(putOperationContainer.getCCSS()).thenReturn(ProtoPutMessageGroup.getCCSS(message));
+    when(putOperationContainer.getValueCreator()).thenReturn(NamespaceStoreTestUtil.valueCreator);
+    values = new ArrayList<>();
+    for (MessageGroupPutEntry entry : message.getPutValueKeyIterator(ProtoPutMessageGroup.getChecksumType(message))) {
+      values.add(new StorageValueAndParameters(entry, putOperationContainer, version,
+          ProtoPutMessageGroup.getPutRequiredPreviousVersion(message), ProtoPutMessageGroup.getLockSeconds(message)));
+    }
+    return values;
+  }
+
+  @Test
+  public void testPutAtomicForwardsResolvedValue() throws Exception {
+    NamespaceStore primary;
+    NamespaceStore replica;
+    DHTKey key;
+    MessageGroup update;
+    Map<DHTKey, OpResult> results;
+    List<StorageValueAndParameters> resolvedValues;
+    StorageValueAndParameters resolvedValue;
+    MessageGroup forward;
+
+    primary = NamespaceStoreTestUtil.newNamespaceStore(nsOptions, NamespaceStoreTestUtil.mockMessageGroupBase(),
+        NamespaceStoreTestUtil.mockRingMaster(new RingRegion(LongRingspace.start, LongRingspace.end)));
+    replica = NamespaceStoreTestUtil.newNamespaceStore(nsOptions, NamespaceStoreTestUtil.mockMessageGroupBase(),
+        NamespaceStoreTestUtil.mockRingMaster(new RingRegion(LongRingspace.start, LongRingspace.end)));
+    key = key(1);
+    // the replicas disagree before the update; the result must still be the primary's resolution
+    assertEquals(OpResult.SUCCEEDED, put(primary, storageValue(key, NumConversion.longToBytes(10), version, 0)).get(key));
+    assertEquals(OpResult.SUCCEEDED, put(replica, storageValue(key, NumConversion.longToBytes(20), version, 0)).get(key));
+
+    update = atomicUpdateMessage(key, AtomicUpdateMessageFormat.createAdd(5), version + 1);
+    results = new ConcurrentHashMap<>();
+    resolvedValues = new ArrayList<>();
+    primary.putAtomic(storageValues(update), NamespaceStoreTestUtil.userData, results::put, resolvedValues::add);
+    assertEquals(OpResult.SUCCEEDED, results.get(key));
+    assertEquals(1, resolvedValues.size());
+    resolvedValue = resolvedValues.get(0);
+
+    forward = new ProtoPutForwardMessageGroup(update.getUUID(), NamespaceStoreTestUtil.ns,
+        NamespaceStoreTestUtil.valueCreator, ProtoPutMessageGroup.getOptionBuffer(update), key,
+        resolvedValue.getValue().duplicate().rewind(), resolvedValue.getChecksum(),
+        ProtoPutMessageGroup.getChecksumType(update), 1000).toMessageGroup().ensureArrayBacked();
+    assertEquals(MessageType.PUT, forward.getMessageType());
+    assertEquals(OpResult.SUCCEEDED, put(replica, storageValues(forward)).get(key));
+
+    assertArrayEquals(NumConversion.longToBytes(15), retrieve(primary, key));
+    assertArrayEquals(NumConversion.longToBytes(15), retrieve(replica, key));
+  }
+
+  @Test
+  public void testPutAtomicFailedComparisonIsNotResolved() throws Exception {
+    NamespaceStore nsStore;
+    DHTKey key;
+    Map<DHTKey, OpResult> results;
+    List<StorageValueAndParameters> resolvedValues;
+
+    nsStore = NamespaceStoreTestUtil.newNamespaceStore(nsOptions, NamespaceStoreTestUtil.mockMessageGroupBase(),
+        NamespaceStoreTestUtil.mockRingMaster(new RingRegion(LongRingspace.start, LongRingspace.end)));
+    key = key(1);
+    assertEquals(OpResult.SUCCEEDED, put(nsStore, storageValue(key, value(1), version, 0)).get(key));
+
+    results = new ConcurrentHashMap<>();
+    resolvedValues = new ArrayList<>();
+    nsStore.putAtomic(storageValues(atomicUpdateMessage(key, AtomicUpdateMessageFormat.createCompareAndSetValue(
+        value(2), ByteBuffer.wrap(value(3))), version + 1)), NamespaceStoreTestUtil.userData, results::put,
+        resolvedValues::add);
+    assertEquals(OpResult.INVALID_VERSION, results.get(key));
+    assertTrue(resolvedValues.isEmpty());
+    assertArrayEquals(value(1), retrieve(nsStore, key));
+  }
+}
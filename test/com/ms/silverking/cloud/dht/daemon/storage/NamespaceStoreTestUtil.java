@@ -0,0 +1,116 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.ms.silverking.cloud.dht.NamespaceOptions;
+import com.ms.silverking.cloud.dht.PutOptions;
+import com.ms.silverking.cloud.dht.client.ChecksumType;
+import com.ms.silverking.cloud.dht.client.Compression;
+import com.ms.silverking.cloud.dht.client.impl.ChecksumProvider;
+import com.ms.silverking.cloud.dht.common.CCSSUtil;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.NamespaceProperties;
+import com.ms.silverking.cloud.dht.common.OpResult;
+import com.ms.silverking.cloud.dht.common.SimpleValueCreator;
+import com.ms.silverking.cloud.dht.daemon.NodeRingMaster2;
+import com.ms.silverking.cloud.dht.net.MessageGroupBase;
+import com.ms.silverking.cloud.dht.net.MessageGroupConnection;
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.net.async.Connection;
+import com.ms.silverking.time.SystemTimeSource;
+
+/**
+ * Creates stand-alone NamespaceStores, backed by a temporary directory, for tests
+ */
+class NamespaceStoreTestUtil {
+  static final long ns = 0x1234;
+  static final byte[] valueCreator = SimpleValueCreator.forLocalProcess().getBytes();
+  static final byte[] userData = new byte[0];
+
+  static MessageGroupBase mockMessageGroupBase() {
+    MessageGroupBase mgBase;
+
+    mgBase = mock(MessageGroupBase.class);
+    when(mgBase.getMyID()).thenReturn(valueCreator);
+    when(mgBase.getAbsMillisTimeSource()).thenReturn(new SystemTimeSource());
+    return mgBase;
+  }
+
+  /**
+   * Return a connection that records sent messages for verification. Connection.getRemoteIPAndPort() is
+   * final and so cannot be stubbed; the remote address is set directly instead.
+   */
+  static MessageGroupConnection mockConnection() throws ReflectiveOperationException {
+    MessageGroupConnection connection;
+    Field remoteSocketAddress;
+
+    connection = mock(MessageGroupConnection.class);
+    remoteSocketAddress = Connection.class.getDeclaredField("remoteSocketAddress");
+    remoteSocketAddress.setAccessible(true);
+    remoteSocketAddress.set(connection, new InetSocketAddress("127.0.0.1", 7000));
+    return connection;
+  }
+
+  /**
+   * Return a ring master for which this node is a replica of every key, and whose ring consists of the
+   * given regions
+   */
+  static NodeRingMaster2 mockRingMaster(RingRegion... regions) {
+    NodeRingMaster2 ringMaster;
+
+    ringMaster = mock(NodeRingMaster2.class);
+    when(ringMaster.getRegions(any())).thenReturn(Arrays.asList(regions));
+    when(ringMaster.iAmPotentialReplicaFor(any(), anyBoolean())).thenReturn(true);
+    return ringMaster;
+  }
+
+  static NamespaceStore newNamespaceStore(NamespaceOptions nsOptions, MessageGroupBase mgBase,
+      NodeRingMaster2 ringMaster) {
+    return newNamespaceStore(Files.createTempDir(), nsOptions, mgBase, ringMaster);
+  }
+
+  static NamespaceStore newNamespaceStore(File nsDir, NamespaceOptions nsOptions, MessageGroupBase mgBase,
+      NodeRingMaster2 ringMaster) {
+    return new NamespaceStore(ns, nsDir, NamespaceStore.DirCreationMode.CreateNSDir,
+        new NamespaceProperties(nsOptions), mgBase, ringMaster, false, null);
+  }
+
+  static StorageValueAndParameters storageValue(DHTKey key, byte[] value, long version, long creationTime) {
+    ChecksumType checksumType;
+
+    checksumType = ChecksumType.MD5;
+    return new StorageValueAndParameters(key, ByteBuffer.wrap(value), version, value.length, value.length,
+        CCSSUtil.createCCSS(Compression.NONE, checksumType),
+        ChecksumProvider.getChecksum(checksumType).checksum(ByteBuffer.wrap(value)), valueCreator, creationTime,
+        PutOptions.noVersionRequired, PutOptions.noLock);
+  }
+
+  /**
+   * Put the given values and return the result for each key
+   */
+  static Map<DHTKey, OpResult> put(NamespaceStore nsStore, List<StorageValueAndParameters> values) {
+    Map<DHTKey, OpResult> results;
+
+    results = new ConcurrentHashMap<>();
+    nsStore.put(values, userData, results::put);
+    return results;
+  }
+
+  static Map<DHTKey, OpResult> put(NamespaceStore nsStore, StorageValueAndParameters value) {
+    return put(nsStore, ImmutableList.of(value));
+  }
+}
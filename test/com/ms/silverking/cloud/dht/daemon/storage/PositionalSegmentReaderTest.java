@@ -0,0 +1,82 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PositionalSegmentReaderTest {
+  private static final int dataSegmentSize = 3 * SegmentBlockCache.blockSize + 1000;
+  private static final int segmentNumber = 7;
+
+  private File file;
+  private byte[] data;
+  private SegmentBlockCache blockCache;
+  private PositionalSegmentReader reader;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("PositionalSegmentReaderTest", null);
+    data = new byte[dataSegmentSize];
+    new Random(0).nextBytes(data);
+    Files.write(file.toPath(), data);
+    blockCache = new SegmentBlockCache(64 * SegmentBlockCache.blockSize);
+    reader = new PositionalSegmentReader(file, segmentNumber, dataSegmentSize, blockCache);
+  }
+
+  @After
+  public void tearDown() {
+    reader.close();
+    file.delete();
+  }
+
+  private void checkRead(int offset, int length) {
+    ByteBuffer buf;
+
+    buf = reader.read(offset, length);
+    assertTrue(buf.isReadOnly());
+    assertEquals(0, buf.position());
+    assertEquals(length, buf.remaining());
+    for (int i = 0; i < length; i++) {
+      assertEquals(data[offset + i], buf.get(i));
+    }
+  }
+
+  @Test
+  public void testSingleBlockReads() {
+    checkRead(0, 16);
+    checkRead(100, 1000);
+    checkRead(SegmentBlockCache.blockSize - 8, 8);
+    checkRead(dataSegmentSize - 10, 10);
+    assertNotNull(blockCache.get(segmentNumber, 0));
+    assertNotNull(blockCache.get(segmentNumber, 3));
+  }
+
+  @Test
+  public void testCrossBlockReads() {
+    checkRead(SegmentBlockCache.blockSize - 8, 16);
+    checkRead(10, 2 * SegmentBlockCache.blockSize);
+    checkRead(0, dataSegmentSize);
+  }
+
+  @Test
+  public void testReadAfterClose() {
+    checkRead(0, 16);
+    reader.close();
+    checkRead(5 * 1000, 16);
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testReadBeyondSegment() {
+    reader.read(dataSegmentSize - 10, 11);
+  }
+}
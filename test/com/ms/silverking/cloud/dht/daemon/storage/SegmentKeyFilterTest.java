@@ -0,0 +1,75 @@
+package com.ms.silverking.cloud.dht.daemon.storage;
+
+import static org.junit.Assert.assertTrue;
+
+import com.ms.silverking.cloud.dht.collection.IntArrayDHTKeyCuckoo;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.collection.cuckoo.TableFullException;
+import org.junit.Test;
+
+public class SegmentKeyFilterTest {
+  private static final int numKeys = 10000;
+  private static final int numProbes = 100000;
+  private static final int bitsPerKey = 10;
+  // expected false positive rate with 10 bits/key is ~1%; allow generous slack
+  private static final double maxFalsePositiveRate = 0.03;
+
+  @Test
+  public void testNoFalseNegatives() {
+    SegmentKeyFilter filter;
+    DHTKey[] keys;
+
+    keys = new DHTKey[numKeys];
+    filter = new SegmentKeyFilter(numKeys, bitsPerKey);
+    for (int i = 0; i < numKeys; i++) {
+      keys[i] = SimpleKey.randomKey();
+      filter.add(keys[i]);
+    }
+    for (DHTKey key : keys) {
+      assertTrue(filter.mightContain(key));
+    }
+  }
+
+  @Test
+  public void testFalsePositiveRate() {
+    SegmentKeyFilter filter;
+    int falsePositives;
+    double falsePositiveRate;
+
+    filter = new SegmentKeyFilter(numKeys, bitsPerKey);
+    for (int i = 0; i < numKeys; i++) {
+      filter.add(SimpleKey.randomKey());
+    }
+    falsePositives = 0;
+    for (int i = 0; i < numProbes; i++) {
+      if (filter.mightContain(SimpleKey.randomKey())) {
+        falsePositives++;
+      }
+    }
+    falsePositiveRate = (double) falsePositives / (double) numProbes;
+    assertTrue("falsePositiveRate " + falsePositiveRate, falsePositiveRate < maxFalsePositiveRate);
+  }
+
+  @Test
+  public void testCreateFromSegmentIndex() {
+    IntArrayDHTKeyCuckoo keyToOffset;
+    SegmentKeyFilter filter;
+    DHTKey[] keys;
+
+    keyToOffset = new IntArrayDHTKeyCuckoo(StoreConfiguration.fileInitialCuckooConfig);
+    keys = new DHTKey[numKeys];
+    for (int i = 0; i < numKeys; i++) {
+      keys[i] = SimpleKey.randomKey();
+      try {
+        keyToOffset.put(keys[i], i);
+      } catch (TableFullException tfe) {
+        keyToOffset = IntArrayDHTKeyCuckoo.rehashAndAdd(keyToOffset, keys[i], i);
+      }
+    }
+    filter = SegmentKeyFilter.create(keyToOffset, bitsPerKey);
+    for (DHTKey key : keys) {
+      assertTrue(filter.mightContain(key));
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.ms.silverking.cloud.dht.daemon.storage.convergence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.net.IPAndPort;
+
+public class SyncRateControllerTest {
+  private static final IPAndPort peer0 = new IPAndPort("10.0.0.1:7575");
+  private static final IPAndPort peer1 = new IPAndPort("10.0.0.2:7575");
+  private static final long targetLatencyMillis = 100;
+
+  private double load;
+
+  private SyncRateController newController() {
+    return new SyncRateController(2, 1, 8, targetLatencyMillis, 1.0, () -> load);
+  }
+
+  @Test
+  public void testIncreasesToMaxWhenUncongested() {
+    SyncRateController controller;
+
+    controller = newController();
+    assertEquals(2, controller.getMaxOutstanding(peer0));
+    for (int i = 0; i < 1000; i++) {
+      controller.responseReceived(peer0, targetLatencyMillis / 2);
+    }
+    assertEquals(8, controller.getMaxOutstanding(peer0));
+    assertEquals(2, controller.getMaxOutstanding(peer1));
+  }
+
+  @Test
+  public void testDecreasesOnLatency() {
+    SyncRateController controller;
+
+    controller = newController();
+    for (int i = 0; i < 1000; i++) {
+      controller.responseReceived(peer0, targetLatencyMillis / 2);
+    }
+    controller.responseReceived(peer0, targetLatencyMillis * 2);
+    assertEquals(4, controller.getMaxOutstanding(peer0));
+    // responses already in flight when the window was reduced do not reduce it again
+    controller.responseReceived(peer0, targetLatencyMillis * 2);
+    assertEquals(4, controller.getMaxOutstanding(peer0));
+    for (int i = 0; i < 100; i++) {
+      controller.responseReceived(peer0, targetLatencyMillis * 2);
+    }
+    assertEquals(1, controller.getMaxOutstanding(peer0));
+  }
+
+  @Test
+  public void testDecreasesOnLoad() {
+    SyncRateController controller;
+
+    controller = newController();
+    load = 2.0;
+    for (int i = 0; i < 100; i++) {
+      controller.responseReceived(peer0, targetLatencyMillis / 2);
+    }
+    assertEquals(1, controller.getMaxOutstanding(peer0));
+  }
+
+  @Test
+  public void testProgressSerialization() {
+    ConvergenceProgress p0;
+    ConvergenceProgress p1;
+    ByteBuffer buf;
+
+    p0 = new ConvergenceProgress(7, new RingRegion(10, 20), 1000, 400, 100, 4096, 2000);
+    buf = ByteBuffer.allocate(ConvergenceProgress.serializedSizeBytes);
+    p0.writeToBuffer(buf);
+    p1 = ConvergenceProgress.readFromBuffer(7, buf, 0);
+    assertEquals(p0.toString(), p1.toString());
+    assertEquals(6000, p1.getETAMillis());
+    assertTrue(p1.getBytesPerSecond() > 0.0);
+    assertEquals(800, p0.add(p1).getKeysToFetch());
+  }
+}
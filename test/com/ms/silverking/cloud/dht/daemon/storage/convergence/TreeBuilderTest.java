@@ -0,0 +1,106 @@
+package com.ms.silverking.cloud.dht.daemon.storage.convergence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+import com.google.common.collect.Iterators;
+import com.ms.silverking.cloud.dht.common.DHTKey;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.cloud.dht.daemon.storage.KeyAndVersionChecksum;
+import com.ms.silverking.cloud.ring.RingRegion;
+
+public class TreeBuilderTest {
+  private static final int entriesPerNode = 16;
+  private static final int keysPerRegion = 1000;
+
+  // KeyUtil.keyToCoordinate() uses the MSL
+  private static DHTKey regionKey(RingRegion region) {
+    long p;
+
+    p = region.getStart() + ThreadLocalRandom.current().nextLong(region.getSize());
+    return new SimpleKey(p << 1, ThreadLocalRandom.current().nextLong());
+  }
+
+  private static List<RingRegion> createRegions() {
+    List<RingRegion> regions;
+
+    regions = new ArrayList<>();
+    regions.add(new RingRegion(1, 1000000));
+    regions.add(new RingRegion(1000001, 1500000));
+    regions.add(new RingRegion(1500001, 4000000));
+    regions.add(new RingRegion(4000001, 4000100));
+    regions.add(new RingRegion(4000101, 9000000));
+    return regions;
+  }
+
+  private static List<KeyAndVersionChecksum> createKVCs(List<RingRegion> regions) {
+    List<KeyAndVersionChecksum> kvcList;
+
+    kvcList = new ArrayList<>();
+    for (RingRegion region : regions) {
+      for (int i = 0; i < keysPerRegion; i++) {
+        kvcList.add(new KeyAndVersionChecksum(regionKey(region), i, 0));
+      }
+    }
+    return kvcList;
+  }
+
+  @Test
+  public void testParallelBuildMatchesSequential() {
+    List<RingRegion> regions;
+    List<KeyAndVersionChecksum> kvcList;
+    ChecksumTreeGroup sequential;
+    ChecksumTreeGroup parallel;
+    ForkJoinPool pool;
+
+    regions = createRegions();
+    kvcList = createKVCs(regions);
+    sequential = TreeBuilder.build(regions, kvcList.iterator(), entriesPerNode, kvcList.size(), 0, 0, 0, false);
+    pool = new ForkJoinPool(3);
+    try {
+      parallel = TreeBuilder.buildParallel(regions,
+          (Predicate<DHTKey> keyFilter) -> Iterators.filter(kvcList.iterator(), kvc -> keyFilter.test(kvc.getKey())),
+          pool, 3, entriesPerNode, kvcList.size(), 0, 0, 0, false);
+    } finally {
+      pool.shutdown();
+    }
+    for (RingRegion region : regions) {
+      ChecksumNode sequentialRoot;
+      ChecksumNode parallelRoot;
+
+      sequentialRoot = sequential.getTreeRoot(region.getStart());
+      parallelRoot = parallel.getTreeRoot(region.getStart());
+      assertEquals(region, parallelRoot.getRegion());
+      assertEquals(keysPerRegion, parallelRoot.estimatedKeys());
+      assertFalse(TreeMatcher.match(parallelRoot, sequentialRoot).isNonEmpty());
+    }
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testParallelBuildRejectsKeyOutsideRegions() {
+    List<RingRegion> regions;
+    List<KeyAndVersionChecksum> kvcList;
+    ForkJoinPool pool;
+
+    regions = createRegions();
+    kvcList = createKVCs(regions);
+    kvcList.add(new KeyAndVersionChecksum(regionKey(new RingRegion(9000001, 9500000)), 0, 0));
+    pool = new ForkJoinPool(2);
+    try {
+      TreeBuilder.buildParallel(regions,
+          (Predicate<DHTKey> keyFilter) -> Iterators.filter(kvcList.iterator(), kvc -> keyFilter.test(kvc.getKey())),
+          pool, 2, entriesPerNode, kvcList.size(), 0, 0, 0, false);
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.ms.silverking.cloud.dht.net;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ms.silverking.cloud.dht.ForwardingMode;
+import com.ms.silverking.cloud.dht.ValueCreator;
+import com.ms.silverking.cloud.dht.common.MessageType;
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.id.UUIDBase;
+import org.junit.Test;
+
+public class ProtoBatchMessageGroupTest {
+  private static final byte[] originator = new byte[ValueCreator.BYTES];
+  private static final RingRegion region = new RingRegion(-1000, 1000);
+
+  @Test
+  public void testRoundTrip() {
+    List<MessageGroup> messageGroups;
+    MessageGroup batch;
+    List<MessageGroup> unpacked;
+
+    messageGroups = new ArrayList<>();
+    messageGroups.add(new ProtoKeyScanMessageGroup(UUIDBase.random(), 1, originator, 1000).toMessageGroup());
+    messageGroups.add(new ProtoKeyScanMessageGroup(UUIDBase.random(), 2, originator, 3000, region,
+        3, 4, 100, true).toMessageGroup());
+    batch = new ProtoBatchMessageGroup(UUIDBase.random(), originator, messageGroups).toMessageGroup();
+    assertEquals(MessageType.BATCH, batch.getMessageType());
+    assertEquals(ForwardingMode.DO_NOT_FORWARD, batch.getForwardingMode());
+    assertEquals(3000, batch.getDeadlineRelativeMillis());
+
+    unpacked = ProtoBatchMessageGroup.getMessageGroups(batch);
+    assertEquals(messageGroups.size(), unpacked.size());
+    for (int i = 0; i < messageGroups.size(); i++) {
+      MessageGroup original;
+      MessageGroup mg;
+
+      original = messageGroups.get(i);
+      mg = unpacked.get(i);
+      assertEquals(original.getMessageType(), mg.getMessageType());
+      assertEquals(original.getUUID(), mg.getUUID());
+      assertEquals(original.getContext(), mg.getContext());
+      assertEquals(original.getDeadlineRelativeMillis(), mg.getDeadlineRelativeMillis());
+      assertEquals(original.getForwardingMode(), mg.getForwardingMode());
+      assertEquals(original.getBuffers().length, mg.getBuffers().length);
+    }
+    assertEquals(region, ProtoKeyScanMessageGroup.getRegion(unpacked.get(1)));
+    assertEquals(3, ProtoKeyScanMessageGroup.getSegmentNumber(unpacked.get(1)));
+    assertEquals(4, ProtoKeyScanMessageGroup.getTableIndex(unpacked.get(1)));
+    assertEquals(100, ProtoKeyScanMessageGroup.getMaxKeys(unpacked.get(1)));
+  }
+}
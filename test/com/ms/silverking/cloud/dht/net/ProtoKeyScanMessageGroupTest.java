@@ -0,0 +1,101 @@
+package com.ms.silverking.cloud.dht.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ms.silverking.cloud.dht.ValueCreator;
+import com.ms.silverking.cloud.dht.common.MessageType;
+import com.ms.silverking.cloud.dht.common.SimpleKey;
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.net.IPAndPort;
+import org.junit.Test;
+
+public class ProtoKeyScanMessageGroupTest {
+  private static final long context = 12345;
+  private static final byte[] originator = new byte[ValueCreator.BYTES];
+  private static final int deadlineRelativeMillis = 1000;
+  private static final RingRegion region = new RingRegion(-1000, 1000);
+
+  @Test
+  public void testKeysRequest() {
+    MessageGroup mg;
+
+    mg = new ProtoKeyScanMessageGroup(UUIDBase.random(), context, originator, deadlineRelativeMillis, region,
+        3, 4, 100, true).toMessageGroup();
+    assertEquals(MessageType.KEY_SCAN, mg.getMessageType());
+    assertEquals(ProtoKeyScanMessageGroup.Mode.Keys, ProtoKeyScanMessageGroup.getMode(mg));
+    assertEquals(region, ProtoKeyScanMessageGroup.getRegion(mg));
+    assertEquals(3, ProtoKeyScanMessageGroup.getSegmentNumber(mg));
+    assertEquals(4, ProtoKeyScanMessageGroup.getTableIndex(mg));
+    assertNull(ProtoKeyScanMessageGroup.getResumeKey(mg));
+    assertEquals(100, ProtoKeyScanMessageGroup.getMaxKeys(mg));
+    assertTrue(ProtoKeyScanMessageGroup.getIncludeValues(mg));
+
+    mg = new ProtoKeyScanMessageGroup(UUIDBase.random(), context, originator, deadlineRelativeMillis, region,
+        3, 0, new SimpleKey(-5, 6), 100, true).toMessageGroup();
+    assertEquals(3, ProtoKeyScanMessageGroup.getSegmentNumber(mg));
+    assertEquals(new SimpleKey(-5, 6), ProtoKeyScanMessageGroup.getResumeKey(mg));
+    assertEquals(100, ProtoKeyScanMessageGroup.getMaxKeys(mg));
+
+    mg = new ProtoKeyScanMessageGroup(UUIDBase.random(), context, originator, deadlineRelativeMillis, region, 0, 0,
+        100, false).toMessageGroup();
+    assertEquals(0, ProtoKeyScanMessageGroup.getSegmentNumber(mg));
+    assertFalse(ProtoKeyScanMessageGroup.getIncludeValues(mg));
+  }
+
+  @Test
+  public void testRegionsResponse() {
+    Map<RingRegion, List<IPAndPort>> regions;
+    MessageGroup mg;
+
+    regions = new LinkedHashMap<>();
+    regions.put(region, Arrays.asList(new IPAndPort("10.0.0.1", 7000), new IPAndPort("10.0.0.2", 7000)));
+    regions.put(new RingRegion(1001, 2000), Arrays.asList(new IPAndPort("10.0.0.3", 7000)));
+    mg = new ProtoKeyScanResponseMessageGroup(UUIDBase.random(), context, originator, deadlineRelativeMillis,
+        regions).toMessageGroup();
+    assertEquals(MessageType.KEY_SCAN_RESPONSE, mg.getMessageType());
+    assertEquals(ProtoKeyScanMessageGroup.Mode.Regions, ProtoKeyScanResponseMessageGroup.getMode(mg));
+    assertEquals(regions, ProtoKeyScanResponseMessageGroup.getRegions(mg));
+  }
+
+  @Test
+  public void testKeysResponse() {
+    ProtoKeyScanResponseMessageGroup protoMG;
+    MessageGroup mg;
+    ByteBuffer value;
+    byte[] valueBytes;
+
+    protoMG = new ProtoKeyScanResponseMessageGroup(UUIDBase.random(), context, originator, deadlineRelativeMillis,
+        false, 5, 6, null, 2, 6);
+    protoMG.addKey(new SimpleKey(1, 2), null);
+    protoMG.addKey(new SimpleKey(3, 4), ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6}));
+    mg = protoMG.toMessageGroup();
+    assertFalse(ProtoKeyScanResponseMessageGroup.isComplete(mg));
+    assertEquals(5, ProtoKeyScanResponseMessageGroup.getNextSegmentNumber(mg));
+    assertEquals(6, ProtoKeyScanResponseMessageGroup.getNextTableIndex(mg));
+    assertNull(ProtoKeyScanResponseMessageGroup.getNextResumeKey(mg));
+    assertEquals(2, ProtoKeyScanResponseMessageGroup.getNumEntries(mg));
+    assertEquals(new SimpleKey(1, 2), ProtoKeyScanResponseMessageGroup.getKey(mg, 0));
+    assertNull(ProtoKeyScanResponseMessageGroup.getValue(mg, 0));
+    assertEquals(new SimpleKey(3, 4), ProtoKeyScanResponseMessageGroup.getKey(mg, 1));
+    value = ProtoKeyScanResponseMessageGroup.getValue(mg, 1);
+    valueBytes = new byte[value.remaining()];
+    value.get(valueBytes);
+    assertArrayEquals(new byte[] {1, 2, 3, 4, 5, 6}, valueBytes);
+
+    mg = new ProtoKeyScanResponseMessageGroup(UUIDBase.random(), context, originator, deadlineRelativeMillis,
+        false, 5, 0, new SimpleKey(7, -8), 0, 0).toMessageGroup();
+    assertEquals(5, ProtoKeyScanResponseMessageGroup.getNextSegmentNumber(mg));
+    assertEquals(new SimpleKey(7, -8), ProtoKeyScanResponseMessageGroup.getNextResumeKey(mg));
+  }
+}
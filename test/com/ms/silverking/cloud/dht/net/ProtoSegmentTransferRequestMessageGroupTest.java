@@ -0,0 +1,51 @@
+package com.ms.silverking.cloud.dht.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.ms.silverking.cloud.dht.ValueCreator;
+import com.ms.silverking.cloud.dht.common.MessageType;
+import com.ms.silverking.cloud.dht.daemon.storage.convergence.ConvergencePoint;
+import com.ms.silverking.cloud.dht.daemon.storage.convergence.RingID;
+import com.ms.silverking.cloud.dht.daemon.storage.convergence.RingIDAndVersionPair;
+import com.ms.silverking.cloud.ring.RingRegion;
+import com.ms.silverking.collection.Pair;
+import com.ms.silverking.id.UUIDBase;
+import com.ms.silverking.net.IPAndPort;
+import org.junit.Test;
+
+public class ProtoSegmentTransferRequestMessageGroupTest {
+  private static final long context = 12345;
+  private static final byte[] originator = new byte[ValueCreator.BYTES];
+  private static final RingRegion region = new RingRegion(-1000, 1000);
+
+  private static ConvergencePoint convergencePoint(long dataVersion) {
+    return new ConvergencePoint(3, new RingIDAndVersionPair(new RingID(1, 2), new Pair<>(4L, 5L)), dataVersion);
+  }
+
+  @Test
+  public void testRoundTrip() {
+    UUIDBase uuid;
+    ConvergencePoint targetCP;
+    ConvergencePoint curCP;
+    MessageGroup mg;
+    MessageGroup received;
+
+    uuid = UUIDBase.random();
+    targetCP = convergencePoint(7);
+    curCP = convergencePoint(6);
+    mg = new ProtoSegmentTransferRequestMessageGroup(uuid, context, targetCP, curCP, originator, region)
+        .toMessageGroup();
+    // reconstruct the group from its buffers as a receiver would
+    received = MessageGroup.clone(mg);
+
+    assertEquals(MessageType.SEGMENT_TRANSFER_REQUEST, received.getMessageType());
+    assertEquals(uuid, received.getUUID());
+    assertEquals(context, received.getContext());
+    assertEquals(targetCP, ProtoChecksumTreeRequestMessageGroup.getTargetConvergencePoint(received));
+    assertEquals(curCP, ProtoChecksumTreeRequestMessageGroup.getSourceConvergencePoint(received));
+    assertEquals(region, ProtoChecksumTreeRequestMessageGroup.getRegion(received));
+    assertEquals(IPAndPort.emptyIPAndPort, ProtoChecksumTreeRequestMessageGroup.getReplica(received));
+    assertFalse(ProtoChecksumTreeRequestMessageGroup.getLocalFlag(received));
+  }
+}
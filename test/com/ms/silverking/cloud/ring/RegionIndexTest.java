@@ -0,0 +1,84 @@
+package com.ms.silverking.cloud.ring;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class RegionIndexTest {
+  private static void checkAgainstTreeMap(long[] starts, Random random) {
+    RegionIndex regionIndex;
+    TreeMap<Long, Integer> floorMap;
+
+    regionIndex = new RegionIndex(starts);
+    floorMap = new TreeMap<>();
+    for (int i = 0; i < starts.length; i++) {
+      floorMap.put(starts[i], i);
+      assertEquals(i, regionIndex.indexOf(starts[i]));
+      if (starts[i] < LongRingspace.end) {
+        assertEquals(i, regionIndex.indexOf(starts[i] + 1));
+      }
+    }
+    for (int i = 0; i < 100000; i++) {
+      long coordinate;
+
+      coordinate = LongRingspace.start + (random.nextLong() & Long.MAX_VALUE) % LongRingspace.size;
+      assertEquals(floorMap.floorEntry(coordinate).getValue().intValue(), regionIndex.indexOf(coordinate));
+    }
+    assertEquals(starts.length - 1, regionIndex.indexOf(LongRingspace.end));
+  }
+
+  @Test
+  public void testUniformRegions() {
+    Random random;
+
+    random = new Random(0);
+    for (int numRegions : new int[] { 1, 2, 3, 100, 4096, 100000 }) {
+      long[] starts;
+
+      starts = new long[numRegions];
+      for (int i = 0; i < numRegions; i++) {
+        starts[i] = LongRingspace.start + LongRingspace.size / numRegions * i;
+      }
+      checkAgainstTreeMap(starts, random);
+    }
+  }
+
+  @Test
+  public void testRandomRegions() {
+    Random random;
+
+    random = new Random(0);
+    for (int numRegions : new int[] { 1, 10, 1000, 50000 }) {
+      long[] starts;
+
+      starts = new long[numRegions];
+      starts[0] = LongRingspace.start;
+      for (int i = 1; i < numRegions; i++) {
+        // clustered starts exercise buckets that contain many regions
+        starts[i] = LongRingspace.start + ((random.nextLong() & Long.MAX_VALUE) % LongRingspace.size >>> random.nextInt(
+            8));
+      }
+      Arrays.sort(starts);
+      checkAgainstTreeMap(Arrays.stream(starts).distinct().toArray(), random);
+    }
+  }
+
+  @Test
+  public void testWrap() {
+    RegionIndex regionIndex;
+
+    regionIndex = new RegionIndex(new long[] { 0, 1000 });
+    assertEquals(1, regionIndex.indexOf(-1));
+    assertEquals(1, regionIndex.indexOf(LongRingspace.start));
+    assertEquals(0, regionIndex.indexOf(999));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsortedStarts() {
+    new RegionIndex(new long[] { 10, 5 });
+  }
+}
@@ -0,0 +1,162 @@
+package com.ms.silverking.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class StripedLongPairMapTest {
+  private static final int numKeys = 10000;
+
+  private static Long value(long k0, long k1) {
+    return k0 ^ (k1 * 31);
+  }
+
+  @Test
+  public void testPutGetRemove() {
+    StripedLongPairMap<Long> map;
+
+    // a single small stripe exercises growth and backward shift deletion heavily
+    map = new StripedLongPairMap<>(1, 2);
+    for (int i = 0; i < numKeys; i++) {
+      assertNull(map.put(i >> 4, i, value(i >> 4, i)));
+    }
+    assertEquals(numKeys, map.size());
+    for (int i = 0; i < numKeys; i++) {
+      assertEquals(value(i >> 4, i), map.get(i >> 4, i));
+    }
+    assertNull(map.get(-1, 0));
+    for (int i = 0; i < numKeys; i += 2) {
+      assertEquals(value(i >> 4, i), map.remove(i >> 4, i));
+    }
+    assertEquals(numKeys / 2, map.size());
+    for (int i = 0; i < numKeys; i++) {
+      if (i % 2 == 0) {
+        assertNull(map.get(i >> 4, i));
+        assertNull(map.remove(i >> 4, i));
+      } else {
+        assertEquals(value(i >> 4, i), map.get(i >> 4, i));
+      }
+    }
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertNull(map.get(0, 1));
+  }
+
+  @Test
+  public void testMatchesHashMap() {
+    StripedLongPairMap<Long> map;
+    Map<Pair<Long, Long>, Long> reference;
+    Random random;
+
+    map = new StripedLongPairMap<>(4, 2);
+    reference = new HashMap<>();
+    random = new Random(0);
+    for (int i = 0; i < numKeys * 10; i++) {
+      long k0;
+      long k1;
+
+      k0 = random.nextInt(16);
+      k1 = random.nextInt(256);
+      if (random.nextBoolean()) {
+        assertEquals(reference.put(new Pair<>(k0, k1), (long) i), map.put(k0, k1, (long) i));
+      } else {
+        assertEquals(reference.remove(new Pair<>(k0, k1)), map.remove(k0, k1));
+      }
+    }
+    assertEquals(reference.size(), map.size());
+    for (Map.Entry<Pair<Long, Long>, Long> entry : reference.entrySet()) {
+      assertEquals(entry.getValue(), map.get(entry.getKey().getV1(), entry.getKey().getV2()));
+    }
+  }
+
+  @Test
+  public void testConditionalOperations() {
+    StripedLongPairMap<Long> map;
+    Long v0;
+    Long v1;
+
+    map = new StripedLongPairMap<>();
+    v0 = Long.valueOf(1000L);
+    v1 = Long.valueOf(2000L);
+    assertNull(map.putIfAbsent(1, 2, v0));
+    assertEquals(v0, map.putIfAbsent(1, 2, v1));
+    assertEquals(v0, map.get(1, 2));
+    // removal requires the mapped value
+    assertFalse(map.remove(1, 2, v1));
+    assertTrue(map.containsKey(1, 2));
+    assertTrue(map.remove(1, 2, v0));
+    assertFalse(map.containsKey(1, 2));
+    assertEquals(0, map.size());
+  }
+
+  @Test
+  public void testForEachWithRemoval() {
+    StripedLongPairMap<Long> map;
+    AtomicInteger visited;
+
+    map = new StripedLongPairMap<>();
+    for (int i = 0; i < numKeys; i++) {
+      map.put(i, -i, (long) i);
+    }
+    visited = new AtomicInteger();
+    map.forEach((k0, k1, v) -> {
+      assertEquals(k0, -k1);
+      assertEquals(k0, (long) v);
+      visited.incrementAndGet();
+      if (v % 3 == 0) {
+        assertTrue(map.remove(k0, k1, v));
+      }
+    });
+    assertEquals(numKeys, visited.get());
+    assertEquals(numKeys - (numKeys + 2) / 3, map.size());
+  }
+
+  @Test
+  public void testConcurrentAccess() throws InterruptedException {
+    StripedLongPairMap<Long> map;
+    List<Thread> threads;
+    AtomicInteger errors;
+    int numThreads;
+
+    map = new StripedLongPairMap<>(8, 2);
+    threads = new ArrayList<>();
+    errors = new AtomicInteger();
+    numThreads = 8;
+    for (int t = 0; t < numThreads; t++) {
+      long threadID;
+
+      threadID = t;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < numKeys; i++) {
+          map.put(threadID, i, value(threadID, i));
+        }
+        for (int i = 0; i < numKeys; i++) {
+          if (!value(threadID, i).equals(map.get(threadID, i))) {
+            errors.incrementAndGet();
+          }
+          if (i % 2 == 0 && map.remove(threadID, i) == null) {
+            errors.incrementAndGet();
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, errors.get());
+    assertEquals(numThreads * numKeys / 2, map.size());
+  }
+}
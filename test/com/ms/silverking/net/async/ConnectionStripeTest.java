@@ -0,0 +1,97 @@
+package com.ms.silverking.net.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.ms.silverking.cloud.dht.ConnectionAssignmentPolicy;
+import org.junit.Test;
+
+public class ConnectionStripeTest {
+  private static Connection connection(long queueLength) {
+    Connection connection;
+
+    connection = mock(Connection.class);
+    when(connection.getQueueLength()).thenReturn(queueLength);
+    return connection;
+  }
+
+  @Test
+  public void testSingleConnection() {
+    ConnectionStripe<Connection> stripe;
+
+    stripe = new ConnectionStripe<>(1);
+    for (ConnectionAssignmentPolicy policy : ConnectionAssignmentPolicy.values()) {
+      assertEquals(0, stripe.select(policy, 12345));
+    }
+  }
+
+  @Test
+  public void testAddAndRemove() {
+    ConnectionStripe<Connection> stripe;
+    Connection c0;
+    Connection c1;
+
+    stripe = new ConnectionStripe<>(2);
+    c0 = connection(0);
+    c1 = connection(0);
+    assertTrue(stripe.isEmpty());
+    assertEquals(1, stripe.add(1, c1));
+    assertEquals(0, stripe.add(1, c0));
+    assertEquals(-1, stripe.add(0, connection(0)));
+    assertEquals(2, stripe.getConnections().size());
+    assertTrue(stripe.remove(c1));
+    assertFalse(stripe.remove(c1));
+    assertNull(stripe.get(1));
+    assertTrue(stripe.remove(c0));
+    assertTrue(stripe.isEmpty());
+  }
+
+  @Test
+  public void testRoundRobin() {
+    ConnectionStripe<Connection> stripe;
+    Set<Integer> selected;
+
+    stripe = new ConnectionStripe<>(4);
+    selected = new HashSet<>();
+    for (int i = 0; i < 4; i++) {
+      selected.add(stripe.select(ConnectionAssignmentPolicy.RoundRobin, 0));
+    }
+    assertEquals(4, selected.size());
+  }
+
+  @Test
+  public void testKeyHash() {
+    ConnectionStripe<Connection> stripe;
+
+    stripe = new ConnectionStripe<>(4);
+    for (int affinity = -8; affinity < 8; affinity++) {
+      int index;
+
+      index = stripe.select(ConnectionAssignmentPolicy.KeyHash, affinity);
+      assertTrue(index >= 0 && index < 4);
+      assertEquals(index, stripe.select(ConnectionAssignmentPolicy.KeyHash, affinity));
+    }
+  }
+
+  @Test
+  public void testLeastQueued() {
+    ConnectionStripe<Connection> stripe;
+
+    stripe = new ConnectionStripe<>(3);
+    stripe.add(0, connection(5));
+    stripe.add(1, connection(1));
+    // empty slots are selected first
+    assertEquals(2, stripe.select(ConnectionAssignmentPolicy.LeastQueued, 0));
+    stripe.add(2, connection(3));
+    for (int i = 0; i < 3; i++) {
+      assertEquals(1, stripe.select(ConnectionAssignmentPolicy.LeastQueued, 0));
+    }
+  }
+}
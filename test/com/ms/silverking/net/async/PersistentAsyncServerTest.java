@@ -0,0 +1,76 @@
+package com.ms.silverking.net.async;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class PersistentAsyncServerTest {
+  private static final int iterations = 100000;
+
+  @SuppressWarnings("unchecked")
+  private static PersistentAsyncServer<Connection> newServer() {
+    return new PersistentAsyncServer<>(mock(AsyncServer.class), mock(NewConnectionTimeoutController.class), null,
+        false, null, null);
+  }
+
+  /**
+   * One thread repeatedly adds and removes a connection, emptying the stripe each time, while another adds and
+   * removes its own. A connection that was added must always be found in the mapped stripe.
+   */
+  @Test(timeout = 60000)
+  public void testConcurrentAddAndRemove() throws InterruptedException {
+    PersistentAsyncServer<Connection> server;
+    InetSocketAddress dest;
+    Connection c0;
+    Connection c1;
+    CountDownLatch start;
+    AtomicBoolean running;
+    AtomicReference<Throwable> failure;
+    Thread churner;
+
+    server = newServer();
+    dest = new InetSocketAddress("localhost", 7575);
+    c0 = mock(Connection.class);
+    c1 = mock(Connection.class);
+    start = new CountDownLatch(1);
+    running = new AtomicBoolean(true);
+    failure = new AtomicReference<>();
+    churner = new Thread(() -> {
+      try {
+        start.await();
+        while (running.get()) {
+          if (server.addConnection(dest, 0, c0) >= 0) {
+            server.removeConnection(dest, c0);
+          }
+        }
+      } catch (Throwable t) {
+        failure.set(t);
+      }
+    });
+    churner.start();
+    start.countDown();
+    try {
+      for (int i = 0; i < iterations; i++) {
+        int slot;
+
+        slot = server.addConnection(dest, 0, c1);
+        if (slot >= 0) {
+          assertSame(c1, server.getEstablishedConnection(dest, slot));
+          server.removeConnection(dest, c1);
+        }
+      }
+    } finally {
+      running.set(false);
+      churner.join();
+    }
+    assertNull(failure.get());
+    assertNull(server.getEstablishedConnection(dest, 0));
+  }
+}
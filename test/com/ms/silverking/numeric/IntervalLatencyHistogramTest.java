@@ -0,0 +1,66 @@
+package com.ms.silverking.numeric;
+
+import static org.junit.Assert.assertEquals;
+
+import com.ms.silverking.time.AbsMillisTimeSource;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IntervalLatencyHistogramTest {
+  private long curTimeMillis;
+  private AbsMillisTimeSource timeSource;
+
+  private static final long intervalMillis = 1000;
+
+  @Before
+  public void setUp() {
+    curTimeMillis = 0;
+    timeSource = new AbsMillisTimeSource() {
+      @Override
+      public long absTimeMillis() {
+        return curTimeMillis;
+      }
+
+      @Override
+      public int relMillisRemaining(long absDeadlineMillis) {
+        return (int) (absDeadlineMillis - curTimeMillis);
+      }
+    };
+  }
+
+  @Test
+  public void testIntervals() {
+    IntervalLatencyHistogram histogram;
+
+    histogram = new IntervalLatencyHistogram(timeSource, intervalMillis);
+    histogram.record(10);
+    histogram.record(20);
+    // the current interval is not visible until it is complete
+    assertEquals(0, histogram.getLastInterval().getCount());
+    curTimeMillis += intervalMillis;
+    assertEquals(2, histogram.getLastInterval().getCount());
+    histogram.record(30);
+    assertEquals(2, histogram.getLastInterval().getCount());
+    curTimeMillis += intervalMillis;
+    assertEquals(1, histogram.getLastInterval().getCount());
+    assertEquals(30, histogram.getLastInterval().getPercentile(100.0), 30 / 8);
+    // no intervals have been recorded recently
+    histogram.record(40);
+    curTimeMillis += 3 * intervalMillis;
+    assertEquals(0, histogram.getLastInterval().getCount());
+  }
+
+  @Test
+  public void testAddToLastInterval() {
+    IntervalLatencyHistogram histogram;
+    LatencyHistogram other;
+
+    histogram = new IntervalLatencyHistogram(timeSource, intervalMillis);
+    other = new LatencyHistogram();
+    other.record(5);
+    other.record(6);
+    histogram.addToLastInterval(other);
+    histogram.addToLastInterval(other);
+    assertEquals(4, histogram.getLastInterval().getCount());
+  }
+}
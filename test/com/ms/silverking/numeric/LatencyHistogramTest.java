@@ -0,0 +1,55 @@
+package com.ms.silverking.numeric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBins() {
+    for (long value : new long[] { 0, 1, 15, 16, 17, 100, 1000, 123456, LatencyHistogram.maxValue }) {
+      int index;
+
+      index = LatencyHistogram.binIndex(value);
+      assertTrue(value <= LatencyHistogram.binUpperBound(index));
+      assertTrue(index == 0 || value > LatencyHistogram.binUpperBound(index - 1));
+      // relative error is bounded by the sub-bin resolution
+      assertTrue(LatencyHistogram.binUpperBound(index) - value <= value / 8);
+    }
+    assertEquals(LatencyHistogram.binIndex(LatencyHistogram.maxValue),
+        LatencyHistogram.binIndex(LatencyHistogram.maxValue * 4));
+  }
+
+  @Test
+  public void testPercentile() {
+    LatencyHistogram histogram;
+
+    histogram = new LatencyHistogram();
+    assertEquals(-1, histogram.getPercentile(50.0));
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    assertEquals(100, histogram.getCount());
+    assertEquals(1, histogram.getPercentile(1.0));
+    assertEquals(LatencyHistogram.binUpperBound(LatencyHistogram.binIndex(50)), histogram.getPercentile(50.0));
+    assertEquals(LatencyHistogram.binUpperBound(LatencyHistogram.binIndex(100)), histogram.getPercentile(100.0));
+  }
+
+  @Test
+  public void testDecayAndReset() {
+    LatencyHistogram histogram;
+
+    histogram = new LatencyHistogram();
+    for (int i = 0; i < 10; i++) {
+      histogram.record(5);
+    }
+    histogram.record(1000);
+    histogram.decay();
+    assertEquals(5, histogram.getCount());
+    assertEquals(5, histogram.getPercentile(100.0));
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+  }
+}
@@ -0,0 +1,36 @@
+package com.ms.silverking.thread;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ThreadUtilTest {
+  @Test
+  public void testPlatformThreadIsNotVirtual() {
+    assertFalse(ThreadUtil.isCurrentThreadVirtual());
+    assertFalse(ThreadUtil.isVirtual(new Thread()));
+  }
+
+  @Test
+  public void testVirtualThreadPerTaskExecutor() throws Exception {
+    if (ThreadUtil.virtualThreadsSupported()) {
+      ExecutorService executor;
+      Future<Boolean> isVirtual;
+
+      executor = ThreadUtil.newVirtualThreadPerTaskExecutor();
+      isVirtual = executor.submit(ThreadUtil::isCurrentThreadVirtual);
+      assertTrue(isVirtual.get());
+      executor.shutdown();
+    } else {
+      try {
+        ThreadUtil.newVirtualThreadPerTaskExecutor();
+        assertTrue(false);
+      } catch (UnsupportedOperationException uoe) {
+      }
+    }
+  }
+}
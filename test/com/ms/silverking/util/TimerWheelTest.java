@@ -0,0 +1,160 @@
+package com.ms.silverking.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.ms.silverking.time.AbsMillisTimeSource;
+import com.ms.silverking.time.ConstantAbsMillisTimeSource;
+import com.ms.silverking.time.SystemTimeSource;
+import org.junit.Test;
+
+public class TimerWheelTest {
+  private static final long startTimeMillis = 1_000_000;
+
+  private static AbsMillisTimeSource constantTime() {
+    return new ConstantAbsMillisTimeSource(startTimeMillis);
+  }
+
+  @Test
+  public void testExpiresAtDeadline() {
+    TimerWheel wheel;
+    Random random;
+    long[] deadlines;
+    long[] expirations;
+
+    wheel = new TimerWheel("test", constantTime(), 1);
+    random = new Random(0);
+    deadlines = new long[10000];
+    expirations = new long[deadlines.length];
+    for (int i = 0; i < deadlines.length; i++) {
+      int index;
+
+      index = i;
+      // cover all levels of the wheel
+      deadlines[i] = startTimeMillis + ((random.nextLong() & 0x3ffffffL) >>> random.nextInt(26));
+      wheel.scheduleWithoutThread(deadlines[i], curTimeMillis -> expirations[index] = curTimeMillis);
+    }
+    for (long t = startTimeMillis; wheel.size() > 0; t += 1 + random.nextInt(1000)) {
+      wheel.advance(t);
+    }
+    for (int i = 0; i < deadlines.length; i++) {
+      assertTrue(expirations[i] >= deadlines[i]);
+      assertTrue(expirations[i] - deadlines[i] <= 1000);
+    }
+  }
+
+  @Test
+  public void testMillisecondResolution() {
+    TimerWheel wheel;
+    List<Long> expirations;
+
+    wheel = new TimerWheel("test", constantTime(), 1);
+    expirations = new ArrayList<>();
+    for (int delta : new int[] { 1, 255, 256, 257, 65535, 65536, 65537, 70000 }) {
+      wheel.scheduleWithoutThread(startTimeMillis + delta, expirations::add);
+    }
+    for (long t = startTimeMillis; t <= startTimeMillis + 70000; t++) {
+      wheel.advance(t);
+    }
+    assertEquals(8, expirations.size());
+    assertEquals(Long.valueOf(startTimeMillis + 1), expirations.get(0));
+    assertEquals(Long.valueOf(startTimeMillis + 256), expirations.get(2));
+    assertEquals(Long.valueOf(startTimeMillis + 65536), expirations.get(5));
+    assertEquals(Long.valueOf(startTimeMillis + 70000), expirations.get(7));
+  }
+
+  @Test
+  public void testOverdue() {
+    TimerWheel wheel;
+    int[] expired;
+
+    wheel = new TimerWheel("test", constantTime(), 1);
+    expired = new int[1];
+    wheel.scheduleWithoutThread(startTimeMillis - 1000, curTimeMillis -> expired[0]++);
+    assertEquals(1, wheel.advance(startTimeMillis));
+    assertEquals(1, expired[0]);
+  }
+
+  @Test
+  public void testCancel() {
+    TimerWheel wheel;
+    TimerWheel.Timeout[] timeouts;
+    int[] expired;
+
+    wheel = new TimerWheel("test", constantTime(), 1);
+    timeouts = new TimerWheel.Timeout[1000];
+    expired = new int[1];
+    for (int i = 0; i < timeouts.length; i++) {
+      timeouts[i] = wheel.scheduleWithoutThread(startTimeMillis + i * 100, curTimeMillis -> expired[0]++);
+    }
+    for (int i = 0; i < timeouts.length; i += 2) {
+      assertTrue(timeouts[i].cancel());
+      assertFalse(timeouts[i].cancel());
+    }
+    assertEquals(timeouts.length / 2, wheel.size());
+    wheel.advance(startTimeMillis + timeouts.length * 100);
+    assertEquals(timeouts.length / 2, expired[0]);
+    assertEquals(0, wheel.size());
+    assertFalse(timeouts[1].cancel());
+  }
+
+  @Test
+  public void testDrivingThread() throws InterruptedException {
+    TimerWheel wheel;
+    CountDownLatch latch;
+    SystemTimeSource timeSource;
+
+    timeSource = new SystemTimeSource();
+    wheel = new TimerWheel("TimerWheelTest", timeSource, 1);
+    latch = new CountDownLatch(2);
+    wheel.schedule(timeSource.absTimeMillis() + 10, curTimeMillis -> latch.countDown());
+    wheel.schedule(timeSource.absTimeMillis() + 20, curTimeMillis -> latch.countDown());
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    wheel.stop();
+  }
+
+  @Test
+  public void testHandlersRunOnExecutor() {
+    TimerWheel wheel;
+    List<Runnable> dispatched;
+    int[] expired;
+
+    dispatched = new ArrayList<>();
+    wheel = new TimerWheel("test", constantTime(), 1, dispatched::add);
+    expired = new int[1];
+    wheel.scheduleWithoutThread(startTimeMillis + 10, curTimeMillis -> expired[0]++);
+    wheel.scheduleWithoutThread(startTimeMillis + 20, curTimeMillis -> expired[0]++);
+    assertEquals(2, wheel.advance(startTimeMillis + 20));
+    assertEquals(2, dispatched.size());
+    assertEquals(0, expired[0]);
+    dispatched.forEach(Runnable::run);
+    assertEquals(2, expired[0]);
+  }
+
+  @Test
+  public void testParkedThreadWokenBySoonerTimeout() throws InterruptedException {
+    TimerWheel wheel;
+    CountDownLatch latch;
+    SystemTimeSource timeSource;
+
+    timeSource = new SystemTimeSource();
+    wheel = new TimerWheel("TimerWheelTest", timeSource, 1);
+    latch = new CountDownLatch(1);
+    // the driving thread parks until this distant deadline...
+    wheel.schedule(timeSource.absTimeMillis() + 600_000, curTimeMillis -> {
+    });
+    Thread.sleep(10);
+    // ...and must be woken for a sooner one
+    wheel.schedule(timeSource.absTimeMillis() + 10, curTimeMillis -> latch.countDown());
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    assertEquals(1, wheel.size());
+    wheel.stop();
+  }
+}